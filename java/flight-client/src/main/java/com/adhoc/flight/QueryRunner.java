@@ -16,21 +16,57 @@
 
 package com.adhoc.flight;
 
+import java.io.BufferedReader;
 import java.io.File;
-import java.security.SecureRandom;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import org.apache.arrow.flight.CallHeaders;
 import org.apache.arrow.flight.FlightCallHeaders;
+import org.apache.arrow.flight.FlightClientMiddleware;
+import org.apache.arrow.flight.FlightDescriptor;
 import org.apache.arrow.flight.HeaderCallOption;
 import org.apache.arrow.memory.BufferAllocator;
 import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.util.AutoCloseables;
 import org.apache.arrow.vector.VectorSchemaRoot;
 
+import com.adhoc.flight.checksum.ResultChecksum;
 import com.adhoc.flight.client.AdhocFlightClient;
+import com.adhoc.flight.client.ChannelOutputStream;
+import com.adhoc.flight.client.ClientOptions;
+import com.adhoc.flight.client.FlightExecutors;
+import com.adhoc.flight.client.PutOptions;
+import com.adhoc.flight.client.PutSummary;
+import com.adhoc.flight.client.QueryDeadlines;
+import com.adhoc.flight.client.RetryPolicy;
+import com.adhoc.flight.client.ScriptSummary;
+import com.adhoc.flight.client.StripingPolicy;
+import com.adhoc.flight.client.TlsProvider;
+import com.adhoc.flight.client.TransportOptions;
+import com.adhoc.flight.daemon.QueryDaemon;
+import com.adhoc.flight.diff.ResultDiff;
+import com.adhoc.flight.filter.BatchFilter;
+import com.adhoc.flight.filter.ColumnPredicate;
+import com.adhoc.flight.profile.ColumnProfiler;
+import com.adhoc.flight.script.ScriptGraph;
+import com.adhoc.flight.script.ScriptReport;
+import com.adhoc.flight.script.ScriptRunner;
+import com.adhoc.flight.script.SqlScript;
+import com.adhoc.flight.shell.InterruptSignal;
+import com.adhoc.flight.shell.QueryShell;
+import com.adhoc.flight.tracing.FlightTracer;
+import com.adhoc.flight.tracing.LoggingSpanExporter;
 import com.adhoc.flight.utils.QueryUtils;
 import com.beust.jcommander.JCommander;
 import com.beust.jcommander.Parameter;
@@ -38,6 +74,7 @@ import com.beust.jcommander.ParameterException;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableMap;
 
+
 /**
  * Java Flight sample application that runs the specified query.
  */
@@ -63,8 +100,6 @@ public class QueryRunner {
   public static final String KEY_ROUTING_TAG = "ROUTING_TAG";
   public static final String KEY_ROUTING_QUEUE = "ROUTING_QUEUE";
   public static final String KEY_ROUTING_ENGINE = "ROUTING_ENGINE";
-  public static final String KEY_TRACEPARENT = "traceparent";
-  private static final SecureRandom SECURE_RANDOM = new SecureRandom();
 
   /**
    * Class that holds all the command line arguments that can be used to run the
@@ -99,6 +134,184 @@ public class QueryRunner {
         description = "Path to save the SQL result binary to.")
     public String pathToSaveQueryResultsTo = null;
 
+    @Parameter(names = {"-stdoutArrow", "--stdoutArrow", "--stdout-arrow"},
+        description = "Write the query results to standard output as an Arrow IPC stream, and all messages to " +
+            "standard error.")
+    public boolean stdoutArrow = false;
+
+    @Parameter(names = {"-columns", "--selectColumns"},
+        description = "Comma separated columns to keep from the query results, in output order.")
+    public List<String> selectColumns;
+
+    @Parameter(names = {"-filter", "--filter"},
+        description = "Client-side filter on a numeric column, such as \"price>=10\". " +
+          "Supports = != < <= > >=. Can be repeated; rows must match every filter.")
+    public List<String> filters = new ArrayList<>();
+
+    @Parameter(names = {"-profile", "--profile"},
+        description = "Print per-column statistics of the query results instead of the rows. Defaults to false.")
+    public boolean profile = false;
+
+    @Parameter(names = {"-checksum", "--checksum"},
+        description = "Print an order-independent checksum of the query results instead of the rows. With " +
+          "-binpath, also write it next to the saved file with a .checksum suffix. Defaults to false.")
+    public boolean checksum = false;
+
+    @Parameter(names = {"-describe", "--describe"},
+        description = "Print the result schema of the query without running it. Defaults to false.")
+    public boolean describe = false;
+
+    @Parameter(names = {"-dict", "--dictionaryEncode"},
+        description = "Dictionary-encode low-cardinality string columns in the saved binary. This changes their " +
+            "physical type: readers get Int32 indexes and a dictionary instead of strings. Defaults to false.")
+    public boolean dictionaryEncode = false;
+
+    @Parameter(names = {"-put", "--put"},
+        description = "Dot separated path of the table to upload the -putFile files to with DoPut, instead of " +
+          "running a query.")
+    public String putTable;
+
+    @Parameter(names = {"-putFile", "--putFile"},
+        description = "Arrow IPC file (.arrow), Arrow IPC stream (.arrows) or CSV file (.csv) to upload. " +
+          "Can be repeated; every file must have the same schema.")
+    public List<String> putFiles = new ArrayList<>();
+
+    @Parameter(names = {"-putStreams", "--putStreams"},
+        description = "Number of concurrent DoPut streams to upload over. Defaults to 4.")
+    public int putStreams = 4;
+
+    @Parameter(names = {"-putReaders", "--putReaders"},
+        description = "Number of files to read in parallel. Defaults to 2.")
+    public int putReaders = 2;
+
+    @Parameter(names = {"-putWindow", "--putWindow"},
+        description = "Batches a DoPut stream may send ahead of the server acknowledgements. Defaults to 0, " +
+          "unbounded, for servers that do not acknowledge batches.")
+    public int putWindow = 0;
+
+    @Parameter(names = {"-diff", "--diff"},
+        description = "Run the query on the -diffHost, -diffPort and -diffEngine target at the same time and " +
+          "report the rows that differ, instead of printing them. Defaults to false.")
+    public boolean diff = false;
+
+    @Parameter(names = {"-diffHost", "--diffHostname"},
+        description = "Hostname of the second target of -diff. Defaults to -host.")
+    public String diffHost;
+
+    @Parameter(names = {"-diffPort", "--diffFlightport"},
+        description = "Flight server port of the second target of -diff. Defaults to -port.")
+    public int diffPort = 0;
+
+    @Parameter(names = {"-diffEngine", "--diffEngine"},
+        description = "Engine of the second target of -diff. Defaults to -engine.")
+    public String diffEngine;
+
+    @Parameter(names = {"-diffKey", "--diffKey"},
+        description = "Comma separated columns that identify a row in -diff. Defaults to all columns.")
+    public List<String> diffKeyColumns = new ArrayList<>();
+
+    @Parameter(names = {"-diffMaxPendingRows", "--diffMaxPendingRows"},
+        description = "Unmatched rows -diff keeps in memory before it sorts them on disk. Defaults to 100000.")
+    public int diffMaxPendingRows = ResultDiff.DEFAULT_MAX_PENDING_ROWS;
+
+    @Parameter(names = {"-diffExamples", "--diffExamples"},
+        description = "Differing rows -diff prints. Defaults to 10.")
+    public int diffExamples = ResultDiff.DEFAULT_MAX_EXAMPLES;
+
+    @Parameter(names = {"-daemon", "--daemonSocket"},
+        description = "Unix domain socket to serve queries from with one warm, authenticated client, instead of " +
+          "running -query. Clients send a query and receive its results as an Arrow IPC stream.")
+    public String daemonSocket;
+
+    @Parameter(names = {"-daemonThreads", "--daemonThreads"},
+        description = "Number of queries -daemon runs at the same time. Defaults to 8.")
+    public int daemonThreads = QueryDaemon.DEFAULT_THREADS;
+
+    @Parameter(names = {"-shell", "--interactive"},
+        description = "Read statements from the console and run them one after another on the same connection, " +
+          "instead of running -query. Ctrl-C cancels the running query. Defaults to false.")
+    public boolean interactive = false;
+
+    @Parameter(names = {"-preview", "--previewRows"},
+        description = "Rows -shell prints of each result; the others are only counted. Defaults to 20.")
+    public int previewRows = QueryShell.DEFAULT_PREVIEW_ROWS;
+
+    @Parameter(names = {"-script", "--scriptFile"},
+        description = "SQL script of statements separated by ';' to run one after another, instead of -query.")
+    public String scriptFile;
+
+    @Parameter(names = {"-lookAhead", "--lookAhead"},
+        description = "Statements of -script planned while the results of the current one are streamed. Only " +
+          "statements that read data are planned ahead. Defaults to 2; 0 runs the script sequentially.")
+    public int lookAhead = AdhocFlightClient.DEFAULT_LOOK_AHEAD;
+
+    @Parameter(names = {"-scriptClients", "--scriptClients"},
+        description = "Clients to run the statements of -script on, running the statements that do not depend " +
+          "on each other's tables at the same time and only counting their rows. Defaults to 1, which runs the " +
+          "statements in order and prints their results.")
+    public int scriptClients = 1;
+
+    @Parameter(names = {"-handshakeTimeout", "--handshakeTimeout"},
+        description = "Seconds to wait for authentication. Defaults to 0, no deadline.")
+    public long handshakeTimeoutSeconds = 0;
+
+    @Parameter(names = {"-getInfoTimeout", "--getInfoTimeout"},
+        description = "Seconds to wait for the query to be planned. Defaults to 0, no deadline.")
+    public long getInfoTimeoutSeconds = 0;
+
+    @Parameter(names = {"-firstBatchTimeout", "--firstBatchTimeout"},
+        description = "Seconds to wait for the first result batch. Defaults to 0, no deadline.")
+    public long firstBatchTimeoutSeconds = 0;
+
+    @Parameter(names = {"-idleTimeout", "--idleTimeout"},
+        description = "Seconds to wait between two result batches. Defaults to 0, no deadline.")
+    public long idleTimeoutSeconds = 0;
+
+    @Parameter(names = {"-queryTimeout", "--queryTimeout"},
+        description = "Seconds the whole query may take. Defaults to 0, no deadline.")
+    public long queryTimeoutSeconds = 0;
+
+    @Parameter(names = {"-retries", "--retries"},
+        description = "Times to retry the handshake, planning and reading of results after an UNAVAILABLE " +
+          "error, with jittered exponential backoff. Defaults to 0.")
+    public int retries = 0;
+
+    @Parameter(names = {"-maxMessageSize", "--maxInboundMessageSize"},
+        description = "Largest message in bytes, e.g. record batch, the client accepts. Defaults to 0, unlimited.")
+    public int maxInboundMessageSize = 0;
+
+    @Parameter(names = {"-window", "--flowControlWindow"},
+        description = "Fixed HTTP/2 flow-control window in bytes of each stream. Defaults to 0, sized by gRPC " +
+          "from bandwidth-delay probes.")
+    public int flowControlWindow = 0;
+
+    @Parameter(names = {"-keepAliveTime", "--keepAliveTime"},
+        description = "Seconds between keepalive pings on the connection. Defaults to 0, no pings.")
+    public long keepAliveTimeSeconds = 0;
+
+    @Parameter(names = {"-keepAliveTimeout", "--keepAliveTimeout"},
+        description = "Seconds to wait for a keepalive ping to be acknowledged before closing the connection. " +
+          "Defaults to 0, the gRPC default of 20 seconds.")
+    public long keepAliveTimeoutSeconds = 0;
+
+    @Parameter(names = {"-keepAliveWithoutCalls", "--keepAliveWithoutCalls"},
+        description = "Send keepalive pings while no call is running. Defaults to false.")
+    public boolean keepAliveWithoutCalls = false;
+
+    @Parameter(names = {"-channelIdleTimeout", "--channelIdleTimeout"},
+        description = "Seconds a connection may go without calls before it is released. Defaults to 0, the gRPC " +
+          "default of 30 minutes.")
+    public long channelIdleTimeoutSeconds = 0;
+
+    @Parameter(names = {"-stripes", "--stripes"},
+        description = "Number of connections to open to each server, to spread result streams over. Defaults to 1.")
+    public int stripes = 1;
+
+    @Parameter(names = {"-stripePolicy", "--stripePolicy"},
+        description = "How result streams are spread over the connections: LEAST_LOADED or ROUND_ROBIN. " +
+          "Defaults to LEAST_LOADED.")
+    public StripingPolicy stripePolicy = StripingPolicy.LEAST_LOADED;
+
     @Parameter(names = {"-tls", "--tls"},
         description = "Enable encrypted connection. Defaults to false.")
     public boolean enableTls = false;
@@ -107,6 +320,11 @@ public class QueryRunner {
         description = "Disable TLS server verification. Defaults to false.")
     public boolean disableServerVerification = false;
 
+    @Parameter(names = {"-tlsProvider", "--tlsProvider"},
+        description = "TLS implementation of encrypted connections: DEFAULT, JDK or OPENSSL. Defaults to DEFAULT, " +
+          "OpenSSL when netty-tcnative is available and the JDK otherwise.")
+    public TlsProvider tlsProvider = TlsProvider.DEFAULT;
+
     @Parameter(names = {"-kstpath", "--keyStorePath"},
         description = "Path to the jks keystore. Defaults to system Keystore.")
     public String keystorePath = null;
@@ -135,6 +353,10 @@ public class QueryRunner {
         description = "Set W3C trace flags to sampled (-01). Defaults to unsampled (-00).")
     public boolean traceSampled = false;
 
+    @Parameter(names = {"-traceFile", "--traceExportPath"},
+        description = "Path to append client-side trace spans to as JSON lines. Use \"-\" for stdout.")
+    public String traceExportPath;
+
     @Parameter(names = {"-sp", "--sessionProperty"},
         description = "Key value pairs of SessionProperty, " +
           "example: -sp schema='Samples.\"samples.dremio.com\"' -sp key=value",
@@ -182,7 +404,9 @@ public class QueryRunner {
     final HeaderCallOption routingCallOption = createClientProperties(properties);
 
     // Authenticates FlightClient with routing properties.
-    try (final AdhocFlightClient client = createFlightClient(routingCallOption)) {
+    try (final FlightTracer tracer = createTracer();
+        final AdhocFlightClient client = createFlightClient(connectionTarget, routingCallOption, tracer);
+        final AutoCloseable shutdownHook = cancelOnShutdown(client)) {
       QueryUtils.printAuthenticated(connectionTarget.host, connectionTarget.port);
 
       /**
@@ -252,15 +476,12 @@ public class QueryRunner {
       sessionPropertiesMap.put(KEY_ROUTING_ENGINE, ARGUMENTS.engine);
     }
 
-    if (!Strings.isNullOrEmpty(ARGUMENTS.traceId)) {
-      final String traceparent = createTraceparent(ARGUMENTS.traceId, ARGUMENTS.traceSampled);
-      sessionPropertiesMap.put(KEY_TRACEPARENT, traceparent);
-      System.out.println(String.format("[INFO] Setting traceparent header: %s", traceparent));
-    }
-
-    final HeaderCallOption clientProperties = createClientProperties(sessionPropertiesMap);
+    final CallHeaders sessionHeaders = createCallHeaders(sessionPropertiesMap);
+    final HeaderCallOption clientProperties = new HeaderCallOption(sessionHeaders);
 
-    try (final AdhocFlightClient client = createFlightClient(clientProperties)) {
+    try (final FlightTracer tracer = createTracer();
+        final AdhocFlightClient client = createFlightClient(connectionTarget, clientProperties, tracer);
+        final AutoCloseable shutdownHook = cancelOnShutdown(client)) {
 
       /**
        * Authentication
@@ -272,15 +493,142 @@ public class QueryRunner {
             "Dremio will authenticate the first Flight request.");
       }
 
+      /**
+       * Serve Queries
+       */
+      if (ARGUMENTS.daemonSocket != null) {
+        try (final QueryDaemon daemon = QueryDaemon.start(Paths.get(ARGUMENTS.daemonSocket), client,
+            clientProperties, ARGUMENTS.daemonThreads)) {
+          System.out.println("[INFO] Serving queries on " + daemon.getSocketPath() + ". Press Ctrl-C to stop.");
+          daemon.awaitTermination();
+        }
+        return;
+      }
+
+      /**
+       * Interactive Shell
+       */
+      if (ARGUMENTS.interactive) {
+        final QueryShell shell = new QueryShell(client, sessionHeaders,
+            new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)), System.out,
+            ARGUMENTS.previewRows);
+        try (final AutoCloseable interruptHandler = cancelOnInterrupt(shell)) {
+          shell.run();
+        }
+        return;
+      }
+
+      /**
+       * Run Script
+       */
+      if (ARGUMENTS.scriptFile != null && ARGUMENTS.scriptClients > 1) {
+        runScriptGraph(SqlScript.read(Paths.get(ARGUMENTS.scriptFile)), client, connectionTarget,
+            clientProperties, tracer);
+        return;
+      }
+      if (ARGUMENTS.scriptFile != null) {
+        final List<String> statements = SqlScript.read(Paths.get(ARGUMENTS.scriptFile));
+        final ScriptSummary summary = client.runScript(statements, ARGUMENTS.lookAhead, clientProperties,
+            (index, statement, results) -> {
+              System.out.printf("[INFO] Statement %d of %d.%n", index + 1, statements.size());
+              while (results.hasNext()) {
+                try (final VectorSchemaRoot batch = results.next()) {
+                  QueryUtils.printResults(batch);
+                }
+              }
+            });
+        System.out.println("[INFO] " + summary);
+        return;
+      }
+
+      /**
+       * Describe Query
+       */
+      if (ARGUMENTS.describe) {
+        QueryUtils.printSchema(client.describe(ARGUMENTS.query, sessionHeaders));
+        return;
+      }
+
+      /**
+       * Put Files
+       */
+      if (ARGUMENTS.putTable != null) {
+        final List<Path> files = new ArrayList<>();
+        ARGUMENTS.putFiles.forEach(file -> files.add(Paths.get(file)));
+        final PutSummary summary = client.put(FlightDescriptor.path(ARGUMENTS.putTable.split("\\.")), files,
+            createPutOptions(), clientProperties);
+        System.out.println("[INFO] Uploaded to " + ARGUMENTS.putTable + ": " + summary);
+        return;
+      }
+
+      /**
+       * Diff Query
+       */
+      if (ARGUMENTS.diff) {
+        final ConnectionTarget diffTarget = new ConnectionTarget(
+            Strings.isNullOrEmpty(ARGUMENTS.diffHost) ? connectionTarget.host : ARGUMENTS.diffHost,
+            ARGUMENTS.diffPort > 0 ? ARGUMENTS.diffPort : connectionTarget.port);
+        if (!Strings.isNullOrEmpty(ARGUMENTS.diffEngine)) {
+          sessionPropertiesMap.put(KEY_ROUTING_ENGINE, ARGUMENTS.diffEngine);
+        }
+        final HeaderCallOption diffProperties = new HeaderCallOption(createCallHeaders(sessionPropertiesMap));
+        QueryUtils.printRunningQuery(ARGUMENTS.query);
+        try (final AdhocFlightClient diffClient = createFlightClient(diffTarget, diffProperties, tracer);
+            final ResultDiff diff = new ResultDiff(ARGUMENTS.diffKeyColumns, ARGUMENTS.diffMaxPendingRows,
+                ARGUMENTS.diffExamples, Paths.get(System.getProperty("java.io.tmpdir")))) {
+          QueryUtils.printDiff(diff.compare(client, clientProperties, diffClient, diffProperties, ARGUMENTS.query,
+              FlightExecutors.defaultExecutor()));
+        }
+        return;
+      }
+
       /**
        * Run Query
        */
       QueryUtils.printRunningQuery(ARGUMENTS.query);
 
-      if (pathToSaveQueryResultsTo != null) {
-        client.runQuery(ARGUMENTS.query, clientProperties, new File(pathToSaveQueryResultsTo), true);
+      final File fileToSaveTo = pathToSaveQueryResultsTo == null ? null : new File(pathToSaveQueryResultsTo);
+      if (fileToSaveTo != null && ARGUMENTS.stdoutArrow) {
+        throw new IllegalArgumentException("--stdout-arrow cannot be combined with --saveBinaryPath.");
+      }
+      final BatchFilter filter = createBatchFilter();
+      final ResultChecksum checksum = ARGUMENTS.checksum ? new ResultChecksum() : null;
+      final ColumnProfiler profiler = ARGUMENTS.profile ? new ColumnProfiler() : null;
+      final Consumer<VectorSchemaRoot> batchConsumer;
+      if (profiler != null) {
+        batchConsumer = checksum == null ? profiler : profiler.andThen(checksum);
+      } else if (checksum != null) {
+        batchConsumer = checksum;
       } else {
-        client.runQuery(ARGUMENTS.query, clientProperties, null, true);
+        batchConsumer = ARGUMENTS.stdoutArrow ? null : QueryUtils::printResults;
+      }
+      if (ARGUMENTS.stdoutArrow) {
+        try (final ChannelOutputStream stdout = ChannelOutputStream.standardOutput()) {
+          try {
+            client.streamQuery(ARGUMENTS.query, clientProperties, filter, ARGUMENTS.dictionaryEncode, stdout,
+                batchConsumer);
+          } catch (Exception ex) {
+            if (stdout.isOpen()) {
+              throw ex;
+            }
+            // The reader went away, as head does once it has read enough; the query is cancelled.
+            System.out.println("[INFO] Standard output was closed by the reader.");
+            return;
+          }
+          System.out.println("[INFO] Wrote " + stdout.getBytesWritten() + " bytes to standard output.");
+        }
+      } else {
+        client.runQuery(ARGUMENTS.query, clientProperties, filter, fileToSaveTo,
+            ARGUMENTS.dictionaryEncode, batchConsumer);
+      }
+      if (profiler != null) {
+        QueryUtils.printProfile(profiler);
+      }
+      if (checksum != null) {
+        QueryUtils.printChecksum(checksum);
+        if (fileToSaveTo != null) {
+          System.out.println("[INFO] Saved checksum to " + checksum.writeSidecar(fileToSaveTo));
+        }
       }
     } catch (Exception ex) {
       System.out.println("[ERROR] Exception: " + ex.getMessage());
@@ -310,6 +658,10 @@ public class QueryRunner {
 
   public static void main(String[] args) throws Exception {
     parseCommandLineArgs(args);
+    if (ARGUMENTS.stdoutArrow) {
+      // Standard output carries the results, so messages go to standard error.
+      System.setOut(System.err);
+    }
 
     try {
       if (ARGUMENTS.help) {
@@ -324,10 +676,51 @@ public class QueryRunner {
     }
   }
 
+  /**
+   * Runs the statements of a script on a pool of clients, running the independent ones at the same
+   * time, and prints what happened to each.
+   *
+   * @param statements       the statements of the script.
+   * @param client           the connected client, the first of the pool.
+   * @param connectionTarget the host and port to connect the other clients of the pool to.
+   * @param clientProperties Dremio client properties.
+   * @param tracer           the tracer to record and propagate query phases with.
+   * @throws Exception if a client cannot connect, or the failure of the first statement that failed.
+   */
+  private static void runScriptGraph(List<String> statements, AdhocFlightClient client,
+      ConnectionTarget connectionTarget, HeaderCallOption clientProperties, FlightTracer tracer) throws Exception {
+    final ScriptGraph graph = ScriptGraph.of(statements);
+    final List<AdhocFlightClient> clients = new ArrayList<>();
+    clients.add(client);
+    try {
+      for (int i = 1; i < ARGUMENTS.scriptClients; i++) {
+        clients.add(createFlightClient(connectionTarget, clientProperties, tracer));
+      }
+      final ScriptReport report = new ScriptRunner(clients, clientProperties).run(graph,
+          (index, statement, results) -> {
+            final long start = System.nanoTime();
+            long rows = 0;
+            while (results.hasNext()) {
+              try (final VectorSchemaRoot batch = results.next()) {
+                rows += batch.getRowCount();
+              }
+            }
+            System.out.printf("[INFO] Statement %d of %d: %d rows in %d ms.%n", index + 1, graph.size(), rows,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+          });
+      System.out.println("[INFO] " + report);
+      report.throwIfFailed();
+    } finally {
+      AutoCloseables.close(clients.subList(1, clients.size()));
+    }
+  }
+
   /**
    * Creates a FlightClient instance based on command line arguments provided.
    *
+   * @param connectionTarget the host and port to connect to.
    * @param clientProperties Dremio client properties.
+   * @param tracer           the tracer to record and propagate query phases with.
    * @return an instance of AdhocFlightClient encapsulating the connected FlightClient instance
    *      and the CredentialCallOption with a bearer token to use in subsequent requests.
    * @throws Exception If there are issues running queries against the Dremio Arrow Flight
@@ -339,8 +732,10 @@ public class QueryRunner {
    *                   - UNAVAILABLE: Dremio resource is not available.
    *                   - TIMED_OUT: timed out trying to access Dremio resources.
    */
-  private static AdhocFlightClient createFlightClient(HeaderCallOption clientProperties) throws Exception {
-    final ConnectionTarget connectionTarget = resolveConnectionTarget();
+  private static AdhocFlightClient createFlightClient(ConnectionTarget connectionTarget,
+      HeaderCallOption clientProperties, FlightTracer tracer) throws Exception {
+    final List<FlightClientMiddleware.Factory> middlewares =
+        tracer.isEnabled() ? Collections.singletonList(tracer) : null;
     // If no auth method provided, default to demo username/password
     if (Strings.isNullOrEmpty(ARGUMENTS.patOrAuthToken)) {
       if (Strings.isNullOrEmpty(ARGUMENTS.user)) {
@@ -361,7 +756,8 @@ public class QueryRunner {
           ARGUMENTS.disableServerVerification,
           ARGUMENTS.projectId,
           clientProperties,
-          null);
+          middlewares,
+          createClientOptions());
     } else {
       return AdhocFlightClient.getBasicClient(BUFFER_ALLOCATOR,
           connectionTarget.host, connectionTarget.port,
@@ -369,8 +765,88 @@ public class QueryRunner {
           ARGUMENTS.patOrAuthToken,
           ARGUMENTS.projectId,
           clientProperties,
-          null);
+          middlewares,
+          createClientOptions());
+    }
+  }
+
+  /**
+   * Creates the client options requested on the command line.
+   *
+   * @return the deadlines, retry policy and transport settings of the client.
+   */
+  private static ClientOptions createClientOptions() {
+    final QueryDeadlines deadlines = QueryDeadlines.builder()
+        .handshake(Duration.ofSeconds(ARGUMENTS.handshakeTimeoutSeconds))
+        .getInfo(Duration.ofSeconds(ARGUMENTS.getInfoTimeoutSeconds))
+        .firstBatch(Duration.ofSeconds(ARGUMENTS.firstBatchTimeoutSeconds))
+        .idle(Duration.ofSeconds(ARGUMENTS.idleTimeoutSeconds))
+        .total(Duration.ofSeconds(ARGUMENTS.queryTimeoutSeconds))
+        .build();
+    final TransportOptions.Builder transport = TransportOptions.builder()
+        .keepAlive(Duration.ofSeconds(ARGUMENTS.keepAliveTimeSeconds),
+            Duration.ofSeconds(ARGUMENTS.keepAliveTimeoutSeconds),
+            ARGUMENTS.keepAliveWithoutCalls)
+        .idleTimeout(Duration.ofSeconds(ARGUMENTS.channelIdleTimeoutSeconds))
+        .tlsProvider(ARGUMENTS.tlsProvider);
+    if (ARGUMENTS.maxInboundMessageSize > 0) {
+      transport.maxInboundMessageSize(ARGUMENTS.maxInboundMessageSize);
+    }
+    if (ARGUMENTS.flowControlWindow > 0) {
+      transport.flowControlWindow(ARGUMENTS.flowControlWindow);
     }
+    return ClientOptions.builder()
+        .deadlines(deadlines)
+        .retryPolicy(RetryPolicy.builder().maxAttempts(ARGUMENTS.retries + 1).build())
+        .transport(transport.build())
+        .stripes(ARGUMENTS.stripes, ARGUMENTS.stripePolicy)
+        .build();
+  }
+
+  /**
+   * Registers a JVM shutdown hook that cancels the queries the client is running, so interrupting
+   * the runner (e.g. with Ctrl-C) also stops the queries on the server.
+   *
+   * @param client the client whose queries to cancel.
+   * @return a handle that unregisters the hook when closed.
+   */
+  private static AutoCloseable cancelOnShutdown(AdhocFlightClient client) {
+    return onShutdown(() -> {
+      final int cancelled = client.cancelInFlightQueries();
+      if (cancelled > 0) {
+        System.out.println(String.format("[INFO] Cancelled %d running queries on shutdown.", cancelled));
+      }
+    });
+  }
+
+  /**
+   * Handles Ctrl-C by cancelling the query the shell is running instead of exiting the JVM. If the
+   * JVM does not let the signal be handled, Ctrl-C still exits, and a shutdown hook cancels the
+   * running query on the way out.
+   *
+   * @param shell the shell whose queries to cancel.
+   * @return a handle that restores the previous handler when closed.
+   */
+  private static AutoCloseable cancelOnInterrupt(QueryShell shell) {
+    final AutoCloseable handler = InterruptSignal.handle(() -> {
+      if (!shell.cancel()) {
+        System.out.println();
+        System.out.println("[INFO] No query is running. Enter \\q or press Ctrl-D to quit.");
+      }
+    });
+    return handler != null ? handler : onShutdown(shell::cancel);
+  }
+
+  private static AutoCloseable onShutdown(Runnable action) {
+    final Thread hook = new Thread(action, "adhoc-flight-shutdown");
+    Runtime.getRuntime().addShutdownHook(hook);
+    return () -> {
+      try {
+        Runtime.getRuntime().removeShutdownHook(hook);
+      } catch (IllegalStateException ignored) {
+        // The JVM is already shutting down and the hook is running.
+      }
+    };
   }
 
   /**
@@ -382,28 +858,71 @@ public class QueryRunner {
    * @return a HeaderCallOption encapsulating provided key, value property pairs.
    */
   private static HeaderCallOption createClientProperties(Map<String, String> clientProperties) {
+    return new HeaderCallOption(createCallHeaders(clientProperties));
+  }
+
+  /**
+   * Given a map of client properties strings, insert each entry into a Flight CallHeaders object.
+   *
+   * @param clientProperties Dremio client properties.
+   * @return CallHeaders holding the provided key, value property pairs.
+   */
+  private static CallHeaders createCallHeaders(Map<String, String> clientProperties) {
     final CallHeaders callHeaders = new FlightCallHeaders();
     clientProperties.forEach(callHeaders::insert);
-    return new HeaderCallOption(callHeaders);
+    return callHeaders;
   }
 
-  private static String createTraceparent(String traceId, boolean sampled) {
-    if (!traceId.matches("[0-9a-f]{32}")) {
-      throw new IllegalArgumentException("traceId must be exactly 32 lowercase hex characters.");
+  /**
+   * Creates the tracer requested on the command line. Trace context is propagated on every Flight
+   * RPC when a trace ID is given, and finished spans are exported when an export path is given.
+   *
+   * @return a new FlightTracer, or the disabled tracer if tracing was not requested.
+   * @throws Exception if the trace export file cannot be opened.
+   */
+  private static FlightTracer createTracer() throws Exception {
+    if (Strings.isNullOrEmpty(ARGUMENTS.traceId) && Strings.isNullOrEmpty(ARGUMENTS.traceExportPath)) {
+      return FlightTracer.disabled();
     }
+    final FlightTracer tracer = new FlightTracer(
+        Strings.emptyToNull(ARGUMENTS.traceId),
+        ARGUMENTS.traceSampled,
+        Strings.isNullOrEmpty(ARGUMENTS.traceExportPath) ? null
+            : LoggingSpanExporter.forPath(ARGUMENTS.traceExportPath));
+    if (!Strings.isNullOrEmpty(ARGUMENTS.traceId)) {
+      System.out.println(String.format("[INFO] Propagating W3C trace context for trace ID: %s",
+          ARGUMENTS.traceId));
+    }
+    return tracer;
+  }
 
-    final byte[] spanId = new byte[8];
-    SECURE_RANDOM.nextBytes(spanId);
-    final String traceFlags = sampled ? "01" : "00";
-    return String.format("00-%s-%s-%s", traceId, bytesToHex(spanId), traceFlags);
+  /**
+   * Creates the DoPut options requested on the command line.
+   *
+   * @return the options to upload the -putFile files with.
+   * @throws IllegalArgumentException if a setting is out of range.
+   */
+  private static PutOptions createPutOptions() {
+    return PutOptions.builder()
+        .streams(ARGUMENTS.putStreams)
+        .readers(ARGUMENTS.putReaders)
+        .maxUnacknowledged(ARGUMENTS.putWindow)
+        .build();
   }
 
-  private static String bytesToHex(byte[] bytes) {
-    final StringBuilder builder = new StringBuilder(bytes.length * 2);
-    for (byte value : bytes) {
-      builder.append(String.format("%02x", value));
+  /**
+   * Creates the client-side filter stage requested on the command line.
+   *
+   * @return a new BatchFilter, or null if no columns or filters were requested.
+   * @throws IllegalArgumentException if a filter expression is malformed.
+   */
+  private static BatchFilter createBatchFilter() {
+    if (ARGUMENTS.selectColumns == null && ARGUMENTS.filters.isEmpty()) {
+      return null;
     }
-    return builder.toString();
+    final List<ColumnPredicate> predicates = new ArrayList<>();
+    ARGUMENTS.filters.forEach(filter -> predicates.add(ColumnPredicate.parse(filter)));
+    return new BatchFilter(ARGUMENTS.selectColumns, predicates);
   }
 
   private static ConnectionTarget resolveConnectionTarget() {
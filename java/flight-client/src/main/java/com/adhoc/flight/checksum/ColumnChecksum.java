@@ -0,0 +1,166 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.checksum;
+
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.memory.util.hash.ArrowBufHasher;
+import org.apache.arrow.memory.util.hash.MurmurHasher;
+import org.apache.arrow.vector.BaseFixedWidthVector;
+import org.apache.arrow.vector.BaseLargeVariableWidthVector;
+import org.apache.arrow.vector.BaseVariableWidthVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.BitVectorHelper;
+import org.apache.arrow.vector.FieldVector;
+
+/**
+ * Order-independent checksum of a single result column: the sum of the hashes of its values.
+ * <p>
+ * Fixed-width and variable-width values are hashed from the bytes of their data buffer, and nulls
+ * are read from the validity bitmap. The bytes of null slots are ignored, so the checksum only
+ * depends on the values. Other vectors, such as lists and structs, are hashed with Arrow's
+ * per-value hash code, which is slower and only 32 bits wide.
+ */
+public final class ColumnChecksum {
+  private final String name;
+  private final String type;
+  private final ArrowBufHasher fallbackHasher = new MurmurHasher();
+  private long nullCount;
+  private long checksum;
+
+  ColumnChecksum(FieldVector vector) {
+    this.name = vector.getName();
+    this.type = vector.getMinorType().name();
+  }
+
+  /**
+   * Hash the values of a batch of this column and add them to the checksum.
+   *
+   * @param vector   the vector of this column in the batch.
+   * @param rowCount the number of rows in the batch.
+   * @param hashes   receives the hash of the value of each row.
+   */
+  void add(FieldVector vector, int rowCount, long[] hashes) {
+    final long nulls;
+    if (vector instanceof BitVector) {
+      nulls = hashBits((BitVector) vector, rowCount, hashes);
+    } else if (vector instanceof BaseFixedWidthVector) {
+      nulls = hashFixedWidth((BaseFixedWidthVector) vector, rowCount, hashes);
+    } else if (vector instanceof BaseVariableWidthVector) {
+      nulls = hashVariableWidth(vector, BaseVariableWidthVector.OFFSET_WIDTH, rowCount, hashes);
+    } else if (vector instanceof BaseLargeVariableWidthVector) {
+      nulls = hashVariableWidth(vector, BaseLargeVariableWidthVector.OFFSET_WIDTH, rowCount, hashes);
+    } else {
+      nulls = hashValues(vector, rowCount, hashes);
+    }
+    long sum = 0;
+    for (int row = 0; row < rowCount; row++) {
+      sum += hashes[row];
+    }
+    nullCount += nulls;
+    checksum += sum;
+  }
+
+  private static long hashBits(BitVector vector, int rowCount, long[] hashes) {
+    final ArrowBuf validity = vector.getValidityBuffer();
+    final ArrowBuf data = vector.getDataBuffer();
+    long nulls = 0;
+    for (int row = 0; row < rowCount; row++) {
+      if (BitVectorHelper.get(validity, row) == 0) {
+        hashes[row] = Hash64.NULL;
+        nulls++;
+      } else {
+        hashes[row] = Hash64.hashLong(BitVectorHelper.get(data, row));
+      }
+    }
+    return nulls;
+  }
+
+  private static long hashFixedWidth(BaseFixedWidthVector vector, int rowCount, long[] hashes) {
+    final ArrowBuf validity = vector.getValidityBuffer();
+    final ArrowBuf data = vector.getDataBuffer();
+    final int width = vector.getTypeWidth();
+    long nulls = 0;
+    for (int row = 0; row < rowCount; row++) {
+      if (BitVectorHelper.get(validity, row) == 0) {
+        hashes[row] = Hash64.NULL;
+        nulls++;
+      } else if (width == Long.BYTES) {
+        hashes[row] = Hash64.hashLong(data.getLong((long) row * Long.BYTES));
+      } else {
+        hashes[row] = Hash64.hashBytes(data, (long) row * width, width);
+      }
+    }
+    return nulls;
+  }
+
+  private static long hashVariableWidth(FieldVector vector, int offsetWidth, int rowCount, long[] hashes) {
+    final ArrowBuf validity = vector.getValidityBuffer();
+    final ArrowBuf offsets = vector.getOffsetBuffer();
+    final ArrowBuf data = vector.getDataBuffer();
+    long nulls = 0;
+    for (int row = 0; row < rowCount; row++) {
+      if (BitVectorHelper.get(validity, row) == 0) {
+        hashes[row] = Hash64.NULL;
+        nulls++;
+        continue;
+      }
+      final long start = readOffset(offsets, offsetWidth, row);
+      final long end = readOffset(offsets, offsetWidth, row + 1);
+      hashes[row] = Hash64.hashBytes(data, start, end - start);
+    }
+    return nulls;
+  }
+
+  private static long readOffset(ArrowBuf offsets, int offsetWidth, int index) {
+    return offsetWidth == Integer.BYTES ? offsets.getInt((long) index * Integer.BYTES) :
+        offsets.getLong((long) index * Long.BYTES);
+  }
+
+  private long hashValues(FieldVector vector, int rowCount, long[] hashes) {
+    long nulls = 0;
+    for (int row = 0; row < rowCount; row++) {
+      if (vector.isNull(row)) {
+        hashes[row] = Hash64.NULL;
+        nulls++;
+      } else {
+        hashes[row] = Hash64.hashLong(vector.hashCode(row, fallbackHasher));
+      }
+    }
+    return nulls;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getType() {
+    return type;
+  }
+
+  public long getNullCount() {
+    return nullCount;
+  }
+
+  /**
+   * Returns the checksum of the column. It does not depend on the order of the rows or on how they
+   * were split into batches.
+   */
+  public long getChecksum() {
+    return checksum;
+  }
+}
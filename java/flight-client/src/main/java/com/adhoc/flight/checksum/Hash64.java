@@ -0,0 +1,108 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.checksum;
+
+import org.apache.arrow.memory.ArrowBuf;
+
+/**
+ * Fast, non-cryptographic 64-bit hash of values read straight from Arrow buffers. It follows the
+ * short-input path of xxHash64: eight bytes at a time, then four, then single bytes, and a final
+ * avalanche. Values are never copied to the heap.
+ */
+final class Hash64 {
+  private static final long PRIME_1 = 0x9E3779B185EBCA87L;
+  private static final long PRIME_2 = 0xC2B2AE3D27D4EB4FL;
+  private static final long PRIME_3 = 0x165667B19E3779F9L;
+  private static final long PRIME_4 = 0x85EBCA77C2B2AE63L;
+  private static final long PRIME_5 = 0x27D4EB2F165667C5L;
+
+  /**
+   * Hash of a null value. It differs from the hash of zero and of the empty string.
+   */
+  static final long NULL = finish(PRIME_3);
+
+  private Hash64() {
+  }
+
+  /**
+   * Hash the given bytes of a buffer.
+   *
+   * @param buffer the buffer to read.
+   * @param offset the offset of the first byte.
+   * @param length the number of bytes to hash.
+   * @return the hash of the bytes.
+   */
+  static long hashBytes(ArrowBuf buffer, long offset, long length) {
+    final long end = offset + length;
+    long position = offset;
+    long hash = PRIME_5 + length;
+    while (position + Long.BYTES <= end) {
+      hash = combine(hash, buffer.getLong(position));
+      position += Long.BYTES;
+    }
+    if (position + Integer.BYTES <= end) {
+      hash ^= (buffer.getInt(position) & 0xFFFFFFFFL) * PRIME_1;
+      hash = Long.rotateLeft(hash, 23) * PRIME_2 + PRIME_3;
+      position += Integer.BYTES;
+    }
+    while (position < end) {
+      hash ^= (buffer.getByte(position) & 0xFFL) * PRIME_5;
+      hash = Long.rotateLeft(hash, 11) * PRIME_1;
+      position++;
+    }
+    return finish(hash);
+  }
+
+  /**
+   * Hash a single long, as {@link #hashBytes} would hash its eight little-endian bytes.
+   *
+   * @param value the value to hash.
+   * @return the hash of the value.
+   */
+  static long hashLong(long value) {
+    return finish(combine(PRIME_5 + Long.BYTES, value));
+  }
+
+  /**
+   * Mix a value into a running hash. The result depends on the order in which values are mixed.
+   *
+   * @param hash  the running hash.
+   * @param value the value to mix in.
+   * @return the new running hash.
+   */
+  static long combine(long hash, long value) {
+    final long round = Long.rotateLeft(value * PRIME_2, 31) * PRIME_1;
+    return Long.rotateLeft(hash ^ round, 27) * PRIME_1 + PRIME_4;
+  }
+
+  /**
+   * Avalanche a running hash, so that every input bit affects every output bit.
+   *
+   * @param hash the running hash.
+   * @return the final hash.
+   */
+  static long finish(long hash) {
+    long result = hash;
+    result ^= result >>> 33;
+    result *= PRIME_2;
+    result ^= result >>> 29;
+    result *= PRIME_3;
+    result ^= result >>> 32;
+    return result;
+  }
+}
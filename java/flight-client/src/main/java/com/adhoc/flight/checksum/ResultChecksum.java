@@ -0,0 +1,183 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.checksum;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+
+/**
+ * Batch consumer that fingerprints a query result in a single streaming pass, to compare the results
+ * of the same query on different engines without saving them.
+ * <p>
+ * Every value is hashed from the raw vector buffers with a 64-bit non-cryptographic hash. The hashes
+ * of a row are mixed in column order into a row hash, and the checksums are sums of hashes, so they
+ * do not depend on the order of the rows or on how they were split into batches:
+ * <ul>
+ *   <li>the row checksum is the sum of the row hashes, and detects values that moved between
+ *       rows;</li>
+ *   <li>each column checksum is the sum of the hashes of its values, and tells which columns
+ *       differ.</li>
+ * </ul>
+ * The columns of each batch are hashed in parallel on the given executor. {@link #accept} returns
+ * only once every column of the batch has been read, so the batch may be reused afterwards.
+ */
+public final class ResultChecksum implements Consumer<VectorSchemaRoot> {
+  private final Executor executor;
+  private List<ColumnChecksum> columns;
+  private long[][] hashes = new long[0][];
+  private long rowCount;
+  private long rowChecksum;
+
+  /**
+   * Create a checksum that hashes columns in parallel on the common fork-join pool.
+   */
+  public ResultChecksum() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Create a checksum that hashes columns in parallel on the given executor.
+   *
+   * @param executor the executor to hash columns on.
+   */
+  public ResultChecksum(Executor executor) {
+    this.executor = executor;
+  }
+
+  @Override
+  public void accept(VectorSchemaRoot root) {
+    final List<FieldVector> vectors = root.getFieldVectors();
+    if (columns == null) {
+      final List<ColumnChecksum> checksums = new ArrayList<>(vectors.size());
+      vectors.forEach(vector -> checksums.add(new ColumnChecksum(vector)));
+      columns = Collections.unmodifiableList(checksums);
+    }
+    final int batchRows = root.getRowCount();
+    if (hashes.length < vectors.size() || vectors.size() > 0 && hashes[0].length < batchRows) {
+      hashes = new long[vectors.size()][batchRows];
+    }
+    final CompletableFuture<?>[] updates = new CompletableFuture<?>[vectors.size()];
+    for (int i = vectors.size() - 1; i >= 0; i--) {
+      final ColumnChecksum column = columns.get(i);
+      final FieldVector vector = vectors.get(i);
+      final long[] columnHashes = hashes[i];
+      // The first column is hashed on the calling thread while the others run on the executor.
+      updates[i] = CompletableFuture.runAsync(() -> column.add(vector, batchRows, columnHashes),
+          i == 0 ? Runnable::run : executor);
+    }
+    try {
+      CompletableFuture.allOf(updates).join();
+    } catch (CompletionException ex) {
+      if (ex.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) ex.getCause();
+      }
+      throw ex;
+    }
+    long sum = 0;
+    for (int row = 0; row < batchRows; row++) {
+      long rowHash = 0;
+      for (int column = 0; column < vectors.size(); column++) {
+        rowHash = Hash64.combine(rowHash, hashes[column][row]);
+      }
+      sum += Hash64.finish(rowHash);
+    }
+    rowChecksum += sum;
+    rowCount += batchRows;
+  }
+
+  /**
+   * Returns the checksum of each column, in schema order. Empty until the first batch is seen.
+   */
+  public List<ColumnChecksum> getColumns() {
+    return columns == null ? Collections.emptyList() : columns;
+  }
+
+  /**
+   * Returns the number of rows hashed.
+   */
+  public long getRowCount() {
+    return rowCount;
+  }
+
+  /**
+   * Returns the sum of the row hashes. It does not depend on the order of the rows.
+   */
+  public long getRowChecksum() {
+    return rowChecksum;
+  }
+
+  /**
+   * Returns a compact fingerprint of the whole result: 16 hexadecimal digits hashed from the row
+   * count and the row checksum. Two results with the same rows in any order have the same
+   * fingerprint.
+   */
+  public String getFingerprint() {
+    return hex(Hash64.finish(Hash64.combine(Hash64.hashLong(rowCount), rowChecksum)));
+  }
+
+  /**
+   * Format the checksum as tab separated lines: the row count and fingerprint, then one row per
+   * column.
+   *
+   * @return the formatted checksum.
+   */
+  public String toReportString() {
+    final StringBuilder report = new StringBuilder()
+        .append("rows\t").append(rowCount).append('\n')
+        .append("fingerprint\t").append(getFingerprint()).append('\n')
+        .append("column\ttype\tnulls\tchecksum\n");
+    for (final ColumnChecksum column : getColumns()) {
+      report.append(column.getName()).append('\t')
+          .append(column.getType()).append('\t')
+          .append(column.getNullCount()).append('\t')
+          .append(hex(column.getChecksum())).append('\n');
+    }
+    return report.toString();
+  }
+
+  /**
+   * Write the report next to a saved result file, in a file with the same name and a
+   * {@code .checksum} suffix.
+   *
+   * @param resultFile the saved result file.
+   * @return the written sidecar file.
+   * @throws IOException if the sidecar cannot be written.
+   */
+  public File writeSidecar(File resultFile) throws IOException {
+    final File sidecar = new File(resultFile.getPath() + ".checksum");
+    Files.write(sidecar.toPath(), toReportString().getBytes(StandardCharsets.UTF_8));
+    return sidecar;
+  }
+
+  private static String hex(long value) {
+    return String.format("%016x", value);
+  }
+}
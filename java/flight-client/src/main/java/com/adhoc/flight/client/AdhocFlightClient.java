@@ -20,24 +20,46 @@ import static java.util.Objects.requireNonNull;
 
 import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import javax.annotation.Nullable;
 
+import org.apache.arrow.flight.CallHeaders;
 import org.apache.arrow.flight.CallOption;
+import org.apache.arrow.flight.CallOptions;
+import org.apache.arrow.flight.CallStatus;
+import org.apache.arrow.flight.CancelFlightInfoRequest;
 import org.apache.arrow.flight.CloseSessionRequest;
 import org.apache.arrow.flight.FlightClient;
 import org.apache.arrow.flight.FlightClientMiddleware;
 import org.apache.arrow.flight.FlightDescriptor;
+import org.apache.arrow.flight.FlightEndpoint;
 import org.apache.arrow.flight.FlightInfo;
+import org.apache.arrow.flight.FlightRuntimeException;
 import org.apache.arrow.flight.FlightStream;
 import org.apache.arrow.flight.HeaderCallOption;
 import org.apache.arrow.flight.Location;
@@ -54,15 +76,30 @@ import org.apache.arrow.flight.grpc.CredentialCallOption;
 import org.apache.arrow.memory.BufferAllocator;
 import org.apache.arrow.util.AutoCloseables;
 import org.apache.arrow.util.VisibleForTesting;
+import org.apache.arrow.vector.FieldVector;
 import org.apache.arrow.vector.VectorLoader;
 import org.apache.arrow.vector.VectorSchemaRoot;
 import org.apache.arrow.vector.VectorUnloader;
 import org.apache.arrow.vector.ipc.ArrowStreamWriter;
 import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
+import org.apache.arrow.vector.types.pojo.Schema;
 
+import com.adhoc.flight.dictionary.DictionaryEncodingWriter;
+import com.adhoc.flight.filter.BatchFilter;
+import com.adhoc.flight.jfr.AllocatorEvent;
+import com.adhoc.flight.jfr.BatchReceivedEvent;
+import com.adhoc.flight.jfr.GetInfoEvent;
+import com.adhoc.flight.jfr.QueryEvent;
+import com.adhoc.flight.jfr.SinkWriteEvent;
+import com.adhoc.flight.script.SqlScript;
+import com.adhoc.flight.tracing.FlightTracer;
+import com.adhoc.flight.tracing.TraceSpan;
 import com.adhoc.flight.utils.QueryUtils;
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.io.BaseEncoding;
 
 /**
  * Adhoc Flight Client encapsulating an active FlightClient and a corresponding CredentialCallOption
@@ -71,18 +108,57 @@ import com.google.common.collect.ImmutableMap;
 public final class AdhocFlightClient implements AutoCloseable {
 
   public static final String PROJECT_ID_KEY = "project_id";
+  public static final long DEFAULT_PUBLISHER_ALLOCATION_LIMIT = 256L * 1024 * 1024;
+  public static final int SCHEMA_CACHE_SIZE = 1024;
+  public static final long SCHEMA_CACHE_TTL_MINUTES = 10;
+  public static final long CANCEL_TIMEOUT_SECONDS = 5;
+  public static final int DEFAULT_LOOK_AHEAD = 2;
+  private static final int COPY_CHUNK_SIZE = 64 * 1024;
+  private static final String SHUTDOWN_CANCEL_MESSAGE = "Cancelled by client shutdown.";
+  private static final String ASYNC_CANCEL_MESSAGE = "Cancelled by caller.";
 
   private final FlightClient client;
   private final BufferAllocator allocator;
   private final CredentialCallOption bearerToken;
   private final String projectId;
+  private final FlightTracer tracer;
+  private final QueryDeadlines deadlines;
+  private final Retrier retrier;
+  private final EndpointRouter router;
+  private final Set<InFlightQuery> inFlightQueries = ConcurrentHashMap.newKeySet();
+  private final Cache<SchemaCacheKey, Schema> schemaCache = CacheBuilder.newBuilder()
+      .maximumSize(SCHEMA_CACHE_SIZE)
+      .expireAfterWrite(SCHEMA_CACHE_TTL_MINUTES, TimeUnit.MINUTES)
+      .build();
 
   AdhocFlightClient(final FlightClient client, final BufferAllocator allocator,
       final CredentialCallOption bearerToken, final String projectId) {
+    this(client, allocator, bearerToken, projectId, FlightTracer.disabled());
+  }
+
+  AdhocFlightClient(final FlightClient client, final BufferAllocator allocator,
+      final CredentialCallOption bearerToken, final String projectId, final FlightTracer tracer) {
+    this(client, allocator, bearerToken, projectId, tracer, ClientOptions.defaults());
+  }
+
+  AdhocFlightClient(final FlightClient client, final BufferAllocator allocator,
+      final CredentialCallOption bearerToken, final String projectId, final FlightTracer tracer,
+      final ClientOptions options) {
+    this(client, allocator, bearerToken, projectId, tracer, options,
+        EndpointRouter.coordinatorOnly(StripedClient.of(client)));
+  }
+
+  AdhocFlightClient(final FlightClient client, final BufferAllocator allocator,
+      final CredentialCallOption bearerToken, final String projectId, final FlightTracer tracer,
+      final ClientOptions options, final EndpointRouter router) {
     this.client = requireNonNull(client);
     this.allocator = requireNonNull(allocator);
     this.bearerToken = requireNonNull(bearerToken);
     this.projectId = projectId;
+    this.tracer = requireNonNull(tracer);
+    this.deadlines = options.getDeadlines();
+    this.retrier = new Retrier(options.getRetryPolicy());
+    this.router = requireNonNull(router);
   }
 
   /**
@@ -97,7 +173,8 @@ public final class AdhocFlightClient implements AutoCloseable {
    * @param keyStorePath      path to the JKS.
    * @param keyStorePass      the password to the JKS.
    * @param clientProperties  the client properties to set during authentication.
-   * @param middlewares       additional middlewares to include.
+   * @param middlewares       additional middlewares to include. If one of them is a
+   *                          {@link FlightTracer}, it also records the client's query phases.
    * @return an AdhocFlightClient encapsulating the client instance and CallCredentialOption
    *         with bearer token for subsequent FlightRPC requests.
    * @throws Exception RuntimeException if unable to access JKS with provided information.
@@ -113,36 +190,64 @@ public final class AdhocFlightClient implements AutoCloseable {
       HeaderCallOption clientProperties,
       List<FlightClientMiddleware.Factory> middlewares)
       throws Exception {
+    return getEncryptedClient(allocator, host, port, user, pass, patOrAuthToken, keyStorePath, keyStorePass,
+        disableServerVerification, projectId, clientProperties, middlewares, ClientOptions.defaults());
+  }
 
-    final FlightClient.Builder flightClientBuilder = FlightClient.builder()
-        .location(Location.forGrpcTls(host, port))
-        .useTls();
+  /**
+   * Creates a FlightClient connected to the Dremio server with encrypted TLS connection, bounding
+   * its requests with the given deadlines and retry policy and tuning its transport.
+   *
+   * @param allocator         the BufferAllocator.
+   * @param host              the Dremio host.
+   * @param port              the Dremio port where Flight Server Endpoint is running on.
+   * @param user              the Dremio username.
+   * @param pass              the corresponding password.
+   * @param patOrAuthToken    the personal access token or OAuth2 token.
+   * @param keyStorePath      path to the JKS.
+   * @param keyStorePass      the password to the JKS.
+   * @param clientProperties  the client properties to set during authentication.
+   * @param middlewares       additional middlewares to include. If one of them is a
+   *                          {@link FlightTracer}, it also records the client's query phases.
+   * @param options           the deadlines, retry policy and transport settings of the client.
+   * @return an AdhocFlightClient encapsulating the client instance and CallCredentialOption
+   *         with bearer token for subsequent FlightRPC requests.
+   * @throws Exception RuntimeException if unable to access JKS with provided information.
+   */
+  public static AdhocFlightClient getEncryptedClient(BufferAllocator allocator,
+      String host, int port,
+      String user, String pass,
+      String patOrAuthToken,
+      String keyStorePath,
+      String keyStorePass,
+      boolean disableServerVerification,
+      String projectId,
+      HeaderCallOption clientProperties,
+      List<FlightClientMiddleware.Factory> middlewares,
+      ClientOptions options)
+      throws Exception {
 
-    if (middlewares != null) {
-      for (FlightClientMiddleware.Factory middleware : middlewares) {
-        flightClientBuilder.intercept(middleware);
+    byte[] trustedCertificates = null;
+    if (!disableServerVerification) {
+      if (Strings.isNullOrEmpty(keyStorePath)) {
+        System.out.println("KeyStore path not provided. Defaulting to system KeyStore.");
+      } else if (Strings.isNullOrEmpty(keyStorePass)) {
+        System.out.println("KeyStore password not provided. Defaulting to system KeyStore.");
+      } else {
+        trustedCertificates = EncryptedConnectionUtils.getTrustedCertificates(keyStorePath, keyStorePass);
       }
     }
 
-    if (disableServerVerification) {
-      flightClientBuilder.verifyServer(false);
-    } else if (Strings.isNullOrEmpty(keyStorePath)) {
-      System.out.println("KeyStore path not provided. Defaulting to system KeyStore.");
-    } else if (Strings.isNullOrEmpty(keyStorePass)) {
-      System.out.println("KeyStore password not provided. Defaulting to system KeyStore.");
-    } else {
-      flightClientBuilder
-          .trustedCertificates(
-              EncryptedConnectionUtils.getCertificateStream(keyStorePath, keyStorePass));
-    }
-
     return getClientHelper(
         allocator,
         user, pass,
         patOrAuthToken,
         projectId,
         clientProperties,
-        flightClientBuilder);
+        Location.forGrpcTls(host, port),
+        true, !disableServerVerification, trustedCertificates,
+        middlewares,
+        options);
   }
 
   /**
@@ -155,7 +260,8 @@ public final class AdhocFlightClient implements AutoCloseable {
    * @param pass              the corresponding password.
    * @param patOrAuthToken    the personal access token or OAuth2 token.
    * @param clientProperties  the client properties to set during authentication.
-   * @param middlewares       additional middlewares to include.
+   * @param middlewares       additional middlewares to include. If one of them is a
+   *                          {@link FlightTracer}, it also records the client's query phases.
    * @return an AdhocFlightClient encapsulating the client instance and CallCredentialOption
    *         with bearer token for subsequent FlightRPC requests.
    */
@@ -166,15 +272,35 @@ public final class AdhocFlightClient implements AutoCloseable {
       String projectId,
       HeaderCallOption clientProperties,
       List<FlightClientMiddleware.Factory> middlewares) {
+    return getBasicClient(allocator, host, port, user, pass, patOrAuthToken, projectId, clientProperties,
+        middlewares, ClientOptions.defaults());
+  }
 
-    final FlightClient.Builder flightClientBuilder = FlightClient.builder()
-        .location(Location.forGrpcInsecure(host, port));
-
-    if (middlewares != null) {
-      for (FlightClientMiddleware.Factory middleware : middlewares) {
-        flightClientBuilder.intercept(middleware);
-      }
-    }
+  /**
+   * Creates a FlightClient connected to the Dremio server with an unencrypted connection, bounding
+   * its requests with the given deadlines and retry policy and tuning its transport.
+   *
+   * @param allocator         the BufferAllocator.
+   * @param host              the Dremio host.
+   * @param port              the Dremio port where Flight Server Endpoint is running on.
+   * @param user              the Dremio username.
+   * @param pass              the corresponding password.
+   * @param patOrAuthToken    the personal access token or OAuth2 token.
+   * @param clientProperties  the client properties to set during authentication.
+   * @param middlewares       additional middlewares to include. If one of them is a
+   *                          {@link FlightTracer}, it also records the client's query phases.
+   * @param options           the deadlines, retry policy and transport settings of the client.
+   * @return an AdhocFlightClient encapsulating the client instance and CallCredentialOption
+   *         with bearer token for subsequent FlightRPC requests.
+   */
+  public static AdhocFlightClient getBasicClient(BufferAllocator allocator,
+      String host, int port,
+      String user, String pass,
+      String patOrAuthToken,
+      String projectId,
+      HeaderCallOption clientProperties,
+      List<FlightClientMiddleware.Factory> middlewares,
+      ClientOptions options) {
 
     return getClientHelper(
         allocator,
@@ -182,7 +308,10 @@ public final class AdhocFlightClient implements AutoCloseable {
         patOrAuthToken,
         projectId,
         clientProperties,
-        flightClientBuilder);
+        Location.forGrpcInsecure(host, port),
+        false, true, null,
+        middlewares,
+        options);
   }
 
   private static AdhocFlightClient getClientHelper(BufferAllocator allocator,
@@ -190,7 +319,11 @@ public final class AdhocFlightClient implements AutoCloseable {
       String patOrAuthToken,
       String projectId,
       HeaderCallOption clientProperties,
-      FlightClient.Builder builder) {
+      Location location,
+      boolean useTls, boolean verifyServer,
+      @Nullable byte[] trustedCertificates,
+      @Nullable List<FlightClientMiddleware.Factory> middlewares,
+      ClientOptions options) {
 
     if (Strings.isNullOrEmpty(patOrAuthToken) && Strings.isNullOrEmpty(pass)) {
       throw new IllegalArgumentException("No authentication method chosen.");
@@ -204,39 +337,76 @@ public final class AdhocFlightClient implements AutoCloseable {
       throw new IllegalArgumentException("Provide exactly one of: [pass, patOrAuthToken]");
     }
 
+    final FlightTracer tracer = findTracer(middlewares);
     final ClientCookieMiddleware.Factory cookieFactory = new ClientCookieMiddleware.Factory();
 
-    builder
-        .allocator(allocator)
-        .intercept(cookieFactory);
-
-    ClientIncomingAuthHeaderMiddleware.Factory authHeaderFactory = null;
-    if (!Strings.isNullOrEmpty(pass)) {
-      // Create a new instance of ClientIncomingAuthHeaderMiddleware.Factory. This factory creates
-      // new instances of ClientIncomingAuthHeaderMiddleware. The middleware processes
-      // username/password and bearer token authorization header authentication for this Flight Client.
-      authHeaderFactory = new ClientIncomingAuthHeaderMiddleware.Factory(
-          new ClientBearerHeaderHandler());
+    // Create a new instance of ClientIncomingAuthHeaderMiddleware.Factory. This factory creates
+    // new instances of ClientIncomingAuthHeaderMiddleware. The middleware processes
+    // username/password and bearer token authorization header authentication for this Flight Client.
+    final ClientIncomingAuthHeaderMiddleware.Factory authHeaderFactory = Strings.isNullOrEmpty(pass) ? null
+        : new ClientIncomingAuthHeaderMiddleware.Factory(new ClientBearerHeaderHandler());
 
-      // Adds ClientIncomingAuthHeaderMiddleware.Factory instance to the FlightClient builder.
-      builder.intercept(authHeaderFactory);
+    // Clients of the coordinator and of the executor locations it advertises share the middlewares,
+    // so the bearer token and cookies obtained from the coordinator are sent to every location.
+    final List<FlightClientMiddleware.Factory> clientMiddlewares = new ArrayList<>();
+    if (middlewares != null) {
+      clientMiddlewares.addAll(middlewares);
+    }
+    clientMiddlewares.add(cookieFactory);
+    if (authHeaderFactory != null) {
+      clientMiddlewares.add(authHeaderFactory);
     }
+    // Executor locations are connected to with the same TLS and transport settings as the coordinator.
+    final FlightConnector connector = new FlightConnector(allocator, useTls, verifyServer, trustedCertificates,
+        clientMiddlewares, options.getTransport());
+    final Function<Location, StripedClient> clientFactory = clientLocation ->
+        StripedClient.connect(connector, clientLocation, options.getStripes(), options.getStripingPolicy());
 
-    final FlightClient flightClient = builder.build();
+    final StripedClient coordinator = clientFactory.apply(location);
+    final FlightClient flightClient = coordinator.primary();
 
+    final CallOption handshakeTimeout = QueryDeadlines.timeout(options.getDeadlines().getHandshakeMillis());
+    final CallOption[] handshakeOptions =
+        handshakeTimeout == null ? new CallOption[0] : new CallOption[] {handshakeTimeout};
+    final Retrier handshakeRetrier = new Retrier(options.getRetryPolicy());
     final CredentialCallOption credentials;
-    if (!Strings.isNullOrEmpty(patOrAuthToken)) {
-      credentials = authenticatePatOrAuthToken(flightClient, patOrAuthToken, clientProperties);
-    } else {
-      credentials = authenticateUsernamePassword(flightClient, user, pass, authHeaderFactory,
-          clientProperties);
+    try (final TraceSpan span = tracer.startSpan("authenticate")) {
+      if (!Strings.isNullOrEmpty(patOrAuthToken)) {
+        credentials = handshakeRetrier.call(() -> authenticatePatOrAuthToken(flightClient, patOrAuthToken,
+            clientProperties, handshakeOptions));
+      } else {
+        credentials = handshakeRetrier.call(() -> authenticateUsernamePassword(flightClient, user, pass,
+            authHeaderFactory, clientProperties, handshakeOptions));
+      }
+    } catch (RuntimeException ex) {
+      try {
+        coordinator.close();
+      } catch (Exception suppressed) {
+        ex.addSuppressed(suppressed);
+      }
+      throw ex;
     }
 
     return new AdhocFlightClient(
         flightClient,
         allocator,
         credentials,
-        projectId);
+        projectId,
+        tracer,
+        options,
+        options.isEndpointRouting() ? new EndpointRouter(coordinator, location, clientFactory)
+            : EndpointRouter.coordinatorOnly(coordinator));
+  }
+
+  private static FlightTracer findTracer(@Nullable List<FlightClientMiddleware.Factory> middlewares) {
+    if (middlewares != null) {
+      for (FlightClientMiddleware.Factory middleware : middlewares) {
+        if (middleware instanceof FlightTracer) {
+          return (FlightTracer) middleware;
+        }
+      }
+    }
+    return FlightTracer.disabled();
   }
 
   /**
@@ -248,12 +418,14 @@ public final class AdhocFlightClient implements AutoCloseable {
    * @param pass             the corresponding Dremio password
    * @param factory          the factory to create ClientIncomingAuthHeaderMiddleware.
    * @param clientProperties client properties to set during authentication.
+   * @param options          additional options for the handshake, such as its timeout.
    * @return CredentialCallOption encapsulating the bearer token to use in subsequent requests.
    */
   public static CredentialCallOption authenticateUsernamePassword(FlightClient client,
       String user, String pass,
       ClientIncomingAuthHeaderMiddleware.Factory factory,
-      HeaderCallOption clientProperties) {
+      HeaderCallOption clientProperties,
+      CallOption... options) {
     final List<CallOption> callOptions = new ArrayList<>();
 
     // Add CredentialCallOption for authentication.
@@ -278,6 +450,7 @@ public final class AdhocFlightClient implements AutoCloseable {
     if (clientProperties != null) {
       callOptions.add(clientProperties);
     }
+    callOptions.addAll(Arrays.asList(options));
 
     // Perform handshake with the Dremio Flight Server Endpoint.
     client.handshake(callOptions.toArray(new CallOption[callOptions.size()]));
@@ -295,11 +468,13 @@ public final class AdhocFlightClient implements AutoCloseable {
    * @param client           the FlightClient instance to connect to Dremio.
    * @param patOrAuthToken   the Personal Access token or OAuth2 token.
    * @param clientProperties client properties to set during authentication.
+   * @param options          additional options for the handshake, such as its timeout.
    * @return CredentialCallOption encapsulating the bearer token to use in subsequent requests.
    */
   public static CredentialCallOption authenticatePatOrAuthToken(FlightClient client,
       String patOrAuthToken,
-      HeaderCallOption clientProperties) {
+      HeaderCallOption clientProperties,
+      CallOption... options) {
     final List<CallOption> callOptions = new ArrayList<>();
 
     callOptions.add(new CredentialCallOption(new BearerCredentialWriter(patOrAuthToken)));
@@ -308,6 +483,7 @@ public final class AdhocFlightClient implements AutoCloseable {
     if (clientProperties != null) {
       callOptions.add(clientProperties);
     }
+    callOptions.addAll(Arrays.asList(options));
 
     // Perform handshake with the Dremio Flight Server Endpoint.
     client.handshake(callOptions.toArray(new CallOption[callOptions.size()]));
@@ -326,13 +502,118 @@ public final class AdhocFlightClient implements AutoCloseable {
    * @return a FlightInfo object.
    */
   public FlightInfo getInfo(String query, CallOption... options) {
-    return client.getInfo(FlightDescriptor.command(query.getBytes(StandardCharsets.UTF_8)),
-        options);
+    final GetInfoEvent event = new GetInfoEvent();
+    event.begin();
+    final FlightInfo flightInfo = client.getInfo(
+        FlightDescriptor.command(query.getBytes(StandardCharsets.UTF_8)), options);
+    event.end();
+    if (event.shouldCommit()) {
+      event.endpoints = flightInfo.getEndpoints().size();
+      event.totalRecords = flightInfo.getRecords();
+      event.totalBytes = flightInfo.getBytes();
+      event.commit();
+    }
+    return flightInfo;
+  }
+
+  /**
+   * Make a FlightRPC getSchema request with the given query and client properties. The query is
+   * planned but not executed.
+   *
+   * @param query   the query to retrieve the result schema of.
+   * @param options the client properties to execute this request with.
+   * @return the schema of the query results.
+   */
+  public Schema getSchema(String query, CallOption... options) {
+    return client.getSchema(FlightDescriptor.command(query.getBytes(StandardCharsets.UTF_8)), options)
+        .getSchema();
+  }
+
+  /**
+   * Get the result schema of the provided SQL query without running it, using a single getSchema
+   * request. Schemas are cached per client, keyed by the SQL text and the call headers, for
+   * {@value #SCHEMA_CACHE_TTL_MINUTES} minutes.
+   *
+   * @param query       the SQL query to describe.
+   * @param callHeaders client properties to plan the query with, or null.
+   * @return the schema of the query results.
+   */
+  public Schema describe(final String query, final @Nullable CallHeaders callHeaders) {
+    final SchemaCacheKey key = new SchemaCacheKey(query, callHeaders);
+    final Schema cached = schemaCache.getIfPresent(key);
+    if (cached != null) {
+      return cached;
+    }
+    final HeaderCallOption headerCallOption = callHeaders == null ? null : new HeaderCallOption(callHeaders);
+    final Schema schema;
+    try (final TraceSpan span = tracer.startSpan("describe")) {
+      if (projectId != null) {
+        openSession(headerCallOption);
+        try {
+          schema = retrier.call(() -> getSchema(query, callOptions(headerCallOption, deadlines.getGetInfoMillis())));
+        } finally {
+          closeSession(headerCallOption);
+        }
+      } else {
+        schema = retrier.call(() -> getSchema(query, callOptions(headerCallOption, deadlines.getGetInfoMillis())));
+      }
+    }
+    schemaCache.put(key, schema);
+    return schema;
+  }
+
+  /**
+   * Discard all schemas cached by {@link #describe(String, CallHeaders)}, for example after the
+   * underlying datasets have changed.
+   */
+  public void invalidateSchemaCache() {
+    schemaCache.invalidateAll();
   }
 
   /**
-   * Make a FlightRPC getStream request based on the provided FlightInfo object. Retrieves result of
-   * the query previously prepared with getInfo.
+   * Make an authenticated FlightRPC getInfo request asynchronously on the default executor.
+   *
+   * @param query            the query to retrieve FlightInfo for.
+   * @param headerCallOption client properties to execute this request with.
+   * @return a future completed with the FlightInfo. Cancelling it cancels the getInfo request.
+   * @see FlightExecutors#defaultExecutor()
+   */
+  public CompletableFuture<FlightInfo> getInfoAsync(final String query,
+      final @Nullable HeaderCallOption headerCallOption) {
+    return getInfoAsync(query, headerCallOption, FlightExecutors.defaultExecutor());
+  }
+
+  /**
+   * Make an authenticated FlightRPC getInfo request asynchronously on the given executor.
+   *
+   * @param query            the query to retrieve FlightInfo for.
+   * @param headerCallOption client properties to execute this request with.
+   * @param executor         the executor to run the request on.
+   * @return a future completed with the FlightInfo. Cancelling it cancels the getInfo request.
+   */
+  public CompletableFuture<FlightInfo> getInfoAsync(final String query,
+      final @Nullable HeaderCallOption headerCallOption,
+      final Executor executor) {
+    return FlightExecutors.callAsync(() -> plan(query, headerCallOption), executor);
+  }
+
+  /**
+   * Make an authenticated getInfo request within the getInfo deadline, retried and hedged as the
+   * retry policy of the client allows.
+   *
+   * @param query            the query to retrieve FlightInfo for.
+   * @param headerCallOption client properties to execute this request with.
+   * @return a FlightInfo object.
+   */
+  FlightInfo plan(final String query, final @Nullable HeaderCallOption headerCallOption) {
+    return planQuery(query, callOptions(headerCallOption, deadlines.getGetInfoMillis()));
+  }
+
+  /**
+   * Make a FlightRPC getStream request based on the provided FlightInfo object. Retrieves the
+   * results of the first endpoint of the query previously prepared with getInfo; queries with
+   * several endpoints are read in full with {@link #getStream(FlightEndpoint, CallOption...)} for
+   * each endpoint, or with {@link #openIterator}.
    *
    * @param flightInfo the FlightInfo object encapsulating information for the server to identify
    *                   the prepared statement with.
@@ -340,7 +621,50 @@ public final class AdhocFlightClient implements AutoCloseable {
    * @return a stream of results.
    */
   public FlightStream getStream(FlightInfo flightInfo, CallOption... options) {
-    return client.getStream(flightInfo.getEndpoints().get(0).getTicket(), options);
+    return getStream(flightInfo.getEndpoints().get(0), options);
+  }
+
+  /**
+   * Make a FlightRPC getStream request for the given endpoint of a query previously prepared with
+   * getInfo. Unless endpoint routing is disabled in the {@link ClientOptions}, the ticket is sent
+   * to the first reachable location the endpoint advertises, and to the coordinator otherwise.
+   *
+   * @param endpoint the endpoint holding the ticket for the results to stream.
+   * @param options  the client properties to execute this request with.
+   * @return a stream of results.
+   */
+  public FlightStream getStream(FlightEndpoint endpoint, CallOption... options) {
+    return router.getStream(endpoint, options);
+  }
+
+  /**
+   * Get the options to authenticate a FlightRPC request with, followed by the given client
+   * properties.
+   *
+   * @param headerCallOption client properties to execute the request with.
+   * @return the call options for the request.
+   */
+  CallOption[] callOptions(final @Nullable HeaderCallOption headerCallOption) {
+    return headerCallOption == null ? new CallOption[] {bearerToken}
+        : new CallOption[] {bearerToken, headerCallOption};
+  }
+
+  /**
+   * Get the options to authenticate a FlightRPC request with, followed by the given client
+   * properties and a timeout.
+   *
+   * @param headerCallOption client properties to execute the request with.
+   * @param timeoutMillis    the deadline of the request, or zero for none.
+   * @return the call options for the request.
+   */
+  private CallOption[] callOptions(final @Nullable HeaderCallOption headerCallOption, final long timeoutMillis) {
+    final CallOption[] options = callOptions(headerCallOption);
+    if (timeoutMillis <= 0) {
+      return options;
+    }
+    final CallOption[] timedOptions = Arrays.copyOf(options, options.length + 1);
+    timedOptions[options.length] = CallOptions.timeout(timeoutMillis, TimeUnit.MILLISECONDS);
+    return timedOptions;
   }
 
   private SetSessionOptionsRequest createSetSessionOption(String key, String value) {
@@ -357,23 +681,159 @@ public final class AdhocFlightClient implements AutoCloseable {
    *
    * @param query            the SQL query to execute.
    * @param headerCallOption client properties to execute provided SQL query with.
-   * @param fileToSaveTo     the file to which the binary data of the resulting
-   *                         {@link VectorSchemaRoot} should be saved.
-   * @param printToConsole   true - query results will be printed to console. false - no output.
+   * @param sink             opens the stream the binary data of the resulting
+   *                         {@link VectorSchemaRoot} is written to once the query is planned, or null.
+   * @param filter           the filter stage to apply to each result batch, or null.
+   * @param dictionaryEncode whether to dictionary-encode low-cardinality string columns in the file.
+   * @param batchConsumer    called with each result batch before it is saved, or null.
    * @throws Exception if an error occurs during query execution.
    */
   private void runBasicQuery(final String query,
       final @Nullable HeaderCallOption headerCallOption,
-      final @Nullable File fileToSaveTo,
-      final boolean printToConsole) throws Exception {
+      final @Nullable BatchFilter filter,
+      final @Nullable Callable<OutputStream> sink,
+      final boolean dictionaryEncode,
+      final @Nullable Consumer<VectorSchemaRoot> batchConsumer) throws Exception {
+
+    final long startNanos = System.nanoTime();
+    final InFlightQuery inFlightQuery = new InFlightQuery(Thread.currentThread());
+    inFlightQueries.add(inFlightQuery);
+    try {
+      final FlightInfo flightInfo = planQuery(query, callOptions(headerCallOption,
+          QueryDeadlines.earliest(deadlines.getGetInfoMillis(), remainingMillis(startNanos))));
+      inFlightQuery.planned(flightInfo);
+      TraceSpan.current().setAttribute("endpoints", flightInfo.getEndpoints().size());
+      final List<FlightEndpoint> endpoints = flightInfo.getEndpoints();
+      try (final OutputStream outputStream = sink == null ? null : sink.call();
+          final ResultWriter resultWriter =
+              new ResultWriter(allocator, filter, outputStream, dictionaryEncode, batchConsumer)) {
+        for (int i = 0; i < endpoints.size(); i++) {
+          final FlightEndpoint endpoint = endpoints.get(i);
+          try (final TraceSpan streamSpan = tracer.startSpan("stream");
+              final TicketReader reader = openReader(endpoint, headerCallOption, startNanos)) {
+            inFlightQuery.streaming(reader);
+            streamSpan.setAttribute("endpoint", i);
+            resultWriter.write(reader, i);
+          }
+        }
+        // The schema of the first stream is used when there is one; the FlightInfo only has to
+        // provide it when the query has no endpoints.
+        resultWriter.end(flightInfo.getSchemaOptional().orElseGet(() -> new Schema(Collections.emptyList())));
+      }
+    } finally {
+      inFlightQueries.remove(inFlightQuery);
+    }
+  }
+
+  /**
+   * Opens a reader of the ticket of the given endpoint, which enforces the stream deadlines and
+   * retry policy of this client.
+   *
+   * @param endpoint         the endpoint to read.
+   * @param headerCallOption client properties to read the ticket with.
+   * @param startNanos       when the query started, to enforce its total deadline.
+   * @return the reader of the ticket.
+   */
+  TicketReader openReader(final FlightEndpoint endpoint, final @Nullable HeaderCallOption headerCallOption,
+      final long startNanos) {
+    return new TicketReader(() -> getStream(endpoint, callOptions(headerCallOption, remainingMillis(startNanos))),
+        deadlines.getFirstBatchMillis(), deadlines.getIdleMillis(), retrier);
+  }
+
+  /**
+   * Registers a query that is read by an iterator, so that {@link #cancelInFlightQueries()} also
+   * cancels it.
+   *
+   * @param flightInfo the FlightInfo of the planned query.
+   * @return the registered query, to be passed to {@link #unregister(InFlightQuery)} once read.
+   */
+  InFlightQuery register(final FlightInfo flightInfo) {
+    final InFlightQuery inFlightQuery = new InFlightQuery(null);
+    inFlightQuery.planned(flightInfo);
+    inFlightQueries.add(inFlightQuery);
+    return inFlightQuery;
+  }
+
+  void unregister(final InFlightQuery inFlightQuery) {
+    inFlightQueries.remove(inFlightQuery);
+  }
+
+  /**
+   * Make a getInfo request, retried and hedged as the retry policy of the client allows.
+   *
+   * @param query   the query to retrieve FlightInfo for.
+   * @param options the client properties to execute this request with.
+   * @return a FlightInfo object.
+   */
+  private FlightInfo planQuery(final String query, final CallOption... options) {
+    return retrier.call(() -> retrier.hedge(() -> getInfo(query, options)));
+  }
+
+  /**
+   * Gets the time left before the total deadline of a query started at the given time.
+   *
+   * @return the remaining milliseconds, or zero if the query has no total deadline.
+   * @throws FlightRuntimeException with a {@code TIMED_OUT} status if the deadline has expired.
+   */
+  private long remainingMillis(final long startNanos) {
+    if (deadlines.getTotalMillis() <= 0) {
+      return 0;
+    }
+    final long remaining =
+        deadlines.getTotalMillis() - TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    if (remaining <= 0) {
+      throw CallStatus.TIMED_OUT
+          .withDescription(String.format("Query exceeded its total deadline of %d ms.", deadlines.getTotalMillis()))
+          .toRuntimeException();
+    }
+    return remaining;
+  }
 
-    final FlightInfo flightInfo = getInfo(query, bearerToken, headerCallOption);
-    try (final FlightStream flightStream = getStream(flightInfo, bearerToken, headerCallOption);
-        final OutputStream outputStream =
-            fileToSaveTo == null ? null : new BufferedOutputStream(
-                Files.newOutputStream(fileToSaveTo.toPath()))) {
-      writeToOutputStream(
-          flightStream, allocator, outputStream, printToConsole ? QueryUtils::printResults : null);
+  /**
+   * Cancel every query this client is running: the server is asked to cancel the query with
+   * cancelFlightInfo, and the open stream of the query is cancelled. Meant to be called from a JVM
+   * shutdown hook or a supervisor thread; the threads running the queries fail with a
+   * {@code CANCELLED} status.
+   *
+   * @return the number of queries cancelled.
+   */
+  public int cancelInFlightQueries() {
+    int cancelled = 0;
+    for (final InFlightQuery inFlightQuery : inFlightQueries) {
+      final FlightInfo info = inFlightQuery.cancel(SHUTDOWN_CANCEL_MESSAGE);
+      if (info != null) {
+        cancelFlightInfo(info);
+      }
+      cancelled++;
+    }
+    return cancelled;
+  }
+
+  /**
+   * Cancels the query run by the given thread for an asynchronous call whose future was cancelled.
+   * A thread that has not started the query yet is interrupted.
+   */
+  private void cancelQueryOf(final Thread worker) {
+    for (final InFlightQuery inFlightQuery : inFlightQueries) {
+      if (inFlightQuery.thread == worker) {
+        inFlightQuery.cancel(ASYNC_CANCEL_MESSAGE);
+        return;
+      }
+    }
+    worker.interrupt();
+  }
+
+  /**
+   * Ask the server to cancel a planned query with cancelFlightInfo.
+   *
+   * @param flightInfo the FlightInfo of the query.
+   */
+  void cancelFlightInfo(final FlightInfo flightInfo) {
+    try {
+      client.cancelFlightInfo(new CancelFlightInfoRequest(flightInfo),
+          bearerToken, CallOptions.timeout(CANCEL_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+    } catch (FlightRuntimeException ex) {
+      // Servers that do not implement cancelFlightInfo still stop the query when its stream is cancelled.
     }
   }
 
@@ -385,8 +845,18 @@ public final class AdhocFlightClient implements AutoCloseable {
    */
   private void runWithSessionOptions(final @Nullable HeaderCallOption headerCallOption,
       Callable<Void> callable) throws Exception {
+    openSession(headerCallOption);
+    try {
+      callable.call();
+    } finally {
+      closeSession(headerCallOption);
+    }
+  }
+
+  private void openSession(final @Nullable HeaderCallOption headerCallOption) {
     final SetSessionOptionsResult optionsResult = client.setSessionOptions(
-        createSetSessionOption(PROJECT_ID_KEY, projectId), bearerToken, headerCallOption);
+        createSetSessionOption(PROJECT_ID_KEY, projectId),
+        callOptions(headerCallOption, deadlines.getGetInfoMillis()));
 
     if (optionsResult.hasErrors()) {
       // A session is only created if the session options are error free.
@@ -394,9 +864,10 @@ public final class AdhocFlightClient implements AutoCloseable {
           .map(Object::toString).collect(Collectors.joining(System.lineSeparator()));
       throw new RuntimeException(errorMessage);
     }
+  }
 
-    callable.call();
-    client.closeSession(new CloseSessionRequest(), bearerToken, headerCallOption);
+  void closeSession(final @Nullable HeaderCallOption headerCallOption) {
+    client.closeSession(new CloseSessionRequest(), callOptions(headerCallOption, deadlines.getGetInfoMillis()));
   }
 
   /**
@@ -407,21 +878,365 @@ public final class AdhocFlightClient implements AutoCloseable {
    * @param headerCallOption client properties to execute provided SQL query with.
    * @param fileToSaveTo     the file to which the binary data of the resulting
    *                         {@link VectorSchemaRoot} should be saved.
+   * @param printToConsole   true - query results will be printed to console. false - no output.
    * @throws Exception if an error occurs during query execution.
    */
   public void runQuery(final String query,
       final @Nullable HeaderCallOption headerCallOption,
       final @Nullable File fileToSaveTo,
       final boolean printToConsole) throws Exception {
+    runQuery(query, headerCallOption, fileToSaveTo,
+        printToConsole ? QueryUtils::printResults : null);
+  }
 
-    if (projectId != null) {
-      runWithSessionOptions(headerCallOption,
-          () -> {
-            runBasicQuery(query, headerCallOption, fileToSaveTo, printToConsole);
-            return null;
-          });
-    } else {
-      runBasicQuery(query, headerCallOption, fileToSaveTo, printToConsole);
+  /**
+   * Make FlightRPC requests to the Dremio Flight Server Endpoint to retrieve results of the
+   * provided SQL query, passing each result batch to the given consumer.
+   *
+   * @param query            the SQL query to execute.
+   * @param headerCallOption client properties to execute provided SQL query with.
+   * @param fileToSaveTo     the file to which the binary data of the resulting
+   *                         {@link VectorSchemaRoot} should be saved.
+   * @param batchConsumer    called with each result batch, or null. The batch is only valid for the
+   *                         duration of the call.
+   * @throws Exception if an error occurs during query execution.
+   */
+  public void runQuery(final String query,
+      final @Nullable HeaderCallOption headerCallOption,
+      final @Nullable File fileToSaveTo,
+      final @Nullable Consumer<VectorSchemaRoot> batchConsumer) throws Exception {
+    runQuery(query, headerCallOption, null, fileToSaveTo, batchConsumer);
+  }
+
+  /**
+   * Make FlightRPC requests to the Dremio Flight Server Endpoint to retrieve results of the
+   * provided SQL query, filtering each result batch before it reaches the consumer and the file.
+   *
+   * @param query            the SQL query to execute.
+   * @param headerCallOption client properties to execute provided SQL query with.
+   * @param filter           the client-side projection and predicates to apply, or null.
+   * @param fileToSaveTo     the file to which the binary data of the resulting
+   *                         {@link VectorSchemaRoot} should be saved.
+   * @param batchConsumer    called with each filtered result batch, or null. The batch is only
+   *                         valid for the duration of the call.
+   * @throws Exception if an error occurs during query execution.
+   */
+  public void runQuery(final String query,
+      final @Nullable HeaderCallOption headerCallOption,
+      final @Nullable BatchFilter filter,
+      final @Nullable File fileToSaveTo,
+      final @Nullable Consumer<VectorSchemaRoot> batchConsumer) throws Exception {
+    runQuery(query, headerCallOption, filter, fileToSaveTo, false, batchConsumer);
+  }
+
+  /**
+   * Make FlightRPC requests to the Dremio Flight Server Endpoint to retrieve results of the
+   * provided SQL query, optionally dictionary-encoding the string columns of the saved file.
+   *
+   * @param query            the SQL query to execute.
+   * @param headerCallOption client properties to execute provided SQL query with.
+   * @param filter           the client-side projection and predicates to apply, or null.
+   * @param fileToSaveTo     the file to which the binary data of the resulting
+   *                         {@link VectorSchemaRoot} should be saved.
+   * @param dictionaryEncode whether to dictionary-encode low-cardinality string columns in the file.
+   *                         The columns to encode are chosen by sampling the first batch.
+   * @param batchConsumer    called with each filtered result batch, or null. The batch is only
+   *                         valid for the duration of the call.
+   * @throws Exception if an error occurs during query execution.
+   * @see DictionaryEncodingWriter
+   */
+  public void runQuery(final String query,
+      final @Nullable HeaderCallOption headerCallOption,
+      final @Nullable BatchFilter filter,
+      final @Nullable File fileToSaveTo,
+      final boolean dictionaryEncode,
+      final @Nullable Consumer<VectorSchemaRoot> batchConsumer) throws Exception {
+    runQueryToSink(query, headerCallOption, filter,
+        fileToSaveTo == null ? null : () -> new BufferedOutputStream(Files.newOutputStream(fileToSaveTo.toPath())),
+        dictionaryEncode, batchConsumer);
+  }
+
+  /**
+   * Make FlightRPC requests to the Dremio Flight Server Endpoint to retrieve results of the
+   * provided SQL query, writing them to the given stream in the Arrow IPC streaming format.
+   *
+   * @param query            the SQL query to execute.
+   * @param headerCallOption client properties to execute provided SQL query with.
+   * @param outputStream     the stream to write the schema and result batches to. It is flushed
+   *                         once the end-of-stream marker is written, but not closed.
+   * @throws Exception if an error occurs during query execution. Nothing is written if the query
+   *                   fails to plan; otherwise the stream may end without its end-of-stream marker.
+   */
+  public void streamQuery(final String query,
+      final @Nullable HeaderCallOption headerCallOption,
+      final OutputStream outputStream) throws Exception {
+    streamQuery(query, headerCallOption, null, false, outputStream, null);
+  }
+
+  /**
+   * Make FlightRPC requests to the Dremio Flight Server Endpoint to retrieve results of the
+   * provided SQL query, filtering each result batch and writing it to the given stream in the Arrow
+   * IPC streaming format. If the stream is also a {@link WritableByteChannel}, such as a
+   * {@link ChannelOutputStream}, the data buffers of each batch are handed to it without being
+   * copied onto the heap.
+   *
+   * @param query            the SQL query to execute.
+   * @param headerCallOption client properties to execute provided SQL query with.
+   * @param filter           the client-side projection and predicates to apply, or null.
+   * @param dictionaryEncode whether to dictionary-encode low-cardinality string columns.
+   * @param outputStream     the stream to write the schema and result batches to. It is flushed
+   *                         once the end-of-stream marker is written, but not closed.
+   * @param batchConsumer    called with each filtered result batch before it is written, or null.
+   * @throws Exception if an error occurs during query execution. Nothing is written if the query
+   *                   fails to plan; otherwise the stream may end without its end-of-stream marker.
+   */
+  public void streamQuery(final String query,
+      final @Nullable HeaderCallOption headerCallOption,
+      final @Nullable BatchFilter filter,
+      final boolean dictionaryEncode,
+      final OutputStream outputStream,
+      final @Nullable Consumer<VectorSchemaRoot> batchConsumer) throws Exception {
+    requireNonNull(outputStream, "outputStream");
+    runQueryToSink(query, headerCallOption, filter, () -> new BorrowedOutputStream(outputStream), dictionaryEncode,
+        batchConsumer);
+  }
+
+  private void runQueryToSink(final String query,
+      final @Nullable HeaderCallOption headerCallOption,
+      final @Nullable BatchFilter filter,
+      final @Nullable Callable<OutputStream> sink,
+      final boolean dictionaryEncode,
+      final @Nullable Consumer<VectorSchemaRoot> batchConsumer) throws Exception {
+
+    final QueryEvent event = new QueryEvent();
+    event.begin();
+    try (final TraceSpan span = tracer.startSpan("runQuery")) {
+      if (projectId != null) {
+        runWithSessionOptions(headerCallOption,
+            () -> {
+              runBasicQuery(query, headerCallOption, filter, sink, dictionaryEncode, batchConsumer);
+              return null;
+            });
+      } else {
+        runBasicQuery(query, headerCallOption, filter, sink, dictionaryEncode, batchConsumer);
+      }
+      event.succeeded = true;
+    } finally {
+      event.end();
+      if (event.shouldCommit()) {
+        event.query = query;
+        event.projectId = projectId;
+        event.commit();
+      }
+      AllocatorEvent.emit(allocator);
+    }
+  }
+
+  /**
+   * Run {@link #runQuery(String, HeaderCallOption, File, boolean)} asynchronously on the default
+   * executor.
+   *
+   * @param query            the SQL query to execute.
+   * @param headerCallOption client properties to execute provided SQL query with.
+   * @param fileToSaveTo     the file to which the binary data of the resulting
+   *                         {@link VectorSchemaRoot} should be saved.
+   * @param printToConsole   true - query results will be printed to console. false - no output.
+   * @return a future completed when all results have been consumed. Cancelling it cancels the
+   *         getInfo request while the query is planned, and its stream once results are read.
+   * @see FlightExecutors#defaultExecutor()
+   */
+  public CompletableFuture<Void> runQueryAsync(final String query,
+      final @Nullable HeaderCallOption headerCallOption,
+      final @Nullable File fileToSaveTo,
+      final boolean printToConsole) {
+    return runQueryAsync(query, headerCallOption, fileToSaveTo, printToConsole,
+        FlightExecutors.defaultExecutor());
+  }
+
+  /**
+   * Run {@link #runQuery(String, HeaderCallOption, File, boolean)} asynchronously on the given
+   * executor.
+   *
+   * @param query            the SQL query to execute.
+   * @param headerCallOption client properties to execute provided SQL query with.
+   * @param fileToSaveTo     the file to which the binary data of the resulting
+   *                         {@link VectorSchemaRoot} should be saved.
+   * @param printToConsole   true - query results will be printed to console. false - no output.
+   * @param executor         the executor to run the query on.
+   * @return a future completed when all results have been consumed. Cancelling it cancels the
+   *         getInfo request while the query is planned, and its stream once results are read.
+   */
+  public CompletableFuture<Void> runQueryAsync(final String query,
+      final @Nullable HeaderCallOption headerCallOption,
+      final @Nullable File fileToSaveTo,
+      final boolean printToConsole,
+      final Executor executor) {
+    return FlightExecutors.callAsync(() -> {
+      runQuery(query, headerCallOption, fileToSaveTo, printToConsole);
+      return null;
+    }, this::cancelQueryOf, executor);
+  }
+
+  /**
+   * Run the provided SQL query asynchronously on the given executor, passing each result batch to
+   * the given consumer.
+   *
+   * @param query            the SQL query to execute.
+   * @param headerCallOption client properties to execute provided SQL query with.
+   * @param batchConsumer    called with each result batch. The batch is only valid for the
+   *                         duration of the call.
+   * @param executor         the executor to run the query on.
+   * @return a future completed when all results have been consumed. Cancelling it cancels the
+   *         getInfo request while the query is planned, and its stream once results are read.
+   */
+  public CompletableFuture<Void> runQueryAsync(final String query,
+      final @Nullable HeaderCallOption headerCallOption,
+      final Consumer<VectorSchemaRoot> batchConsumer,
+      final Executor executor) {
+    return FlightExecutors.callAsync(() -> {
+      runQuery(query, headerCallOption, null, null, false, batchConsumer);
+      return null;
+    }, this::cancelQueryOf, executor);
+  }
+
+  /**
+   * Run the provided SQL query and open a cursor over its result batches, which are transferred
+   * into this client's allocator.
+   *
+   * @param query            the SQL query to execute.
+   * @param headerCallOption client properties to execute provided SQL query with.
+   * @return an iterator over the result batches. The caller must close it.
+   * @see #openIterator(String, HeaderCallOption, BufferAllocator)
+   */
+  public FlightBatchIterator openIterator(final String query,
+      final @Nullable HeaderCallOption headerCallOption) {
+    return openIterator(query, headerCallOption, allocator);
+  }
+
+  /**
+   * Run the provided SQL query and open a cursor over its result batches. The query is planned
+   * before this method returns; batches are streamed as the iterator is advanced.
+   *
+   * @param query            the SQL query to execute.
+   * @param headerCallOption client properties to execute provided SQL query with.
+   * @param targetAllocator  the allocator returned batches are transferred into. Its limit bounds
+   *                         the memory the caller may hold in unreleased batches.
+   * @return an iterator over the result batches. The caller must close it.
+   */
+  public FlightBatchIterator openIterator(final String query,
+      final @Nullable HeaderCallOption headerCallOption,
+      final BufferAllocator targetAllocator) {
+    final boolean inSession = projectId != null;
+    if (inSession) {
+      openSession(headerCallOption);
+    }
+    try {
+      final FlightInfo flightInfo = planQuery(query, callOptions(headerCallOption, deadlines.getGetInfoMillis()));
+      return new FlightBatchIterator(this, flightInfo, headerCallOption, targetAllocator, inSession);
+    } catch (RuntimeException ex) {
+      if (inSession) {
+        try {
+          closeSession(headerCallOption);
+        } catch (RuntimeException suppressed) {
+          ex.addSuppressed(suppressed);
+        }
+      }
+      throw ex;
+    }
+  }
+
+  /**
+   * Create a publisher of the results of the provided SQL query, using the default allocation limit
+   * and executor.
+   *
+   * @param query            the SQL query to execute.
+   * @param headerCallOption client properties to execute provided SQL query with.
+   * @return a single-subscriber publisher of result batches.
+   * @see #queryPublisher(String, HeaderCallOption, long, Executor)
+   */
+  public Flow.Publisher<VectorSchemaRoot> queryPublisher(final String query,
+      final @Nullable HeaderCallOption headerCallOption) {
+    return queryPublisher(query, headerCallOption, DEFAULT_PUBLISHER_ALLOCATION_LIMIT,
+        FlightExecutors.defaultExecutor());
+  }
+
+  /**
+   * Create a publisher of the results of the provided SQL query. The query is not run until the
+   * subscriber first requests batches, and further batches are only read from the Flight streams
+   * as the subscriber requests them.
+   * <p>
+   * Each published {@link VectorSchemaRoot} is owned by the subscriber and must be closed by it.
+   *
+   * @param query            the SQL query to execute.
+   * @param headerCallOption client properties to execute provided SQL query with.
+   * @param allocationLimit  the maximum bytes of published batches the subscriber may hold at once.
+   * @param executor         the executor on which batches are read and published.
+   * @return a single-subscriber publisher of result batches.
+   */
+  public Flow.Publisher<VectorSchemaRoot> queryPublisher(final String query,
+      final @Nullable HeaderCallOption headerCallOption,
+      final long allocationLimit,
+      final Executor executor) {
+    return new FlightBatchPublisher(this, allocator, query, headerCallOption, allocationLimit, executor);
+  }
+
+  /**
+   * Run the statements of a script one after another, planning up to {@code lookAhead} of the next
+   * statements while the results of the current one are streamed, so that their planning overlaps
+   * with its data transfer. Only statements that read data are planned ahead, and not past a
+   * statement that creates, changes or drops a table; see {@link SqlScript#isReadOnly}.
+   *
+   * @param statements       the statements to run, in order, for example from {@link SqlScript#read}.
+   * @param lookAhead        how many statements after the current one may be planned ahead, or zero
+   *                         to plan each statement once the previous one has completed.
+   * @param headerCallOption client properties to execute the statements with.
+   * @param consumer         reads the results of each statement, in script order.
+   * @return how the statements were planned and streamed.
+   * @throws Exception the first failure of a statement or of the consumer, once the statements
+   *                   planned ahead are cancelled.
+   */
+  public ScriptSummary runScript(final List<String> statements, final int lookAhead,
+      final @Nullable HeaderCallOption headerCallOption, final StatementConsumer consumer) throws Exception {
+    final PipelinedScript script = new PipelinedScript(this, statements, lookAhead, headerCallOption, allocator,
+        FlightExecutors.defaultExecutor());
+    try (final TraceSpan span = tracer.startSpan("script")) {
+      span.setAttribute("statements", statements.size());
+      // Every statement runs in one session, so that statements planned ahead share it.
+      final boolean inSession = projectId != null;
+      if (inSession) {
+        openSession(headerCallOption);
+      }
+      try {
+        return script.run(consumer);
+      } finally {
+        if (inSession) {
+          closeSession(headerCallOption);
+        }
+      }
+    }
+  }
+
+  /**
+   * Stream the record batches of local Arrow IPC or CSV files to the server with DoPut. The files
+   * are read in parallel and their batches are spread over several concurrent put streams to the
+   * given descriptor; streams are opened on the coordinator connections picked by the client's
+   * striping policy.
+   *
+   * @param descriptor       the descriptor of the put streams, such as the path of the target table.
+   * @param files            the files to send, which must all have the same schema.
+   * @param options          the concurrency and acknowledgement window of the put.
+   * @param headerCallOption client properties to execute the put with.
+   * @return what was sent.
+   * @throws Exception the first failure of a file or stream, once the other streams are cancelled.
+   * @see com.adhoc.flight.ingest.BatchFiles
+   */
+  public PutSummary put(final FlightDescriptor descriptor, final List<Path> files, final PutOptions options,
+      final @Nullable HeaderCallOption headerCallOption) throws Exception {
+    try (final TraceSpan span = tracer.startSpan("put")) {
+      final PutSummary summary = new BulkPut(router::coordinatorConnection, descriptor, files, options,
+          allocator, callOptions(headerCallOption)).run();
+      span.setAttribute("rows", summary.getRows());
+      return summary;
     }
   }
 
@@ -430,38 +1245,424 @@ public final class AdhocFlightClient implements AutoCloseable {
       final @Nullable OutputStream outputStream,
       final Consumer<VectorSchemaRoot> batchConsumer)
       throws IOException {
-    try (final VectorSchemaRoot vectorSchemaRoot = VectorSchemaRoot.create(flightStream.getSchema(),
-        allocator);
-        final ArrowStreamWriter arrowStreamWriter =
-            outputStream == null ? null
-                : new ArrowStreamWriter(vectorSchemaRoot, null, outputStream)) {
-      final VectorLoader vectorLoader = new VectorLoader(vectorSchemaRoot);
-      if (arrowStreamWriter != null) {
-        arrowStreamWriter.start();
+    writeToOutputStream(new TicketReader(flightStream, 0, 0), 0, allocator, null, outputStream, false,
+        batchConsumer);
+  }
+
+  @VisibleForTesting
+  static void writeToOutputStream(final FlightStream flightStream, final BufferAllocator allocator,
+      final @Nullable BatchFilter filter,
+      final @Nullable OutputStream outputStream,
+      final boolean dictionaryEncode,
+      final Consumer<VectorSchemaRoot> batchConsumer)
+      throws IOException {
+    writeToOutputStream(new TicketReader(flightStream, 0, 0), 0, allocator, filter, outputStream,
+        dictionaryEncode, batchConsumer);
+  }
+
+  private static void writeToOutputStream(final TicketReader reader, final int endpointIndex,
+      final BufferAllocator allocator,
+      final @Nullable BatchFilter filter,
+      final @Nullable OutputStream outputStream,
+      final boolean dictionaryEncode,
+      final Consumer<VectorSchemaRoot> batchConsumer)
+      throws IOException {
+    try (final ResultWriter resultWriter =
+        new ResultWriter(allocator, filter, outputStream, dictionaryEncode, batchConsumer)) {
+      resultWriter.write(reader, endpointIndex);
+      resultWriter.end(reader.stream().getSchema());
+    }
+  }
+
+  /**
+   * Writes the batches of the endpoints of a query, read one after the other, as a single Arrow
+   * stream. The first endpoint read sets the schema of the result, and every later endpoint must
+   * return the same schema.
+   */
+  private static final class ResultWriter implements AutoCloseable {
+    private final BufferAllocator allocator;
+    private final @Nullable BatchFilter filter;
+    private final @Nullable SinkOutputStream sinkStream;
+    private final boolean dictionaryEncode;
+    private final @Nullable Consumer<VectorSchemaRoot> batchConsumer;
+    private @Nullable Schema streamSchema;
+    private @Nullable VectorSchemaRoot vectorSchemaRoot;
+    private @Nullable VectorLoader vectorLoader;
+    private @Nullable ArrowStreamWriter arrowStreamWriter;
+    private int lastEndpoint;
+    private boolean ended;
+
+    private ResultWriter(final BufferAllocator allocator,
+        final @Nullable BatchFilter filter,
+        final @Nullable OutputStream outputStream,
+        final boolean dictionaryEncode,
+        final @Nullable Consumer<VectorSchemaRoot> batchConsumer) {
+      this.allocator = allocator;
+      this.filter = filter;
+      this.sinkStream = outputStream == null ? null : new SinkOutputStream(outputStream);
+      this.dictionaryEncode = dictionaryEncode;
+      this.batchConsumer = batchConsumer;
+    }
+
+    /**
+     * Reads every batch of an endpoint and writes it to the sink. The batch and row counts are
+     * recorded on the current span.
+     */
+    void write(final TicketReader reader, final int endpointIndex) throws IOException {
+      final TraceSpan streamSpan = TraceSpan.current();
+      final Schema schema = reader.stream().getSchema();
+      if (vectorSchemaRoot == null) {
+        start(schema);
+      } else if (!schema.equals(streamSchema)) {
+        throw new IllegalStateException(String.format(
+            "Endpoint %d returned schema %s, but the first endpoint returned %s.", endpointIndex, schema,
+            streamSchema));
       }
-      while (flightStream.next()) {
+      lastEndpoint = endpointIndex;
+      long batchCount = 0;
+      long rowCount = 0;
+      BatchReceivedEvent receivedEvent = new BatchReceivedEvent();
+      receivedEvent.begin();
+      boolean hasNext;
+      try (final TraceSpan span = streamSpan.startChild("firstBatch")) {
+        hasNext = reader.next();
+      }
+      receivedEvent.end();
+      while (hasNext) {
+        final FlightStream flightStream = reader.stream();
         if (!flightStream.hasRoot()) {
           break;
         }
-        try (final ArrowRecordBatch currentRecordBatch = new VectorUnloader(
-            flightStream.getRoot()).getRecordBatch()) {
-          if (batchConsumer != null) {
-            batchConsumer.accept(flightStream.getRoot());
+        final VectorSchemaRoot receivedRoot = flightStream.getRoot();
+        if (receivedEvent.shouldCommit()) {
+          receivedEvent.endpoint = endpointIndex;
+          receivedEvent.batch = batchCount;
+          receivedEvent.rows = receivedRoot.getRowCount();
+          receivedEvent.bytes = receivedRoot.getFieldVectors().stream()
+              .mapToLong(FieldVector::getBufferSize).sum();
+          receivedEvent.commit();
+        }
+        if (filter == null) {
+          try (final ArrowRecordBatch currentRecordBatch = new VectorUnloader(receivedRoot).getRecordBatch()) {
+            vectorLoader.load(currentRecordBatch);
           }
-          vectorLoader.load(currentRecordBatch);
-          if (arrowStreamWriter != null) {
-            arrowStreamWriter.writeBatch();
+        } else {
+          filter.apply(receivedRoot, vectorSchemaRoot);
+        }
+        if (batchConsumer != null) {
+          batchConsumer.accept(vectorSchemaRoot);
+        }
+        if (sinkStream != null) {
+          if (arrowStreamWriter == null) {
+            arrowStreamWriter = startDictionaryEncodingWriter(vectorSchemaRoot, allocator, sinkStream);
+          }
+          final SinkWriteEvent sinkEvent = new SinkWriteEvent();
+          sinkEvent.begin();
+          arrowStreamWriter.writeBatch();
+          sinkEvent.end();
+          if (sinkEvent.shouldCommit()) {
+            sinkEvent.endpoint = endpointIndex;
+            sinkEvent.batch = batchCount;
+            sinkEvent.rows = vectorSchemaRoot.getRowCount();
+            sinkEvent.commit();
           }
         }
+        batchCount++;
+        rowCount += vectorSchemaRoot.getRowCount();
+        receivedEvent = new BatchReceivedEvent();
+        receivedEvent.begin();
+        hasNext = reader.next();
+        receivedEvent.end();
+      }
+      streamSpan.setAttribute("batches", batchCount).setAttribute("rows", rowCount);
+    }
+
+    /**
+     * Ends the Arrow stream once every endpoint has been read. Without a sink, this does nothing.
+     *
+     * @param emptySchema the schema to write if no endpoint was read. Otherwise the schema of the
+     *                    first endpoint is written.
+     */
+    void end(final Schema emptySchema) throws IOException {
+      if (sinkStream == null) {
+        return;
+      }
+      if (vectorSchemaRoot == null) {
+        start(emptySchema);
       }
-      if (arrowStreamWriter != null) {
+      if (arrowStreamWriter == null) {
+        // No batches were received; the schema is still written, without dictionaries.
+        arrowStreamWriter = startDictionaryEncodingWriter(vectorSchemaRoot, allocator, sinkStream);
+      }
+      final SinkWriteEvent sinkEvent = new SinkWriteEvent();
+      sinkEvent.begin();
+      try (final TraceSpan span = TraceSpan.current().startChild("sinkFlush")) {
         arrowStreamWriter.end();
+        sinkStream.flush();
+        ended = true;
+      }
+      sinkEvent.end();
+      if (sinkEvent.shouldCommit()) {
+        sinkEvent.endpoint = lastEndpoint;
+        sinkEvent.batch = -1;
+        sinkEvent.commit();
+      }
+    }
+
+    private void start(final Schema schema) throws IOException {
+      streamSchema = schema;
+      vectorSchemaRoot = VectorSchemaRoot.create(filter == null ? schema : filter.bind(schema), allocator);
+      vectorLoader = new VectorLoader(vectorSchemaRoot);
+      if (sinkStream != null && !dictionaryEncode) {
+        arrowStreamWriter = new ArrowStreamWriter(vectorSchemaRoot, null, (WritableByteChannel) sinkStream);
+        arrowStreamWriter.start();
+      }
+    }
+
+    @Override
+    public void close() {
+      try {
+        if (arrowStreamWriter != null) {
+          if (!ended) {
+            // Closing the writer ends the stream, which would make the partial results look complete.
+            sinkStream.discard();
+          }
+          arrowStreamWriter.close();
+        }
+      } finally {
+        if (vectorSchemaRoot != null) {
+          vectorSchemaRoot.close();
+        }
       }
     }
   }
 
+  /**
+   * Start a dictionary-encoding writer. The columns it encodes are chosen from the current content
+   * of the root, so it is only started once the first batch has been loaded.
+   */
+  private static ArrowStreamWriter startDictionaryEncodingWriter(final VectorSchemaRoot vectorSchemaRoot,
+      final BufferAllocator allocator, final OutputStream outputStream) throws IOException {
+    final ArrowStreamWriter arrowStreamWriter =
+        DictionaryEncodingWriter.create(vectorSchemaRoot, allocator, outputStream);
+    try {
+      arrowStreamWriter.start();
+    } catch (IOException | RuntimeException ex) {
+      arrowStreamWriter.close();
+      throw ex;
+    }
+    return arrowStreamWriter;
+  }
+
   @Override
   public void close() throws Exception {
-    AutoCloseables.close(client, allocator);
+    // The router owns the client of the coordinator.
+    AutoCloseables.close(router, allocator);
+  }
+
+  /**
+   * A query that other threads can cancel. While the query is planned, cancelling it interrupts the
+   * thread planning it, which cancels the blocking getInfo call. Once it streams, only its stream is
+   * cancelled: after an interrupt, the stream could not drain on close.
+   */
+  static final class InFlightQuery {
+    private final @Nullable Thread thread;
+    private @Nullable FlightInfo info;
+    private @Nullable TicketReader reader;
+    private @Nullable String cancelMessage;
+
+    /**
+     * Creates a query planned by the given thread, or by none if it is registered once planned.
+     */
+    InFlightQuery(@Nullable Thread thread) {
+      this.thread = thread;
+    }
+
+    synchronized void planned(FlightInfo flightInfo) {
+      info = flightInfo;
+      if (cancelMessage != null) {
+        // getInfo completed before the interrupt could stop it; it must not reach the stream.
+        Thread.interrupted();
+        throw CallStatus.CANCELLED.withDescription(cancelMessage).toRuntimeException();
+      }
+    }
+
+    synchronized void streaming(TicketReader ticketReader) {
+      reader = ticketReader;
+      if (cancelMessage != null) {
+        // The query was cancelled while the previous endpoint was being closed.
+        reader.cancel(cancelMessage);
+      }
+    }
+
+    /**
+     * Cancels the query.
+     *
+     * @return the FlightInfo of the query, or null if it was still being planned.
+     */
+    synchronized @Nullable FlightInfo cancel(String message) {
+      cancelMessage = message;
+      if (info == null) {
+        if (thread != null) {
+          thread.interrupt();
+        }
+      } else if (reader != null) {
+        reader.cancel(message);
+      }
+      return info;
+    }
+  }
+
+  /**
+   * Write the remaining bytes of the buffer to the stream. They are handed over as they are when the
+   * stream is also a channel, so that direct buffers are not copied onto the heap.
+   */
+  private static void writeTo(final OutputStream outputStream, final ByteBuffer source) throws IOException {
+    if (outputStream instanceof WritableByteChannel) {
+      final WritableByteChannel channel = (WritableByteChannel) outputStream;
+      while (source.hasRemaining()) {
+        channel.write(source);
+      }
+    } else if (source.hasArray()) {
+      outputStream.write(source.array(), source.arrayOffset() + source.position(), source.remaining());
+      source.position(source.limit());
+    } else {
+      final byte[] chunk = new byte[Math.min(source.remaining(), COPY_CHUNK_SIZE)];
+      while (source.hasRemaining()) {
+        final int length = Math.min(source.remaining(), chunk.length);
+        source.get(chunk, 0, length);
+        outputStream.write(chunk, 0, length);
+      }
+    }
+  }
+
+  /**
+   * A stream owned by the caller, which is only flushed when closed.
+   */
+  private static final class BorrowedOutputStream extends FilterOutputStream implements WritableByteChannel {
+    private boolean closed = false;
+
+    private BorrowedOutputStream(OutputStream outputStream) {
+      super(outputStream);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      out.write(bytes, offset, length);
+    }
+
+    @Override
+    public int write(ByteBuffer source) throws IOException {
+      final int length = source.remaining();
+      writeTo(out, source);
+      return length;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return !closed;
+    }
+
+    @Override
+    public void close() throws IOException {
+      closed = true;
+      flush();
+    }
+  }
+
+  /**
+   * The stream query results are written to, which drops further writes once discarded. It is also
+   * a channel, so the writer hands it the buffers of each batch as they are.
+   */
+  private static final class SinkOutputStream extends FilterOutputStream implements WritableByteChannel {
+    private boolean discarded = false;
+    private boolean closed = false;
+
+    private SinkOutputStream(OutputStream outputStream) {
+      super(outputStream);
+    }
+
+    private void discard() {
+      discarded = true;
+    }
+
+    @Override
+    public int write(ByteBuffer source) throws IOException {
+      final int length = source.remaining();
+      if (discarded) {
+        source.position(source.limit());
+      } else {
+        writeTo(out, source);
+      }
+      return length;
+    }
+
+    @Override
+    public boolean isOpen() {
+      return !closed;
+    }
+
+    @Override
+    public void close() throws IOException {
+      closed = true;
+      super.close();
+    }
+
+    @Override
+    public void write(int value) throws IOException {
+      if (!discarded) {
+        out.write(value);
+      }
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      if (!discarded) {
+        out.write(bytes, offset, length);
+      }
+    }
+  }
+
+  /**
+   * Key of the schema cache: the SQL text and a canonical copy of the call headers, which are
+   * otherwise mutable and compared by identity.
+   */
+  private static final class SchemaCacheKey {
+    private static final String BINARY_HEADER_SUFFIX = "-bin";
+
+    private final String query;
+    private final Map<String, List<String>> headers = new TreeMap<>();
+
+    private SchemaCacheKey(String query, @Nullable CallHeaders callHeaders) {
+      this.query = query;
+      if (callHeaders != null) {
+        for (final String key : callHeaders.keys()) {
+          final List<String> values = new ArrayList<>();
+          if (key.endsWith(BINARY_HEADER_SUFFIX)) {
+            callHeaders.getAllByte(key).forEach(value -> values.add(BaseEncoding.base64().encode(value)));
+          } else {
+            callHeaders.getAll(key).forEach(values::add);
+          }
+          headers.put(key, values);
+        }
+      }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof SchemaCacheKey)) {
+        return false;
+      }
+      final SchemaCacheKey that = (SchemaCacheKey) other;
+      return query.equals(that.query) && headers.equals(that.headers);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(query, headers);
+    }
   }
 }
@@ -0,0 +1,362 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.client;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import org.apache.arrow.flight.CallOption;
+import org.apache.arrow.flight.CallStatus;
+import org.apache.arrow.flight.FlightClient;
+import org.apache.arrow.flight.FlightDescriptor;
+import org.apache.arrow.flight.FlightRuntimeException;
+import org.apache.arrow.flight.PutResult;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.VectorLoader;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.VectorUnloader;
+import org.apache.arrow.vector.ipc.ArrowReader;
+import org.apache.arrow.vector.ipc.message.ArrowRecordBatch;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import com.adhoc.flight.ingest.BatchFiles;
+
+/**
+ * Streams the record batches of local files to a Flight server over several concurrent DoPut
+ * streams.
+ * <p>
+ * Reader tasks read files in parallel and hand their batches to the sender tasks through a bounded
+ * queue, so reading pauses when the streams fall behind. Each sender owns one DoPut stream and sends
+ * the next queued batch once gRPC is ready to accept more data and, when an acknowledgement window
+ * is set, once the server has acknowledged enough of the batches already sent. Batches of a file
+ * may be spread over several streams, so the server must accept concurrent puts to the same
+ * descriptor. Every file must have the same schema.
+ */
+final class BulkPut {
+  private static final long POLL_MILLIS = 10;
+
+  private final Supplier<FlightClient> connections;
+  private final FlightDescriptor descriptor;
+  private final List<Path> files;
+  private final PutOptions options;
+  private final BufferAllocator allocator;
+  private final CallOption[] callOptions;
+  private final BlockingQueue<ArrowRecordBatch> queue;
+  private final AtomicInteger nextFile = new AtomicInteger();
+  private final AtomicReference<Throwable> failure = new AtomicReference<>();
+  private final AtomicLong batches = new AtomicLong();
+  private final AtomicLong rows = new AtomicLong();
+  private final AtomicLong acknowledgements = new AtomicLong();
+  private final AtomicInteger peakUnacknowledged = new AtomicInteger();
+
+  /**
+   * Prepares a bulk put.
+   *
+   * @param connections supplies the client each stream is opened on.
+   * @param descriptor  the descriptor of the put streams.
+   * @param files       the files to send.
+   * @param options     the concurrency and acknowledgement window of the put.
+   * @param allocator   the allocator of the batches.
+   * @param callOptions the options of each DoPut call.
+   */
+  BulkPut(Supplier<FlightClient> connections, FlightDescriptor descriptor, List<Path> files, PutOptions options,
+      BufferAllocator allocator, CallOption... callOptions) {
+    if (files.isEmpty()) {
+      throw new IllegalArgumentException("No files to put.");
+    }
+    this.connections = connections;
+    this.descriptor = descriptor;
+    this.files = new ArrayList<>(files);
+    this.options = options;
+    this.allocator = allocator;
+    this.callOptions = callOptions;
+    this.queue = new ArrayBlockingQueue<>(2 * options.getStreams());
+  }
+
+  /**
+   * Sends every file, returning once the server has completed every stream.
+   *
+   * @return what was sent.
+   * @throws Exception the first failure of a reader or stream, after the other streams are cancelled.
+   */
+  PutSummary run() throws Exception {
+    final long start = System.nanoTime();
+    final Schema schema = checkFiles();
+
+    final int readers = Math.min(options.getReaders(), files.size());
+    final CountDownLatch readersRunning = new CountDownLatch(readers);
+    final List<CompletableFuture<Void>> tasks = new ArrayList<>(readers + options.getStreams());
+    for (int i = 0; i < readers; i++) {
+      tasks.add(FlightExecutors.callAsync(() -> {
+        read(readersRunning);
+        return null;
+      }, FlightExecutors.defaultExecutor()));
+    }
+    for (int i = 0; i < options.getStreams(); i++) {
+      tasks.add(FlightExecutors.callAsync(() -> {
+        send(schema, readersRunning);
+        return null;
+      }, FlightExecutors.defaultExecutor()));
+    }
+    try {
+      CompletableFuture.allOf(tasks.toArray(new CompletableFuture<?>[0])).join();
+    } catch (CompletionException ex) {
+      fail(ex.getCause());
+    } finally {
+      ArrowRecordBatch leftover;
+      while ((leftover = queue.poll()) != null) {
+        leftover.close();
+      }
+    }
+
+    final Throwable cause = failure.get();
+    if (cause instanceof Exception) {
+      throw (Exception) cause;
+    } else if (cause != null) {
+      throw (Error) cause;
+    }
+    return new PutSummary(files.size(), batches.get(), rows.get(), acknowledgements.get(),
+        peakUnacknowledged.get(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+  }
+
+  /**
+   * Checks that every file can be sent before any stream is opened, so that a bad file does not
+   * leave the table partially written.
+   *
+   * @return the schema of the files.
+   * @throws IllegalArgumentException if the files have different schemas or are dictionary-encoded.
+   */
+  private Schema checkFiles() throws Exception {
+    Schema schema = null;
+    for (final Path path : files) {
+      try (final ArrowReader reader = BatchFiles.open(path, allocator)) {
+        final Schema fileSchema = reader.getVectorSchemaRoot().getSchema();
+        if (schema == null) {
+          schema = fileSchema;
+        } else if (!fileSchema.equals(schema)) {
+          throw new IllegalArgumentException(String.format("%s has schema %s, expected %s.", path,
+              fileSchema, schema));
+        }
+        if (!reader.getDictionaryIds().isEmpty()) {
+          throw new IllegalArgumentException("Dictionary-encoded files are not supported: " + path);
+        }
+      }
+    }
+    return schema;
+  }
+
+  /**
+   * Reads files until none is left, queueing their batches.
+   */
+  private void read(CountDownLatch readersRunning) {
+    try {
+      int index;
+      while (failure.get() == null && (index = nextFile.getAndIncrement()) < files.size()) {
+        readFile(files.get(index));
+      }
+    } catch (Throwable t) {
+      fail(t);
+    } finally {
+      readersRunning.countDown();
+    }
+  }
+
+  private void readFile(Path path) throws Exception {
+    try (final ArrowReader reader = BatchFiles.open(path, allocator)) {
+      final VectorSchemaRoot root = reader.getVectorSchemaRoot();
+      final VectorUnloader unloader = new VectorUnloader(root);
+      while (failure.get() == null && reader.loadNextBatch()) {
+        if (root.getRowCount() == 0) {
+          continue;
+        }
+        // The batch keeps its buffers alive after the reader loads the next one.
+        final ArrowRecordBatch batch = unloader.getRecordBatch();
+        boolean queued = false;
+        try {
+          while (!queued && failure.get() == null) {
+            queued = queue.offer(batch, POLL_MILLIS, TimeUnit.MILLISECONDS);
+          }
+        } finally {
+          if (!queued) {
+            batch.close();
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Sends queued batches over one DoPut stream until the readers are done and the queue is empty.
+   */
+  private void send(Schema schema, CountDownLatch readersRunning) {
+    try (final VectorSchemaRoot root = VectorSchemaRoot.create(schema, allocator)) {
+      final Acknowledgements acks = new Acknowledgements();
+      final FlightClient.ClientStreamListener stream =
+          connections.get().startPut(descriptor, root, acks, callOptions);
+      final VectorLoader loader = new VectorLoader(root);
+      long sent = 0;
+      try {
+        ArrowRecordBatch batch;
+        while ((batch = nextBatch(readersRunning)) != null) {
+          try {
+            loader.load(batch);
+          } finally {
+            batch.close();
+          }
+          awaitCapacity(stream, acks, sent);
+          if (failure.get() != null) {
+            break;
+          }
+          if (acks.isDone()) {
+            stream.getResult();
+            throw CallStatus.INTERNAL.withDescription("Server completed the put before every batch was sent.")
+                .toRuntimeException();
+          }
+          stream.putNext();
+          sent++;
+          final int unacknowledged = (int) (sent - acks.count());
+          peakUnacknowledged.accumulateAndGet(unacknowledged, Math::max);
+          batches.incrementAndGet();
+          rows.addAndGet(root.getRowCount());
+        }
+        if (failure.get() != null) {
+          stream.error(CallStatus.CANCELLED.withDescription("Another put stream failed.").toRuntimeException());
+          return;
+        }
+        stream.completed();
+        stream.getResult();
+      } catch (Throwable t) {
+        try {
+          stream.error(t);
+        } catch (RuntimeException suppressed) {
+          t.addSuppressed(suppressed);
+        }
+        throw t;
+      } finally {
+        acknowledgements.addAndGet(acks.count());
+      }
+    } catch (Throwable t) {
+      fail(t);
+    }
+  }
+
+  /**
+   * Takes the next queued batch, or returns null once the readers are done and the queue is empty or
+   * another task failed.
+   */
+  private ArrowRecordBatch nextBatch(CountDownLatch readersRunning) throws InterruptedException {
+    while (failure.get() == null) {
+      // Checked before polling: once the readers are done, an empty poll means nothing is left.
+      final boolean readersDone = readersRunning.getCount() == 0;
+      final ArrowRecordBatch batch = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+      if (batch != null || readersDone) {
+        return batch;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Waits until the stream may take another batch, another task failed or the server ended the call.
+   * Flight starts the call before returning the stream, too late for an on-ready handler, so
+   * transport readiness is polled while acknowledgements wake the sender up early.
+   */
+  private void awaitCapacity(FlightClient.ClientStreamListener stream, Acknowledgements acks, long sent)
+      throws InterruptedException {
+    final int window = options.getMaxUnacknowledged();
+    while ((!stream.isReady() || window > 0 && sent - acks.count() >= window) &&
+        failure.get() == null && !acks.isDone()) {
+      acks.await(POLL_MILLIS);
+    }
+  }
+
+  private void fail(Throwable t) {
+    failure.compareAndSet(null, t);
+  }
+
+  /**
+   * Counts the {@link PutResult}s of a stream and wakes up its sender when the stream can make
+   * progress.
+   */
+  private static final class Acknowledgements implements FlightClient.PutListener {
+    private final AtomicLong count = new AtomicLong();
+    private final CompletableFuture<Void> done = new CompletableFuture<>();
+
+    long count() {
+      return count.get();
+    }
+
+    boolean isDone() {
+      return done.isDone();
+    }
+
+    synchronized void await(long millis) throws InterruptedException {
+      wait(millis);
+    }
+
+    synchronized void signal() {
+      notifyAll();
+    }
+
+    @Override
+    public void onNext(PutResult val) {
+      count.incrementAndGet();
+      signal();
+    }
+
+    @Override
+    public void onError(Throwable t) {
+      done.completeExceptionally(t);
+      signal();
+    }
+
+    @Override
+    public void onCompleted() {
+      done.complete(null);
+      signal();
+    }
+
+    @Override
+    public void getResult() {
+      try {
+        done.get();
+      } catch (ExecutionException e) {
+        if (e.getCause() instanceof FlightRuntimeException) {
+          throw (FlightRuntimeException) e.getCause();
+        }
+        throw CallStatus.UNKNOWN.withCause(e.getCause()).withDescription(e.getCause().getMessage())
+            .toRuntimeException();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw CallStatus.CANCELLED.withCause(e).withDescription("Interrupted.").toRuntimeException();
+      }
+    }
+  }
+}
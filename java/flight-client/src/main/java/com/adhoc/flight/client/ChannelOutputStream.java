@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.client;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+
+import org.apache.arrow.util.Preconditions;
+
+/**
+ * A buffered stream over a blocking channel, for writing Arrow IPC streams to files and pipes.
+ * Small writes, such as message headers and padding, are gathered in a direct buffer and written
+ * together. Direct buffers at least as large as it, such as the data buffers of a large batch, are
+ * written straight to the channel without being copied.
+ */
+public final class ChannelOutputStream extends OutputStream implements WritableByteChannel {
+  public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+  private final WritableByteChannel channel;
+  private final ByteBuffer buffer;
+  private long bytesWritten = 0;
+  private boolean closed = false;
+  private IOException failure;
+
+  public ChannelOutputStream(WritableByteChannel channel) {
+    this(channel, DEFAULT_BUFFER_SIZE);
+  }
+
+  /**
+   * Create a stream over the given channel.
+   *
+   * @param channel    the blocking channel to write to. It is closed with the stream.
+   * @param bufferSize the size of the buffer small writes are gathered in.
+   */
+  public ChannelOutputStream(WritableByteChannel channel, int bufferSize) {
+    Preconditions.checkArgument(bufferSize > 0, "bufferSize must be positive.");
+    this.channel = requireNonNull(channel, "channel");
+    this.buffer = ByteBuffer.allocateDirect(bufferSize);
+  }
+
+  /**
+   * Open a stream over file descriptor 1, the standard output of the process, bypassing
+   * {@link System#out}. Closing the stream closes the standard output, so a reader at the other end
+   * of a pipe sees the end of the data at once.
+   *
+   * @return a stream over the standard output.
+   */
+  public static ChannelOutputStream standardOutput() {
+    return new ChannelOutputStream(new FileOutputStream(FileDescriptor.out).getChannel());
+  }
+
+  /**
+   * Get the number of bytes written to the stream, including those still buffered.
+   *
+   * @return the number of bytes written.
+   */
+  public long getBytesWritten() {
+    return bytesWritten;
+  }
+
+  @Override
+  public void write(int value) throws IOException {
+    ensureOpen();
+    if (!buffer.hasRemaining()) {
+      drain();
+    }
+    buffer.put((byte) value);
+    bytesWritten++;
+  }
+
+  @Override
+  public void write(byte[] bytes, int offset, int length) throws IOException {
+    write(ByteBuffer.wrap(bytes, offset, length));
+  }
+
+  @Override
+  public int write(ByteBuffer source) throws IOException {
+    ensureOpen();
+    final int length = source.remaining();
+    if (source.isDirect() && length >= buffer.capacity()) {
+      drain();
+      writeFully(source);
+    } else {
+      while (source.hasRemaining()) {
+        if (!buffer.hasRemaining()) {
+          drain();
+        }
+        final int count = Math.min(source.remaining(), buffer.remaining());
+        final ByteBuffer chunk = source.duplicate();
+        chunk.limit(chunk.position() + count);
+        buffer.put(chunk);
+        source.position(source.position() + count);
+      }
+    }
+    bytesWritten += length;
+    return length;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    ensureOpen();
+    drain();
+  }
+
+  /**
+   * Tell whether the stream can still be written to. It cannot once it is closed, or once a write to
+   * the channel failed, for example because the reader at the other end of a pipe went away.
+   *
+   * @return true if the stream is open.
+   */
+  @Override
+  public boolean isOpen() {
+    return !closed && failure == null && channel.isOpen();
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try (final WritableByteChannel ignored = channel) {
+      if (failure == null) {
+        drain();
+      }
+    }
+  }
+
+  private void ensureOpen() throws IOException {
+    if (closed) {
+      throw new ClosedChannelException();
+    }
+    if (failure != null) {
+      throw new IOException("An earlier write to the channel failed.", failure);
+    }
+  }
+
+  /**
+   * Writes out the buffered bytes.
+   */
+  private void drain() throws IOException {
+    buffer.flip();
+    try {
+      writeFully(buffer);
+    } finally {
+      buffer.clear();
+    }
+  }
+
+  private void writeFully(ByteBuffer source) throws IOException {
+    try {
+      while (source.hasRemaining()) {
+        channel.write(source);
+      }
+    } catch (IOException ex) {
+      failure = ex;
+      throw ex;
+    }
+  }
+}
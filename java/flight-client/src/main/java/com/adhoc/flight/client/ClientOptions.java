@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.client;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Options of an {@link AdhocFlightClient} beyond its connection and credentials.
+ */
+public final class ClientOptions {
+  private static final ClientOptions DEFAULTS = builder().build();
+
+  private final QueryDeadlines deadlines;
+  private final RetryPolicy retryPolicy;
+  private final boolean endpointRouting;
+  private final TransportOptions transport;
+  private final int stripes;
+  private final StripingPolicy stripingPolicy;
+
+  private ClientOptions(Builder builder) {
+    this.deadlines = builder.deadlines;
+    this.retryPolicy = builder.retryPolicy;
+    this.endpointRouting = builder.endpointRouting;
+    this.transport = builder.transport;
+    this.stripes = builder.stripes;
+    this.stripingPolicy = builder.stripingPolicy;
+  }
+
+  /**
+   * Gets the default options: no deadlines, no retries, results read from the locations the server
+   * advertises, and a single connection per server with the default gRPC transport settings.
+   *
+   * @return the default options.
+   */
+  public static ClientOptions defaults() {
+    return DEFAULTS;
+  }
+
+  /**
+   * Creates a builder starting from the default options.
+   *
+   * @return a new builder.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public QueryDeadlines getDeadlines() {
+    return deadlines;
+  }
+
+  public RetryPolicy getRetryPolicy() {
+    return retryPolicy;
+  }
+
+  public boolean isEndpointRouting() {
+    return endpointRouting;
+  }
+
+  public TransportOptions getTransport() {
+    return transport;
+  }
+
+  public int getStripes() {
+    return stripes;
+  }
+
+  public StripingPolicy getStripingPolicy() {
+    return stripingPolicy;
+  }
+
+  /**
+   * Builder of {@link ClientOptions}.
+   */
+  public static final class Builder {
+    private QueryDeadlines deadlines = QueryDeadlines.none();
+    private RetryPolicy retryPolicy = RetryPolicy.none();
+    private boolean endpointRouting = true;
+    private TransportOptions transport = TransportOptions.defaults();
+    private int stripes = 1;
+    private StripingPolicy stripingPolicy = StripingPolicy.LEAST_LOADED;
+
+    private Builder() {
+    }
+
+    public Builder deadlines(QueryDeadlines deadlines) {
+      this.deadlines = requireNonNull(deadlines);
+      return this;
+    }
+
+    public Builder retryPolicy(RetryPolicy retryPolicy) {
+      this.retryPolicy = requireNonNull(retryPolicy);
+      return this;
+    }
+
+    /**
+     * Sets whether tickets are sent to the locations advertised by their endpoints. When disabled,
+     * every ticket is read from the coordinator. Defaults to true.
+     */
+    public Builder endpointRouting(boolean endpointRouting) {
+      this.endpointRouting = endpointRouting;
+      return this;
+    }
+
+    public Builder transport(TransportOptions transport) {
+      this.transport = requireNonNull(transport);
+      return this;
+    }
+
+    /**
+     * Sets the number of HTTP/2 connections opened to each server, and how streams are spread over
+     * them. The handshake and the other unary requests use the first connection. Defaults to a
+     * single connection.
+     */
+    public Builder stripes(int stripes, StripingPolicy policy) {
+      if (stripes < 1) {
+        throw new IllegalArgumentException("Stripes must be at least 1: " + stripes);
+      }
+      this.stripes = stripes;
+      this.stripingPolicy = requireNonNull(policy);
+      return this;
+    }
+
+    public ClientOptions build() {
+      return new ClientOptions(this);
+    }
+  }
+}
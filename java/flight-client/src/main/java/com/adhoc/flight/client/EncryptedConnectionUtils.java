@@ -17,22 +17,41 @@
 package com.adhoc.flight.client;
 
 import java.io.ByteArrayInputStream;
-import java.io.IOException;
 import java.io.InputStream;
 import java.io.StringWriter;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.security.KeyStore;
-import java.security.cert.Certificate;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
 import java.util.Enumeration;
+import java.util.Objects;
 
 import org.bouncycastle.openssl.jcajce.JcaPEMWriter;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
 /**
  * Utility methods for encryption private keys.
+ * <p>
+ * The certificates of a keystore are loaded once and cached until its file changes, so clients
+ * created again and again, e.g. by reconnecting jobs, do not read and re-encode the keystore each
+ * time.
  */
 public class EncryptedConnectionUtils {
+  private static final int CACHE_SIZE = 16;
+  private static final int SALT_BYTES = 16;
+  private static final String DIGEST_ALGORITHM = "SHA-256";
+  private static final SecureRandom RANDOM = new SecureRandom();
+  private static final Cache<KeyStoreKey, CachedCertificates> CERTIFICATES = CacheBuilder.newBuilder()
+      .maximumSize(CACHE_SIZE)
+      .build();
+
   private EncryptedConnectionUtils() {
   }
 
@@ -45,28 +64,114 @@ public class EncryptedConnectionUtils {
    * @throws Exception if there was an error looking up the private key or certificates
    */
   public static InputStream getCertificateStream(String keyStorePath, String keyStorePassword) throws Exception {
+    return new ByteArrayInputStream(getTrustedCertificates(keyStorePath, keyStorePassword));
+  }
+
+  /**
+   * Gets every certificate entry of a keystore, PEM-encoded, to be trusted by the clients. The
+   * result is cached per keystore file, size and modification time, and served from the cache only
+   * for the password that opened the keystore.
+   *
+   * @param keyStorePath     path to the keystore
+   * @param keyStorePassword password for the keystore
+   * @return the PEM-encoded certificates, in the order of their aliases
+   * @throws Exception if the keystore cannot be read or has no certificate entry
+   */
+  public static byte[] getTrustedCertificates(String keyStorePath, String keyStorePassword) throws Exception {
+    final Path path = Paths.get(keyStorePath).toAbsolutePath().normalize();
+    final BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+    final KeyStoreKey key = new KeyStoreKey(path, attributes.size(), attributes.lastModifiedTime().toMillis());
+    final CachedCertificates cached = CERTIFICATES.getIfPresent(key);
+    if (cached != null && cached.isOpenedWith(keyStorePassword)) {
+      return cached.certificates.clone();
+    }
+    // A password that does not open the keystore fails here instead of being served from the cache.
+    final CachedCertificates loaded =
+        new CachedCertificates(keyStorePassword, loadCertificates(path, keyStorePassword));
+    CERTIFICATES.put(key, loaded);
+    return loaded.certificates.clone();
+  }
+
+  private static byte[] loadCertificates(Path path, String keyStorePassword) throws Exception {
     final KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
-    try (final InputStream keyStoreStream = Files.newInputStream(Paths.get(keyStorePath))) {
+    try (final InputStream keyStoreStream = Files.newInputStream(path)) {
       keyStore.load(keyStoreStream, keyStorePassword.toCharArray());
     }
 
-    final Enumeration<String> aliases = keyStore.aliases();
-    while (aliases.hasMoreElements()) {
-      final String alias = aliases.nextElement();
-      if (keyStore.isCertificateEntry(alias)) {
-        final Certificate certificates = keyStore.getCertificate(alias);
-        return toInputStream(certificates);
+    int count = 0;
+    try (final StringWriter writer = new StringWriter();
+         final JcaPEMWriter pemWriter = new JcaPEMWriter(writer)) {
+      final Enumeration<String> aliases = keyStore.aliases();
+      while (aliases.hasMoreElements()) {
+        final String alias = aliases.nextElement();
+        if (keyStore.isCertificateEntry(alias)) {
+          pemWriter.writeObject(keyStore.getCertificate(alias));
+          count++;
+        }
+      }
+      if (count == 0) {
+        throw new RuntimeException("Keystore did not have a certificate.");
       }
+      pemWriter.flush();
+      return writer.toString().getBytes(StandardCharsets.UTF_8);
     }
-    throw new RuntimeException("Keystore did not have a private key.");
   }
 
-  private static InputStream toInputStream(Certificate certificate) throws IOException {
-    try (final StringWriter writer = new StringWriter();
-         final JcaPEMWriter pemWriter = new JcaPEMWriter(writer)) {
-      pemWriter.writeObject(certificate);
-      pemWriter.flush();
-      return new ByteArrayInputStream(writer.toString().getBytes(StandardCharsets.UTF_8));
+  /**
+   * Identifies a version of a keystore file.
+   */
+  private static final class KeyStoreKey {
+    private final Path path;
+    private final long size;
+    private final long lastModifiedMillis;
+
+    KeyStoreKey(Path path, long size, long lastModifiedMillis) {
+      this.path = path;
+      this.size = size;
+      this.lastModifiedMillis = lastModifiedMillis;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof KeyStoreKey)) {
+        return false;
+      }
+      final KeyStoreKey that = (KeyStoreKey) other;
+      return size == that.size && lastModifiedMillis == that.lastModifiedMillis && path.equals(that.path);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(path, size, lastModifiedMillis);
+    }
+  }
+
+  /**
+   * The certificates of a keystore, with a salted digest of the password that opened it. The
+   * password itself is not kept, so it does not stay in memory for as long as the cache does.
+   */
+  private static final class CachedCertificates {
+    private final byte[] salt = new byte[SALT_BYTES];
+    private final byte[] passwordDigest;
+    private final byte[] certificates;
+
+    CachedCertificates(String password, byte[] certificates) throws NoSuchAlgorithmException {
+      RANDOM.nextBytes(salt);
+      this.passwordDigest = digest(password);
+      this.certificates = certificates;
+    }
+
+    boolean isOpenedWith(String password) throws NoSuchAlgorithmException {
+      return MessageDigest.isEqual(passwordDigest, digest(password));
+    }
+
+    private byte[] digest(String password) throws NoSuchAlgorithmException {
+      final MessageDigest digest = MessageDigest.getInstance(DIGEST_ALGORITHM);
+      digest.update(salt);
+      return digest.digest(password.getBytes(StandardCharsets.UTF_8));
     }
   }
 }
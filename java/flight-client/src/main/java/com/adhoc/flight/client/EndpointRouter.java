@@ -0,0 +1,160 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
+
+import org.apache.arrow.flight.CallOption;
+import org.apache.arrow.flight.FlightClient;
+import org.apache.arrow.flight.FlightEndpoint;
+import org.apache.arrow.flight.FlightRuntimeException;
+import org.apache.arrow.flight.FlightStatusCode;
+import org.apache.arrow.flight.FlightStream;
+import org.apache.arrow.flight.Location;
+import org.apache.arrow.flight.LocationSchemes;
+import org.apache.arrow.util.AutoCloseables;
+
+/**
+ * Routes the tickets of {@link FlightEndpoint}s to the locations the server advertises for them, so
+ * results stream from the node that holds them instead of being proxied through the coordinator.
+ * <p>
+ * A client is created for each advertised location on first use and kept until the router is
+ * closed. The locations of an endpoint are replicas: they are tried in order, and an endpoint whose
+ * locations are all unreachable is read from the coordinator. A location is only skipped when it
+ * fails with {@code UNAVAILABLE} before sending the schema of the stream. Endpoints without
+ * locations, and locations naming the coordinator or the reuse-connection scheme, are read from the
+ * coordinator.
+ * <p>
+ * Each stream goes to one of the connections of its {@link StripedClient}. The router owns and
+ * closes the clients, including the coordinator's.
+ */
+final class EndpointRouter implements AutoCloseable {
+  private final StripedClient coordinator;
+  private final Location coordinatorLocation;
+  private final Function<Location, StripedClient> clientFactory;
+  private final ConcurrentMap<Location, StripedClient> locationClients = new ConcurrentHashMap<>();
+
+  /**
+   * Creates a router that connects to the advertised locations with clients from the given factory.
+   *
+   * @param coordinator         the client of the coordinator the query was planned on.
+   * @param coordinatorLocation the location of the coordinator.
+   * @param clientFactory       creates a client connected to a location, configured as the coordinator's.
+   */
+  EndpointRouter(StripedClient coordinator, @Nullable Location coordinatorLocation,
+      @Nullable Function<Location, StripedClient> clientFactory) {
+    this.coordinator = coordinator;
+    this.coordinatorLocation = coordinatorLocation;
+    this.clientFactory = clientFactory;
+  }
+
+  /**
+   * Creates a router that reads every endpoint from the coordinator.
+   */
+  static EndpointRouter coordinatorOnly(StripedClient coordinator) {
+    return new EndpointRouter(coordinator, null, null);
+  }
+
+  /**
+   * Make a getStream request for the ticket of the endpoint, at the first of its locations that is
+   * reachable.
+   *
+   * @param endpoint the endpoint holding the ticket and the locations to read it from.
+   * @param options  the client properties to execute the request with.
+   * @return the stream of results.
+   */
+  FlightStream getStream(FlightEndpoint endpoint, CallOption... options) {
+    final List<StripedClient> candidates = candidates(endpoint);
+    final int last = candidates.size() - 1;
+    for (int i = 0; i < last; i++) {
+      final FlightStream stream = candidates.get(i).pick().getStream(endpoint.getTicket(), options);
+      try {
+        stream.getSchema();
+        return stream;
+      } catch (FlightRuntimeException ex) {
+        closeQuietly(stream);
+        if (ex.status().code() != FlightStatusCode.UNAVAILABLE) {
+          throw ex;
+        }
+      }
+    }
+    // The last candidate is not probed; its failures surface to the reader of the stream.
+    return candidates.get(last).pick().getStream(endpoint.getTicket(), options);
+  }
+
+  /**
+   * Gets the clients to try for the endpoint, in order, ending with the coordinator.
+   */
+  private List<StripedClient> candidates(FlightEndpoint endpoint) {
+    final List<StripedClient> candidates = new ArrayList<>(endpoint.getLocations().size() + 1);
+    if (clientFactory != null) {
+      for (final Location location : endpoint.getLocations()) {
+        final StripedClient candidate = isCoordinator(location) ? coordinator
+            : locationClients.computeIfAbsent(location, clientFactory);
+        if (!candidates.contains(candidate)) {
+          candidates.add(candidate);
+        }
+      }
+    }
+    if (!candidates.contains(coordinator)) {
+      candidates.add(coordinator);
+    }
+    return candidates;
+  }
+
+  private boolean isCoordinator(Location location) {
+    return LocationSchemes.REUSE_CONNECTION.equals(location.getUri().getScheme()) ||
+        location.equals(coordinatorLocation);
+  }
+
+  /**
+   * Gets a connection to the coordinator for a new stream, picked by its striping policy.
+   */
+  FlightClient coordinatorConnection() {
+    return coordinator.pick();
+  }
+
+  /**
+   * Gets the number of locations a client has been created for.
+   */
+  int locationCount() {
+    return locationClients.size();
+  }
+
+  private static void closeQuietly(FlightStream stream) {
+    try {
+      stream.close();
+    } catch (Exception ignored) {
+      // The stream already failed; closing it only releases its buffers.
+    }
+  }
+
+  @Override
+  public void close() throws Exception {
+    final List<AutoCloseable> clients = new ArrayList<>(locationClients.values());
+    locationClients.clear();
+    clients.add(coordinator);
+    AutoCloseables.close(clients);
+  }
+}
@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.client;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import javax.annotation.Nullable;
+
+import org.apache.arrow.flight.FlightEndpoint;
+import org.apache.arrow.flight.FlightInfo;
+import org.apache.arrow.flight.HeaderCallOption;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.OutOfMemoryException;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+/**
+ * Pull-based cursor over the result batches of a query, across all of the query's endpoints in
+ * order.
+ * <p>
+ * Batches are read from the Flight streams only when {@link #hasNext()} or {@link #next()} is
+ * called, so callers consume results on their own threads and at their own pace. Each
+ * {@link VectorSchemaRoot} returned by {@link #next()} is transferred, without copying, into the
+ * target allocator and is owned by the caller, which must close it. Closing the iterator before it
+ * is exhausted cancels the stream being read. Each stream is read within the deadlines and retry
+ * policy of the client, and the query is cancelled with the client's other in-flight queries.
+ * <p>
+ * Instances are not thread-safe, but may be handed from one thread to another.
+ */
+public final class FlightBatchIterator implements Iterator<VectorSchemaRoot>, AutoCloseable {
+  private final AdhocFlightClient client;
+  private final FlightInfo flightInfo;
+  private final HeaderCallOption headerCallOption;
+  private final BufferAllocator targetAllocator;
+  private final boolean inSession;
+  private final List<FlightEndpoint> endpoints;
+  private final long startNanos = System.nanoTime();
+  private final AdhocFlightClient.InFlightQuery inFlightQuery;
+  private int nextEndpoint;
+  private TicketReader reader;
+  private VectorSchemaRoot nextBatch;
+  private boolean closed;
+
+  FlightBatchIterator(AdhocFlightClient client, FlightInfo flightInfo,
+      @Nullable HeaderCallOption headerCallOption, BufferAllocator targetAllocator, boolean inSession) {
+    this.client = requireNonNull(client);
+    this.flightInfo = requireNonNull(flightInfo);
+    this.headerCallOption = headerCallOption;
+    this.targetAllocator = requireNonNull(targetAllocator);
+    this.inSession = inSession;
+    this.endpoints = flightInfo.getEndpoints();
+    this.inFlightQuery = client.register(flightInfo);
+  }
+
+  /**
+   * Gets the schema of the result, as reported by the server when the query was planned.
+   *
+   * @return the result schema, or null if the server did not report one.
+   */
+  @Nullable
+  public Schema getSchema() {
+    return flightInfo.getSchemaOptional().orElse(null);
+  }
+
+  public FlightInfo getFlightInfo() {
+    return flightInfo;
+  }
+
+  /**
+   * Gets the index of the endpoint the most recently read batch was streamed from.
+   *
+   * @return the endpoint index, or -1 if no batch has been read yet.
+   */
+  public int getCurrentEndpointIndex() {
+    return nextEndpoint - 1;
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (nextBatch == null && !closed) {
+      nextBatch = readNextBatch();
+    }
+    return nextBatch != null;
+  }
+
+  /**
+   * Gets the next batch. The caller owns the returned root and must close it.
+   *
+   * @return the next batch of results.
+   * @throws NoSuchElementException if there are no more batches.
+   * @throws OutOfMemoryException   if taking the batch would exceed the target allocator's limit.
+   */
+  @Override
+  public VectorSchemaRoot next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    final VectorSchemaRoot batch = nextBatch;
+    nextBatch = null;
+    return batch;
+  }
+
+  /**
+   * Cancels the current stream if the results have not been fully read, and ends the query's
+   * session if one was opened for it. Batches already returned by {@link #next()} remain valid.
+   *
+   * @throws Exception if the stream or session could not be closed.
+   */
+  @Override
+  public void close() throws Exception {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    final VectorSchemaRoot unreturned = nextBatch;
+    nextBatch = null;
+    try {
+      if (unreturned != null) {
+        unreturned.close();
+      }
+      closeStream();
+    } finally {
+      client.unregister(inFlightQuery);
+      if (inSession) {
+        client.closeSession(headerCallOption);
+      }
+    }
+  }
+
+  /**
+   * Cancels the stream currently being read. Unlike the other methods, this may be called from any
+   * thread, for example to abort a {@link #hasNext()} call blocked on another thread. A stream that
+   * is still being opened is cancelled as soon as it is.
+   *
+   * @param message the reason for the cancellation.
+   */
+  public void cancel(String message) {
+    inFlightQuery.cancel(message);
+  }
+
+  private VectorSchemaRoot readNextBatch() {
+    try {
+      while (true) {
+        if (reader == null) {
+          if (nextEndpoint >= endpoints.size()) {
+            return null;
+          }
+          reader = client.openReader(endpoints.get(nextEndpoint++), headerCallOption, startNanos);
+          inFlightQuery.streaming(reader);
+        }
+        if (reader.next() && reader.stream().hasRoot()) {
+          return transfer(reader.stream().getRoot());
+        }
+        closeStream();
+      }
+    } catch (RuntimeException ex) {
+      throw ex;
+    } catch (Exception ex) {
+      throw new RuntimeException(ex);
+    }
+  }
+
+  private VectorSchemaRoot transfer(VectorSchemaRoot source) {
+    long batchSize = 0;
+    for (FieldVector vector : source.getFieldVectors()) {
+      batchSize += vector.getBufferSize();
+    }
+    if (targetAllocator.getAllocatedMemory() + batchSize > targetAllocator.getLimit()) {
+      throw new OutOfMemoryException(String.format(
+          "Unreleased batches hold %d bytes; the next batch of %d bytes exceeds the limit of %d.",
+          targetAllocator.getAllocatedMemory(), batchSize, targetAllocator.getLimit()));
+    }
+    final VectorSchemaRoot target = VectorSchemaRoot.create(source.getSchema(), targetAllocator);
+    for (int i = 0; i < source.getFieldVectors().size(); i++) {
+      source.getVector(i).makeTransferPair(target.getVector(i)).transfer();
+    }
+    target.setRowCount(source.getRowCount());
+    return target;
+  }
+
+  private void closeStream() throws Exception {
+    final TicketReader current = reader;
+    reader = null;
+    if (current != null) {
+      current.close();
+    }
+  }
+
+}
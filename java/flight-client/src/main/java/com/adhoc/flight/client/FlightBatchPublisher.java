@@ -0,0 +1,203 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.client;
+
+import static java.util.Objects.requireNonNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import org.apache.arrow.flight.HeaderCallOption;
+import org.apache.arrow.memory.AllocationListener;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.OutOfMemoryException;
+import org.apache.arrow.util.AutoCloseables;
+import org.apache.arrow.vector.VectorSchemaRoot;
+
+/**
+ * Publishes the results of a query as {@link VectorSchemaRoot} batches, pulling batches from a
+ * {@link FlightBatchIterator} only as subscriber demand allows.
+ * <p>
+ * Each published root is owned by the subscriber, which must close it when done with it. Batches
+ * are transferred without copying into a per-subscription child allocator. If the subscriber holds
+ * on to more unreleased batches than the allocator's limit, the subscription fails with an
+ * {@link OutOfMemoryException}. The publisher supports a single subscriber.
+ */
+final class FlightBatchPublisher implements Flow.Publisher<VectorSchemaRoot> {
+  private static final Flow.Subscription NOOP_SUBSCRIPTION = new Flow.Subscription() {
+    @Override
+    public void request(long n) {
+    }
+
+    @Override
+    public void cancel() {
+    }
+  };
+
+  private final AdhocFlightClient client;
+  private final BufferAllocator parentAllocator;
+  private final String query;
+  private final HeaderCallOption headerCallOption;
+  private final long allocationLimit;
+  private final Executor executor;
+  private final AtomicBoolean subscribed = new AtomicBoolean();
+
+  FlightBatchPublisher(AdhocFlightClient client, BufferAllocator parentAllocator, String query,
+      @Nullable HeaderCallOption headerCallOption, long allocationLimit, Executor executor) {
+    this.client = requireNonNull(client);
+    this.parentAllocator = requireNonNull(parentAllocator);
+    this.query = requireNonNull(query);
+    this.headerCallOption = headerCallOption;
+    this.allocationLimit = allocationLimit;
+    this.executor = requireNonNull(executor);
+  }
+
+  @Override
+  public void subscribe(Flow.Subscriber<? super VectorSchemaRoot> subscriber) {
+    requireNonNull(subscriber);
+    if (!subscribed.compareAndSet(false, true)) {
+      subscriber.onSubscribe(NOOP_SUBSCRIPTION);
+      subscriber.onError(new IllegalStateException("A query publisher supports a single subscriber."));
+      return;
+    }
+    subscriber.onSubscribe(new BatchSubscription(subscriber));
+  }
+
+  /**
+   * Subscription state. Signals to the subscriber, and all access to the iterator, happen in a
+   * single drain loop that runs on the executor while there is outstanding demand.
+   */
+  private final class BatchSubscription implements Flow.Subscription, AllocationListener {
+    private final Flow.Subscriber<? super VectorSchemaRoot> subscriber;
+    private final AtomicLong demand = new AtomicLong();
+    private final AtomicInteger pendingDrains = new AtomicInteger();
+    private final AtomicBoolean allocatorClosed = new AtomicBoolean();
+    private volatile boolean cancelled;
+    private volatile boolean terminated;
+    private volatile Throwable invalidRequest;
+    private volatile FlightBatchIterator iterator;
+    private volatile BufferAllocator batchAllocator;
+
+    private BatchSubscription(Flow.Subscriber<? super VectorSchemaRoot> subscriber) {
+      this.subscriber = subscriber;
+    }
+
+    @Override
+    public void request(long n) {
+      if (n <= 0) {
+        invalidRequest = new IllegalArgumentException("Subscribers must request a positive number of batches.");
+      } else {
+        demand.getAndUpdate(current -> current + n < 0 ? Long.MAX_VALUE : current + n);
+      }
+      drain();
+    }
+
+    @Override
+    public void cancel() {
+      cancelled = true;
+      final FlightBatchIterator current = iterator;
+      if (current != null) {
+        current.cancel("Subscription cancelled.");
+      }
+      drain();
+    }
+
+    @Override
+    public void onRelease(long size) {
+      final BufferAllocator current = batchAllocator;
+      if (terminated && current != null && current.getAllocatedMemory() == 0) {
+        closeAllocator();
+      }
+    }
+
+    private void drain() {
+      if (pendingDrains.getAndIncrement() != 0) {
+        return;
+      }
+      try {
+        executor.execute(this::drainLoop);
+      } catch (RejectedExecutionException ex) {
+        terminate();
+        subscriber.onError(ex);
+      }
+    }
+
+    private void drainLoop() {
+      int missed = 1;
+      while (missed != 0) {
+        try {
+          while (!terminated) {
+            if (cancelled) {
+              terminate();
+            } else if (invalidRequest != null) {
+              terminate();
+              subscriber.onError(invalidRequest);
+            } else if (demand.get() == 0) {
+              break;
+            } else {
+              final VectorSchemaRoot batch = pullBatch();
+              if (batch == null) {
+                terminate();
+                subscriber.onComplete();
+              } else {
+                demand.getAndUpdate(current -> current == Long.MAX_VALUE ? current : current - 1);
+                subscriber.onNext(batch);
+              }
+            }
+          }
+        } catch (Throwable t) {
+          final boolean wasCancelled = cancelled;
+          terminate();
+          if (!wasCancelled) {
+            subscriber.onError(t);
+          }
+        }
+        missed = pendingDrains.addAndGet(-missed);
+      }
+    }
+
+    private VectorSchemaRoot pullBatch() {
+      if (iterator == null) {
+        batchAllocator = parentAllocator.newChildAllocator("flight-batch-publisher", this, 0, allocationLimit);
+        iterator = client.openIterator(query, headerCallOption, batchAllocator);
+      }
+      return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    private void terminate() {
+      terminated = true;
+      AutoCloseables.closeNoChecked(iterator);
+      if (batchAllocator != null && batchAllocator.getAllocatedMemory() == 0) {
+        closeAllocator();
+      }
+    }
+
+    private void closeAllocator() {
+      // Release accounting is complete by the time onRelease is called, so this is safe to do from
+      // within the listener.
+      if (allocatorClosed.compareAndSet(false, true)) {
+        batchAllocator.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.client;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.apache.arrow.flight.FlightClient;
+import org.apache.arrow.flight.FlightClientMiddleware;
+import org.apache.arrow.flight.FlightGrpcUtils;
+import org.apache.arrow.flight.Location;
+import org.apache.arrow.flight.LocationSchemes;
+import org.apache.arrow.flight.grpc.ClientInterceptorAdapter;
+import org.apache.arrow.memory.BufferAllocator;
+
+import io.grpc.netty.NettyChannelBuilder;
+
+/**
+ * Opens the {@link FlightClient}s of an {@link AdhocFlightClient}, to its coordinator and to the
+ * locations the coordinator advertises, with the same security, middlewares and transport settings.
+ * <p>
+ * {@link FlightClient.Builder} only exposes the max inbound message size of the gRPC channel, so the
+ * Netty channel is built here the way the builder builds it, plus the {@link TransportOptions}.
+ */
+final class FlightConnector {
+  private final BufferAllocator allocator;
+  private final boolean useTls;
+  private final boolean verifyServer;
+  private final byte[] trustedCertificates;
+  private final List<FlightClientMiddleware.Factory> middlewares;
+  private final TransportOptions transport;
+
+  /**
+   * Creates a connector.
+   *
+   * @param allocator           the allocator of the clients.
+   * @param useTls              whether to encrypt every connection, whatever the scheme of its location.
+   * @param verifyServer        whether to verify the certificates of the servers.
+   * @param trustedCertificates the PEM certificates to trust, or null for the system trust store.
+   * @param middlewares         the middlewares intercepting every call, in order.
+   * @param transport           the gRPC transport settings.
+   */
+  FlightConnector(BufferAllocator allocator, boolean useTls, boolean verifyServer,
+      @Nullable byte[] trustedCertificates, List<FlightClientMiddleware.Factory> middlewares,
+      TransportOptions transport) {
+    this.allocator = allocator;
+    this.useTls = useTls;
+    this.verifyServer = verifyServer;
+    this.trustedCertificates = trustedCertificates;
+    this.middlewares = new ArrayList<>(middlewares);
+    this.transport = transport;
+  }
+
+  /**
+   * Creates a client connected to the given location. The connection itself is opened by the first
+   * call.
+   *
+   * @param location         a grpc, grpc+tcp or grpc+tls location.
+   * @param extraMiddlewares middlewares intercepting the calls of this client only, after the shared ones.
+   * @return a new client, to be closed by the caller.
+   */
+  FlightClient connect(Location location, FlightClientMiddleware.Factory... extraMiddlewares) {
+    final URI uri = location.getUri();
+    final String scheme = uri.getScheme();
+    if (!LocationSchemes.GRPC.equals(scheme) && !LocationSchemes.GRPC_INSECURE.equals(scheme) &&
+        !LocationSchemes.GRPC_TLS.equals(scheme)) {
+      throw new IllegalArgumentException("Scheme is not supported: " + scheme);
+    }
+
+    final NettyChannelBuilder channel = NettyChannelBuilder.forAddress(location.toSocketAddress());
+    if (useTls || LocationSchemes.GRPC_TLS.equals(scheme)) {
+      // A shared context lets the connection resume the TLS session of an earlier one.
+      channel.useTransportSecurity()
+          .sslContext(TlsContexts.forClient(transport.getTlsProvider(), verifyServer, trustedCertificates));
+    } else {
+      channel.usePlaintext();
+    }
+
+    channel.maxTraceEvents(0);
+    channel.maxInboundMessageSize(transport.getMaxInboundMessageSize());
+    channel.maxInboundMetadataSize(Integer.MAX_VALUE);
+    if (transport.getFlowControlWindow() > 0) {
+      channel.flowControlWindow(transport.getFlowControlWindow());
+    }
+    if (transport.getKeepAliveTimeMillis() > 0) {
+      channel.keepAliveTime(transport.getKeepAliveTimeMillis(), TimeUnit.MILLISECONDS);
+      channel.keepAliveWithoutCalls(transport.isKeepAliveWithoutCalls());
+      if (transport.getKeepAliveTimeoutMillis() > 0) {
+        channel.keepAliveTimeout(transport.getKeepAliveTimeoutMillis(), TimeUnit.MILLISECONDS);
+      }
+    }
+    if (transport.getIdleTimeoutMillis() > 0) {
+      channel.idleTimeout(transport.getIdleTimeoutMillis(), TimeUnit.MILLISECONDS);
+    }
+    final List<FlightClientMiddleware.Factory> clientMiddlewares = new ArrayList<>(middlewares);
+    clientMiddlewares.addAll(Arrays.asList(extraMiddlewares));
+    channel.intercept(new ClientInterceptorAdapter(clientMiddlewares));
+
+    // The client shuts the channel down when it is closed.
+    return FlightGrpcUtils.createFlightClient(allocator, channel.build());
+  }
+}
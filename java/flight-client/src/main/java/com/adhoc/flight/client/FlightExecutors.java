@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.client;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import com.adhoc.flight.tracing.TraceSpan;
+
+/**
+ * Executors and helpers for the asynchronous {@link AdhocFlightClient} APIs.
+ */
+public final class FlightExecutors {
+  private static final String THREAD_NAME_PREFIX = "adhoc-flight-async-";
+  private static final String SCHEDULER_THREAD_NAME = "adhoc-flight-deadlines";
+
+  private FlightExecutors() {
+    // Prevent instantiation.
+  }
+
+  /**
+   * Gets the executor used by asynchronous client calls when none is given. On JDKs that support
+   * virtual threads this starts one virtual thread per call, so a large number of blocking Flight
+   * calls can be in flight without holding a platform thread each. On older JDKs it is a cached pool
+   * of daemon threads.
+   *
+   * @return the shared default executor.
+   */
+  public static Executor defaultExecutor() {
+    return DefaultExecutorHolder.INSTANCE;
+  }
+
+  /**
+   * Gets the scheduler that enforces stream deadlines. Its single daemon thread only cancels
+   * streams, so it never blocks on a Flight call.
+   *
+   * @return the shared deadline scheduler.
+   */
+  static ScheduledExecutorService scheduler() {
+    return SchedulerHolder.INSTANCE;
+  }
+
+  /**
+   * Runs a blocking call on the given executor. Cancelling the returned future interrupts the
+   * thread running the call, which cancels any gRPC call it is blocked on. The span current on the
+   * submitting thread stays current while the call runs.
+   *
+   * @param callable the blocking call to run.
+   * @param executor the executor to run the call on.
+   * @param <T>      the type of the call's result.
+   * @return a future completed with the call's result or failure.
+   */
+  static <T> CompletableFuture<T> callAsync(Callable<T> callable, Executor executor) {
+    return callAsync(callable, Thread::interrupt, executor);
+  }
+
+  /**
+   * Runs a blocking call on the given executor. Cancelling the returned future passes the thread
+   * running the call to the given canceller, while the call is still running on it. Calls that
+   * read Flight streams must not be interrupted once a stream is open, as the stream could then not
+   * drain on close, so they cancel the stream instead.
+   *
+   * @param callable  the blocking call to run.
+   * @param canceller cancels the call running on the given thread. It must not block.
+   * @param executor  the executor to run the call on.
+   * @param <T>       the type of the call's result.
+   * @return a future completed with the call's result or failure.
+   */
+  static <T> CompletableFuture<T> callAsync(Callable<T> callable, Consumer<Thread> canceller, Executor executor) {
+    final CompletableFuture<T> future = new CompletableFuture<>();
+    final Callable<T> tracedCallable = TraceSpan.wrap(callable);
+    final Object lock = new Object();
+    final Thread[] worker = new Thread[1];
+
+    future.whenComplete((result, throwable) -> {
+      if (future.isCancelled()) {
+        synchronized (lock) {
+          if (worker[0] != null) {
+            canceller.accept(worker[0]);
+          }
+        }
+      }
+    });
+
+    try {
+      executor.execute(() -> {
+        synchronized (lock) {
+          if (future.isDone()) {
+            return;
+          }
+          worker[0] = Thread.currentThread();
+        }
+        try {
+          future.complete(tracedCallable.call());
+        } catch (Throwable t) {
+          future.completeExceptionally(t);
+        } finally {
+          synchronized (lock) {
+            worker[0] = null;
+            // Do not leak a cancellation interrupt into the executor's next task.
+            Thread.interrupted();
+          }
+        }
+      });
+    } catch (RuntimeException ex) {
+      future.completeExceptionally(ex);
+    }
+    return future;
+  }
+
+  private static Executor createDefaultExecutor() {
+    try {
+      final Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return (Executor) factory.invoke(null);
+    } catch (ReflectiveOperationException ignored) {
+      // Virtual threads are not available on this JDK.
+    }
+    final AtomicInteger threadCount = new AtomicInteger();
+    return Executors.newCachedThreadPool(runnable -> {
+      final Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+  }
+
+  private static ScheduledExecutorService createScheduler() {
+    final ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+      final Thread thread = new Thread(runnable, SCHEDULER_THREAD_NAME);
+      thread.setDaemon(true);
+      return thread;
+    });
+    // Deadlines are re-armed for every batch, so cancelled ones must not pile up in the queue.
+    scheduler.setRemoveOnCancelPolicy(true);
+    return scheduler;
+  }
+
+  private static final class SchedulerHolder {
+    private static final ScheduledExecutorService INSTANCE = createScheduler();
+  }
+
+  private static final class DefaultExecutorHolder {
+    private static final Executor INSTANCE = createDefaultExecutor();
+  }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.client;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import org.apache.arrow.flight.FlightInfo;
+import org.apache.arrow.flight.HeaderCallOption;
+import org.apache.arrow.memory.BufferAllocator;
+
+import com.adhoc.flight.script.SqlScript;
+
+/**
+ * Runs the statements of a script one after another, planning the next ones while the results of
+ * the current one are streamed.
+ * <p>
+ * Statements are streamed strictly in script order, but the getInfo requests of up to
+ * {@code lookAhead} statements after the current one are issued as soon as it starts, so their
+ * planning overlaps with its data transfer. Only statements that read data are planned ahead, and
+ * only past statements that also read data: a statement following one that creates, changes or
+ * drops a table is planned once that statement has completed, so that it sees its effects. A
+ * look-ahead of zero runs the script sequentially.
+ * <p>
+ * If a statement fails, the statements planned ahead are cancelled and the failure is rethrown.
+ */
+final class PipelinedScript {
+  private final AdhocFlightClient client;
+  private final List<String> statements;
+  private final boolean[] readOnly;
+  private final int lookAhead;
+  private final HeaderCallOption headerCallOption;
+  private final BufferAllocator allocator;
+  private final Executor executor;
+  private final List<CompletableFuture<FlightInfo>> plans = new ArrayList<>();
+  private final AtomicLong planningNanos = new AtomicLong();
+
+  /**
+   * Prepares a script.
+   *
+   * @param client           the client to run the statements with.
+   * @param statements       the statements, in order.
+   * @param lookAhead        how many statements after the current one may be planned ahead.
+   * @param headerCallOption client properties to execute the statements with.
+   * @param allocator        the allocator result batches are transferred into.
+   * @param executor         the executor the getInfo requests run on.
+   */
+  PipelinedScript(AdhocFlightClient client, List<String> statements, int lookAhead,
+      @Nullable HeaderCallOption headerCallOption, BufferAllocator allocator, Executor executor) {
+    if (lookAhead < 0) {
+      throw new IllegalArgumentException("Look-ahead must not be negative: " + lookAhead);
+    }
+    this.client = client;
+    this.statements = new ArrayList<>(statements);
+    this.readOnly = new boolean[statements.size()];
+    for (int i = 0; i < readOnly.length; i++) {
+      readOnly[i] = SqlScript.isReadOnly(statements.get(i));
+    }
+    this.lookAhead = lookAhead;
+    this.headerCallOption = headerCallOption;
+    this.allocator = allocator;
+    this.executor = executor;
+  }
+
+  /**
+   * Runs every statement, handing the results of each to the consumer in script order.
+   *
+   * @param consumer reads the results of each statement.
+   * @return how the statements were planned and streamed.
+   * @throws Exception the failure of the first statement that failed to plan or stream, or of the
+   *                   consumer, once the statements planned ahead are cancelled.
+   */
+  ScriptSummary run(StatementConsumer consumer) throws Exception {
+    final long start = System.nanoTime();
+    int plannedAhead = 0;
+    long waitNanos = 0;
+    int current = 0;
+    try {
+      for (; current < statements.size(); current++) {
+        while (plans.size() < statements.size() && canPlan(plans.size(), current)) {
+          if (plans.size() > current) {
+            plannedAhead++;
+          }
+          plans.add(plan(statements.get(plans.size())));
+        }
+        final long waitStart = System.nanoTime();
+        final FlightInfo flightInfo = await(plans.get(current));
+        waitNanos += System.nanoTime() - waitStart;
+        try (final FlightBatchIterator results =
+                 new FlightBatchIterator(client, flightInfo, headerCallOption, allocator, false)) {
+          consumer.accept(current, statements.get(current), results);
+        }
+      }
+    } catch (Exception ex) {
+      cancelPlanned(current + 1, ex);
+      throw ex;
+    }
+    return new ScriptSummary(statements.size(), plannedAhead, planningNanos.get() / 1_000_000,
+        waitNanos / 1_000_000, (System.nanoTime() - start) / 1_000_000);
+  }
+
+  /**
+   * Tells whether a statement may be planned while the given one is the current statement.
+   */
+  private boolean canPlan(int statement, int current) {
+    if (statement == current) {
+      return true;
+    }
+    if (statement > current + lookAhead) {
+      return false;
+    }
+    for (int i = current; i <= statement; i++) {
+      if (!readOnly[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private CompletableFuture<FlightInfo> plan(String statement) {
+    return FlightExecutors.callAsync(() -> {
+      final long start = System.nanoTime();
+      try {
+        return client.plan(statement, headerCallOption);
+      } finally {
+        planningNanos.addAndGet(System.nanoTime() - start);
+      }
+    }, executor);
+  }
+
+  private static FlightInfo await(CompletableFuture<FlightInfo> plan) throws Exception {
+    try {
+      return plan.get();
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof Exception) {
+        throw (Exception) ex.getCause();
+      }
+      throw ex;
+    }
+  }
+
+  /**
+   * Cancels the getInfo requests still running from the given statement on, and the queries that
+   * were already planned but will not be streamed.
+   */
+  private void cancelPlanned(int from, Exception failure) {
+    for (int i = from; i < plans.size(); i++) {
+      final CompletableFuture<FlightInfo> plan = plans.get(i);
+      if (plan.cancel(true) || plan.isCompletedExceptionally()) {
+        continue;
+      }
+      try {
+        client.cancelFlightInfo(plan.join());
+      } catch (RuntimeException suppressed) {
+        failure.addSuppressed(suppressed);
+      }
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.client;
+
+/**
+ * Options of a bulk DoPut by {@link AdhocFlightClient#put}.
+ * <ul>
+ *   <li>streams: the number of concurrent DoPut streams the batches are spread over.</li>
+ *   <li>readers: the number of files read in parallel.</li>
+ *   <li>maxUnacknowledged: the number of batches a stream may send before the server acknowledges
+ *       them with a {@code PutResult}, or zero to only wait for the transport to accept more data.
+ *       Set it when the server acknowledges every batch, so a slow server is not flooded.</li>
+ * </ul>
+ */
+public final class PutOptions {
+  private static final PutOptions DEFAULTS = builder().build();
+
+  private final int streams;
+  private final int readers;
+  private final int maxUnacknowledged;
+
+  private PutOptions(Builder builder) {
+    this.streams = builder.streams;
+    this.readers = builder.readers;
+    this.maxUnacknowledged = builder.maxUnacknowledged;
+  }
+
+  /**
+   * Gets the default options: 4 streams, 2 readers and no acknowledgement window.
+   *
+   * @return the default options.
+   */
+  public static PutOptions defaults() {
+    return DEFAULTS;
+  }
+
+  /**
+   * Creates a builder starting from the default options.
+   *
+   * @return a new builder.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public int getStreams() {
+    return streams;
+  }
+
+  public int getReaders() {
+    return readers;
+  }
+
+  public int getMaxUnacknowledged() {
+    return maxUnacknowledged;
+  }
+
+  /**
+   * Builder of {@link PutOptions}.
+   */
+  public static final class Builder {
+    private int streams = 4;
+    private int readers = 2;
+    private int maxUnacknowledged;
+
+    private Builder() {
+    }
+
+    public Builder streams(int streams) {
+      this.streams = atLeast(1, streams, "Streams");
+      return this;
+    }
+
+    public Builder readers(int readers) {
+      this.readers = atLeast(1, readers, "Readers");
+      return this;
+    }
+
+    public Builder maxUnacknowledged(int maxUnacknowledged) {
+      this.maxUnacknowledged = atLeast(0, maxUnacknowledged, "Max unacknowledged batches");
+      return this;
+    }
+
+    public PutOptions build() {
+      return new PutOptions(this);
+    }
+
+    private static int atLeast(int min, int value, String name) {
+      if (value < min) {
+        throw new IllegalArgumentException(name + " must be at least " + min + ": " + value);
+      }
+      return value;
+    }
+  }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.client;
+
+/**
+ * What a bulk DoPut by {@link AdhocFlightClient#put} sent.
+ */
+public final class PutSummary {
+  private final int files;
+  private final long batches;
+  private final long rows;
+  private final long acknowledgements;
+  private final int peakUnacknowledged;
+  private final long elapsedMillis;
+
+  PutSummary(int files, long batches, long rows, long acknowledgements, int peakUnacknowledged,
+      long elapsedMillis) {
+    this.files = files;
+    this.batches = batches;
+    this.rows = rows;
+    this.acknowledgements = acknowledgements;
+    this.peakUnacknowledged = peakUnacknowledged;
+    this.elapsedMillis = elapsedMillis;
+  }
+
+  public int getFiles() {
+    return files;
+  }
+
+  public long getBatches() {
+    return batches;
+  }
+
+  public long getRows() {
+    return rows;
+  }
+
+  /**
+   * Gets the number of {@code PutResult}s the server sent back over all streams.
+   *
+   * @return the number of acknowledgements.
+   */
+  public long getAcknowledgements() {
+    return acknowledgements;
+  }
+
+  /**
+   * Gets the largest number of batches a stream had sent without acknowledgement.
+   *
+   * @return the peak number of unacknowledged batches.
+   */
+  public int getPeakUnacknowledged() {
+    return peakUnacknowledged;
+  }
+
+  public long getElapsedMillis() {
+    return elapsedMillis;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Put %d rows in %d batches from %d files in %d ms (%d acknowledgements).",
+        rows, batches, files, elapsedMillis, acknowledgements);
+  }
+}
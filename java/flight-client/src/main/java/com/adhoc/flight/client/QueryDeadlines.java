@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.client;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.apache.arrow.flight.CallOption;
+import org.apache.arrow.flight.CallOptions;
+
+/**
+ * Per-phase deadlines of the Flight requests made by an {@link AdhocFlightClient}. A deadline of
+ * zero, the default, means the phase may take as long as the server needs.
+ * <ul>
+ *   <li>handshake: the authentication handshake.</li>
+ *   <li>getInfo: each planning request, that is getInfo, getSchema and the session requests.</li>
+ *   <li>firstBatch: from opening a stream to receiving its first batch.</li>
+ *   <li>idle: the gap between two batches of a stream, not counting the time spent consuming them.</li>
+ *   <li>total: a whole query, from getInfo to the end of the last stream.</li>
+ * </ul>
+ * When a deadline expires, the call fails with a {@code TIMED_OUT} status and the server is told to
+ * stop the call.
+ */
+public final class QueryDeadlines {
+  private static final QueryDeadlines NONE = builder().build();
+
+  private final long handshakeMillis;
+  private final long getInfoMillis;
+  private final long firstBatchMillis;
+  private final long idleMillis;
+  private final long totalMillis;
+
+  private QueryDeadlines(Builder builder) {
+    this.handshakeMillis = builder.handshakeMillis;
+    this.getInfoMillis = builder.getInfoMillis;
+    this.firstBatchMillis = builder.firstBatchMillis;
+    this.idleMillis = builder.idleMillis;
+    this.totalMillis = builder.totalMillis;
+  }
+
+  /**
+   * Gets deadlines that never expire.
+   *
+   * @return deadlines with every phase unbounded.
+   */
+  public static QueryDeadlines none() {
+    return NONE;
+  }
+
+  /**
+   * Creates a builder with every phase unbounded.
+   *
+   * @return a new builder.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public long getHandshakeMillis() {
+    return handshakeMillis;
+  }
+
+  public long getGetInfoMillis() {
+    return getInfoMillis;
+  }
+
+  public long getFirstBatchMillis() {
+    return firstBatchMillis;
+  }
+
+  public long getIdleMillis() {
+    return idleMillis;
+  }
+
+  public long getTotalMillis() {
+    return totalMillis;
+  }
+
+  /**
+   * Gets the call option bounding a call to the given number of milliseconds.
+   *
+   * @param millis the deadline of the call, or zero for none.
+   * @return the timeout call option, or null if the call is unbounded.
+   */
+  @Nullable
+  static CallOption timeout(long millis) {
+    return millis > 0 ? CallOptions.timeout(millis, TimeUnit.MILLISECONDS) : null;
+  }
+
+  /**
+   * Gets the shorter of two deadlines, where zero means unbounded.
+   */
+  static long earliest(long millis, long otherMillis) {
+    if (millis <= 0) {
+      return otherMillis;
+    }
+    return otherMillis <= 0 ? millis : Math.min(millis, otherMillis);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("QueryDeadlines{handshake=%dms, getInfo=%dms, firstBatch=%dms, idle=%dms, total=%dms}",
+        handshakeMillis, getInfoMillis, firstBatchMillis, idleMillis, totalMillis);
+  }
+
+  /**
+   * Builder of {@link QueryDeadlines}.
+   */
+  public static final class Builder {
+    private long handshakeMillis;
+    private long getInfoMillis;
+    private long firstBatchMillis;
+    private long idleMillis;
+    private long totalMillis;
+
+    private Builder() {
+    }
+
+    public Builder handshake(Duration deadline) {
+      this.handshakeMillis = toMillis(deadline);
+      return this;
+    }
+
+    public Builder getInfo(Duration deadline) {
+      this.getInfoMillis = toMillis(deadline);
+      return this;
+    }
+
+    public Builder firstBatch(Duration deadline) {
+      this.firstBatchMillis = toMillis(deadline);
+      return this;
+    }
+
+    public Builder idle(Duration deadline) {
+      this.idleMillis = toMillis(deadline);
+      return this;
+    }
+
+    public Builder total(Duration deadline) {
+      this.totalMillis = toMillis(deadline);
+      return this;
+    }
+
+    public QueryDeadlines build() {
+      return new QueryDeadlines(this);
+    }
+
+    private static long toMillis(Duration deadline) {
+      if (deadline.isNegative()) {
+        throw new IllegalArgumentException("Deadline must not be negative: " + deadline);
+      }
+      return deadline.toMillis();
+    }
+  }
+}
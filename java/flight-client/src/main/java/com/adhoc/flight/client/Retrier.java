@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.client;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import org.apache.arrow.flight.CallStatus;
+import org.apache.arrow.flight.FlightRuntimeException;
+
+/**
+ * Applies a {@link RetryPolicy} on behalf of one client, holding the state the policy needs across
+ * requests: the retry budget and the recent getInfo latencies that hedging is based on.
+ */
+final class Retrier {
+  static final int LATENCY_SAMPLES = 128;
+  static final int MIN_HEDGE_SAMPLES = 20;
+
+  private final RetryPolicy policy;
+  private final long[] latencies = new long[LATENCY_SAMPLES];
+  private int latencyCount;
+  private int nextLatency;
+  private double budgetTokens;
+
+  Retrier(RetryPolicy policy) {
+    this.policy = policy;
+    this.budgetTokens = policy.getBudgetMaxTokens();
+  }
+
+  RetryPolicy getPolicy() {
+    return policy;
+  }
+
+  /**
+   * Makes a request, retrying it as the policy allows.
+   *
+   * @param request the idempotent request to make.
+   * @param <T>     the type of the request's result.
+   * @return the result of the first successful attempt.
+   * @throws FlightRuntimeException the failure of the last attempt.
+   */
+  <T> T call(Supplier<T> request) {
+    for (int attempt = 1; ; attempt++) {
+      try {
+        final T result = request.get();
+        recordSuccess();
+        return result;
+      } catch (FlightRuntimeException ex) {
+        if (!shouldRetry(ex, attempt)) {
+          throw ex;
+        }
+        backoff(attempt);
+      }
+    }
+  }
+
+  /**
+   * Decides whether a failed attempt is retried, spending a budget token if the failure is
+   * retryable.
+   *
+   * @param ex      the failure of the attempt.
+   * @param attempt the number of the failed attempt, starting at 1.
+   * @return whether to retry.
+   */
+  boolean shouldRetry(FlightRuntimeException ex, int attempt) {
+    if (!policy.getRetryableCodes().contains(ex.status().code())) {
+      return false;
+    }
+    synchronized (this) {
+      budgetTokens = Math.max(0, budgetTokens - 1);
+      return attempt < policy.getMaxAttempts() && budgetTokens > policy.getBudgetMaxTokens() / 2.0;
+    }
+  }
+
+  synchronized void recordSuccess() {
+    budgetTokens = Math.min(policy.getBudgetMaxTokens(), budgetTokens + policy.getBudgetTokenRatio());
+  }
+
+  /**
+   * Sleeps before the next attempt, for a random time up to the backoff of the failed attempt.
+   *
+   * @throws FlightRuntimeException with a {@code CANCELLED} status if the thread is interrupted.
+   */
+  void backoff(int attempt) {
+    final double backoff = policy.getInitialBackoffMillis() * Math.pow(policy.getBackoffMultiplier(), attempt - 1);
+    final long maxSleep = (long) Math.min(policy.getMaxBackoffMillis(), backoff);
+    try {
+      Thread.sleep(ThreadLocalRandom.current().nextLong(maxSleep + 1));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw CallStatus.CANCELLED.withDescription("Interrupted while backing off.").withCause(e).toRuntimeException();
+    }
+  }
+
+  /**
+   * Makes a getInfo request, hedged if the policy enables hedging and enough latencies have been
+   * recorded to estimate their 95th percentile.
+   *
+   * @param request the idempotent request to make.
+   * @param <T>     the type of the request's result.
+   * @return the result of the first request to succeed.
+   */
+  <T> T hedge(Callable<T> request) {
+    final long startNanos = System.nanoTime();
+    final long hedgeDelay = hedgeDelayMillis();
+    final T result;
+    if (hedgeDelay < 0) {
+      result = callUnchecked(request);
+    } else {
+      result = hedge(request, hedgeDelay);
+    }
+    recordLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+    return result;
+  }
+
+  private <T> T hedge(Callable<T> request, long hedgeDelay) {
+    final CompletableFuture<T> primary = FlightExecutors.callAsync(request, FlightExecutors.defaultExecutor());
+    CompletableFuture<T> secondary = null;
+    try {
+      try {
+        return primary.get(hedgeDelay, TimeUnit.MILLISECONDS);
+      } catch (TimeoutException e) {
+        secondary = FlightExecutors.callAsync(request, FlightExecutors.defaultExecutor());
+      }
+      return firstSuccessful(primary, secondary).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw CallStatus.CANCELLED.withDescription("Interrupted while waiting for getInfo.").withCause(e)
+          .toRuntimeException();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw CallStatus.INTERNAL.withCause(e.getCause()).toRuntimeException();
+    } finally {
+      // Cancelling the loser cancels its gRPC call.
+      primary.cancel(true);
+      if (secondary != null) {
+        secondary.cancel(true);
+      }
+    }
+  }
+
+  private static <T> CompletableFuture<T> firstSuccessful(CompletableFuture<T> first, CompletableFuture<T> second) {
+    final CompletableFuture<T> result = new CompletableFuture<>();
+    final AtomicInteger failures = new AtomicInteger();
+    for (final CompletableFuture<T> future : Arrays.asList(first, second)) {
+      future.whenComplete((value, throwable) -> {
+        if (throwable == null) {
+          result.complete(value);
+        } else if (failures.incrementAndGet() == 2) {
+          result.completeExceptionally(throwable);
+        }
+      });
+    }
+    return result;
+  }
+
+  private static <T> T callUnchecked(Callable<T> request) {
+    try {
+      return request.call();
+    } catch (RuntimeException ex) {
+      throw ex;
+    } catch (Exception ex) {
+      throw CallStatus.INTERNAL.withCause(ex).toRuntimeException();
+    }
+  }
+
+  /**
+   * Gets the delay after which a getInfo request is hedged.
+   *
+   * @return the delay in milliseconds, or -1 if the request is not hedged.
+   */
+  synchronized long hedgeDelayMillis() {
+    if (!policy.isHedgeGetInfo() || latencyCount < MIN_HEDGE_SAMPLES) {
+      return -1;
+    }
+    final long[] sorted = Arrays.copyOf(latencies, latencyCount);
+    Arrays.sort(sorted);
+    final long p95 = sorted[(int) Math.ceil(latencyCount * 0.95) - 1];
+    return Math.max(policy.getMinHedgeDelayMillis(), p95);
+  }
+
+  private synchronized void recordLatency(long millis) {
+    if (policy.isHedgeGetInfo()) {
+      latencies[nextLatency] = millis;
+      nextLatency = (nextLatency + 1) % LATENCY_SAMPLES;
+      latencyCount = Math.min(latencyCount + 1, LATENCY_SAMPLES);
+    }
+  }
+}
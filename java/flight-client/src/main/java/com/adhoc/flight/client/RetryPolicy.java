@@ -0,0 +1,215 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.client;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.apache.arrow.flight.FlightStatusCode;
+
+/**
+ * Retry and hedging policy for the idempotent phases of a query: the handshake, getInfo, getSchema
+ * and re-reading a ticket from its start. By default nothing is retried or hedged.
+ * <p>
+ * Failed attempts are retried with exponential backoff and full jitter, that is after a random delay
+ * between zero and the backoff of the attempt. Retries are throttled by a budget shared by all
+ * requests of a client: each retried failure spends a token, each success earns back
+ * {@code budgetTokenRatio} tokens, and retries stop while fewer than half of
+ * {@code budgetMaxTokens} are left. This keeps a client from multiplying the load on a coordinator
+ * that is already failing.
+ * <p>
+ * With hedging enabled, a getInfo request that is slower than the 95th percentile of recent getInfo
+ * latencies gets a duplicate request, and whichever answers first wins while the other is
+ * cancelled.
+ */
+public final class RetryPolicy {
+  private static final RetryPolicy NONE = builder().build();
+
+  private final int maxAttempts;
+  private final long initialBackoffMillis;
+  private final long maxBackoffMillis;
+  private final double backoffMultiplier;
+  private final Set<FlightStatusCode> retryableCodes;
+  private final int budgetMaxTokens;
+  private final double budgetTokenRatio;
+  private final boolean hedgeGetInfo;
+  private final long minHedgeDelayMillis;
+
+  private RetryPolicy(Builder builder) {
+    this.maxAttempts = builder.maxAttempts;
+    this.initialBackoffMillis = builder.initialBackoffMillis;
+    this.maxBackoffMillis = builder.maxBackoffMillis;
+    this.backoffMultiplier = builder.backoffMultiplier;
+    this.retryableCodes = Collections.unmodifiableSet(EnumSet.copyOf(builder.retryableCodes));
+    this.budgetMaxTokens = builder.budgetMaxTokens;
+    this.budgetTokenRatio = builder.budgetTokenRatio;
+    this.hedgeGetInfo = builder.hedgeGetInfo;
+    this.minHedgeDelayMillis = builder.minHedgeDelayMillis;
+  }
+
+  /**
+   * Gets the policy that neither retries nor hedges.
+   *
+   * @return a policy making a single attempt per request.
+   */
+  public static RetryPolicy none() {
+    return NONE;
+  }
+
+  /**
+   * Creates a builder of a policy that neither retries nor hedges until configured to.
+   *
+   * @return a new builder.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public int getMaxAttempts() {
+    return maxAttempts;
+  }
+
+  public long getInitialBackoffMillis() {
+    return initialBackoffMillis;
+  }
+
+  public long getMaxBackoffMillis() {
+    return maxBackoffMillis;
+  }
+
+  public double getBackoffMultiplier() {
+    return backoffMultiplier;
+  }
+
+  public Set<FlightStatusCode> getRetryableCodes() {
+    return retryableCodes;
+  }
+
+  public int getBudgetMaxTokens() {
+    return budgetMaxTokens;
+  }
+
+  public double getBudgetTokenRatio() {
+    return budgetTokenRatio;
+  }
+
+  public boolean isHedgeGetInfo() {
+    return hedgeGetInfo;
+  }
+
+  public long getMinHedgeDelayMillis() {
+    return minHedgeDelayMillis;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("RetryPolicy{maxAttempts=%d, backoff=%d..%dms x%.1f, retryOn=%s, budget=%d/%.2f, " +
+            "hedgeGetInfo=%b, minHedgeDelay=%dms}",
+        maxAttempts, initialBackoffMillis, maxBackoffMillis, backoffMultiplier, retryableCodes,
+        budgetMaxTokens, budgetTokenRatio, hedgeGetInfo, minHedgeDelayMillis);
+  }
+
+  /**
+   * Builder of {@link RetryPolicy}.
+   */
+  public static final class Builder {
+    private int maxAttempts = 1;
+    private long initialBackoffMillis = 100;
+    private long maxBackoffMillis = 5_000;
+    private double backoffMultiplier = 2;
+    private Set<FlightStatusCode> retryableCodes = EnumSet.of(FlightStatusCode.UNAVAILABLE);
+    private int budgetMaxTokens = 10;
+    private double budgetTokenRatio = 0.1;
+    private boolean hedgeGetInfo = false;
+    private long minHedgeDelayMillis = 50;
+
+    private Builder() {
+    }
+
+    /**
+     * Sets the number of attempts per request, including the first one.
+     */
+    public Builder maxAttempts(int maxAttempts) {
+      if (maxAttempts < 1) {
+        throw new IllegalArgumentException("At least one attempt is required: " + maxAttempts);
+      }
+      this.maxAttempts = maxAttempts;
+      return this;
+    }
+
+    /**
+     * Sets the backoff before the first retry, and the factor it grows by for each further retry up
+     * to the maximum backoff.
+     */
+    public Builder backoff(Duration initial, Duration max, double multiplier) {
+      if (initial.isNegative() || max.compareTo(initial) < 0 || multiplier < 1) {
+        throw new IllegalArgumentException(
+            String.format("Invalid backoff: initial=%s, max=%s, multiplier=%s", initial, max, multiplier));
+      }
+      this.initialBackoffMillis = initial.toMillis();
+      this.maxBackoffMillis = max.toMillis();
+      this.backoffMultiplier = multiplier;
+      return this;
+    }
+
+    /**
+     * Sets the status codes of the failures that are retried. Defaults to {@code UNAVAILABLE}.
+     */
+    public Builder retryOn(FlightStatusCode... codes) {
+      if (codes.length == 0) {
+        throw new IllegalArgumentException("At least one retryable status code is required.");
+      }
+      this.retryableCodes = EnumSet.copyOf(Arrays.asList(codes));
+      return this;
+    }
+
+    /**
+     * Sets the retry budget of the client: the number of tokens it holds, and the fraction of a
+     * token earned back by each successful request.
+     */
+    public Builder budget(int maxTokens, double tokenRatio) {
+      if (maxTokens < 1 || tokenRatio <= 0) {
+        throw new IllegalArgumentException(
+            String.format("Invalid retry budget: maxTokens=%d, tokenRatio=%s", maxTokens, tokenRatio));
+      }
+      this.budgetMaxTokens = maxTokens;
+      this.budgetTokenRatio = tokenRatio;
+      return this;
+    }
+
+    /**
+     * Enables hedged getInfo requests. A duplicate request is sent once the first one has taken longer
+     * than the 95th percentile of recent getInfo latencies, and never sooner than the given delay.
+     */
+    public Builder hedgeGetInfo(Duration minDelay) {
+      if (minDelay.isNegative()) {
+        throw new IllegalArgumentException("Hedge delay must not be negative: " + minDelay);
+      }
+      this.hedgeGetInfo = true;
+      this.minHedgeDelayMillis = minDelay.toMillis();
+      return this;
+    }
+
+    public RetryPolicy build() {
+      return new RetryPolicy(this);
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.client;
+
+/**
+ * How the statements of a script run by {@link AdhocFlightClient#runScript} were planned and
+ * streamed.
+ */
+public final class ScriptSummary {
+  private final int statements;
+  private final int plannedAhead;
+  private final long planningMillis;
+  private final long planningWaitMillis;
+  private final long elapsedMillis;
+
+  ScriptSummary(int statements, int plannedAhead, long planningMillis, long planningWaitMillis,
+      long elapsedMillis) {
+    this.statements = statements;
+    this.plannedAhead = plannedAhead;
+    this.planningMillis = planningMillis;
+    this.planningWaitMillis = planningWaitMillis;
+    this.elapsedMillis = elapsedMillis;
+  }
+
+  public int getStatements() {
+    return statements;
+  }
+
+  /**
+   * Gets the number of statements whose planning started while an earlier statement was still
+   * streaming.
+   *
+   * @return the number of statements planned ahead.
+   */
+  public int getPlannedAhead() {
+    return plannedAhead;
+  }
+
+  /**
+   * Gets the time the getInfo requests of all statements took, including retries.
+   *
+   * @return the total planning time in milliseconds.
+   */
+  public long getPlanningMillis() {
+    return planningMillis;
+  }
+
+  /**
+   * Gets the time the script spent waiting for statements to be planned, which is the part of the
+   * planning time that did not overlap with streaming.
+   *
+   * @return the planning wait in milliseconds.
+   */
+  public long getPlanningWaitMillis() {
+    return planningWaitMillis;
+  }
+
+  public long getElapsedMillis() {
+    return elapsedMillis;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("Ran %d statements in %d ms (%d planned ahead; waited %d of %d ms of planning).",
+        statements, elapsedMillis, plannedAhead, planningWaitMillis, planningMillis);
+  }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.client;
+
+/**
+ * Consumes the results of each statement of a script run by {@link AdhocFlightClient#runScript}.
+ */
+@FunctionalInterface
+public interface StatementConsumer {
+  /**
+   * Reads the results of a statement. The iterator is closed once this method returns, which
+   * cancels the stream if it was not fully read.
+   *
+   * @param index     the position of the statement in the script, from zero.
+   * @param statement the statement.
+   * @param results   the result batches of the statement. The caller owns and must close each batch.
+   * @throws Exception to stop the script, which cancels the statements planned ahead.
+   */
+  void accept(int index, String statement, FlightBatchIterator results) throws Exception;
+}
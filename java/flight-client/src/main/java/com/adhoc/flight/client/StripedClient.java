@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.client;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.arrow.flight.CallHeaders;
+import org.apache.arrow.flight.CallInfo;
+import org.apache.arrow.flight.CallStatus;
+import org.apache.arrow.flight.FlightClient;
+import org.apache.arrow.flight.FlightClientMiddleware;
+import org.apache.arrow.flight.Location;
+import org.apache.arrow.util.AutoCloseables;
+
+/**
+ * One or more {@link FlightClient}s connected to the same server, each over its own HTTP/2
+ * connection, so parallel streams are not bound to a single TCP connection and Netty event loop.
+ * <p>
+ * The first client is the primary; the handshake and the other unary requests go through it.
+ * Streams are spread over all clients by the {@link StripingPolicy}. The clients share their
+ * middlewares, so the credentials obtained by the handshake on the primary are sent on every
+ * connection. Owns and closes the clients.
+ */
+final class StripedClient implements AutoCloseable {
+  private final List<FlightClient> clients;
+  private final List<CallCounter> counters;
+  private final StripingPolicy policy;
+  private final AtomicInteger next = new AtomicInteger();
+
+  private StripedClient(List<FlightClient> clients, List<CallCounter> counters, StripingPolicy policy) {
+    this.clients = clients;
+    this.counters = counters;
+    this.policy = policy;
+  }
+
+  /**
+   * Wraps a single client.
+   */
+  static StripedClient of(FlightClient client) {
+    return new StripedClient(Collections.singletonList(client), Collections.emptyList(),
+        StripingPolicy.ROUND_ROBIN);
+  }
+
+  /**
+   * Opens the given number of connections to the location.
+   *
+   * @param connector the connector opening each connection.
+   * @param location  the location of the server.
+   * @param stripes   the number of connections.
+   * @param policy    how streams are spread over the connections.
+   * @return the striped client, to be closed by the caller.
+   */
+  static StripedClient connect(FlightConnector connector, Location location, int stripes, StripingPolicy policy) {
+    if (stripes == 1) {
+      return of(connector.connect(location));
+    }
+    final List<FlightClient> clients = new ArrayList<>(stripes);
+    final List<CallCounter> counters = new ArrayList<>(stripes);
+    for (int i = 0; i < stripes; i++) {
+      final CallCounter counter = new CallCounter();
+      counters.add(counter);
+      clients.add(connector.connect(location, counter));
+    }
+    return new StripedClient(clients, counters, policy);
+  }
+
+  /**
+   * Gets the client for the handshake and unary requests.
+   */
+  FlightClient primary() {
+    return clients.get(0);
+  }
+
+  /**
+   * Gets the client to open the next stream on.
+   */
+  FlightClient pick() {
+    final int size = clients.size();
+    if (size == 1) {
+      return clients.get(0);
+    }
+    final int start = Math.floorMod(next.getAndIncrement(), size);
+    if (policy == StripingPolicy.ROUND_ROBIN) {
+      return clients.get(start);
+    }
+    // Ties go to the connections after the last pick, so idle connections are used in turn.
+    int best = start;
+    for (int i = 1; i < size; i++) {
+      final int candidate = (start + i) % size;
+      if (counters.get(candidate).calls.get() < counters.get(best).calls.get()) {
+        best = candidate;
+      }
+    }
+    return clients.get(best);
+  }
+
+  /**
+   * Gets the number of connections.
+   */
+  int size() {
+    return clients.size();
+  }
+
+  /**
+   * Gets the number of calls in flight on each connection, or an empty list when there is a single
+   * connection.
+   */
+  List<Integer> callsInFlight() {
+    final List<Integer> calls = new ArrayList<>(counters.size());
+    for (CallCounter counter : counters) {
+      calls.add(counter.calls.get());
+    }
+    return calls;
+  }
+
+  @Override
+  public void close() throws Exception {
+    AutoCloseables.close(clients);
+  }
+
+  /**
+   * Middleware counting the calls in flight on one connection.
+   */
+  private static final class CallCounter implements FlightClientMiddleware.Factory {
+    private final AtomicInteger calls = new AtomicInteger();
+
+    @Override
+    public FlightClientMiddleware onCallStarted(CallInfo info) {
+      calls.incrementAndGet();
+      // A cancelled call may be reported completed more than once.
+      final AtomicBoolean completed = new AtomicBoolean();
+      return new FlightClientMiddleware() {
+        @Override
+        public void onBeforeSendingHeaders(CallHeaders outgoingHeaders) {
+        }
+
+        @Override
+        public void onHeadersReceived(CallHeaders incomingHeaders) {
+        }
+
+        @Override
+        public void onCallCompleted(CallStatus status) {
+          if (completed.compareAndSet(false, true)) {
+            calls.decrementAndGet();
+          }
+        }
+      };
+    }
+  }
+}
@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.client;
+
+/**
+ * How an {@link AdhocFlightClient} with several connections to a server picks the connection of
+ * each stream.
+ */
+public enum StripingPolicy {
+  /**
+   * Each stream goes to the next connection in turn.
+   */
+  ROUND_ROBIN,
+
+  /**
+   * Each stream goes to the connection with the fewest calls in flight.
+   */
+  LEAST_LOADED
+}
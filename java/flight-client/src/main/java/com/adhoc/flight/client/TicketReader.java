@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.client;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import javax.annotation.Nullable;
+
+import org.apache.arrow.flight.CallStatus;
+import org.apache.arrow.flight.FlightRuntimeException;
+import org.apache.arrow.flight.FlightStream;
+
+/**
+ * Reads the batches of one ticket, enforcing the first batch and idle deadlines of its stream and
+ * re-reading the ticket from its start after a retryable failure.
+ * <p>
+ * Each wait for a batch arms a timer on {@link FlightExecutors#scheduler()}; if it fires before the
+ * batch arrives, the stream is cancelled, which releases the blocked reader and tells the server to
+ * stop sending. When the stream fails with a status the {@link RetryPolicy} retries, the ticket is
+ * read again and the batches already returned are skipped, which relies on the server returning the
+ * same batches for the same ticket.
+ */
+final class TicketReader implements AutoCloseable {
+  private final Supplier<FlightStream> opener;
+  private final long firstBatchMillis;
+  private final long idleMillis;
+  private final Retrier retrier;
+  private volatile FlightStream stream;
+  private volatile boolean cancelled;
+  private volatile String expiredPhase;
+  private boolean receivedBatch;
+  private long batchesRead;
+
+  /**
+   * Creates a reader of an open stream that is not re-read on failure.
+   */
+  TicketReader(FlightStream stream, long firstBatchMillis, long idleMillis) {
+    this.opener = null;
+    this.firstBatchMillis = firstBatchMillis;
+    this.idleMillis = idleMillis;
+    this.retrier = null;
+    this.stream = stream;
+  }
+
+  /**
+   * Creates a reader that opens the stream of the ticket with the given request, and opens it again
+   * whenever the retrier allows a failed read to be retried.
+   */
+  TicketReader(Supplier<FlightStream> opener, long firstBatchMillis, long idleMillis, Retrier retrier) {
+    this.opener = opener;
+    this.firstBatchMillis = firstBatchMillis;
+    this.idleMillis = idleMillis;
+    this.retrier = retrier;
+    this.stream = retrier.call(opener);
+  }
+
+  /**
+   * Gets the stream currently being read. It changes when the ticket is re-read.
+   */
+  FlightStream stream() {
+    return stream;
+  }
+
+  /**
+   * Waits for the next batch of the ticket within the deadline of the current phase.
+   *
+   * @return whether a batch was received, as {@link FlightStream#next()}.
+   * @throws FlightRuntimeException with a {@code TIMED_OUT} status if the deadline expired, or the
+   *                                failure of the stream if it cannot be retried.
+   */
+  boolean next() {
+    for (int attempt = 1; ; attempt++) {
+      try {
+        final boolean hasNext = nextWithinDeadline();
+        if (hasNext) {
+          batchesRead++;
+        }
+        return hasNext;
+      } catch (FlightRuntimeException ex) {
+        if (expiredPhase != null || cancelled || !canRetry(ex, attempt)) {
+          throw ex;
+        }
+        retrier.backoff(attempt);
+        reopen();
+      }
+    }
+  }
+
+  private boolean canRetry(FlightRuntimeException ex, int attempt) {
+    return opener != null && retrier.shouldRetry(ex, attempt);
+  }
+
+  private boolean nextWithinDeadline() {
+    final String phase = receivedBatch ? "idle" : "firstBatch";
+    final long millis = receivedBatch ? idleMillis : firstBatchMillis;
+    final FlightStream current = stream;
+    final ScheduledFuture<?> timer = millis <= 0 ? null
+        : FlightExecutors.scheduler().schedule(() -> expire(current, phase), millis, TimeUnit.MILLISECONDS);
+    try {
+      final boolean hasNext = current.next();
+      receivedBatch = true;
+      return hasNext;
+    } catch (FlightRuntimeException ex) {
+      if (expiredPhase == null) {
+        throw ex;
+      }
+      throw CallStatus.TIMED_OUT
+          .withDescription(String.format("No batch received within the %s deadline of %d ms.", phase, millis))
+          .withCause(ex)
+          .toRuntimeException();
+    } finally {
+      if (timer != null) {
+        timer.cancel(false);
+      }
+    }
+  }
+
+  /**
+   * Opens the ticket again and skips the batches that were already returned.
+   */
+  private void reopen() {
+    closeQuietly(stream);
+    stream = opener.get();
+    if (cancelled) {
+      stream.cancel("Cancelled by client.", null);
+    }
+    receivedBatch = false;
+    for (long skipped = 0; skipped < batchesRead; skipped++) {
+      if (!nextWithinDeadline()) {
+        throw CallStatus.INTERNAL
+            .withDescription(String.format("Re-reading the ticket returned %d batches, %d were already read.",
+                skipped, batchesRead))
+            .toRuntimeException();
+      }
+    }
+  }
+
+  private void expire(FlightStream expired, String phase) {
+    expiredPhase = phase;
+    expired.cancel("Deadline exceeded: " + phase, null);
+  }
+
+  /**
+   * Cancels the stream being read. The reader fails with a {@code CANCELLED} status and does not
+   * re-read the ticket.
+   *
+   * @param message the reason for the cancellation.
+   */
+  void cancel(String message) {
+    cancelled = true;
+    stream.cancel(message, null);
+  }
+
+  private static void closeQuietly(@Nullable FlightStream failed) {
+    try {
+      if (failed != null) {
+        failed.close();
+      }
+    } catch (Exception ignored) {
+      // The stream already failed; closing it only releases its buffers.
+    }
+  }
+
+  @Override
+  public void close() throws Exception {
+    stream.close();
+  }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.client;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+
+import javax.annotation.Nullable;
+import javax.net.ssl.SSLException;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import io.grpc.netty.GrpcSslContexts;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.ssl.SslProvider;
+import io.netty.handler.ssl.util.InsecureTrustManagerFactory;
+
+/**
+ * Client TLS contexts shared by every connection with the same provider and trust settings.
+ * <p>
+ * A TLS context holds the cache of the sessions it negotiated, keyed by server host and port. A
+ * connection opened with the context of an earlier connection to the same server resumes that
+ * session, with an abbreviated handshake that skips the certificate exchange and verification,
+ * instead of running a full one. Building a context also parses the trusted certificates and, for
+ * OpenSSL, allocates a native context, which is paid once instead of per connection.
+ */
+final class TlsContexts {
+  private static final int CACHE_SIZE = 16;
+  private static final Cache<ContextKey, SslContext> CONTEXTS = CacheBuilder.newBuilder()
+      .maximumSize(CACHE_SIZE)
+      .build();
+
+  private TlsContexts() {
+  }
+
+  /**
+   * Gets the shared client TLS context for the given settings, building it on first use.
+   *
+   * @param provider            the TLS implementation.
+   * @param verifyServer        whether to verify the certificates of the servers.
+   * @param trustedCertificates the PEM certificates to trust, or null for the system trust store.
+   * @return the shared context.
+   */
+  static SslContext forClient(TlsProvider provider, boolean verifyServer, @Nullable byte[] trustedCertificates) {
+    final ContextKey key = new ContextKey(provider, verifyServer, verifyServer ? trustedCertificates : null);
+    try {
+      return CONTEXTS.get(key, () -> build(key));
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    } catch (UncheckedExecutionException e) {
+      throw (RuntimeException) e.getCause();
+    }
+  }
+
+  /**
+   * Builds a new client TLS context, which does not share sessions with any other.
+   *
+   * @param provider            the TLS implementation.
+   * @param verifyServer        whether to verify the certificates of the servers.
+   * @param trustedCertificates the PEM certificates to trust, or null for the system trust store.
+   * @return a new context.
+   */
+  static SslContext newClientContext(TlsProvider provider, boolean verifyServer,
+      @Nullable byte[] trustedCertificates) {
+    try {
+      return build(new ContextKey(provider, verifyServer, verifyServer ? trustedCertificates : null));
+    } catch (SSLException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static SslContext build(ContextKey key) throws SSLException {
+    final SslContextBuilder sslContext;
+    switch (key.provider) {
+      case JDK:
+        sslContext = GrpcSslContexts.configure(SslContextBuilder.forClient(), SslProvider.JDK);
+        break;
+      case OPENSSL:
+        if (!OpenSsl.isAvailable()) {
+          throw new IllegalStateException("OpenSSL is not available, netty-tcnative could not be loaded.",
+              OpenSsl.unavailabilityCause());
+        }
+        sslContext = GrpcSslContexts.configure(SslContextBuilder.forClient(), SslProvider.OPENSSL);
+        break;
+      default:
+        sslContext = GrpcSslContexts.forClient();
+        break;
+    }
+    if (!key.verifyServer) {
+      sslContext.trustManager(InsecureTrustManagerFactory.INSTANCE);
+    } else if (key.trustedCertificates != null) {
+      sslContext.trustManager(new ByteArrayInputStream(key.trustedCertificates));
+    }
+    return sslContext.build();
+  }
+
+  /**
+   * Identifies the settings a TLS context is built from.
+   */
+  private static final class ContextKey {
+    private final TlsProvider provider;
+    private final boolean verifyServer;
+    private final byte[] trustedCertificates;
+
+    ContextKey(TlsProvider provider, boolean verifyServer, @Nullable byte[] trustedCertificates) {
+      this.provider = provider;
+      this.verifyServer = verifyServer;
+      this.trustedCertificates = trustedCertificates;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (this == other) {
+        return true;
+      }
+      if (!(other instanceof ContextKey)) {
+        return false;
+      }
+      final ContextKey that = (ContextKey) other;
+      return provider == that.provider && verifyServer == that.verifyServer &&
+          Arrays.equals(trustedCertificates, that.trustedCertificates);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(provider, verifyServer) * 31 + Arrays.hashCode(trustedCertificates);
+    }
+  }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.client;
+
+/**
+ * The TLS implementation of the encrypted connections of an {@link AdhocFlightClient}.
+ */
+public enum TlsProvider {
+  /**
+   * OpenSSL through netty-tcnative when it is available on the platform, the JDK otherwise, as
+   * chosen by gRPC.
+   */
+  DEFAULT,
+
+  /**
+   * The TLS implementation of the JDK.
+   */
+  JDK,
+
+  /**
+   * OpenSSL through netty-tcnative. Connecting fails if netty-tcnative is not available.
+   */
+  OPENSSL
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.client;
+
+import static java.util.Objects.requireNonNull;
+
+import java.time.Duration;
+
+/**
+ * gRPC transport settings of the connections opened by an {@link AdhocFlightClient}. Unset values
+ * keep the defaults of Arrow Flight and gRPC:
+ * <ul>
+ *   <li>maxInboundMessageSize: the largest message, e.g. record batch, the client accepts.
+ *       Unlimited by default.</li>
+ *   <li>flowControlWindow: the HTTP/2 flow-control window of each stream, in bytes. By default gRPC
+ *       starts at 1 MiB and resizes the window from bandwidth-delay probes; setting it fixes the
+ *       window, which on links with a high round-trip time keeps more data in flight from the
+ *       first batch.</li>
+ *   <li>keepAliveTime: the interval of the HTTP/2 pings keeping an idle connection open through
+ *       proxies and load balancers. Disabled by default.</li>
+ *   <li>keepAliveTimeout: how long to wait for a ping to be acknowledged before closing the
+ *       connection. 20 seconds by default.</li>
+ *   <li>keepAliveWithoutCalls: whether pings are also sent while no call is running.</li>
+ *   <li>idleTimeout: how long a connection may go without calls before it is released, to be
+ *       reopened by the next call. 30 minutes by default.</li>
+ *   <li>tlsProvider: the TLS implementation of encrypted connections. By default gRPC picks
+ *       OpenSSL when netty-tcnative is available and the JDK otherwise. Every connection with the
+ *       same provider and trusted certificates shares one TLS context, so reconnecting resumes the
+ *       previous TLS session instead of running a full handshake.</li>
+ * </ul>
+ */
+public final class TransportOptions {
+  private static final TransportOptions DEFAULTS = builder().build();
+
+  private final int maxInboundMessageSize;
+  private final int flowControlWindow;
+  private final long keepAliveTimeMillis;
+  private final long keepAliveTimeoutMillis;
+  private final boolean keepAliveWithoutCalls;
+  private final long idleTimeoutMillis;
+  private final TlsProvider tlsProvider;
+
+  private TransportOptions(Builder builder) {
+    this.maxInboundMessageSize = builder.maxInboundMessageSize;
+    this.flowControlWindow = builder.flowControlWindow;
+    this.keepAliveTimeMillis = builder.keepAliveTimeMillis;
+    this.keepAliveTimeoutMillis = builder.keepAliveTimeoutMillis;
+    this.keepAliveWithoutCalls = builder.keepAliveWithoutCalls;
+    this.idleTimeoutMillis = builder.idleTimeoutMillis;
+    this.tlsProvider = builder.tlsProvider;
+  }
+
+  /**
+   * Gets the default transport settings of Arrow Flight and gRPC.
+   *
+   * @return the default settings.
+   */
+  public static TransportOptions defaults() {
+    return DEFAULTS;
+  }
+
+  /**
+   * Creates a builder starting from the default settings.
+   *
+   * @return a new builder.
+   */
+  public static Builder builder() {
+    return new Builder();
+  }
+
+  public int getMaxInboundMessageSize() {
+    return maxInboundMessageSize;
+  }
+
+  /**
+   * Gets the fixed HTTP/2 flow-control window in bytes.
+   *
+   * @return the window, or zero if gRPC sizes it automatically.
+   */
+  public int getFlowControlWindow() {
+    return flowControlWindow;
+  }
+
+  /**
+   * Gets the keepalive ping interval in milliseconds.
+   *
+   * @return the interval, or zero if no pings are sent.
+   */
+  public long getKeepAliveTimeMillis() {
+    return keepAliveTimeMillis;
+  }
+
+  /**
+   * Gets how long a keepalive ping may go unacknowledged, in milliseconds.
+   *
+   * @return the timeout, or zero for the gRPC default.
+   */
+  public long getKeepAliveTimeoutMillis() {
+    return keepAliveTimeoutMillis;
+  }
+
+  public boolean isKeepAliveWithoutCalls() {
+    return keepAliveWithoutCalls;
+  }
+
+  /**
+   * Gets how long a connection may go without calls before it is released, in milliseconds.
+   *
+   * @return the timeout, or zero for the gRPC default.
+   */
+  public long getIdleTimeoutMillis() {
+    return idleTimeoutMillis;
+  }
+
+  public TlsProvider getTlsProvider() {
+    return tlsProvider;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("TransportOptions{maxInboundMessageSize=%d, flowControlWindow=%d, keepAliveTime=%dms, " +
+            "keepAliveTimeout=%dms, keepAliveWithoutCalls=%b, idleTimeout=%dms, tlsProvider=%s}",
+        maxInboundMessageSize, flowControlWindow, keepAliveTimeMillis, keepAliveTimeoutMillis,
+        keepAliveWithoutCalls, idleTimeoutMillis, tlsProvider);
+  }
+
+  /**
+   * Builder of {@link TransportOptions}.
+   */
+  public static final class Builder {
+    private int maxInboundMessageSize = Integer.MAX_VALUE;
+    private int flowControlWindow;
+    private long keepAliveTimeMillis;
+    private long keepAliveTimeoutMillis;
+    private boolean keepAliveWithoutCalls;
+    private long idleTimeoutMillis;
+    private TlsProvider tlsProvider = TlsProvider.DEFAULT;
+
+    private Builder() {
+    }
+
+    public Builder maxInboundMessageSize(int bytes) {
+      this.maxInboundMessageSize = positive(bytes, "Max inbound message size");
+      return this;
+    }
+
+    public Builder flowControlWindow(int bytes) {
+      this.flowControlWindow = positive(bytes, "Flow-control window");
+      return this;
+    }
+
+    /**
+     * Sends keepalive pings at the given interval, closing the connection if one is not
+     * acknowledged within the timeout. A zero timeout keeps the gRPC default.
+     */
+    public Builder keepAlive(Duration time, Duration timeout, boolean withoutCalls) {
+      this.keepAliveTimeMillis = toMillis(time);
+      this.keepAliveTimeoutMillis = toMillis(timeout);
+      this.keepAliveWithoutCalls = withoutCalls;
+      return this;
+    }
+
+    public Builder idleTimeout(Duration timeout) {
+      this.idleTimeoutMillis = toMillis(timeout);
+      return this;
+    }
+
+    public Builder tlsProvider(TlsProvider provider) {
+      this.tlsProvider = requireNonNull(provider);
+      return this;
+    }
+
+    public TransportOptions build() {
+      return new TransportOptions(this);
+    }
+
+    private static int positive(int bytes, String name) {
+      if (bytes <= 0) {
+        throw new IllegalArgumentException(name + " must be positive: " + bytes);
+      }
+      return bytes;
+    }
+
+    private static long toMillis(Duration duration) {
+      if (duration.isNegative()) {
+        throw new IllegalArgumentException("Duration must not be negative: " + duration);
+      }
+      return duration.toMillis();
+    }
+  }
+}
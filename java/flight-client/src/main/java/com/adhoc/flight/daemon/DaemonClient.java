@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.daemon;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+/**
+ * Thin client of a {@link QueryDaemon}. It only uses JDK classes, so it starts in a fraction of the
+ * time a Flight client needs to load, connect and authenticate.
+ * <p>
+ * Run it with {@code DaemonClient <socket> [query]} to write the results of the query, or of the
+ * query read from standard input, to standard output as an Arrow IPC stream.
+ */
+public final class DaemonClient {
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final int MAX_STATUS_BYTES = 64 * 1024;
+  /**
+   * The end-of-stream marker of the Arrow IPC streaming format: a continuation token and a zero
+   * metadata length.
+   */
+  private static final byte[] END_OF_STREAM = {-1, -1, -1, -1, 0, 0, 0, 0};
+
+  private DaemonClient() {
+    // Prevent instantiation.
+  }
+
+  /**
+   * Runs a query on the daemon listening on the given socket.
+   *
+   * @param socketPath   the socket file of the daemon.
+   * @param query        the SQL query to run.
+   * @param outputStream the stream to copy the results to, as an Arrow IPC stream. It is not closed.
+   * @throws IOException if the daemon cannot be reached, the query fails, or the results end before
+   *                     their end-of-stream marker.
+   */
+  public static void query(Path socketPath, String query, OutputStream outputStream) throws IOException {
+    try (final SocketChannel channel = UnixSockets.connect(socketPath)) {
+      final ByteBuffer request = ByteBuffer.wrap(query.getBytes(StandardCharsets.UTF_8));
+      while (request.hasRemaining()) {
+        channel.write(request);
+      }
+      channel.shutdownOutput();
+
+      final InputStream inputStream = new BufferedInputStream(Channels.newInputStream(channel), BUFFER_SIZE);
+      final String status = readStatus(inputStream);
+      if (!status.equals(QueryDaemon.OK)) {
+        throw new IOException(status.startsWith(QueryDaemon.ERROR + " ") ?
+            status.substring(QueryDaemon.ERROR.length() + 1) : "Unexpected status: " + status);
+      }
+      if (!copy(inputStream, outputStream)) {
+        throw new IOException("Results ended before their end-of-stream marker; the query failed while " +
+            "streaming.");
+      }
+      outputStream.flush();
+    }
+  }
+
+  private static String readStatus(InputStream inputStream) throws IOException {
+    final ByteArrayOutputStream status = new ByteArrayOutputStream();
+    int value;
+    while ((value = inputStream.read()) != '\n') {
+      if (value < 0) {
+        throw new IOException("Daemon closed the connection without a status.");
+      }
+      if (status.size() == MAX_STATUS_BYTES) {
+        throw new IOException("Daemon status is longer than " + MAX_STATUS_BYTES + " bytes.");
+      }
+      status.write(value);
+    }
+    return new String(status.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  /**
+   * Copies the results, keeping their last bytes to check that the stream was ended.
+   *
+   * @return true if the results end with the end-of-stream marker.
+   */
+  private static boolean copy(InputStream inputStream, OutputStream outputStream) throws IOException {
+    final byte[] buffer = new byte[BUFFER_SIZE];
+    final byte[] tail = new byte[END_OF_STREAM.length];
+    int tailLength = 0;
+    int read;
+    while ((read = inputStream.read(buffer)) >= 0) {
+      outputStream.write(buffer, 0, read);
+      if (read >= tail.length) {
+        System.arraycopy(buffer, read - tail.length, tail, 0, tail.length);
+        tailLength = tail.length;
+      } else {
+        final int kept = Math.min(tailLength, tail.length - read);
+        System.arraycopy(tail, tailLength - kept, tail, 0, kept);
+        System.arraycopy(buffer, 0, tail, kept, read);
+        tailLength = kept + read;
+      }
+    }
+    return tailLength == tail.length && Arrays.equals(tail, END_OF_STREAM);
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (args.length == 0) {
+      System.err.println("Usage: DaemonClient <socket> [query]");
+      System.exit(2);
+    }
+    final String query;
+    if (args.length > 1) {
+      query = String.join(" ", Arrays.asList(args).subList(1, args.length));
+    } else {
+      final ByteArrayOutputStream stdin = new ByteArrayOutputStream();
+      final byte[] buffer = new byte[BUFFER_SIZE];
+      int read;
+      while ((read = System.in.read(buffer)) >= 0) {
+        stdin.write(buffer, 0, read);
+      }
+      query = new String(stdin.toByteArray(), StandardCharsets.UTF_8);
+    }
+    final OutputStream outputStream = new BufferedOutputStream(System.out, BUFFER_SIZE);
+    try {
+      query(Paths.get(args[0]), query, outputStream);
+    } catch (IOException ex) {
+      outputStream.flush();
+      System.err.println("[ERROR] " + ex.getMessage());
+      System.exit(1);
+    }
+  }
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.daemon;
+
+import java.io.BufferedOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.Nullable;
+
+import org.apache.arrow.flight.FlightRuntimeException;
+import org.apache.arrow.flight.HeaderCallOption;
+import org.apache.arrow.util.Preconditions;
+
+import com.adhoc.flight.client.AdhocFlightClient;
+import com.google.common.io.ByteStreams;
+
+/**
+ * Serves queries from a Unix domain socket with a client that stays connected and authenticated,
+ * so that each query skips JVM startup and the TLS and authentication handshakes.
+ * <p>
+ * Each connection carries one query:
+ * <ol>
+ *   <li>The client sends the query text in UTF-8 and shuts down its side of the connection.</li>
+ *   <li>The daemon answers with a status line, {@code OK} or {@code ERROR <message>}, ended by a
+ *       newline.</li>
+ *   <li>After {@code OK}, the results follow as an Arrow IPC stream. If the query fails while its
+ *       results are streamed, the connection is closed without the end-of-stream marker.</li>
+ * </ol>
+ * Queries run concurrently on a fixed number of threads; further connections wait for a free one.
+ * The socket file is only accessible to its owner, as every client can query as the authenticated
+ * user. It is bound in a private directory and moved into place once restricted, so it is never
+ * reachable with the permissions of the umask.
+ *
+ * @see DaemonClient
+ */
+public final class QueryDaemon implements AutoCloseable {
+  public static final int DEFAULT_THREADS = 8;
+  public static final int MAX_QUERY_BYTES = 1024 * 1024;
+  public static final String OK = "OK";
+  public static final String ERROR = "ERROR";
+
+  private static final String THREAD_NAME_PREFIX = "adhoc-flight-daemon-";
+  private static final int BUFFER_SIZE = 64 * 1024;
+  private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
+  private static final long ACCEPT_RETRY_MIN_MILLIS = 10;
+  private static final long ACCEPT_RETRY_MAX_MILLIS = 1000;
+  private static final String PRIVATE_DIRECTORY_PREFIX = ".adhoc-flight-";
+  private static final String BOUND_SOCKET_NAME = "s";
+
+  private final Path socketPath;
+  private final ServerSocketChannel serverChannel;
+  private final AdhocFlightClient client;
+  private final @Nullable HeaderCallOption headerCallOption;
+  private final ExecutorService workers;
+  private final Thread acceptor;
+  private final CountDownLatch terminated = new CountDownLatch(1);
+  private final AtomicLong servedQueries = new AtomicLong();
+  private final AtomicLong failedQueries = new AtomicLong();
+  private volatile boolean closed = false;
+
+  private QueryDaemon(Path socketPath, ServerSocketChannel serverChannel, AdhocFlightClient client,
+      @Nullable HeaderCallOption headerCallOption, int threads) {
+    this.socketPath = socketPath;
+    this.serverChannel = serverChannel;
+    this.client = client;
+    this.headerCallOption = headerCallOption;
+    final AtomicInteger threadCount = new AtomicInteger();
+    this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+      final Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.acceptor = new Thread(this::acceptConnections, THREAD_NAME_PREFIX + "accept");
+    this.acceptor.setDaemon(true);
+  }
+
+  /**
+   * Starts serving queries on the given socket. A socket file left behind by a daemon that is no
+   * longer running is replaced.
+   *
+   * @param socketPath       the socket file to listen on.
+   * @param client           the connected client to run the queries with. It is not closed with the
+   *                         daemon.
+   * @param headerCallOption client properties to run every query with, or null.
+   * @param threads          the number of queries to run at the same time.
+   * @return the running daemon.
+   * @throws IOException                   if the socket cannot be bound, or another daemon is
+   *                                       listening on it.
+   * @throws UnsupportedOperationException if the JDK does not support Unix domain sockets.
+   */
+  public static QueryDaemon start(Path socketPath, AdhocFlightClient client,
+      @Nullable HeaderCallOption headerCallOption, int threads) throws IOException {
+    Preconditions.checkArgument(threads > 0, "threads must be positive.");
+    removeStaleSocket(socketPath);
+    final ServerSocketChannel serverChannel = bindPrivately(socketPath);
+    final QueryDaemon daemon = new QueryDaemon(socketPath, serverChannel, client, headerCallOption, threads);
+    daemon.acceptor.start();
+    return daemon;
+  }
+
+  /**
+   * Binds the socket in a new directory that only the owner can enter, restricts the socket file to
+   * the owner and then moves it into place. Binding creates the file with the permissions of the
+   * umask, so binding it at its final path would let other users connect until it is restricted.
+   */
+  private static ServerSocketChannel bindPrivately(Path socketPath) throws IOException {
+    final Path privateDirectory;
+    try {
+      privateDirectory = Files.createTempDirectory(socketPath.toAbsolutePath().getParent(), PRIVATE_DIRECTORY_PREFIX,
+          PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+    } catch (UnsupportedOperationException ex) {
+      // Not a POSIX file system; the socket keeps the permissions of its directory.
+      return UnixSockets.bind(socketPath);
+    }
+    final Path boundPath = privateDirectory.resolve(BOUND_SOCKET_NAME);
+    try {
+      final ServerSocketChannel serverChannel = UnixSockets.bind(boundPath);
+      try {
+        Files.setPosixFilePermissions(boundPath, PosixFilePermissions.fromString("rw-------"));
+        Files.move(boundPath, socketPath, StandardCopyOption.ATOMIC_MOVE);
+        return serverChannel;
+      } catch (IOException | RuntimeException ex) {
+        try {
+          serverChannel.close();
+        } catch (IOException closeEx) {
+          ex.addSuppressed(closeEx);
+        }
+        throw ex;
+      }
+    } finally {
+      Files.deleteIfExists(boundPath);
+      Files.deleteIfExists(privateDirectory);
+    }
+  }
+
+  private static void removeStaleSocket(Path socketPath) throws IOException {
+    if (!Files.exists(socketPath, LinkOption.NOFOLLOW_LINKS)) {
+      return;
+    }
+    if (!Files.readAttributes(socketPath, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).isOther()) {
+      throw new FileAlreadyExistsException(socketPath.toString(), null, "Not a socket.");
+    }
+    boolean listening;
+    try (final SocketChannel ignored = UnixSockets.connect(socketPath)) {
+      listening = true;
+    } catch (IOException ex) {
+      listening = false;
+    }
+    if (listening) {
+      throw new IOException("Another daemon is listening on " + socketPath + ".");
+    }
+    Files.delete(socketPath);
+  }
+
+  public Path getSocketPath() {
+    return socketPath;
+  }
+
+  /**
+   * Gets the number of queries whose results were streamed completely.
+   *
+   * @return the number of served queries.
+   */
+  public long getServedQueries() {
+    return servedQueries.get();
+  }
+
+  /**
+   * Gets the number of queries that failed, including those whose client disconnected early.
+   *
+   * @return the number of failed queries.
+   */
+  public long getFailedQueries() {
+    return failedQueries.get();
+  }
+
+  /**
+   * Blocks until the daemon is closed.
+   *
+   * @throws InterruptedException if the thread is interrupted while waiting.
+   */
+  public void awaitTermination() throws InterruptedException {
+    terminated.await();
+  }
+
+  private void acceptConnections() {
+    long retryMillis = ACCEPT_RETRY_MIN_MILLIS;
+    while (!closed) {
+      final SocketChannel channel;
+      try {
+        channel = serverChannel.accept();
+      } catch (ClosedChannelException ex) {
+        return;
+      } catch (IOException ex) {
+        // Failures such as running out of file descriptors persist until connections are closed, so
+        // retrying at once would only spin.
+        try {
+          Thread.sleep(retryMillis);
+        } catch (InterruptedException interrupted) {
+          return;
+        }
+        retryMillis = Math.min(retryMillis * 2, ACCEPT_RETRY_MAX_MILLIS);
+        continue;
+      }
+      retryMillis = ACCEPT_RETRY_MIN_MILLIS;
+      try {
+        workers.execute(() -> serve(channel));
+      } catch (RejectedExecutionException ex) {
+        closeQuietly(channel);
+      }
+    }
+  }
+
+  /**
+   * Runs the query sent on the given connection and streams its results back.
+   */
+  private void serve(SocketChannel channel) {
+    try (final SocketChannel ignored = channel) {
+      final StatusOutputStream outputStream = new StatusOutputStream(
+          new BufferedOutputStream(Channels.newOutputStream(channel), BUFFER_SIZE));
+      boolean served = false;
+      try {
+        client.streamQuery(readQuery(Channels.newInputStream(channel)), headerCallOption, outputStream);
+        served = true;
+      } catch (Exception ex) {
+        if (!outputStream.started) {
+          outputStream.writeStatus(ERROR + " " + describe(ex));
+        }
+      }
+      outputStream.flush();
+      (served ? servedQueries : failedQueries).incrementAndGet();
+    } catch (IOException ex) {
+      // The client disconnected; there is no one left to report the failure to.
+      failedQueries.incrementAndGet();
+    }
+  }
+
+  /**
+   * Reads the query sent before the client shut down its side of the connection.
+   */
+  private static String readQuery(InputStream inputStream) throws IOException {
+    final byte[] bytes = ByteStreams.toByteArray(ByteStreams.limit(inputStream, MAX_QUERY_BYTES + 1L));
+    Preconditions.checkArgument(bytes.length <= MAX_QUERY_BYTES, "Query is longer than %s bytes.", MAX_QUERY_BYTES);
+    final String query = new String(bytes, StandardCharsets.UTF_8).trim();
+    Preconditions.checkArgument(!query.isEmpty(), "Query is empty.");
+    return query;
+  }
+
+  /**
+   * Describes a failure on a single line.
+   */
+  private static String describe(Exception ex) {
+    final String message;
+    if (ex instanceof FlightRuntimeException) {
+      final FlightRuntimeException flightException = (FlightRuntimeException) ex;
+      message = flightException.status().code() + ": " + flightException.status().description();
+    } else if (ex.getMessage() != null) {
+      message = ex.getMessage();
+    } else {
+      message = ex.getClass().getSimpleName();
+    }
+    return message.replaceAll("\\s+", " ").trim();
+  }
+
+  private static void closeQuietly(SocketChannel channel) {
+    try {
+      channel.close();
+    } catch (IOException ignored) {
+      // Nothing to do.
+    }
+  }
+
+  /**
+   * Stops accepting connections, cancels the running queries and removes the socket file.
+   */
+  @Override
+  public void close() throws Exception {
+    if (closed) {
+      return;
+    }
+    closed = true;
+    try {
+      serverChannel.close();
+      workers.shutdownNow();
+      workers.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+      acceptor.join(TimeUnit.SECONDS.toMillis(SHUTDOWN_TIMEOUT_SECONDS));
+    } finally {
+      Files.deleteIfExists(socketPath);
+      terminated.countDown();
+    }
+  }
+
+  /**
+   * Writes the {@code OK} status line before the first byte of the results.
+   */
+  private static final class StatusOutputStream extends FilterOutputStream {
+    private boolean started = false;
+
+    private StatusOutputStream(OutputStream outputStream) {
+      super(outputStream);
+    }
+
+    private void writeStatus(String status) throws IOException {
+      started = true;
+      out.write((status + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Override
+    public void write(int value) throws IOException {
+      if (!started) {
+        writeStatus(OK);
+      }
+      out.write(value);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      if (!started) {
+        writeStatus(OK);
+      }
+      out.write(bytes, offset, length);
+    }
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.daemon;
+
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+
+/**
+ * Opens Unix domain socket channels. They were added in Java 16, so they are looked up
+ * reflectively and this client still runs on older JDKs, where opening one fails.
+ */
+final class UnixSockets {
+
+  private UnixSockets() {
+    // Prevent instantiation.
+  }
+
+  /**
+   * Opens a server channel bound to the given socket file.
+   *
+   * @param socketPath the socket file to create. It must not exist.
+   * @return the bound channel, in blocking mode.
+   * @throws IOException                   if the socket cannot be bound.
+   * @throws UnsupportedOperationException if the JDK does not support Unix domain sockets.
+   */
+  static ServerSocketChannel bind(Path socketPath) throws IOException {
+    final ServerSocketChannel channel = (ServerSocketChannel) open(ServerSocketChannel.class);
+    try {
+      channel.bind(address(socketPath));
+    } catch (IOException | RuntimeException ex) {
+      channel.close();
+      throw ex;
+    }
+    return channel;
+  }
+
+  /**
+   * Connects to the given socket file.
+   *
+   * @param socketPath the socket file to connect to.
+   * @return the connected channel, in blocking mode.
+   * @throws IOException                   if nothing listens on the socket.
+   * @throws UnsupportedOperationException if the JDK does not support Unix domain sockets.
+   */
+  static SocketChannel connect(Path socketPath) throws IOException {
+    final SocketChannel channel = (SocketChannel) open(SocketChannel.class);
+    try {
+      channel.connect(address(socketPath));
+    } catch (IOException | RuntimeException ex) {
+      channel.close();
+      throw ex;
+    }
+    return channel;
+  }
+
+  private static Object open(Class<?> channelClass) throws IOException {
+    try {
+      final ProtocolFamily unix = StandardProtocolFamily.valueOf("UNIX");
+      return invoke(channelClass.getMethod("open", ProtocolFamily.class), unix);
+    } catch (IllegalArgumentException | ReflectiveOperationException ex) {
+      throw unsupported(ex);
+    }
+  }
+
+  private static SocketAddress address(Path socketPath) throws IOException {
+    try {
+      final Class<?> addressClass = Class.forName("java.net.UnixDomainSocketAddress");
+      return (SocketAddress) invoke(addressClass.getMethod("of", Path.class), socketPath);
+    } catch (ReflectiveOperationException ex) {
+      throw unsupported(ex);
+    }
+  }
+
+  private static Object invoke(Method factory, Object argument) throws IOException, ReflectiveOperationException {
+    try {
+      return factory.invoke(null, argument);
+    } catch (InvocationTargetException ex) {
+      if (ex.getCause() instanceof IOException) {
+        throw (IOException) ex.getCause();
+      }
+      if (ex.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) ex.getCause();
+      }
+      throw ex;
+    }
+  }
+
+  private static UnsupportedOperationException unsupported(Exception cause) {
+    return new UnsupportedOperationException("Unix domain sockets need Java 16 or later.", cause);
+  }
+}
@@ -0,0 +1,187 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.dictionary;
+
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.util.ByteFunctionHelpers;
+import org.apache.arrow.memory.util.hash.SimpleHasher;
+import org.apache.arrow.util.AutoCloseables;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VarCharVector;
+
+/**
+ * Growing dictionary of the distinct values of a string column.
+ * <p>
+ * Both the dictionary values and the hash table that indexes them live off-heap. The table uses open
+ * addressing with linear probing; each slot holds the hash of a value and its dictionary index plus
+ * one, so that zeroed memory means an empty slot. Values are hashed and compared in place in the
+ * Arrow buffers and are never materialized on the heap.
+ * <p>
+ * The dictionary is capped both in number of values and in bytes, so that a column that turns out
+ * to have many more distinct values than its sample neither grows without bound nor overflows the
+ * {@code Int32} index space.
+ */
+final class DictionaryBuilder implements AutoCloseable {
+  private static final int INITIAL_CAPACITY = 1024;
+  private static final int SLOT_WIDTH = 2 * Integer.BYTES;
+
+  static final int FULL = -1;
+
+  private final BufferAllocator allocator;
+  private final VarCharVector dictionary;
+  private final int maxSize;
+  private final long maxBytes;
+  private ArrowBuf table;
+  private int capacity;
+  private int size;
+  private long bytes;
+
+  /**
+   * Create an empty dictionary.
+   *
+   * @param name      the name of the dictionary vector.
+   * @param allocator the allocator of the dictionary and its hash table.
+   * @param maxSize   the maximum number of distinct values.
+   * @param maxBytes  the maximum total length of the distinct values, in bytes.
+   */
+  DictionaryBuilder(String name, BufferAllocator allocator, int maxSize, long maxBytes) {
+    this.allocator = allocator;
+    this.maxSize = maxSize;
+    this.maxBytes = maxBytes;
+    this.dictionary = new VarCharVector(name, allocator);
+    this.table = allocateTable(INITIAL_CAPACITY);
+    this.capacity = INITIAL_CAPACITY;
+  }
+
+  /**
+   * Returns the dictionary vector. Its value count is the number of distinct values added so far.
+   */
+  VarCharVector getDictionary() {
+    if (dictionary.getValueCount() != size) {
+      dictionary.setValueCount(size);
+    }
+    return dictionary;
+  }
+
+  int size() {
+    return size;
+  }
+
+  /**
+   * Encode the rows of a string column as indexes into this dictionary, adding new values to it.
+   *
+   * @param source   the column to encode.
+   * @param indexes  the vector to write the dictionary indexes to. Its previous content is replaced.
+   * @param rowCount the number of rows to encode.
+   * @throws IllegalStateException if a new value does not fit in the dictionary.
+   */
+  void encode(VarCharVector source, IntVector indexes, int rowCount) {
+    indexes.clear();
+    indexes.allocateNew(rowCount);
+    final ArrowBuf data = source.getDataBuffer();
+    for (int row = 0; row < rowCount; row++) {
+      if (source.isNull(row)) {
+        indexes.setNull(row);
+      } else {
+        final int start = source.getStartOffset(row);
+        final int index = add(data, start, source.getEndOffset(row) - start);
+        if (index == FULL) {
+          throw new IllegalStateException(String.format("The dictionary of column %s is full, with %d values " +
+              "of %d bytes in total; write the result without dictionary encoding.",
+              dictionary.getName(), size, bytes));
+        }
+        indexes.set(row, index);
+      }
+    }
+    indexes.setValueCount(rowCount);
+  }
+
+  /**
+   * Add a value to the dictionary unless it is already present.
+   *
+   * @param data   the buffer holding the value.
+   * @param start  the offset of the value in the buffer.
+   * @param length the length of the value in bytes.
+   * @return the dictionary index of the value, or {@link #FULL} if the value is new and adding it
+   *     would exceed the maximum size or bytes of the dictionary.
+   */
+  int add(ArrowBuf data, int start, int length) {
+    final int hash = SimpleHasher.INSTANCE.hashCode(data, start, length);
+    final int mask = capacity - 1;
+    for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+      final long address = (long) slot * SLOT_WIDTH;
+      final int entry = table.getInt(address + Integer.BYTES);
+      if (entry == 0) {
+        if (size == maxSize || bytes + length > maxBytes) {
+          return FULL;
+        }
+        final int index = size++;
+        bytes += length;
+        dictionary.setSafe(index, 1, start, start + length, data);
+        table.setInt(address, hash);
+        table.setInt(address + Integer.BYTES, index + 1);
+        if (size * 2 > capacity) {
+          rehash(capacity * 2);
+        }
+        return index;
+      }
+      if (table.getInt(address) == hash && matches(entry - 1, data, start, length)) {
+        return entry - 1;
+      }
+    }
+  }
+
+  private boolean matches(int index, ArrowBuf data, int start, int length) {
+    final int dictionaryStart = dictionary.getStartOffset(index);
+    final int dictionaryEnd = dictionary.getEndOffset(index);
+    return dictionaryEnd - dictionaryStart == length && ByteFunctionHelpers.equal(
+        data, start, start + length, dictionary.getDataBuffer(), dictionaryStart, dictionaryEnd) == 1;
+  }
+
+  private void rehash(int newCapacity) {
+    final ArrowBuf newTable = allocateTable(newCapacity);
+    final int mask = newCapacity - 1;
+    for (int slot = 0; slot < capacity; slot++) {
+      final long address = (long) slot * SLOT_WIDTH;
+      final int entry = table.getInt(address + Integer.BYTES);
+      if (entry != 0) {
+        final int hash = table.getInt(address);
+        int newSlot = hash & mask;
+        while (newTable.getInt((long) newSlot * SLOT_WIDTH + Integer.BYTES) != 0) {
+          newSlot = (newSlot + 1) & mask;
+        }
+        newTable.setInt((long) newSlot * SLOT_WIDTH, hash);
+        newTable.setInt((long) newSlot * SLOT_WIDTH + Integer.BYTES, entry);
+      }
+    }
+    table.close();
+    table = newTable;
+    capacity = newCapacity;
+  }
+
+  private ArrowBuf allocateTable(int slots) {
+    final ArrowBuf buffer = allocator.buffer((long) slots * SLOT_WIDTH);
+    buffer.setZero(0, buffer.capacity());
+    return buffer;
+  }
+
+  @Override
+  public void close() throws Exception {
+    AutoCloseables.close(table, dictionary);
+  }
+}
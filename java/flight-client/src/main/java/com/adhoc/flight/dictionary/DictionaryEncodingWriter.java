@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.dictionary;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.util.AutoCloseables;
+import org.apache.arrow.util.VisibleForTesting;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.VectorUnloader;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.dictionary.DictionaryProvider;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.ipc.message.ArrowDictionaryBatch;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.DictionaryEncoding;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.FieldType;
+import org.apache.arrow.vector.util.TransferPair;
+
+/**
+ * Arrow stream writer that dictionary-encodes the low-cardinality string columns of a result.
+ * <p>
+ * Which columns to encode is decided once, by sampling the first batch: a string column is encoded
+ * when at most {@value #DEFAULT_MAX_DISTINCT_RATIO} of its sampled values are distinct. The first
+ * dictionary batch of each encoded column holds the values seen so far. Each later record batch is
+ * preceded by a delta dictionary batch that holds only the values new in that batch. Other columns
+ * are written unchanged, straight from the source root.
+ * <p>
+ * Each dictionary holds at most {@value #DEFAULT_MAX_DICTIONARY_SIZE} values and
+ * {@value #DEFAULT_MAX_DICTIONARY_BYTES} bytes. A column whose sample exceeds these limits is
+ * written unchanged. Since the schema of a stream cannot change once written, a later batch that
+ * would exceed them fails {@link #writeBatch()} with an {@link IllegalStateException}.
+ * <p>
+ * In the written schema, encoded columns keep their name, and their {@code Utf8} value type is
+ * recorded in the dictionary encoding attached to them. The vectors themselves hold {@code Int32}
+ * indexes: Java readers such as {@code ArrowStreamReader} return the index vectors, which must be
+ * decoded explicitly with {@code DictionaryEncoder.decode} and the dictionary of the reader.
+ */
+public final class DictionaryEncodingWriter extends ArrowStreamWriter {
+  static final int DEFAULT_SAMPLE_ROWS = 4096;
+  static final double DEFAULT_MAX_DISTINCT_RATIO = 0.5;
+  static final int DEFAULT_MAX_DICTIONARY_SIZE = 1 << 20;
+  static final long DEFAULT_MAX_DICTIONARY_BYTES = 64L << 20;
+  private static final ArrowType.Int INDEX_TYPE = new ArrowType.Int(32, true);
+
+  private final VectorSchemaRoot source;
+  private final VectorSchemaRoot encoded;
+  private final BufferAllocator allocator;
+  private final Map<Integer, EncodedColumn> encodedColumns;
+  private final Map<Long, Integer> writtenDictionarySizes = new HashMap<>();
+
+  private DictionaryEncodingWriter(VectorSchemaRoot source, VectorSchemaRoot encoded,
+      DictionaryProvider provider, BufferAllocator allocator,
+      Map<Integer, EncodedColumn> encodedColumns, OutputStream outputStream) {
+    super(encoded, provider, outputStream instanceof WritableByteChannel ? (WritableByteChannel) outputStream :
+        Channels.newChannel(outputStream));
+    this.source = source;
+    this.encoded = encoded;
+    this.allocator = allocator;
+    this.encodedColumns = encodedColumns;
+  }
+
+  /**
+   * Create a writer for the given root, sampling its current batch to choose the columns to encode.
+   *
+   * @param source       the root whose batches are written. Each call to {@link #writeBatch()}
+   *                     writes its current content.
+   * @param allocator    the allocator for dictionaries and index vectors.
+   * @param outputStream the stream to write to.
+   * @return a writer that has not been started yet.
+   */
+  public static DictionaryEncodingWriter create(VectorSchemaRoot source, BufferAllocator allocator,
+      OutputStream outputStream) {
+    return create(source, allocator, outputStream, DEFAULT_SAMPLE_ROWS, DEFAULT_MAX_DISTINCT_RATIO,
+        DEFAULT_MAX_DICTIONARY_SIZE, DEFAULT_MAX_DICTIONARY_BYTES);
+  }
+
+  @VisibleForTesting
+  static DictionaryEncodingWriter create(VectorSchemaRoot source, BufferAllocator allocator,
+      OutputStream outputStream, int sampleRows, double maxDistinctRatio, int maxDictionarySize,
+      long maxDictionaryBytes) {
+    final List<FieldVector> vectors = source.getFieldVectors();
+    final List<Field> fields = new ArrayList<>(vectors.size());
+    final List<FieldVector> encodedVectors = new ArrayList<>(vectors.size());
+    final Map<Integer, EncodedColumn> encodedColumns = new HashMap<>();
+    final DictionaryProvider.MapDictionaryProvider provider = new DictionaryProvider.MapDictionaryProvider();
+    try {
+      for (int i = 0; i < vectors.size(); i++) {
+        final FieldVector vector = vectors.get(i);
+        final DictionaryBuilder builder = vector instanceof VarCharVector ?
+            sample((VarCharVector) vector, source.getRowCount(), allocator, sampleRows, maxDistinctRatio,
+                maxDictionarySize, maxDictionaryBytes) : null;
+        if (builder == null) {
+          fields.add(vector.getField());
+          encodedVectors.add(vector);
+          continue;
+        }
+        final Field field = vector.getField();
+        final DictionaryEncoding encoding = new DictionaryEncoding(i, false, INDEX_TYPE);
+        final Field indexField = new Field(field.getName(),
+            new FieldType(field.isNullable(), INDEX_TYPE, encoding, field.getMetadata()), null);
+        final IntVector indexes = new IntVector(indexField, allocator);
+        encodedColumns.put(i, new EncodedColumn(builder, indexes));
+        provider.put(new Dictionary(builder.getDictionary(), encoding));
+        fields.add(indexField);
+        encodedVectors.add(indexes);
+      }
+      final VectorSchemaRoot encoded = new VectorSchemaRoot(fields, encodedVectors, 0);
+      return new DictionaryEncodingWriter(source, encoded, provider, allocator, encodedColumns, outputStream);
+    } catch (RuntimeException ex) {
+      encodedColumns.values().forEach(AutoCloseables::closeNoChecked);
+      throw ex;
+    }
+  }
+
+  /**
+   * Build a dictionary from the first rows of a column, or return null if the column has too many
+   * distinct values to be worth encoding, or if they do not fit in a dictionary.
+   */
+  private static DictionaryBuilder sample(VarCharVector vector, int rowCount, BufferAllocator allocator,
+      int sampleRows, double maxDistinctRatio, int maxDictionarySize, long maxDictionaryBytes) {
+    final DictionaryBuilder builder =
+        new DictionaryBuilder(vector.getName(), allocator, maxDictionarySize, maxDictionaryBytes);
+    int sampled = 0;
+    boolean full = false;
+    for (int row = 0; row < rowCount && sampled < sampleRows && !full; row++) {
+      if (!vector.isNull(row)) {
+        final int start = vector.getStartOffset(row);
+        full = builder.add(vector.getDataBuffer(), start, vector.getEndOffset(row) - start) == DictionaryBuilder.FULL;
+        sampled++;
+      }
+    }
+    if (!full && sampled > 0 && builder.size() <= sampled * maxDistinctRatio) {
+      return builder;
+    }
+    AutoCloseables.closeNoChecked(builder);
+    return null;
+  }
+
+  /**
+   * Returns the indexes of the columns that are written dictionary-encoded.
+   */
+  public Set<Integer> getEncodedColumns() {
+    return encodedColumns.keySet();
+  }
+
+  @Override
+  public void writeBatch() throws IOException {
+    final int rowCount = source.getRowCount();
+    for (final Map.Entry<Integer, EncodedColumn> entry : encodedColumns.entrySet()) {
+      final EncodedColumn column = entry.getValue();
+      column.builder.encode((VarCharVector) source.getVector(entry.getKey()), column.indexes, rowCount);
+    }
+    // The encoded root shares the unencoded vectors with the source; only its row count is its own.
+    encoded.setRowCount(rowCount);
+    super.writeBatch();
+  }
+
+  @Override
+  protected void ensureDictionariesWritten(DictionaryProvider provider, Set<Long> dictionaryIdsUsed)
+      throws IOException {
+    for (final Map.Entry<Integer, EncodedColumn> entry : encodedColumns.entrySet()) {
+      final long id = entry.getKey();
+      final VarCharVector dictionary = entry.getValue().builder.getDictionary();
+      final Integer written = writtenDictionarySizes.get(id);
+      final int size = dictionary.getValueCount();
+      if (written != null && written == size) {
+        continue;
+      }
+      final int from = written == null ? 0 : written;
+      final TransferPair slice = dictionary.getTransferPair(allocator);
+      slice.splitAndTransfer(from, size - from);
+      try (final VectorSchemaRoot sliceRoot = VectorSchemaRoot.of((FieldVector) slice.getTo())) {
+        sliceRoot.setRowCount(size - from);
+        try (final ArrowDictionaryBatch batch = new ArrowDictionaryBatch(id,
+            new VectorUnloader(sliceRoot).getRecordBatch(), written != null)) {
+          writeDictionaryBatch(batch);
+        }
+      }
+      writtenDictionarySizes.put(id, size);
+    }
+  }
+
+  @Override
+  public void close() {
+    try {
+      super.close();
+    } finally {
+      encodedColumns.values().forEach(AutoCloseables::closeNoChecked);
+    }
+  }
+
+  private static final class EncodedColumn implements AutoCloseable {
+    private final DictionaryBuilder builder;
+    private final IntVector indexes;
+
+    private EncodedColumn(DictionaryBuilder builder, IntVector indexes) {
+      this.builder = builder;
+      this.indexes = indexes;
+    }
+
+    @Override
+    public void close() throws Exception {
+      AutoCloseables.close(indexes, builder);
+    }
+  }
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.diff;
+
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * Outcome of a {@link ResultDiff}: row counts of each category, the first differing rows and the
+ * latency of both runs.
+ */
+public final class DiffReport {
+  private final long leftRows;
+  private final long rightRows;
+  private final long matchedRows;
+  private final long changedRows;
+  private final long leftOnlyRows;
+  private final long rightOnlyRows;
+  private final long spilledRows;
+  private final List<String> examples;
+  private final @Nullable String schemaDifference;
+  private final long leftMillis;
+  private final long rightMillis;
+
+  DiffReport(long leftRows, long rightRows, long matchedRows, long changedRows, long leftOnlyRows,
+      long rightOnlyRows, long spilledRows, List<String> examples, @Nullable String schemaDifference,
+      long leftMillis, long rightMillis) {
+    this.leftRows = leftRows;
+    this.rightRows = rightRows;
+    this.matchedRows = matchedRows;
+    this.changedRows = changedRows;
+    this.leftOnlyRows = leftOnlyRows;
+    this.rightOnlyRows = rightOnlyRows;
+    this.spilledRows = spilledRows;
+    this.examples = examples;
+    this.schemaDifference = schemaDifference;
+    this.leftMillis = leftMillis;
+    this.rightMillis = rightMillis;
+  }
+
+  public long getLeftRows() {
+    return leftRows;
+  }
+
+  public long getRightRows() {
+    return rightRows;
+  }
+
+  public long getMatchedRows() {
+    return matchedRows;
+  }
+
+  /**
+   * Gets the number of rows found on both sides with the same key but different values.
+   *
+   * @return the number of changed rows.
+   */
+  public long getChangedRows() {
+    return changedRows;
+  }
+
+  public long getLeftOnlyRows() {
+    return leftOnlyRows;
+  }
+
+  public long getRightOnlyRows() {
+    return rightOnlyRows;
+  }
+
+  /**
+   * Gets the number of rows that could not be matched in memory and were sorted on disk.
+   *
+   * @return the number of spilled rows.
+   */
+  public long getSpilledRows() {
+    return spilledRows;
+  }
+
+  /**
+   * Gets a description of the first differing rows, up to the configured limit.
+   *
+   * @return the differing rows, in the order they were found.
+   */
+  public List<String> getExamples() {
+    return examples;
+  }
+
+  /**
+   * Gets how the column names of the two results differ.
+   *
+   * @return the difference, or null if both results have the same columns.
+   */
+  public @Nullable String getSchemaDifference() {
+    return schemaDifference;
+  }
+
+  /**
+   * Gets the time the left query took, from its start until its last batch was compared.
+   *
+   * @return the elapsed time of the left query, or -1 if it was not timed.
+   */
+  public long getLeftMillis() {
+    return leftMillis;
+  }
+
+  /**
+   * Gets the time the right query took, from its start until its last batch was compared.
+   *
+   * @return the elapsed time of the right query, or -1 if it was not timed.
+   */
+  public long getRightMillis() {
+    return rightMillis;
+  }
+
+  /**
+   * Checks whether both results have the same columns and the same rows, in any order.
+   *
+   * @return true if no difference was found.
+   */
+  public boolean isIdentical() {
+    return schemaDifference == null && changedRows == 0 && leftOnlyRows == 0 && rightOnlyRows == 0;
+  }
+
+  /**
+   * Format the report as lines of text: the counts, the latencies and the first differing rows.
+   *
+   * @return the formatted report.
+   */
+  public String toReportString() {
+    final StringBuilder report = new StringBuilder();
+    if (schemaDifference != null) {
+      report.append("Schemas differ: ").append(schemaDifference).append('\n');
+    }
+    report.append(String.format("Rows: left %d, right %d, matched %d, changed %d, left only %d, right only %d%n",
+        leftRows, rightRows, matchedRows, changedRows, leftOnlyRows, rightOnlyRows));
+    if (spilledRows > 0) {
+      report.append(String.format("Spilled %d rows to disk to match them by key.%n", spilledRows));
+    }
+    if (leftMillis >= 0 && rightMillis >= 0) {
+      final long difference = rightMillis - leftMillis;
+      report.append(String.format("Latency: left %d ms, right %d ms, right - left %+d ms", leftMillis, rightMillis,
+          difference));
+      if (leftMillis > 0) {
+        report.append(String.format(" (%+.1f%%)", 100.0 * difference / leftMillis));
+      }
+      report.append('\n');
+    }
+    examples.forEach(example -> report.append(example).append('\n'));
+    return report.toString();
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.diff;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.arrow.vector.FieldVector;
+
+/**
+ * A result row reduced to the text of its values, so that rows of two engines can be compared
+ * whatever the vector types, and spilled to disk.
+ */
+final class DiffRow {
+  final String key;
+  final String[] values;
+
+  private DiffRow(String key, String[] values) {
+    this.key = key;
+    this.values = values;
+  }
+
+  /**
+   * Read a row of a batch.
+   *
+   * @param vectors    the vectors of the batch.
+   * @param keyIndexes the indexes of the key columns, or empty to key the row by all its values.
+   * @param row        the index of the row.
+   * @return the row.
+   */
+  static DiffRow of(List<FieldVector> vectors, int[] keyIndexes, int row) {
+    final String[] values = new String[vectors.size()];
+    for (int column = 0; column < values.length; column++) {
+      values[column] = text(vectors.get(column).getObject(row));
+    }
+    final StringBuilder key = new StringBuilder();
+    if (keyIndexes.length == 0) {
+      for (final String value : values) {
+        appendKey(key, value);
+      }
+    } else {
+      for (final int column : keyIndexes) {
+        appendKey(key, values[column]);
+      }
+    }
+    return new DiffRow(key.toString(), values);
+  }
+
+  private static String text(Object value) {
+    if (value == null) {
+      return null;
+    }
+    if (value instanceof byte[]) {
+      return Arrays.toString((byte[]) value);
+    }
+    return value.toString();
+  }
+
+  /**
+   * Append a value to a key, prefixed by its length so that keys of different values never collide.
+   */
+  private static void appendKey(StringBuilder key, String value) {
+    if (value == null) {
+      key.append('-');
+    } else {
+      key.append(value.length()).append(':').append(value);
+    }
+  }
+
+  void write(DataOutput out) throws IOException {
+    writeString(out, key);
+    out.writeInt(values.length);
+    for (final String value : values) {
+      out.writeBoolean(value != null);
+      if (value != null) {
+        writeString(out, value);
+      }
+    }
+  }
+
+  static DiffRow read(DataInput in) throws IOException {
+    final String key = readString(in);
+    final String[] values = new String[in.readInt()];
+    for (int column = 0; column < values.length; column++) {
+      values[column] = in.readBoolean() ? readString(in) : null;
+    }
+    return new DiffRow(key, values);
+  }
+
+  private static void writeString(DataOutput out, String value) throws IOException {
+    final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInput in) throws IOException {
+    final byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  boolean sameValues(DiffRow other) {
+    return Arrays.equals(values, other.values);
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.toString(values);
+  }
+}
@@ -0,0 +1,341 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.diff;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+
+import org.apache.arrow.flight.HeaderCallOption;
+import org.apache.arrow.util.AutoCloseables;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.types.pojo.Field;
+
+import com.adhoc.flight.client.AdhocFlightClient;
+
+/**
+ * Streaming comparison of the results of the same query on two engines or clusters, called left and
+ * right. Rows are matched by key columns, or by all their values when no key is given, so the two
+ * results may arrive in any order.
+ * <p>
+ * Rows are compared as batches arrive from both sides. A row waits in memory until the row with the
+ * same key arrives from the other side. When more than {@code maxPendingRows} rows are waiting,
+ * because the two sides return rows in different orders, they are sorted by key and spilled to
+ * disk. Once both results are complete, the spilled runs of both sides are merged by key and
+ * compared. Memory use is bounded by {@code maxPendingRows} and by one row per run read at once.
+ * <p>
+ * Values are compared by their text, so that an {@code INT} and a {@code BIGINT} column with the
+ * same values match. Keys should be unique: rows with the same key are paired in arrival order.
+ */
+public final class ResultDiff implements AutoCloseable {
+  public static final int DEFAULT_MAX_PENDING_ROWS = 100_000;
+  public static final int DEFAULT_MAX_EXAMPLES = 10;
+
+  private final List<String> keyColumns;
+  private final int maxPendingRows;
+  private final int maxExamples;
+  private final Side left;
+  private final Side right;
+  private final List<String> examples = new ArrayList<>();
+  private long matchedRows;
+  private long changedRows;
+  private long leftOnlyRows;
+  private long rightOnlyRows;
+  private long spilledRows;
+
+  /**
+   * Create a diff that matches rows by the given key columns.
+   *
+   * @param keyColumns     the names of the key columns, or empty to match rows by all their values.
+   * @param maxPendingRows the number of unmatched rows kept in memory before they are spilled.
+   * @param maxExamples    the number of differing rows to describe in the report.
+   * @param spillDirectory the directory to spill sorted runs to.
+   */
+  public ResultDiff(List<String> keyColumns, int maxPendingRows, int maxExamples, Path spillDirectory) {
+    if (maxPendingRows < 1) {
+      throw new IllegalArgumentException("Max pending rows must be at least 1: " + maxPendingRows);
+    }
+    this.keyColumns = keyColumns;
+    this.maxPendingRows = maxPendingRows;
+    this.maxExamples = maxExamples;
+    this.left = new Side("left", new SortedRuns(spillDirectory));
+    this.right = new Side("right", new SortedRuns(spillDirectory));
+  }
+
+  /**
+   * Returns the consumer of the left result batches.
+   */
+  public Consumer<VectorSchemaRoot> left() {
+    return left;
+  }
+
+  /**
+   * Returns the consumer of the right result batches. It may run concurrently with the left one.
+   */
+  public Consumer<VectorSchemaRoot> right() {
+    return right;
+  }
+
+  /**
+   * Run the query on both clients at once and compare their results.
+   *
+   * @param leftClient   the client of the left engine or cluster.
+   * @param leftHeaders  client properties of the left query, or null.
+   * @param rightClient  the client of the right engine or cluster.
+   * @param rightHeaders client properties of the right query, or null.
+   * @param query        the SQL query to run on both sides.
+   * @param executor     the executor to run both queries on.
+   * @return the report of the differences and latencies.
+   * @throws Exception if either query fails. The other query is then cancelled.
+   */
+  public DiffReport compare(AdhocFlightClient leftClient, @Nullable HeaderCallOption leftHeaders,
+      AdhocFlightClient rightClient, @Nullable HeaderCallOption rightHeaders, String query,
+      Executor executor) throws Exception {
+    final long start = System.nanoTime();
+    final CompletableFuture<Void> leftQuery = leftClient.runQueryAsync(query, leftHeaders, left, executor);
+    final CompletableFuture<Void> rightQuery = rightClient.runQueryAsync(query, rightHeaders, right, executor);
+    final CompletableFuture<Long> leftRun = leftQuery.thenApply(ignored -> (System.nanoTime() - start) / 1_000_000);
+    final CompletableFuture<Long> rightRun = rightQuery.thenApply(ignored -> (System.nanoTime() - start) / 1_000_000);
+    // Fail fast: a failed side cancels the query of the other one instead of waiting for it.
+    leftQuery.whenComplete((ignored, error) -> cancelOnError(error, rightQuery));
+    rightQuery.whenComplete((ignored, error) -> cancelOnError(error, leftQuery));
+    try {
+      CompletableFuture.allOf(leftRun, rightRun).join();
+    } catch (CompletionException | CancellationException ex) {
+      final Throwable cause = leftQuery.isCompletedExceptionally() && !leftQuery.isCancelled() ?
+          failure(leftQuery) : failure(rightQuery);
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      }
+      throw ex;
+    }
+    return finish(leftRun.join(), rightRun.join());
+  }
+
+  private static void cancelOnError(@Nullable Throwable error, CompletableFuture<?> other) {
+    if (error != null) {
+      other.cancel(true);
+    }
+  }
+
+  private static Throwable failure(CompletableFuture<?> future) {
+    try {
+      future.join();
+      return null;
+    } catch (CompletionException ex) {
+      return ex.getCause();
+    } catch (RuntimeException ex) {
+      return ex;
+    }
+  }
+
+  /**
+   * Compare the rows still unmatched once both results are complete, and report the differences.
+   *
+   * @return the report, without latencies.
+   * @throws IOException if spilled rows cannot be read back.
+   */
+  public DiffReport finish() throws IOException {
+    return finish(-1, -1);
+  }
+
+  private synchronized DiffReport finish(long leftMillis, long rightMillis) throws IOException {
+    if (left.runs.isEmpty() && right.runs.isEmpty()) {
+      left.pendingRows().forEach(this::leftOnly);
+      right.pendingRows().forEach(this::rightOnly);
+    } else {
+      left.spill();
+      right.spill();
+      mergeRuns();
+    }
+    return new DiffReport(left.rowCount, right.rowCount, matchedRows, changedRows, leftOnlyRows,
+        rightOnlyRows, spilledRows, Collections.unmodifiableList(new ArrayList<>(examples)),
+        schemaDifference(), leftMillis, rightMillis);
+  }
+
+  /**
+   * Merge-join the sorted runs of both sides by key.
+   */
+  private void mergeRuns() throws IOException {
+    DiffRow leftRow = left.runs.next();
+    DiffRow rightRow = right.runs.next();
+    while (leftRow != null || rightRow != null) {
+      final int order = leftRow == null ? 1 : rightRow == null ? -1 : leftRow.key.compareTo(rightRow.key);
+      if (order == 0) {
+        compare(leftRow, rightRow);
+        leftRow = left.runs.next();
+        rightRow = right.runs.next();
+      } else if (order < 0) {
+        leftOnly(leftRow);
+        leftRow = left.runs.next();
+      } else {
+        rightOnly(rightRow);
+        rightRow = right.runs.next();
+      }
+    }
+  }
+
+  private @Nullable String schemaDifference() {
+    if (left.columnNames == null || right.columnNames == null || left.columnNames.equals(right.columnNames)) {
+      return null;
+    }
+    return "left has columns " + left.columnNames + ", right has columns " + right.columnNames;
+  }
+
+  private void compare(DiffRow leftRow, DiffRow rightRow) {
+    if (leftRow.sameValues(rightRow)) {
+      matchedRows++;
+    } else {
+      changedRows++;
+      example("changed: left " + leftRow + ", right " + rightRow);
+    }
+  }
+
+  private void leftOnly(DiffRow row) {
+    leftOnlyRows++;
+    example("left only: " + row);
+  }
+
+  private void rightOnly(DiffRow row) {
+    rightOnlyRows++;
+    example("right only: " + row);
+  }
+
+  private void example(String example) {
+    if (examples.size() < maxExamples) {
+      examples.add(example);
+    }
+  }
+
+  @Override
+  public void close() throws Exception {
+    AutoCloseables.close(left.runs, right.runs);
+  }
+
+  /**
+   * One side of the diff: the rows still waiting for their match, and the runs spilled to disk.
+   */
+  private final class Side implements Consumer<VectorSchemaRoot> {
+    private final String name;
+    private final SortedRuns runs;
+    private final Map<String, ArrayDeque<DiffRow>> pending = new LinkedHashMap<>();
+    private int pendingCount;
+    private long rowCount;
+    private List<String> columnNames;
+    private int[] keyIndexes;
+
+    Side(String name, SortedRuns runs) {
+      this.name = name;
+      this.runs = runs;
+    }
+
+    @Override
+    public void accept(VectorSchemaRoot root) {
+      final List<FieldVector> vectors = root.getFieldVectors();
+      if (keyIndexes == null) {
+        resolveColumns(root);
+      }
+      // Rows are read outside of the lock, so that both sides convert their batches in parallel.
+      final List<DiffRow> rows = new ArrayList<>(root.getRowCount());
+      for (int row = 0; row < root.getRowCount(); row++) {
+        rows.add(DiffRow.of(vectors, keyIndexes, row));
+      }
+      synchronized (ResultDiff.this) {
+        final Side other = this == left ? right : left;
+        for (final DiffRow row : rows) {
+          match(row, other);
+        }
+        rowCount += rows.size();
+        if (pendingCount + other.pendingCount > maxPendingRows) {
+          try {
+            spill();
+            other.spill();
+          } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+          }
+        }
+      }
+    }
+
+    private void resolveColumns(VectorSchemaRoot root) {
+      final List<String> names = new ArrayList<>();
+      for (final Field field : root.getSchema().getFields()) {
+        names.add(field.getName());
+      }
+      final int[] indexes = new int[keyColumns.size()];
+      for (int i = 0; i < indexes.length; i++) {
+        indexes[i] = names.indexOf(keyColumns.get(i));
+        if (indexes[i] < 0) {
+          throw new IllegalArgumentException(
+              "Key column " + keyColumns.get(i) + " is not in the " + name + " result: " + names);
+        }
+      }
+      columnNames = names;
+      keyIndexes = indexes;
+    }
+
+    private void match(DiffRow row, Side other) {
+      final ArrayDeque<DiffRow> candidates = other.pending.get(row.key);
+      if (candidates == null) {
+        pending.computeIfAbsent(row.key, key -> new ArrayDeque<>(1)).add(row);
+        pendingCount++;
+        return;
+      }
+      final DiffRow match = candidates.poll();
+      if (candidates.isEmpty()) {
+        other.pending.remove(row.key);
+      }
+      other.pendingCount--;
+      if (this == left) {
+        compare(row, match);
+      } else {
+        compare(match, row);
+      }
+    }
+
+    private List<DiffRow> pendingRows() {
+      final List<DiffRow> rows = new ArrayList<>(pendingCount);
+      pending.values().forEach(rows::addAll);
+      return rows;
+    }
+
+    private void spill() throws IOException {
+      if (pendingCount == 0) {
+        return;
+      }
+      runs.spill(pendingRows());
+      spilledRows += pendingCount;
+      pending.clear();
+      pendingCount = 0;
+    }
+  }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.diff;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import org.apache.arrow.util.AutoCloseables;
+
+/**
+ * Rows of one side of a diff spilled to disk as runs sorted by key, read back as a single sorted
+ * sequence by a k-way merge. At most {@link #MAX_FAN_IN} runs are merged at once: with more runs,
+ * consecutive runs are first merged into larger ones, so the number of open files stays bounded.
+ * Memory use is one row per open run while merging.
+ */
+final class SortedRuns implements AutoCloseable {
+  static final int MAX_FAN_IN = 64;
+
+  private static final Comparator<DiffRow> BY_KEY = Comparator.comparing(row -> row.key);
+
+  private final Path directory;
+  private final int maxFanIn;
+  private final List<Path> runs = new ArrayList<>();
+  private RunMerge merge;
+
+  SortedRuns(Path directory) {
+    this(directory, MAX_FAN_IN);
+  }
+
+  SortedRuns(Path directory, int maxFanIn) {
+    if (maxFanIn < 2) {
+      throw new IllegalArgumentException("At least two runs must be merged at once.");
+    }
+    this.directory = directory;
+    this.maxFanIn = maxFanIn;
+  }
+
+  boolean isEmpty() {
+    return runs.isEmpty();
+  }
+
+  /**
+   * Sort rows by key and write them as a new run. Rows with equal keys keep their order.
+   *
+   * @param rows the rows to spill. The list is sorted in place.
+   * @throws IOException if the run cannot be written.
+   */
+  void spill(List<DiffRow> rows) throws IOException {
+    rows.sort(BY_KEY);
+    final Path run = Files.createTempFile(directory, "adhoc-flight-diff-", ".run");
+    runs.add(run);
+    try (final DataOutputStream out = newRunOutput(run)) {
+      out.writeLong(rows.size());
+      for (final DiffRow row : rows) {
+        row.write(out);
+      }
+    }
+  }
+
+  /**
+   * Returns the next row in key order over all runs, or null once every run is read.
+   */
+  DiffRow next() throws IOException {
+    if (merge == null) {
+      while (runs.size() > maxFanIn) {
+        mergePass();
+      }
+      merge = new RunMerge(runs);
+    }
+    return merge.next();
+  }
+
+  /**
+   * Replace each group of up to {@code maxFanIn} consecutive runs by a single merged run. Merging
+   * consecutive runs keeps rows with equal keys in their spill order.
+   */
+  private void mergePass() throws IOException {
+    for (int i = 0; i < runs.size() - 1; i++) {
+      final List<Path> group = runs.subList(i, Math.min(i + maxFanIn, runs.size()));
+      final Path merged = Files.createTempFile(directory, "adhoc-flight-diff-", ".run");
+      try (final RunMerge groupMerge = new RunMerge(group);
+          final DataOutputStream out = newRunOutput(merged)) {
+        out.writeLong(groupMerge.rowCount);
+        for (DiffRow row = groupMerge.next(); row != null; row = groupMerge.next()) {
+          row.write(out);
+        }
+      } catch (IOException | RuntimeException ex) {
+        Files.deleteIfExists(merged);
+        throw ex;
+      }
+      for (final Path run : group) {
+        Files.deleteIfExists(run);
+      }
+      group.clear();
+      runs.add(i, merged);
+    }
+  }
+
+  private static DataOutputStream newRunOutput(Path run) throws IOException {
+    return new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(run)));
+  }
+
+  @Override
+  public void close() throws Exception {
+    final List<AutoCloseable> closeables = new ArrayList<>();
+    closeables.add(merge);
+    runs.forEach(run -> closeables.add(() -> Files.deleteIfExists(run)));
+    AutoCloseables.close(closeables);
+  }
+
+  /**
+   * K-way merge of sorted runs.
+   */
+  private static final class RunMerge implements AutoCloseable {
+    private final List<RunReader> readers = new ArrayList<>();
+    private final PriorityQueue<RunReader> queue;
+    private long rowCount;
+
+    RunMerge(List<Path> runs) throws IOException {
+      // Rows with equal keys are taken from earlier runs first, so they keep their spill order.
+      queue = new PriorityQueue<>(Math.max(1, runs.size()),
+          Comparator.<RunReader, String>comparing(reader -> reader.head.key).thenComparingInt(reader -> reader.index));
+      try {
+        for (final Path run : runs) {
+          final RunReader reader = new RunReader(run, readers.size());
+          readers.add(reader);
+          rowCount += reader.remaining;
+          if (reader.advance()) {
+            queue.add(reader);
+          }
+        }
+      } catch (IOException | RuntimeException ex) {
+        AutoCloseables.closeNoChecked(this);
+        throw ex;
+      }
+    }
+
+    DiffRow next() throws IOException {
+      final RunReader reader = queue.poll();
+      if (reader == null) {
+        return null;
+      }
+      final DiffRow row = reader.head;
+      if (reader.advance()) {
+        queue.add(reader);
+      }
+      return row;
+    }
+
+    @Override
+    public void close() throws IOException {
+      IOException failure = null;
+      for (final RunReader reader : readers) {
+        try {
+          reader.close();
+        } catch (IOException ex) {
+          if (failure == null) {
+            failure = ex;
+          } else {
+            failure.addSuppressed(ex);
+          }
+        }
+      }
+      if (failure != null) {
+        throw failure;
+      }
+    }
+  }
+
+  /**
+   * Sequential reader of one run.
+   */
+  private static final class RunReader implements AutoCloseable {
+    private final DataInputStream in;
+    private final int index;
+    private long remaining;
+    private DiffRow head;
+
+    RunReader(Path run, int index) throws IOException {
+      this.index = index;
+      this.in = new DataInputStream(new BufferedInputStream(Files.newInputStream(run)));
+      this.remaining = in.readLong();
+    }
+
+    boolean advance() throws IOException {
+      if (remaining == 0) {
+        head = null;
+        return false;
+      }
+      remaining--;
+      head = DiffRow.read(in);
+      return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+      in.close();
+    }
+  }
+}
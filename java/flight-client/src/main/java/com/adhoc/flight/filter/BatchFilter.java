@@ -0,0 +1,159 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.filter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import javax.annotation.Nullable;
+
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+/**
+ * Client-side filter stage between a Flight stream and its sinks. It keeps a subset of the columns
+ * and the rows that match every predicate.
+ * <p>
+ * When every row of a batch matches, the projected vectors are transferred to the output without
+ * copying. Otherwise the matching rows are gathered through a selection vector. Dropped columns are
+ * released with the source batch and are never copied.
+ * <p>
+ * Instances are stateful and must only be used for one stream at a time.
+ */
+public final class BatchFilter {
+  @Nullable
+  private final List<String> columns;
+  private final List<ColumnPredicate> predicates;
+  private int[] projection;
+  private int[] predicateColumns;
+  private int[] selection = new int[0];
+
+  /**
+   * Create a filter stage.
+   *
+   * @param columns    the names of the columns to keep, in output order, or null to keep all.
+   * @param predicates the predicates every output row must match.
+   */
+  public BatchFilter(@Nullable List<String> columns, List<ColumnPredicate> predicates) {
+    this.columns = columns == null ? null : Collections.unmodifiableList(new ArrayList<>(columns));
+    this.predicates = Collections.unmodifiableList(new ArrayList<>(predicates));
+  }
+
+  /**
+   * Resolve the columns and predicates of this filter against the schema of a stream.
+   *
+   * @param input the schema of the stream to filter.
+   * @return the schema of the filtered batches.
+   * @throws IllegalArgumentException if a column is missing or listed twice, or a predicate targets a
+   *                                  column of an unsupported type.
+   */
+  public Schema bind(Schema input) {
+    final List<Field> fields = input.getFields();
+    final List<Field> outputFields = new ArrayList<>();
+    if (columns == null) {
+      projection = new int[fields.size()];
+      for (int i = 0; i < projection.length; i++) {
+        projection[i] = i;
+      }
+      outputFields.addAll(fields);
+    } else {
+      projection = new int[columns.size()];
+      final Set<String> projected = new HashSet<>();
+      for (int i = 0; i < projection.length; i++) {
+        // A vector can only be transferred to one output column.
+        if (!projected.add(columns.get(i))) {
+          throw new IllegalArgumentException("Column listed more than once: " + columns.get(i));
+        }
+        projection[i] = indexOf(fields, columns.get(i));
+        outputFields.add(fields.get(projection[i]));
+      }
+    }
+    predicateColumns = new int[predicates.size()];
+    for (int i = 0; i < predicateColumns.length; i++) {
+      predicateColumns[i] = indexOf(fields, predicates.get(i).getColumn());
+    }
+    return new Schema(outputFields, input.getCustomMetadata());
+  }
+
+  /**
+   * Filter a batch into the output root, replacing its previous contents.
+   *
+   * @param source the batch to filter. Projected vectors may be transferred out of it.
+   * @param target a root with the schema returned by {@link #bind(Schema)}.
+   * @return the number of rows written to the output.
+   */
+  public int apply(VectorSchemaRoot source, VectorSchemaRoot target) {
+    if (projection == null) {
+      throw new IllegalStateException("The filter must be bound to a schema before it is applied.");
+    }
+    final int rowCount = source.getRowCount();
+    final int selected = select(source, rowCount);
+    for (int i = 0; i < projection.length; i++) {
+      final FieldVector from = source.getVector(projection[i]);
+      final FieldVector to = target.getVector(i);
+      if (selected == rowCount) {
+        from.makeTransferPair(to).transfer();
+      } else {
+        to.clear();
+        to.setInitialCapacity(selected);
+        to.allocateNew();
+        for (int row = 0; row < selected; row++) {
+          to.copyFromSafe(selection[row], row, from);
+        }
+        to.setValueCount(selected);
+      }
+    }
+    target.setRowCount(selected);
+    return selected;
+  }
+
+  private int select(VectorSchemaRoot source, int rowCount) {
+    if (predicates.isEmpty()) {
+      return rowCount;
+    }
+    if (selection.length < rowCount) {
+      selection = new int[rowCount];
+    }
+    for (int row = 0; row < rowCount; row++) {
+      selection[row] = row;
+    }
+    int selected = rowCount;
+    for (int i = 0; i < predicateColumns.length && selected > 0; i++) {
+      final FieldVector vector = source.getVector(predicateColumns[i]);
+      if (!ColumnPredicate.supports(vector)) {
+        throw new IllegalArgumentException(String.format(
+            "Filter %s is not supported on column of type %s.", predicates.get(i), vector.getMinorType()));
+      }
+      selected = predicates.get(i).filter(vector, selection, selected);
+    }
+    return selected;
+  }
+
+  private static int indexOf(List<Field> fields, String name) {
+    for (int i = 0; i < fields.size(); i++) {
+      if (fields.get(i).getName().equals(name)) {
+        return i;
+      }
+    }
+    throw new IllegalArgumentException("Column not found in query results: " + name);
+  }
+}
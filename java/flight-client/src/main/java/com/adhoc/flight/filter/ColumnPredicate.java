@@ -0,0 +1,243 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.filter;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.arrow.vector.BaseIntVector;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float4Vector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+
+/**
+ * Comparison of a primitive numeric column against a constant, such as {@code price >= 10}.
+ * Null values never match, as in SQL.
+ */
+public final class ColumnPredicate {
+  private static final Pattern EXPRESSION =
+      Pattern.compile("\\s*([^<>=!\\s]+)\\s*(<=|>=|!=|=|<|>)\\s*(\\S+)\\s*");
+
+  /**
+   * Comparison operators.
+   */
+  public enum Operator {
+    EQ("="), NE("!="), LT("<"), LE("<="), GT(">"), GE(">=");
+
+    private final String symbol;
+
+    Operator(String symbol) {
+      this.symbol = symbol;
+    }
+
+    static Operator fromSymbol(String symbol) {
+      for (final Operator operator : values()) {
+        if (operator.symbol.equals(symbol)) {
+          return operator;
+        }
+      }
+      throw new IllegalArgumentException("Unknown comparison operator: " + symbol);
+    }
+
+    /**
+     * Whether a comparison result, as returned by {@link Long#compare}, satisfies this operator.
+     */
+    boolean accepts(int comparison) {
+      switch (this) {
+        case EQ:
+          return comparison == 0;
+        case NE:
+          return comparison != 0;
+        case LT:
+          return comparison < 0;
+        case LE:
+          return comparison <= 0;
+        case GT:
+          return comparison > 0;
+        default:
+          return comparison >= 0;
+      }
+    }
+
+    @Override
+    public String toString() {
+      return symbol;
+    }
+  }
+
+  private final String column;
+  private final Operator operator;
+  private final double value;
+  private final long longValue;
+  private final boolean integral;
+
+  /**
+   * Create a predicate comparing the given column to a constant.
+   *
+   * @param column   the name of the column.
+   * @param operator the comparison.
+   * @param value    the constant to compare against.
+   */
+  public ColumnPredicate(String column, Operator operator, double value) {
+    this.column = column;
+    this.operator = operator;
+    this.value = value;
+    this.integral = value == Math.rint(value) && Math.abs(value) < 0x1p63;
+    this.longValue = (long) value;
+  }
+
+  private ColumnPredicate(String column, Operator operator, long value) {
+    this.column = column;
+    this.operator = operator;
+    this.value = value;
+    this.integral = true;
+    this.longValue = value;
+  }
+
+  /**
+   * Parse a predicate of the form {@code <column><operator><number>}, where the operator is one of
+   * {@code = != < <= > >=}.
+   *
+   * @param expression the expression to parse.
+   * @return the parsed predicate.
+   * @throws IllegalArgumentException if the expression is malformed.
+   */
+  public static ColumnPredicate parse(String expression) {
+    final Matcher matcher = EXPRESSION.matcher(expression);
+    if (!matcher.matches()) {
+      throw new IllegalArgumentException(
+          "Expected a filter of the form <column><operator><number>, got: " + expression);
+    }
+    final String column = matcher.group(1);
+    final Operator operator = Operator.fromSymbol(matcher.group(2));
+    final String literal = matcher.group(3);
+    try {
+      return new ColumnPredicate(column, operator, Long.parseLong(literal));
+    } catch (NumberFormatException notLong) {
+      try {
+        return new ColumnPredicate(column, operator, Double.parseDouble(literal));
+      } catch (NumberFormatException notNumber) {
+        throw new IllegalArgumentException("Filter value is not a number: " + expression);
+      }
+    }
+  }
+
+  public String getColumn() {
+    return column;
+  }
+
+  static boolean supports(FieldVector vector) {
+    return vector instanceof BaseIntVector || vector instanceof Float8Vector ||
+        vector instanceof Float4Vector;
+  }
+
+  /**
+   * Keep only the selected rows of the vector that match this predicate.
+   *
+   * @param vector    the column to test.
+   * @param selection the indexes of the selected rows, compacted in place.
+   * @param selected  the number of selected rows.
+   * @return the number of rows still selected.
+   */
+  int filter(FieldVector vector, int[] selection, int selected) {
+    if (vector instanceof IntVector) {
+      return filter((IntVector) vector, selection, selected);
+    } else if (vector instanceof BigIntVector) {
+      return filter((BigIntVector) vector, selection, selected);
+    } else if (vector instanceof Float8Vector) {
+      return filter((Float8Vector) vector, selection, selected);
+    } else if (vector instanceof Float4Vector) {
+      return filter((Float4Vector) vector, selection, selected);
+    }
+    return filter((BaseIntVector) vector, selection, selected);
+  }
+
+  private int filter(IntVector vector, int[] selection, int selected) {
+    int kept = 0;
+    for (int i = 0; i < selected; i++) {
+      final int row = selection[i];
+      if (!vector.isNull(row) && matches(vector.get(row))) {
+        selection[kept++] = row;
+      }
+    }
+    return kept;
+  }
+
+  private int filter(BigIntVector vector, int[] selection, int selected) {
+    int kept = 0;
+    for (int i = 0; i < selected; i++) {
+      final int row = selection[i];
+      if (!vector.isNull(row) && matches(vector.get(row))) {
+        selection[kept++] = row;
+      }
+    }
+    return kept;
+  }
+
+  private int filter(Float8Vector vector, int[] selection, int selected) {
+    int kept = 0;
+    for (int i = 0; i < selected; i++) {
+      final int row = selection[i];
+      if (!vector.isNull(row) && matches(vector.get(row))) {
+        selection[kept++] = row;
+      }
+    }
+    return kept;
+  }
+
+  private int filter(Float4Vector vector, int[] selection, int selected) {
+    int kept = 0;
+    for (int i = 0; i < selected; i++) {
+      final int row = selection[i];
+      if (!vector.isNull(row) && matches(vector.get(row))) {
+        selection[kept++] = row;
+      }
+    }
+    return kept;
+  }
+
+  private int filter(BaseIntVector vector, int[] selection, int selected) {
+    final FieldVector fieldVector = (FieldVector) vector;
+    int kept = 0;
+    for (int i = 0; i < selected; i++) {
+      final int row = selection[i];
+      if (!fieldVector.isNull(row) && matches(vector.getValueAsLong(row))) {
+        selection[kept++] = row;
+      }
+    }
+    return kept;
+  }
+
+  private boolean matches(long actual) {
+    // Integer columns compare exactly against integral constants, even beyond 2^53.
+    return integral ? operator.accepts(Long.compare(actual, longValue)) : matches((double) actual);
+  }
+
+  private boolean matches(double actual) {
+    if (Double.isNaN(actual)) {
+      return false;
+    }
+    return operator.accepts(actual < value ? -1 : (actual > value ? 1 : 0));
+  }
+
+  @Override
+  public String toString() {
+    return column + operator + (integral ? Long.toString(longValue) : Double.toString(value));
+  }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.ingest;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.ipc.ArrowFileReader;
+import org.apache.arrow.vector.ipc.ArrowReader;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+
+/**
+ * Opens local files as readers of Arrow record batches. The format is picked from the file extension:
+ * <ul>
+ *   <li>{@code .arrow}, {@code .feather}, {@code .ipc}: the Arrow IPC file format.</li>
+ *   <li>{@code .arrows}, {@code .stream}: the Arrow IPC stream format, as saved by {@code -binpath}.</li>
+ *   <li>{@code .csv}: CSV with a header row, read by {@link CsvArrowReader}.</li>
+ * </ul>
+ */
+public final class BatchFiles {
+
+  private BatchFiles() {
+    // Prevent instantiation.
+  }
+
+  /**
+   * Opens the given file.
+   *
+   * @param path      the file to read.
+   * @param allocator the allocator of the batches.
+   * @return a reader of the batches in the file, to be closed by the caller.
+   * @throws IOException if the file cannot be opened.
+   */
+  public static ArrowReader open(Path path, BufferAllocator allocator) throws IOException {
+    final String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+    final String extension = name.substring(name.lastIndexOf('.') + 1);
+    switch (extension) {
+      case "arrow":
+      case "feather":
+      case "ipc":
+        return new ArrowFileReader(FileChannel.open(path), allocator);
+      case "arrows":
+      case "stream":
+        return new ArrowStreamReader(new BufferedInputStream(Files.newInputStream(path)), allocator);
+      case "csv":
+        return new CsvArrowReader(Files.newBufferedReader(path, StandardCharsets.UTF_8), allocator,
+            CsvArrowReader.DEFAULT_BATCH_SIZE);
+      case "parquet":
+        throw new IllegalArgumentException("Parquet files are not supported; convert " + path +
+            " to the Arrow IPC file format first.");
+      default:
+        throw new IllegalArgumentException("Unknown file format of " + path +
+            "; expected .arrow, .feather, .ipc, .arrows, .stream or .csv.");
+    }
+  }
+}
@@ -0,0 +1,287 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.ingest;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowReader;
+import org.apache.arrow.vector.types.FloatingPointPrecision;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+/**
+ * Reads a CSV file with a header row as Arrow record batches.
+ * <p>
+ * The type of each column is inferred from its first {@value #INFERENCE_ROWS} values: BIGINT when
+ * every value is an integer, DOUBLE when every value is a number, VARCHAR otherwise. Empty fields
+ * are null; quoted fields follow RFC 4180, so they may contain commas, newlines and doubled quotes.
+ * A later value that does not fit the inferred type fails the batch that contains it.
+ */
+public final class CsvArrowReader extends ArrowReader {
+  public static final int DEFAULT_BATCH_SIZE = 64 * 1024;
+  public static final int INFERENCE_ROWS = 1000;
+
+  private final Reader in;
+  private final int batchSize;
+  private final Deque<String[]> sampledRecords = new ArrayDeque<>();
+  private final StringBuilder field = new StringBuilder();
+  private ColumnType[] types;
+  private long charsRead;
+  private long line = 1;
+
+  /**
+   * Creates a reader of the given CSV text.
+   *
+   * @param in        the CSV text, closed with the reader.
+   * @param allocator the allocator of the batches.
+   * @param batchSize the maximum number of rows per batch.
+   */
+  public CsvArrowReader(Reader in, BufferAllocator allocator, int batchSize) {
+    super(allocator);
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+    }
+    this.in = in;
+    this.batchSize = batchSize;
+  }
+
+  @Override
+  protected Schema readSchema() throws IOException {
+    final String[] header = readRecord();
+    if (header == null) {
+      throw new IOException("CSV file is empty; expected a header row.");
+    }
+    types = new ColumnType[header.length];
+    for (int i = 0; i < types.length; i++) {
+      types[i] = ColumnType.BIGINT;
+    }
+    final boolean[] seen = new boolean[header.length];
+    String[] record;
+    while (sampledRecords.size() < INFERENCE_ROWS && (record = nextRecord(header.length)) != null) {
+      sampledRecords.add(record);
+      for (int i = 0; i < record.length; i++) {
+        if (record[i] != null) {
+          seen[i] = true;
+          types[i] = types[i].widen(record[i]);
+        }
+      }
+    }
+
+    final List<Field> fields = new ArrayList<>(header.length);
+    for (int i = 0; i < header.length; i++) {
+      if (!seen[i]) {
+        types[i] = ColumnType.VARCHAR;
+      }
+      final String name = header[i] == null ? "column" + i : header[i];
+      fields.add(Field.nullable(name, types[i].arrowType));
+    }
+    return new Schema(fields);
+  }
+
+  @Override
+  public boolean loadNextBatch() throws IOException {
+    prepareLoadNextBatch();
+    final VectorSchemaRoot root = getVectorSchemaRoot();
+    root.allocateNew();
+    final List<FieldVector> vectors = root.getFieldVectors();
+    int rows = 0;
+    String[] record;
+    while (rows < batchSize && (record = sampledRecords.isEmpty() ? nextRecord(types.length)
+        : sampledRecords.poll()) != null) {
+      for (int i = 0; i < types.length; i++) {
+        set(vectors.get(i), types[i], rows, record[i], i);
+      }
+      rows++;
+    }
+    root.setRowCount(rows);
+    return rows > 0;
+  }
+
+  private void set(FieldVector vector, ColumnType type, int index, String value, int column) throws IOException {
+    if (value == null) {
+      while (index >= vector.getValueCapacity()) {
+        vector.reAlloc();
+      }
+      vector.setNull(index);
+      return;
+    }
+    try {
+      switch (type) {
+        case BIGINT:
+          ((BigIntVector) vector).setSafe(index, Long.parseLong(value));
+          break;
+        case DOUBLE:
+          ((Float8Vector) vector).setSafe(index, Double.parseDouble(value));
+          break;
+        default:
+          ((VarCharVector) vector).setSafe(index, value.getBytes(StandardCharsets.UTF_8));
+          break;
+      }
+    } catch (NumberFormatException e) {
+      throw new IOException(String.format("Value '%s' of column %d near line %d is not a %s.",
+          value, column + 1, line - 1, type), e);
+    }
+  }
+
+  /**
+   * Reads the next non-blank record, checking it has the given number of fields.
+   */
+  private String[] nextRecord(int fieldCount) throws IOException {
+    String[] record = readRecord();
+    while (record != null && record.length == 1 && record[0] == null && fieldCount != 1) {
+      record = readRecord();
+    }
+    if (record != null && record.length != fieldCount) {
+      throw new IOException(String.format("Line %d has %d fields, expected %d.", line - 1, record.length,
+          fieldCount));
+    }
+    return record;
+  }
+
+  /**
+   * Reads one record, or returns null at the end of the input.
+   */
+  private String[] readRecord() throws IOException {
+    int c = read();
+    if (c < 0) {
+      return null;
+    }
+    final List<String> fields = new ArrayList<>();
+    field.setLength(0);
+    boolean quoted = false;
+    boolean inQuotes = false;
+    while (true) {
+      if (inQuotes) {
+        if (c < 0) {
+          throw new IOException("Unterminated quoted field at line " + line + ".");
+        } else if (c == '"') {
+          c = read();
+          if (c != '"') {
+            inQuotes = false;
+            continue;
+          }
+          field.append('"');
+        } else {
+          if (c == '\n') {
+            line++;
+          }
+          field.append((char) c);
+        }
+      } else if (c == '"' && field.length() == 0 && !quoted) {
+        inQuotes = true;
+        quoted = true;
+      } else if (c == ',') {
+        fields.add(value(quoted));
+        quoted = false;
+      } else if (c == '\n' || c < 0) {
+        fields.add(value(quoted));
+        line++;
+        return fields.toArray(new String[0]);
+      } else if (c != '\r') {
+        field.append((char) c);
+      }
+      c = read();
+    }
+  }
+
+  /**
+   * Takes the field read so far. An empty field is null unless it was quoted.
+   */
+  private String value(boolean quoted) {
+    final String value = field.length() == 0 && !quoted ? null : field.toString();
+    field.setLength(0);
+    return value;
+  }
+
+  private int read() throws IOException {
+    final int c = in.read();
+    if (c >= 0) {
+      charsRead++;
+    }
+    return c;
+  }
+
+  /**
+   * Gets the number of characters read, which matches the bytes read for ASCII files.
+   */
+  @Override
+  public long bytesRead() {
+    return charsRead;
+  }
+
+  @Override
+  protected void closeReadSource() throws IOException {
+    in.close();
+  }
+
+  private enum ColumnType {
+    BIGINT(new ArrowType.Int(64, true)),
+    DOUBLE(new ArrowType.FloatingPoint(FloatingPointPrecision.DOUBLE)),
+    VARCHAR(ArrowType.Utf8.INSTANCE);
+
+    private final ArrowType arrowType;
+
+    ColumnType(ArrowType arrowType) {
+      this.arrowType = arrowType;
+    }
+
+    /**
+     * Gets the narrowest type holding both this type's values and the given value.
+     */
+    ColumnType widen(String value) {
+      if (this == BIGINT && isLong(value)) {
+        return BIGINT;
+      }
+      if (this != VARCHAR && isDouble(value)) {
+        return DOUBLE;
+      }
+      return VARCHAR;
+    }
+
+    private static boolean isLong(String value) {
+      try {
+        Long.parseLong(value);
+        return true;
+      } catch (NumberFormatException e) {
+        return false;
+      }
+    }
+
+    private static boolean isDouble(String value) {
+      try {
+        Double.parseDouble(value);
+        return true;
+      } catch (NumberFormatException e) {
+        return false;
+      }
+    }
+  }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.jfr;
+
+import org.apache.arrow.memory.BufferAllocator;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event capturing the memory usage of the client's Arrow allocator at the end of a query.
+ */
+@Name("com.adhoc.flight.Allocator")
+@Label("Flight Allocator Usage")
+@Category({"Dremio", "Flight Client"})
+@Description("Arrow allocator usage and high-water mark after a query")
+@StackTrace(false)
+public final class AllocatorEvent extends Event {
+  @Label("Allocator")
+  public String allocator;
+
+  @Label("Allocated")
+  @DataAmount
+  public long allocated;
+
+  @Label("Peak")
+  @Description("High-water mark of the allocator since it was created")
+  @DataAmount
+  public long peak;
+
+  @Label("Limit")
+  @DataAmount
+  public long limit;
+
+  /**
+   * Emits an event with the current usage of the given allocator, if the event is enabled.
+   *
+   * @param bufferAllocator the allocator to report on.
+   */
+  public static void emit(BufferAllocator bufferAllocator) {
+    final AllocatorEvent event = new AllocatorEvent();
+    if (event.shouldCommit()) {
+      event.allocator = bufferAllocator.getName();
+      event.allocated = bufferAllocator.getAllocatedMemory();
+      event.peak = bufferAllocator.getPeakMemoryAllocation();
+      event.limit = bufferAllocator.getLimit();
+      event.commit();
+    }
+  }
+}
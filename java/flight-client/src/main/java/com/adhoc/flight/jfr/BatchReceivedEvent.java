@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event covering the wait for one record batch from a Flight stream.
+ */
+@Name("com.adhoc.flight.BatchReceived")
+@Label("Flight Batch Received")
+@Category({"Dremio", "Flight Client"})
+@Description("Time spent waiting for a record batch from a Flight stream")
+public final class BatchReceivedEvent extends Event {
+  @Label("Endpoint")
+  @Description("Index of the endpoint the batch was streamed from")
+  public int endpoint;
+
+  @Label("Batch")
+  @Description("Index of the batch within its stream")
+  public long batch;
+
+  @Label("Rows")
+  public int rows;
+
+  @Label("Bytes")
+  @Description("Size of the batch body")
+  @DataAmount
+  public long bytes;
+}
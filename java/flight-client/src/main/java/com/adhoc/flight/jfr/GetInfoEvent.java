@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event covering a getInfo request, i.e. query planning on the coordinator.
+ */
+@Name("com.adhoc.flight.GetInfo")
+@Label("Flight GetInfo")
+@Category({"Dremio", "Flight Client"})
+@Description("A getInfo request that plans a query and returns its endpoints")
+public final class GetInfoEvent extends Event {
+  @Label("Endpoints")
+  public int endpoints;
+
+  @Label("Total Records")
+  @Description("Total records reported by the server, or -1 if unknown")
+  public long totalRecords;
+
+  @Label("Total Bytes")
+  @Description("Total bytes reported by the server, or -1 if unknown")
+  @DataAmount
+  public long totalBytes;
+}
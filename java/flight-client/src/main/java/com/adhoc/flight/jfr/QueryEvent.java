@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event covering one {@code AdhocFlightClient.runQuery} call, from getInfo to the end of the
+ * last stream.
+ */
+@Name("com.adhoc.flight.Query")
+@Label("Flight Query")
+@Category({"Dremio", "Flight Client"})
+@Description("A query executed through the adhoc Flight client")
+public final class QueryEvent extends Event {
+  @Label("Query")
+  public String query;
+
+  @Label("Project ID")
+  public String projectId;
+
+  @Label("Succeeded")
+  public boolean succeeded;
+}
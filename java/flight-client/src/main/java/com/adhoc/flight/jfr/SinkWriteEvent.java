@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event covering a write of one record batch, or the end of the stream, to the output sink.
+ */
+@Name("com.adhoc.flight.SinkWrite")
+@Label("Flight Sink Write")
+@Category({"Dremio", "Flight Client"})
+@Description("Time spent writing query results to the output sink")
+public final class SinkWriteEvent extends Event {
+  @Label("Endpoint")
+  public int endpoint;
+
+  @Label("Batch")
+  @Description("Index of the batch written, or -1 for the end-of-stream flush")
+  public long batch;
+
+  @Label("Rows")
+  public int rows;
+}
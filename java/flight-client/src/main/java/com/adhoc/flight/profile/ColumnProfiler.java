@@ -0,0 +1,139 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.profile;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+
+/**
+ * Batch consumer that profiles every column of a query result in a single streaming pass: row and
+ * null counts, exact min and max, approximate distinct counts (HyperLogLog) and approximate quantiles
+ * (KLL). Memory use is constant per column, regardless of the number of rows.
+ * <p>
+ * The columns of each batch are profiled in parallel on the given executor. {@link #accept} returns
+ * only once every column of the batch has been read, so the batch may be reused afterwards.
+ */
+public final class ColumnProfiler implements Consumer<VectorSchemaRoot> {
+  private static final double[] REPORTED_QUANTILES = {0.25, 0.5, 0.75, 0.99};
+
+  private final Executor executor;
+  private List<ColumnStatistics> columns;
+  private long batchCount;
+
+  /**
+   * Create a profiler that profiles columns in parallel on the common fork-join pool.
+   */
+  public ColumnProfiler() {
+    this(ForkJoinPool.commonPool());
+  }
+
+  /**
+   * Create a profiler that profiles columns in parallel on the given executor.
+   *
+   * @param executor the executor to profile columns on.
+   */
+  public ColumnProfiler(Executor executor) {
+    this.executor = executor;
+  }
+
+  @Override
+  public void accept(VectorSchemaRoot root) {
+    final List<FieldVector> vectors = root.getFieldVectors();
+    if (columns == null) {
+      final List<ColumnStatistics> statistics = new ArrayList<>(vectors.size());
+      vectors.forEach(vector -> statistics.add(ColumnStatistics.forVector(vector)));
+      columns = Collections.unmodifiableList(statistics);
+    }
+    final int rowCount = root.getRowCount();
+    final CompletableFuture<?>[] updates = new CompletableFuture<?>[vectors.size()];
+    for (int i = vectors.size() - 1; i >= 0; i--) {
+      final ColumnStatistics statistics = columns.get(i);
+      final FieldVector vector = vectors.get(i);
+      // The first column is profiled on the calling thread while the others run on the executor.
+      updates[i] = CompletableFuture.runAsync(() -> statistics.add(vector, rowCount),
+          i == 0 ? Runnable::run : executor);
+    }
+    try {
+      CompletableFuture.allOf(updates).join();
+    } catch (CompletionException ex) {
+      if (ex.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) ex.getCause();
+      }
+      throw ex;
+    }
+    batchCount++;
+  }
+
+  /**
+   * Returns the statistics of each column, in schema order. Empty until the first batch is seen.
+   */
+  public List<ColumnStatistics> getColumns() {
+    return columns == null ? Collections.emptyList() : columns;
+  }
+
+  /**
+   * Returns the number of batches profiled.
+   */
+  public long getBatchCount() {
+    return batchCount;
+  }
+
+  /**
+   * Format the profile as a tab separated table with one row per column.
+   *
+   * @return the formatted profile.
+   */
+  public String toReportString() {
+    final StringBuilder report = new StringBuilder(
+        "column\ttype\trows\tnulls\tdistinct~\tmin\tp25~\tp50~\tp75~\tp99~\tmax\n");
+    for (final ColumnStatistics column : getColumns()) {
+      report.append(column.getName()).append('\t')
+          .append(column.getType()).append('\t')
+          .append(column.getRowCount()).append('\t')
+          .append(column.getNullCount()).append('\t')
+          .append(column.getDistinctCount()).append('\t')
+          .append(column.isIntegral() ? column.formatLong(column.getMinLong()) : format(column.getMin()));
+      for (final double fraction : REPORTED_QUANTILES) {
+        report.append('\t').append(format(column.getQuantile(fraction)));
+      }
+      report.append('\t')
+          .append(column.isIntegral() ? column.formatLong(column.getMaxLong()) : format(column.getMax()))
+          .append('\n');
+    }
+    return report.toString();
+  }
+
+  private static String format(double value) {
+    if (Double.isNaN(value)) {
+      return "-";
+    }
+    if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+      return Long.toString((long) value);
+    }
+    return String.format(Locale.ROOT, "%.6g", value);
+  }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.profile;
+
+import org.apache.arrow.vector.BaseVariableWidthVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.types.Types.MinorType;
+
+/**
+ * Streaming statistics of a single result column. Every instance uses a fixed amount of memory, no
+ * matter how many rows are added.
+ * <p>
+ * Numeric, date and timestamp columns are summarized by their values, in the units of the vector.
+ * Variable-width columns, such as strings and binaries, are summarized by the byte length of their
+ * values. Other columns only have row, null and distinct counts. The min and max of integer, date
+ * and timestamp columns are kept as longs, so they stay exact beyond the 2^53 precision of doubles.
+ */
+public abstract class ColumnStatistics {
+  private final String name;
+  private final String type;
+  private final boolean unsigned;
+  private final HyperLogLog distinct = new HyperLogLog();
+  private final KllSketch quantiles = new KllSketch();
+  private long rowCount;
+  private long nullCount;
+  private double min = Double.POSITIVE_INFINITY;
+  private double max = Double.NEGATIVE_INFINITY;
+  private boolean integral;
+  private long minLong;
+  private long maxLong;
+
+  ColumnStatistics(FieldVector vector) {
+    this.name = vector.getName();
+    this.type = vector.getMinorType().name();
+    this.unsigned = vector.getMinorType() == MinorType.UINT8;
+  }
+
+  /**
+   * Create the statistics matching the type of the given vector.
+   *
+   * @param vector the first vector of the column.
+   * @return new, empty statistics for the column.
+   */
+  static ColumnStatistics forVector(FieldVector vector) {
+    if (NumericColumnStatistics.supports(vector)) {
+      return new NumericColumnStatistics(vector);
+    }
+    if (vector instanceof BaseVariableWidthVector) {
+      return new VariableWidthColumnStatistics(vector);
+    }
+    return new ObjectColumnStatistics(vector);
+  }
+
+  /**
+   * Add the rows of a batch of this column.
+   *
+   * @param vector   the vector of this column in the batch.
+   * @param rowCount the number of rows in the batch.
+   */
+  final void add(FieldVector vector, int rowCount) {
+    this.rowCount += rowCount;
+    update(vector, rowCount);
+  }
+
+  /**
+   * Add the values of the given vector. Implementations are specialized by vector type so that
+   * values are read as primitives, without boxing.
+   */
+  abstract void update(FieldVector vector, int rowCount);
+
+  final void addNull() {
+    nullCount++;
+  }
+
+  final HyperLogLog distinct() {
+    return distinct;
+  }
+
+  /**
+   * Add a value to the min, max and quantile summaries.
+   */
+  final void addValue(double value) {
+    if (Double.isNaN(value)) {
+      return;
+    }
+    if (value < min) {
+      min = value;
+    }
+    if (value > max) {
+      max = value;
+    }
+    quantiles.update(value);
+  }
+
+  /**
+   * Add an integer value to the min, max and quantile summaries. UINT8 values are compared as
+   * unsigned.
+   */
+  final void addIntegerValue(long value) {
+    if (!integral) {
+      integral = true;
+      minLong = value;
+      maxLong = value;
+    } else if (compare(value, minLong) < 0) {
+      minLong = value;
+    } else if (compare(value, maxLong) > 0) {
+      maxLong = value;
+    }
+    final double asDouble = unsigned && value < 0 ? (value >>> 1) * 2.0 + (value & 1) : value;
+    addValue(asDouble);
+  }
+
+  private int compare(long left, long right) {
+    return unsigned ? Long.compareUnsigned(left, right) : Long.compare(left, right);
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getType() {
+    return type;
+  }
+
+  public long getRowCount() {
+    return rowCount;
+  }
+
+  public long getNullCount() {
+    return nullCount;
+  }
+
+  /**
+   * Returns the approximate number of distinct non-null values.
+   */
+  public long getDistinctCount() {
+    return distinct.estimate();
+  }
+
+  /**
+   * Returns the minimum, or NaN if the column has no summarized values. Integers beyond 2^53 are
+   * rounded to the nearest double; use {@link #getMinLong} for their exact value.
+   */
+  public double getMin() {
+    return quantiles.getCount() == 0 ? Double.NaN : min;
+  }
+
+  /**
+   * Returns the maximum, or NaN if the column has no summarized values. Integers beyond 2^53 are
+   * rounded to the nearest double; use {@link #getMaxLong} for their exact value.
+   */
+  public double getMax() {
+    return quantiles.getCount() == 0 ? Double.NaN : max;
+  }
+
+  /**
+   * Returns whether the column has summarized integer, date or timestamp values, whose exact range
+   * is returned by {@link #getMinLong} and {@link #getMaxLong}.
+   */
+  public boolean isIntegral() {
+    return integral;
+  }
+
+  /**
+   * Returns the exact minimum of an integral column. The value of a UINT8 column is unsigned, see
+   * {@link Long#toUnsignedString(long)}.
+   *
+   * @return the exact minimum.
+   * @throws IllegalStateException if the column is not {@link #isIntegral() integral}.
+   */
+  public long getMinLong() {
+    checkIntegral();
+    return minLong;
+  }
+
+  /**
+   * Returns the exact maximum of an integral column. The value of a UINT8 column is unsigned, see
+   * {@link Long#toUnsignedString(long)}.
+   *
+   * @return the exact maximum.
+   * @throws IllegalStateException if the column is not {@link #isIntegral() integral}.
+   */
+  public long getMaxLong() {
+    checkIntegral();
+    return maxLong;
+  }
+
+  /**
+   * Format an exact integer value of this column, as returned by {@link #getMinLong} or
+   * {@link #getMaxLong}.
+   */
+  String formatLong(long value) {
+    return unsigned ? Long.toUnsignedString(value) : Long.toString(value);
+  }
+
+  private void checkIntegral() {
+    if (!integral) {
+      throw new IllegalStateException("Column " + name + " has no integer values.");
+    }
+  }
+
+  /**
+   * Returns the approximate value at the given rank. Ranks of 0 and 1 return {@link #getMin} and
+   * {@link #getMax}.
+   *
+   * @param fraction the normalized rank, from 0 to 1.
+   * @return the approximate quantile, or NaN if the column has no summarized values.
+   */
+  public double getQuantile(double fraction) {
+    if (fraction <= 0) {
+      return getMin();
+    }
+    if (fraction >= 1) {
+      return getMax();
+    }
+    return quantiles.quantile(fraction);
+  }
+}
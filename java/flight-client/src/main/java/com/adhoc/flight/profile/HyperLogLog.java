@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.profile;
+
+import org.apache.arrow.memory.ArrowBuf;
+
+/**
+ * HyperLogLog cardinality sketch over 64-bit hashes, with 2^14 one-byte registers (16 KiB). The
+ * standard error of the estimate is about 0.8%, independent of the number of values added.
+ */
+final class HyperLogLog {
+  private static final int PRECISION = 14;
+  private static final int REGISTER_COUNT = 1 << PRECISION;
+  private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTER_COUNT);
+  private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+  private final byte[] registers = new byte[REGISTER_COUNT];
+
+  /**
+   * Add a long value, such as the bits of an integer, timestamp or double.
+   *
+   * @param value the value to add.
+   */
+  void add(long value) {
+    addHash(mix(value + GOLDEN_GAMMA));
+  }
+
+  /**
+   * Add a byte range read directly from an Arrow buffer, such as a variable-width value.
+   *
+   * @param buffer the buffer holding the value.
+   * @param start  the offset of the first byte.
+   * @param length the number of bytes.
+   */
+  void add(ArrowBuf buffer, long start, int length) {
+    long hash = GOLDEN_GAMMA ^ length;
+    long index = start;
+    final long end = start + length;
+    for (; index + Long.BYTES <= end; index += Long.BYTES) {
+      hash = mix(hash ^ buffer.getLong(index)) + GOLDEN_GAMMA;
+    }
+    long tail = 0;
+    for (int shift = 0; index < end; index++, shift += Byte.SIZE) {
+      tail |= (buffer.getByte(index) & 0xffL) << shift;
+    }
+    addHash(mix(hash ^ tail));
+  }
+
+  private void addHash(long hash) {
+    final int register = (int) (hash >>> (Long.SIZE - PRECISION));
+    // The sentinel bit caps the rank at 64 - PRECISION + 1 for hashes whose remaining bits are zero.
+    final int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+    if (rank > registers[register]) {
+      registers[register] = (byte) rank;
+    }
+  }
+
+  /**
+   * Returns the estimated number of distinct values added.
+   */
+  long estimate() {
+    double sum = 0;
+    int zeros = 0;
+    for (final byte register : registers) {
+      sum += 1.0 / (1L << register);
+      if (register == 0) {
+        zeros++;
+      }
+    }
+    final double estimate = ALPHA * REGISTER_COUNT * REGISTER_COUNT / sum;
+    if (estimate <= 2.5 * REGISTER_COUNT && zeros > 0) {
+      // Linear counting is more accurate while many registers are still empty.
+      return Math.round(REGISTER_COUNT * Math.log((double) REGISTER_COUNT / zeros));
+    }
+    return Math.round(estimate);
+  }
+
+  /**
+   * The 64-bit finalizer of MurmurHash3, which spreads every input bit over the whole result.
+   */
+  private static long mix(long value) {
+    value = (value ^ (value >>> 33)) * 0xff51afd7ed558ccdL;
+    value = (value ^ (value >>> 33)) * 0xc4ceb9fe1a85ec53L;
+    return value ^ (value >>> 33);
+  }
+}
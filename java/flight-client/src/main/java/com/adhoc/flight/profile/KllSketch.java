@@ -0,0 +1,144 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.profile;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * KLL quantile sketch (Karnin, Lang and Liberty) over doubles. Values are kept in levels of
+ * geometrically shrinking capacity; a full level is sorted and every other value is promoted to the
+ * level above with twice the weight. Memory stays around {@code 3k} values no matter how many are
+ * added, and the rank error of a quantile is roughly {@code 1.7 / k}.
+ */
+final class KllSketch {
+  static final int DEFAULT_K = 200;
+  private static final int MIN_CAPACITY = 8;
+  private static final double CAPACITY_DECAY = 2.0 / 3.0;
+
+  private final int k;
+  // A fixed seed keeps profiles of the same data reproducible.
+  private final SplittableRandom random = new SplittableRandom(0x5eed);
+  private double[][] levels = new double[1][];
+  private int[] sizes = new int[1];
+  private long count;
+
+  KllSketch() {
+    this(DEFAULT_K);
+  }
+
+  KllSketch(int k) {
+    this.k = k;
+    levels[0] = new double[k];
+  }
+
+  void update(double value) {
+    append(0, value);
+    count++;
+    if (sizes[0] >= capacity(0)) {
+      compress();
+    }
+  }
+
+  /**
+   * Returns the number of values added.
+   */
+  long getCount() {
+    return count;
+  }
+
+  /**
+   * Estimate the value at the given normalized rank.
+   *
+   * @param fraction the rank, from 0 to 1.
+   * @return the estimated quantile, or NaN if no values have been added.
+   */
+  double quantile(double fraction) {
+    if (count == 0) {
+      return Double.NaN;
+    }
+    int retained = 0;
+    for (final int size : sizes) {
+      retained += size;
+    }
+    final double[] values = new double[retained];
+    final long[] weights = new long[retained];
+    final Integer[] order = new Integer[retained];
+    long totalWeight = 0;
+    int next = 0;
+    for (int level = 0; level < levels.length; level++) {
+      for (int i = 0; i < sizes[level]; i++) {
+        values[next] = levels[level][i];
+        weights[next] = 1L << level;
+        order[next] = next;
+        totalWeight += weights[next];
+        next++;
+      }
+    }
+    Arrays.sort(order, (left, right) -> Double.compare(values[left], values[right]));
+    final double targetWeight = fraction * totalWeight;
+    long cumulativeWeight = 0;
+    for (final int index : order) {
+      cumulativeWeight += weights[index];
+      if (cumulativeWeight >= targetWeight) {
+        return values[index];
+      }
+    }
+    return values[order[retained - 1]];
+  }
+
+  private int capacity(int level) {
+    final int depth = levels.length - 1 - level;
+    return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_DECAY, depth)));
+  }
+
+  private void compress() {
+    for (int level = 0; level < levels.length; level++) {
+      if (sizes[level] >= capacity(level)) {
+        if (level + 1 == levels.length) {
+          addLevel();
+        }
+        compact(level);
+      }
+    }
+  }
+
+  private void compact(int level) {
+    final double[] buffer = levels[level];
+    final int size = sizes[level];
+    Arrays.sort(buffer, 0, size);
+    // An odd value out stays behind so that the promoted values pair up evenly.
+    final int kept = size & 1;
+    for (int i = kept + (random.nextBoolean() ? 1 : 0); i < size; i += 2) {
+      append(level + 1, buffer[i]);
+    }
+    sizes[level] = kept;
+  }
+
+  private void addLevel() {
+    levels = Arrays.copyOf(levels, levels.length + 1);
+    sizes = Arrays.copyOf(sizes, sizes.length + 1);
+    levels[levels.length - 1] = new double[k];
+  }
+
+  private void append(int level, double value) {
+    if (sizes[level] == levels[level].length) {
+      levels[level] = Arrays.copyOf(levels[level], levels[level].length * 2);
+    }
+    levels[level][sizes[level]++] = value;
+  }
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.profile;
+
+import org.apache.arrow.vector.BaseIntVector;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.DateMilliVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float4Vector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.TimeStampVector;
+
+/**
+ * Statistics of integer, floating point, date and timestamp columns.
+ */
+final class NumericColumnStatistics extends ColumnStatistics {
+
+  NumericColumnStatistics(FieldVector vector) {
+    super(vector);
+  }
+
+  static boolean supports(FieldVector vector) {
+    return vector instanceof BaseIntVector || vector instanceof Float8Vector ||
+        vector instanceof Float4Vector || vector instanceof TimeStampVector ||
+        vector instanceof DateDayVector || vector instanceof DateMilliVector;
+  }
+
+  @Override
+  void update(FieldVector vector, int rowCount) {
+    // The most common types get their own loops so the element reads are monomorphic.
+    if (vector instanceof IntVector) {
+      update((IntVector) vector, rowCount);
+    } else if (vector instanceof BigIntVector) {
+      update((BigIntVector) vector, rowCount);
+    } else if (vector instanceof Float8Vector) {
+      update((Float8Vector) vector, rowCount);
+    } else if (vector instanceof Float4Vector) {
+      update((Float4Vector) vector, rowCount);
+    } else if (vector instanceof TimeStampVector) {
+      update((TimeStampVector) vector, rowCount);
+    } else if (vector instanceof DateDayVector) {
+      update((DateDayVector) vector, rowCount);
+    } else if (vector instanceof DateMilliVector) {
+      update((DateMilliVector) vector, rowCount);
+    } else {
+      update((BaseIntVector) vector, rowCount);
+    }
+  }
+
+  private void update(IntVector vector, int rowCount) {
+    final boolean hasNulls = vector.getNullCount() > 0;
+    for (int i = 0; i < rowCount; i++) {
+      if (hasNulls && vector.isNull(i)) {
+        addNull();
+      } else {
+        addLong(vector.get(i));
+      }
+    }
+  }
+
+  private void update(BigIntVector vector, int rowCount) {
+    final boolean hasNulls = vector.getNullCount() > 0;
+    for (int i = 0; i < rowCount; i++) {
+      if (hasNulls && vector.isNull(i)) {
+        addNull();
+      } else {
+        addLong(vector.get(i));
+      }
+    }
+  }
+
+  private void update(Float8Vector vector, int rowCount) {
+    final boolean hasNulls = vector.getNullCount() > 0;
+    for (int i = 0; i < rowCount; i++) {
+      if (hasNulls && vector.isNull(i)) {
+        addNull();
+      } else {
+        addDouble(vector.get(i));
+      }
+    }
+  }
+
+  private void update(Float4Vector vector, int rowCount) {
+    final boolean hasNulls = vector.getNullCount() > 0;
+    for (int i = 0; i < rowCount; i++) {
+      if (hasNulls && vector.isNull(i)) {
+        addNull();
+      } else {
+        addDouble(vector.get(i));
+      }
+    }
+  }
+
+  private void update(TimeStampVector vector, int rowCount) {
+    final boolean hasNulls = vector.getNullCount() > 0;
+    for (int i = 0; i < rowCount; i++) {
+      if (hasNulls && vector.isNull(i)) {
+        addNull();
+      } else {
+        addLong(vector.get(i));
+      }
+    }
+  }
+
+  private void update(DateDayVector vector, int rowCount) {
+    final boolean hasNulls = vector.getNullCount() > 0;
+    for (int i = 0; i < rowCount; i++) {
+      if (hasNulls && vector.isNull(i)) {
+        addNull();
+      } else {
+        addLong(vector.get(i));
+      }
+    }
+  }
+
+  private void update(DateMilliVector vector, int rowCount) {
+    final boolean hasNulls = vector.getNullCount() > 0;
+    for (int i = 0; i < rowCount; i++) {
+      if (hasNulls && vector.isNull(i)) {
+        addNull();
+      } else {
+        addLong(vector.get(i));
+      }
+    }
+  }
+
+  private void update(BaseIntVector vector, int rowCount) {
+    final FieldVector fieldVector = (FieldVector) vector;
+    final boolean hasNulls = fieldVector.getNullCount() > 0;
+    for (int i = 0; i < rowCount; i++) {
+      if (hasNulls && fieldVector.isNull(i)) {
+        addNull();
+      } else {
+        addLong(vector.getValueAsLong(i));
+      }
+    }
+  }
+
+  private void addLong(long value) {
+    distinct().add(value);
+    addIntegerValue(value);
+  }
+
+  private void addDouble(double value) {
+    // Normalize -0.0 so that it is not counted as distinct from 0.0.
+    distinct().add(Double.doubleToLongBits(value + 0.0));
+    addValue(value);
+  }
+}
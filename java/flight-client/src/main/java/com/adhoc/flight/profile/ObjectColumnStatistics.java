@@ -0,0 +1,42 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.profile;
+
+import org.apache.arrow.vector.FieldVector;
+
+/**
+ * Row, null and distinct counts of columns without a specialized summary, such as decimals, lists
+ * and structs. Values are materialized as objects and counted by their hash codes.
+ */
+final class ObjectColumnStatistics extends ColumnStatistics {
+
+  ObjectColumnStatistics(FieldVector vector) {
+    super(vector);
+  }
+
+  @Override
+  void update(FieldVector vector, int rowCount) {
+    for (int i = 0; i < rowCount; i++) {
+      final Object value = vector.getObject(i);
+      if (value == null) {
+        addNull();
+      } else {
+        distinct().add(value.hashCode());
+      }
+    }
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.profile;
+
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.vector.BaseVariableWidthVector;
+import org.apache.arrow.vector.FieldVector;
+
+/**
+ * Statistics of string and binary columns. Distinct values are counted by hashing the bytes in place
+ * in the data buffer; min, max and quantiles describe value lengths in bytes.
+ */
+final class VariableWidthColumnStatistics extends ColumnStatistics {
+
+  VariableWidthColumnStatistics(FieldVector vector) {
+    super(vector);
+  }
+
+  @Override
+  void update(FieldVector vector, int rowCount) {
+    final BaseVariableWidthVector variableWidthVector = (BaseVariableWidthVector) vector;
+    final ArrowBuf data = variableWidthVector.getDataBuffer();
+    final boolean hasNulls = vector.getNullCount() > 0;
+    for (int i = 0; i < rowCount; i++) {
+      if (hasNulls && vector.isNull(i)) {
+        addNull();
+      } else {
+        final int length = variableWidthVector.getValueLength(i);
+        distinct().add(data, variableWidthVector.getStartOffset(i), length);
+        addValue(length);
+      }
+    }
+  }
+}
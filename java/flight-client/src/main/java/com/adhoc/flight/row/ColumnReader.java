@@ -0,0 +1,235 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.row;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.apache.arrow.memory.ArrowBuf;
+import org.apache.arrow.vector.BaseLargeVariableWidthVector;
+import org.apache.arrow.vector.BaseVariableWidthVector;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.BitVectorHelper;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.DateMilliVector;
+import org.apache.arrow.vector.DurationVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float4Vector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.IntervalYearVector;
+import org.apache.arrow.vector.NullVector;
+import org.apache.arrow.vector.SmallIntVector;
+import org.apache.arrow.vector.TimeMicroVector;
+import org.apache.arrow.vector.TimeMilliVector;
+import org.apache.arrow.vector.TimeNanoVector;
+import org.apache.arrow.vector.TimeSecVector;
+import org.apache.arrow.vector.TimeStampVector;
+import org.apache.arrow.vector.TinyIntVector;
+import org.apache.arrow.vector.UInt1Vector;
+import org.apache.arrow.vector.UInt2Vector;
+import org.apache.arrow.vector.UInt4Vector;
+import org.apache.arrow.vector.UInt8Vector;
+
+/**
+ * Reads the values of one column straight from the buffers of its vector. The vector type is
+ * resolved once per batch by {@link #bind}, so reading a value is a switch over a few layouts and a
+ * buffer read, without boxing.
+ */
+final class ColumnReader {
+  /**
+   * Physical layout of a column.
+   */
+  private enum Layout {
+    NULL, BIT, INT8, UINT8, INT16, UINT16, INT32, UINT32, INT64, UINT64, FLOAT4, FLOAT8, VARIABLE,
+    LARGE_VARIABLE, OTHER
+  }
+
+  private FieldVector vector;
+  private Layout layout;
+  private ArrowBuf validity;
+  private ArrowBuf data;
+  private ArrowBuf offsets;
+
+  /**
+   * Point this reader at the vector of the column in a new batch.
+   *
+   * @param vector the vector to read.
+   */
+  void bind(FieldVector vector) {
+    this.vector = vector;
+    this.layout = layoutOf(vector);
+    if (layout == Layout.NULL || layout == Layout.OTHER) {
+      validity = null;
+      data = null;
+      offsets = null;
+      return;
+    }
+    validity = vector.getValidityBuffer();
+    data = vector.getDataBuffer();
+    offsets = layout == Layout.VARIABLE || layout == Layout.LARGE_VARIABLE ? vector.getOffsetBuffer() : null;
+  }
+
+  private static Layout layoutOf(FieldVector vector) {
+    if (vector instanceof NullVector) {
+      return Layout.NULL;
+    } else if (vector instanceof BitVector) {
+      return Layout.BIT;
+    } else if (vector instanceof TinyIntVector) {
+      return Layout.INT8;
+    } else if (vector instanceof UInt1Vector) {
+      return Layout.UINT8;
+    } else if (vector instanceof SmallIntVector) {
+      return Layout.INT16;
+    } else if (vector instanceof UInt2Vector) {
+      return Layout.UINT16;
+    } else if (vector instanceof IntVector || vector instanceof DateDayVector ||
+        vector instanceof TimeSecVector || vector instanceof TimeMilliVector ||
+        vector instanceof IntervalYearVector) {
+      return Layout.INT32;
+    } else if (vector instanceof UInt4Vector) {
+      return Layout.UINT32;
+    } else if (vector instanceof BigIntVector || vector instanceof TimeStampVector ||
+        vector instanceof DateMilliVector || vector instanceof TimeMicroVector ||
+        vector instanceof TimeNanoVector || vector instanceof DurationVector) {
+      return Layout.INT64;
+    } else if (vector instanceof UInt8Vector) {
+      return Layout.UINT64;
+    } else if (vector instanceof Float4Vector) {
+      return Layout.FLOAT4;
+    } else if (vector instanceof Float8Vector) {
+      return Layout.FLOAT8;
+    } else if (vector instanceof BaseVariableWidthVector) {
+      return Layout.VARIABLE;
+    } else if (vector instanceof BaseLargeVariableWidthVector) {
+      return Layout.LARGE_VARIABLE;
+    }
+    return Layout.OTHER;
+  }
+
+  boolean isNull(int row) {
+    switch (layout) {
+      case NULL:
+        return true;
+      case OTHER:
+        return vector.isNull(row);
+      default:
+        return BitVectorHelper.get(validity, row) == 0;
+    }
+  }
+
+  long getLong(int row) {
+    switch (layout) {
+      case BIT:
+        return BitVectorHelper.get(data, row);
+      case INT8:
+        return data.getByte(row);
+      case UINT8:
+        return data.getByte(row) & 0xFFL;
+      case INT16:
+        return data.getShort((long) row * Short.BYTES);
+      case UINT16:
+        return data.getShort((long) row * Short.BYTES) & 0xFFFFL;
+      case INT32:
+        return data.getInt((long) row * Integer.BYTES);
+      case UINT32:
+        return data.getInt((long) row * Integer.BYTES) & 0xFFFFFFFFL;
+      case INT64:
+      case UINT64:
+        return data.getLong((long) row * Long.BYTES);
+      default:
+        throw unsupported("a long");
+    }
+  }
+
+  double getDouble(int row) {
+    switch (layout) {
+      case FLOAT4:
+        return data.getFloat((long) row * Float.BYTES);
+      case FLOAT8:
+        return data.getDouble((long) row * Double.BYTES);
+      case UINT64:
+        final long value = data.getLong((long) row * Long.BYTES);
+        // Add back the top bit that a signed conversion would treat as the sign.
+        return value >= 0 ? value : (double) (value >>> 1 | value & 1) * 2.0;
+      default:
+        return getLong(row);
+    }
+  }
+
+  boolean getBoolean(int row) {
+    if (layout != Layout.BIT) {
+      throw unsupported("a boolean");
+    }
+    return BitVectorHelper.get(data, row) != 0;
+  }
+
+  int getLength(int row) {
+    return (int) (end(row) - start(row));
+  }
+
+  int getBytes(int row, ByteBuffer target) {
+    final long start = start(row);
+    final int length = (int) (end(row) - start);
+    if (target.remaining() < length) {
+      throw new BufferOverflowException();
+    }
+    final int limit = target.limit();
+    target.limit(target.position() + length);
+    data.getBytes(start, target);
+    target.limit(limit);
+    return length;
+  }
+
+  byte[] getByteArray(int row) {
+    final long start = start(row);
+    final byte[] bytes = new byte[(int) (end(row) - start)];
+    data.getBytes(start, bytes);
+    return bytes;
+  }
+
+  String getString(int row) {
+    return new String(getByteArray(row), StandardCharsets.UTF_8);
+  }
+
+  private long start(int row) {
+    switch (layout) {
+      case VARIABLE:
+        return offsets.getInt((long) row * BaseVariableWidthVector.OFFSET_WIDTH);
+      case LARGE_VARIABLE:
+        return offsets.getLong((long) row * BaseLargeVariableWidthVector.OFFSET_WIDTH);
+      default:
+        throw unsupported("bytes");
+    }
+  }
+
+  private long end(int row) {
+    return start(row + 1);
+  }
+
+  Object getObject(int row) {
+    return vector.getObject(row);
+  }
+
+  private IllegalArgumentException unsupported(String target) {
+    return new IllegalArgumentException(String.format("Column %s of type %s cannot be read as %s.",
+        vector.getName(), vector.getMinorType(), target));
+  }
+}
@@ -0,0 +1,344 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.row;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.apache.arrow.vector.types.DateUnit;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.ArrowType.ArrowTypeID;
+import org.apache.arrow.vector.types.pojo.Field;
+
+/**
+ * How one column is read into one property of a mapped class: the Java type, the conversion from
+ * the Arrow type, and for mutable classes the method handle that sets the property.
+ * <p>
+ * Primitive properties are read with the primitive accessors of {@link ColumnReader} and set with
+ * {@link MethodHandle#invokeExact}, so no value is boxed. Other properties are converted once per
+ * value by a converter chosen when the mapping is created.
+ */
+final class PropertyMapping {
+  /**
+   * Java representation of a property.
+   */
+  private enum Kind {
+    LONG, INT, SHORT, BYTE, BOOLEAN, DOUBLE, FLOAT, REFERENCE
+  }
+
+  /**
+   * Conversion of a non-null value to a reference type.
+   */
+  private interface Converter {
+    Object convert(ColumnReader reader, int row);
+  }
+
+  private final String name;
+  private final int column;
+  private final Kind kind;
+  private final Class<?> type;
+  private final @Nullable Converter converter;
+  private final @Nullable MethodHandle setter;
+
+  private PropertyMapping(String name, int column, Kind kind, Class<?> type, @Nullable Converter converter,
+      @Nullable MethodHandle setter) {
+    this.name = name;
+    this.column = column;
+    this.kind = kind;
+    this.type = type;
+    this.converter = converter;
+    this.setter = setter;
+  }
+
+  /**
+   * Create the mapping of a column to a property.
+   *
+   * @param name   the name of the property.
+   * @param type   the Java type of the property.
+   * @param field  the Arrow field of the column.
+   * @param column the index of the column.
+   * @param setter a handle of type (owner, type)void that sets the property, or null for records.
+   * @return the mapping.
+   * @throws IllegalArgumentException if the column cannot be converted to the property type.
+   */
+  static PropertyMapping of(String name, Class<?> type, Field field, int column, @Nullable MethodHandle setter) {
+    final Kind kind = kindOf(type);
+    final ArrowType arrowType = field.getType();
+    final ArrowTypeID id = arrowType.getTypeID();
+    final Converter converter;
+    switch (kind) {
+      case REFERENCE:
+        converter = converter(type, arrowType);
+        break;
+      case BOOLEAN:
+        checkCompatible(id == ArrowTypeID.Bool, name, type, field);
+        converter = null;
+        break;
+      case DOUBLE:
+      case FLOAT:
+        checkCompatible(id == ArrowTypeID.FloatingPoint || isInteger(id), name, type, field);
+        converter = null;
+        break;
+      default:
+        checkCompatible(isInteger(id), name, type, field);
+        converter = null;
+        break;
+    }
+    final MethodHandle typedSetter = setter == null ? null :
+        setter.asType(MethodType.methodType(void.class, Object.class, kind == Kind.REFERENCE ? Object.class : type));
+    return new PropertyMapping(name, column, kind, type, converter, typedSetter);
+  }
+
+  private static Kind kindOf(Class<?> type) {
+    if (type == long.class) {
+      return Kind.LONG;
+    } else if (type == int.class) {
+      return Kind.INT;
+    } else if (type == short.class) {
+      return Kind.SHORT;
+    } else if (type == byte.class) {
+      return Kind.BYTE;
+    } else if (type == boolean.class) {
+      return Kind.BOOLEAN;
+    } else if (type == double.class) {
+      return Kind.DOUBLE;
+    } else if (type == float.class) {
+      return Kind.FLOAT;
+    }
+    return Kind.REFERENCE;
+  }
+
+  /**
+   * Checks whether values of the Arrow type are read by {@link ColumnReader#getLong}.
+   */
+  private static boolean isInteger(ArrowTypeID id) {
+    return id == ArrowTypeID.Int || id == ArrowTypeID.Date || id == ArrowTypeID.Time ||
+        id == ArrowTypeID.Timestamp || id == ArrowTypeID.Duration;
+  }
+
+  private static void checkCompatible(boolean compatible, String name, Class<?> type, Field field) {
+    if (!compatible) {
+      throw new IllegalArgumentException(String.format("Column %s of type %s cannot be mapped to %s %s.",
+          field.getName(), field.getType(), type.getSimpleName(), name));
+    }
+  }
+
+  private static Converter converter(Class<?> type, ArrowType arrowType) {
+    final ArrowTypeID id = arrowType.getTypeID();
+    final boolean bytes = id == ArrowTypeID.Utf8 || id == ArrowTypeID.LargeUtf8 ||
+        id == ArrowTypeID.Binary || id == ArrowTypeID.LargeBinary;
+    if (type == String.class) {
+      return bytes ? ColumnReader::getString : (reader, row) -> String.valueOf(reader.getObject(row));
+    } else if (type == byte[].class && bytes) {
+      return ColumnReader::getByteArray;
+    } else if ((type == Long.class || type == Integer.class || type == Short.class || type == Byte.class) &&
+        isInteger(id)) {
+      return boxedInteger(type);
+    } else if ((type == Double.class || type == Float.class) && (id == ArrowTypeID.FloatingPoint || isInteger(id))) {
+      return type == Double.class ? (reader, row) -> reader.getDouble(row) :
+          (reader, row) -> (float) reader.getDouble(row);
+    } else if (type == Boolean.class && id == ArrowTypeID.Bool) {
+      return ColumnReader::getBoolean;
+    } else if (type == LocalDate.class && id == ArrowTypeID.Date) {
+      final boolean days = ((ArrowType.Date) arrowType).getUnit() == DateUnit.DAY;
+      return days ? (reader, row) -> LocalDate.ofEpochDay(reader.getLong(row)) :
+          (reader, row) -> LocalDate.ofEpochDay(Math.floorDiv(reader.getLong(row), TimeUnit.DAYS.toMillis(1)));
+    } else if ((type == Instant.class || type == LocalDateTime.class) && id == ArrowTypeID.Timestamp) {
+      final long nanosPerUnit = nanosPerUnit(((ArrowType.Timestamp) arrowType).getUnit());
+      return type == Instant.class ? (reader, row) -> toInstant(reader.getLong(row), nanosPerUnit) :
+          (reader, row) -> toLocalDateTime(toInstant(reader.getLong(row), nanosPerUnit));
+    }
+    // Anything else, such as decimals, lists and structs, is read as Arrow's own Java object.
+    return (reader, row) -> type.cast(reader.getObject(row));
+  }
+
+  private static Converter boxedInteger(Class<?> type) {
+    if (type == Long.class) {
+      return (reader, row) -> reader.getLong(row);
+    } else if (type == Integer.class) {
+      return (reader, row) -> (int) reader.getLong(row);
+    } else if (type == Short.class) {
+      return (reader, row) -> (short) reader.getLong(row);
+    }
+    return (reader, row) -> (byte) reader.getLong(row);
+  }
+
+  private static long nanosPerUnit(org.apache.arrow.vector.types.TimeUnit unit) {
+    switch (unit) {
+      case SECOND:
+        return 1_000_000_000L;
+      case MILLISECOND:
+        return 1_000_000L;
+      case MICROSECOND:
+        return 1_000L;
+      default:
+        return 1L;
+    }
+  }
+
+  private static Instant toInstant(long value, long nanosPerUnit) {
+    final long unitsPerSecond = 1_000_000_000L / nanosPerUnit;
+    return Instant.ofEpochSecond(Math.floorDiv(value, unitsPerSecond),
+        Math.floorMod(value, unitsPerSecond) * nanosPerUnit);
+  }
+
+  private static LocalDateTime toLocalDateTime(Instant instant) {
+    return LocalDateTime.ofEpochSecond(instant.getEpochSecond(), instant.getNano(), ZoneOffset.UTC);
+  }
+
+  int getColumn() {
+    return column;
+  }
+
+  Class<?> getType() {
+    return type;
+  }
+
+  /**
+   * Set this property of a batch of objects, reading the column row by row.
+   *
+   * @param reader  the reader of the column, bound to the batch.
+   * @param rows    the number of rows of the batch.
+   * @param targets the objects to set, one per row.
+   * @param offset  the index in targets of the object of the first row.
+   */
+  void set(ColumnReader reader, int rows, Object[] targets, int offset) throws Throwable {
+    final MethodHandle set = setter;
+    for (int row = 0; row < rows; row++) {
+      final Object target = targets[offset + row];
+      if (kind == Kind.REFERENCE) {
+        set.invokeExact(target, reader.isNull(row) ? null : converter.convert(reader, row));
+        continue;
+      }
+      checkNotNull(reader, row);
+      switch (kind) {
+        case LONG:
+          set.invokeExact(target, reader.getLong(row));
+          break;
+        case INT:
+          set.invokeExact(target, (int) reader.getLong(row));
+          break;
+        case SHORT:
+          set.invokeExact(target, (short) reader.getLong(row));
+          break;
+        case BYTE:
+          set.invokeExact(target, (byte) reader.getLong(row));
+          break;
+        case BOOLEAN:
+          set.invokeExact(target, reader.getBoolean(row));
+          break;
+        case DOUBLE:
+          set.invokeExact(target, reader.getDouble(row));
+          break;
+        default:
+          set.invokeExact(target, (float) reader.getDouble(row));
+          break;
+      }
+    }
+  }
+
+  /**
+   * Read the column of a batch into an array of the property type: a primitive array for primitive
+   * properties, an {@code Object[]} otherwise.
+   *
+   * @param reader the reader of the column, bound to the batch.
+   * @param rows   the number of rows of the batch.
+   * @return the values of the column.
+   */
+  Object read(ColumnReader reader, int rows) {
+    switch (kind) {
+      case LONG: {
+        final long[] values = new long[rows];
+        for (int row = 0; row < rows; row++) {
+          checkNotNull(reader, row);
+          values[row] = reader.getLong(row);
+        }
+        return values;
+      }
+      case INT: {
+        final int[] values = new int[rows];
+        for (int row = 0; row < rows; row++) {
+          checkNotNull(reader, row);
+          values[row] = (int) reader.getLong(row);
+        }
+        return values;
+      }
+      case SHORT: {
+        final short[] values = new short[rows];
+        for (int row = 0; row < rows; row++) {
+          checkNotNull(reader, row);
+          values[row] = (short) reader.getLong(row);
+        }
+        return values;
+      }
+      case BYTE: {
+        final byte[] values = new byte[rows];
+        for (int row = 0; row < rows; row++) {
+          checkNotNull(reader, row);
+          values[row] = (byte) reader.getLong(row);
+        }
+        return values;
+      }
+      case BOOLEAN: {
+        final boolean[] values = new boolean[rows];
+        for (int row = 0; row < rows; row++) {
+          checkNotNull(reader, row);
+          values[row] = reader.getBoolean(row);
+        }
+        return values;
+      }
+      case DOUBLE: {
+        final double[] values = new double[rows];
+        for (int row = 0; row < rows; row++) {
+          checkNotNull(reader, row);
+          values[row] = reader.getDouble(row);
+        }
+        return values;
+      }
+      case FLOAT: {
+        final float[] values = new float[rows];
+        for (int row = 0; row < rows; row++) {
+          checkNotNull(reader, row);
+          values[row] = (float) reader.getDouble(row);
+        }
+        return values;
+      }
+      default: {
+        final Object[] values = new Object[rows];
+        for (int row = 0; row < rows; row++) {
+          values[row] = reader.isNull(row) ? null : converter.convert(reader, row);
+        }
+        return values;
+      }
+    }
+  }
+
+  private void checkNotNull(ColumnReader reader, int row) {
+    if (reader.isNull(row)) {
+      throw new IllegalArgumentException(String.format(
+          "Column of %s %s is null in row %d. Use a boxed type to map nulls.", type.getSimpleName(), name, row));
+    }
+  }
+}
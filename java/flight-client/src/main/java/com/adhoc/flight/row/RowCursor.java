@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.row;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.function.Consumer;
+
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+
+/**
+ * Cursor over the rows of a batch with typed accessors that read values straight from the vector
+ * buffers. Unlike {@code getObject}, they allocate nothing per value, so row-oriented consumers can
+ * read whole results without creating garbage.
+ * <p>
+ * Vector types are resolved once per batch by {@link #reset}. Flight streams reload the same root
+ * with new buffers for every batch, so the cursor must be reset for each batch before it is read:
+ * <pre>{@code
+ * RowCursor cursor = new RowCursor();
+ * client.runQuery(query, headers, null, null, false, root -> {
+ *   cursor.reset(root);
+ *   while (cursor.next()) {
+ *     total += cursor.getLong(0);
+ *   }
+ * });
+ * }</pre>
+ * Columns are addressed by their index in the schema. A cursor is not thread-safe.
+ */
+public final class RowCursor {
+  private ColumnReader[] columns = new ColumnReader[0];
+  private VectorSchemaRoot root;
+  private int rowCount;
+  private int row = -1;
+
+  /**
+   * Create a batch consumer that runs the given action once per row, with a cursor positioned on
+   * the row.
+   *
+   * @param rowAction the action to run for each row. The cursor is only valid during the call.
+   * @return a batch consumer to pass to {@code runQuery}.
+   */
+  public static Consumer<VectorSchemaRoot> forEachRow(Consumer<RowCursor> rowAction) {
+    final RowCursor cursor = new RowCursor();
+    return root -> {
+      cursor.reset(root);
+      while (cursor.next()) {
+        rowAction.accept(cursor);
+      }
+    };
+  }
+
+  /**
+   * Point the cursor before the first row of a batch, and resolve the type of each of its columns.
+   *
+   * @param root the batch to read.
+   */
+  public void reset(VectorSchemaRoot root) {
+    final List<FieldVector> vectors = root.getFieldVectors();
+    if (columns.length != vectors.size()) {
+      columns = new ColumnReader[vectors.size()];
+      for (int i = 0; i < columns.length; i++) {
+        columns[i] = new ColumnReader();
+      }
+    }
+    for (int i = 0; i < columns.length; i++) {
+      columns[i].bind(vectors.get(i));
+    }
+    this.root = root;
+    this.rowCount = root.getRowCount();
+    this.row = -1;
+  }
+
+  /**
+   * Move to the next row of the batch.
+   *
+   * @return true if the cursor is on a row, false once every row was read.
+   */
+  public boolean next() {
+    if (row < rowCount) {
+      row++;
+    }
+    return row < rowCount;
+  }
+
+  /**
+   * Returns the index of the current row in the batch.
+   */
+  public int getRow() {
+    return row;
+  }
+
+  /**
+   * Move to the given row of the batch.
+   *
+   * @param row the index of the row.
+   * @throws IndexOutOfBoundsException if the batch has no such row.
+   */
+  public void setRow(int row) {
+    if (row < 0 || row >= rowCount) {
+      throw new IndexOutOfBoundsException("Row " + row + " is not in a batch of " + rowCount + " rows.");
+    }
+    this.row = row;
+  }
+
+  public int getRowCount() {
+    return rowCount;
+  }
+
+  public int getColumnCount() {
+    return columns.length;
+  }
+
+  /**
+   * Find a column by name.
+   *
+   * @param name the name of the column.
+   * @return the index of the column.
+   * @throws IllegalArgumentException if the batch has no such column.
+   */
+  public int getColumnIndex(String name) {
+    final List<FieldVector> vectors = root.getFieldVectors();
+    for (int i = 0; i < vectors.size(); i++) {
+      if (vectors.get(i).getName().equals(name)) {
+        return i;
+      }
+    }
+    throw new IllegalArgumentException("Column not found in query results: " + name);
+  }
+
+  /**
+   * Check whether the value of a column is null in the current row.
+   *
+   * @param column the index of the column.
+   * @return true if the value is null.
+   */
+  public boolean isNull(int column) {
+    return columns[column].isNull(row);
+  }
+
+  /**
+   * Read an integer, boolean, date, time, timestamp, duration or year-month interval value as a
+   * long, in the units of the vector. Unsigned 64-bit values are returned as their bits.
+   *
+   * @param column the index of the column.
+   * @return the value. It is unspecified if the value is null, see {@link #isNull}.
+   * @throws IllegalArgumentException if the column holds another type.
+   */
+  public long getLong(int column) {
+    return columns[column].getLong(row);
+  }
+
+  /**
+   * Read a floating point or integer value as a double.
+   *
+   * @param column the index of the column.
+   * @return the value. It is unspecified if the value is null, see {@link #isNull}.
+   * @throws IllegalArgumentException if the column holds another type.
+   */
+  public double getDouble(int column) {
+    return columns[column].getDouble(row);
+  }
+
+  /**
+   * Read a boolean value.
+   *
+   * @param column the index of the column.
+   * @return the value. It is unspecified if the value is null, see {@link #isNull}.
+   * @throws IllegalArgumentException if the column is not boolean.
+   */
+  public boolean getBoolean(int column) {
+    return columns[column].getBoolean(row);
+  }
+
+  /**
+   * Get the length in bytes of a string or binary value, to size the buffer passed to
+   * {@link #getUtf8}.
+   *
+   * @param column the index of the column.
+   * @return the length of the value. It is unspecified if the value is null, see {@link #isNull}.
+   * @throws IllegalArgumentException if the column is not a string or binary column.
+   */
+  public int getLength(int column) {
+    return columns[column].getLength(row);
+  }
+
+  /**
+   * Copy the UTF-8 bytes of a string value, or the bytes of a binary value, into a buffer. The bytes
+   * are written at the position of the buffer, which is advanced past them.
+   *
+   * @param column the index of the column.
+   * @param target the buffer to copy the value into.
+   * @return the number of bytes copied. It is unspecified if the value is null, see {@link #isNull}.
+   * @throws IllegalArgumentException if the column is not a string or binary column.
+   * @throws BufferOverflowException if the value does not fit in the remaining space of the buffer.
+   */
+  public int getUtf8(int column, ByteBuffer target) {
+    return columns[column].getBytes(row, target);
+  }
+
+  /**
+   * Read a value of any type as an object, for columns the typed accessors do not cover, such as
+   * decimals, lists and structs. This allocates like {@code FieldVector.getObject}.
+   *
+   * @param column the index of the column.
+   * @return the value, or null.
+   */
+  public Object getObject(int column) {
+    return columns[column].getObject(row);
+  }
+}
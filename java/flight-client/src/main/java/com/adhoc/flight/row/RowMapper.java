@@ -0,0 +1,324 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.row;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Array;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+
+import javax.annotation.Nullable;
+
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+/**
+ * Maps the rows of result batches to objects of a Java class, such as a record or a POJO, column by
+ * column.
+ * <p>
+ * Columns are matched to properties by name, ignoring case and underscores, so that a column
+ * {@code order_id} fills a property {@code orderId}. Columns without a property are ignored.
+ * <ul>
+ *   <li>Records are created with their canonical constructor. Every component needs a column. Each
+ *       column of a batch is first read into an array, then a single method handle creates each
+ *       record from the arrays, without boxing primitive components.</li>
+ *   <li>Other classes need a no-argument constructor. Their non-static, non-transient, non-final
+ *       fields are set column by column through method handles. Fields without a column keep their
+ *       initial value.</li>
+ * </ul>
+ * Primitive properties are read without boxing. Null values can only be mapped to reference types,
+ * such as {@code Long}. Strings are decoded from the UTF-8 bytes of the vector, and dates and
+ * timestamps can be mapped to {@code LocalDate}, {@code Instant} and {@code LocalDateTime} (UTC).
+ * Other types are read with {@code getObject}.
+ * <p>
+ * Mappers are immutable and thread-safe. {@link #of} caches them per schema and class.
+ *
+ * @param <T> the type of the mapped objects.
+ */
+public final class RowMapper<T> {
+  private static final int CACHE_SIZE = 256;
+  private static final Cache<CacheKey, RowMapper<?>> CACHE = CacheBuilder.newBuilder()
+      .maximumSize(CACHE_SIZE)
+      .build();
+  private static final Method IS_RECORD = classMethod("isRecord");
+  private static final Method GET_RECORD_COMPONENTS = classMethod("getRecordComponents");
+
+  private final Schema schema;
+  private final Class<T> type;
+  private final List<PropertyMapping> properties;
+  // Creates an instance: (int row, Object[] columns)Object for records, ()Object otherwise.
+  private final MethodHandle factory;
+  private final boolean record;
+
+  private RowMapper(Schema schema, Class<T> type, List<PropertyMapping> properties, MethodHandle factory,
+      boolean record) {
+    this.schema = schema;
+    this.type = type;
+    this.properties = properties;
+    this.factory = factory;
+    this.record = record;
+  }
+
+  /**
+   * Get the mapper of batches with the given schema to the given class, creating it on first use.
+   *
+   * @param schema the schema of the batches.
+   * @param type   the class to map rows to.
+   * @param <T>    the type of the mapped objects.
+   * @return the mapper.
+   * @throws IllegalArgumentException if the class cannot be created, or a column cannot be converted
+   *                                  to its property.
+   */
+  @SuppressWarnings("unchecked")
+  public static <T> RowMapper<T> of(Schema schema, Class<T> type) {
+    try {
+      return (RowMapper<T>) CACHE.get(new CacheKey(schema, type), () -> create(schema, type));
+    } catch (ExecutionException | UncheckedExecutionException ex) {
+      if (ex.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) ex.getCause();
+      }
+      throw new IllegalStateException(ex.getCause());
+    }
+  }
+
+  /**
+   * Create a batch consumer that maps every row to an object and passes it to the given action.
+   *
+   * @param type   the class to map rows to.
+   * @param action the action to run for each object.
+   * @param <T>    the type of the mapped objects.
+   * @return a batch consumer to pass to {@code runQuery}.
+   */
+  public static <T> Consumer<VectorSchemaRoot> forEach(Class<T> type, Consumer<? super T> action) {
+    return root -> of(root.getSchema(), type).map(root).forEach(action);
+  }
+
+  private static <T> RowMapper<T> create(Schema schema, Class<T> type) throws ReflectiveOperationException {
+    final Map<String, Integer> columns = new HashMap<>();
+    for (int i = schema.getFields().size() - 1; i >= 0; i--) {
+      columns.put(normalize(schema.getFields().get(i).getName()), i);
+    }
+    final MethodHandles.Lookup lookup = MethodHandles.lookup();
+    final List<PropertyMapping> properties = new ArrayList<>();
+    if (isRecord(type)) {
+      final Object[] components = (Object[]) GET_RECORD_COMPONENTS.invoke(type);
+      final Class<?>[] componentTypes = new Class<?>[components.length];
+      for (int i = 0; i < components.length; i++) {
+        final String name = (String) components[i].getClass().getMethod("getName").invoke(components[i]);
+        componentTypes[i] = (Class<?>) components[i].getClass().getMethod("getType").invoke(components[i]);
+        final Integer column = columns.get(normalize(name));
+        if (column == null) {
+          throw new IllegalArgumentException(String.format("No column for component %s of %s in %s.",
+              name, type.getName(), schema.getFields()));
+        }
+        properties.add(PropertyMapping.of(name, componentTypes[i], schema.getFields().get(column), column, null));
+      }
+      final Constructor<T> constructor = type.getDeclaredConstructor(componentTypes);
+      constructor.setAccessible(true);
+      return new RowMapper<>(schema, type, properties,
+          recordFactory(lookup.unreflectConstructor(constructor), componentTypes), true);
+    }
+
+    final Constructor<T> constructor;
+    try {
+      constructor = type.getDeclaredConstructor();
+    } catch (NoSuchMethodException ex) {
+      throw new IllegalArgumentException(type.getName() + " must be a record or have a no-argument constructor.");
+    }
+    constructor.setAccessible(true);
+    for (Class<?> owner = type; owner != null && owner != Object.class; owner = owner.getSuperclass()) {
+      for (final Field field : owner.getDeclaredFields()) {
+        final int modifiers = field.getModifiers();
+        final Integer column = columns.get(normalize(field.getName()));
+        if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || Modifier.isFinal(modifiers) ||
+            field.isSynthetic() || column == null) {
+          continue;
+        }
+        field.setAccessible(true);
+        properties.add(PropertyMapping.of(field.getName(), field.getType(), schema.getFields().get(column), column,
+            lookup.unreflectSetter(field)));
+      }
+    }
+    return new RowMapper<>(schema, type, properties,
+        lookup.unreflectConstructor(constructor).asType(MethodType.methodType(Object.class)), false);
+  }
+
+  /**
+   * Adapt a canonical constructor (P0, ..., Pn)T to (int row, Object[] columns)Object, where each
+   * column is an array of its component type and each argument Pi is read as columns[i][row].
+   */
+  private static MethodHandle recordFactory(MethodHandle constructor, Class<?>[] componentTypes) {
+    final int count = componentTypes.length;
+    MethodHandle factory = constructor;
+    final Class<?>[] arrayTypes = new Class<?>[count];
+    // Replace each argument Pi by (Ai array, int row), from the last one so earlier positions stay put.
+    for (int i = count - 1; i >= 0; i--) {
+      arrayTypes[i] = componentTypes[i].isPrimitive() ? Array.newInstance(componentTypes[i], 0).getClass() :
+          Object[].class;
+      final MethodHandle element = MethodHandles.arrayElementGetter(arrayTypes[i])
+          .asType(MethodType.methodType(componentTypes[i], arrayTypes[i], int.class));
+      factory = MethodHandles.collectArguments(factory, i, element);
+    }
+    // Share a single row argument, in front of the arrays: (int row, A0, ..., An).
+    final Class<?>[] parameters = new Class<?>[count + 1];
+    parameters[0] = int.class;
+    System.arraycopy(arrayTypes, 0, parameters, 1, count);
+    final int[] reorder = new int[count * 2];
+    for (int i = 0; i < count; i++) {
+      reorder[2 * i] = i + 1;
+      reorder[2 * i + 1] = 0;
+    }
+    factory = MethodHandles.permuteArguments(factory,
+        MethodType.methodType(factory.type().returnType(), parameters), reorder);
+    return factory.asSpreader(Object[].class, count)
+        .asType(MethodType.methodType(Object.class, int.class, Object[].class));
+  }
+
+  private static boolean isRecord(Class<?> type) throws ReflectiveOperationException {
+    return IS_RECORD != null && (Boolean) IS_RECORD.invoke(type);
+  }
+
+  private static @Nullable Method classMethod(String name) {
+    try {
+      return Class.class.getMethod(name);
+    } catch (NoSuchMethodException ex) {
+      // Records only exist on JDK 16+.
+      return null;
+    }
+  }
+
+  private static String normalize(String name) {
+    return name.replace("_", "").toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Map every row of a batch to a new object.
+   *
+   * @param root the batch, with the schema of this mapper.
+   * @return the objects, in row order.
+   * @throws IllegalArgumentException if the batch has another schema, or a null is read into a
+   *                                  primitive property.
+   */
+  @SuppressWarnings("unchecked")
+  public List<T> map(VectorSchemaRoot root) {
+    final T[] rows = (T[]) Array.newInstance(type, root.getRowCount());
+    map(root, rows, 0);
+    return Arrays.asList(rows);
+  }
+
+  /**
+   * Map every row of a batch to a new object, stored in the given array.
+   *
+   * @param root   the batch, with the schema of this mapper.
+   * @param target the array to store the objects in.
+   * @param offset the index in the array of the object of the first row.
+   * @throws IllegalArgumentException if the batch has another schema, or a null is read into a
+   *                                  primitive property.
+   * @throws IndexOutOfBoundsException if the array is too small.
+   */
+  public void map(VectorSchemaRoot root, T[] target, int offset) {
+    if (!schema.equals(root.getSchema())) {
+      throw new IllegalArgumentException("Batch schema " + root.getSchema() + " differs from " + schema);
+    }
+    final int rows = root.getRowCount();
+    if (offset < 0 || offset + rows > target.length) {
+      throw new IndexOutOfBoundsException(
+          String.format("%d rows do not fit at offset %d of an array of %d.", rows, offset, target.length));
+    }
+    try {
+      if (record) {
+        mapRecords(root, rows, target, offset);
+      } else {
+        mapObjects(root, rows, target, offset);
+      }
+    } catch (RuntimeException | Error ex) {
+      throw ex;
+    } catch (Throwable t) {
+      throw new IllegalStateException("Cannot create " + type.getName(), t);
+    }
+  }
+
+  private void mapRecords(VectorSchemaRoot root, int rows, Object[] target, int offset) throws Throwable {
+    final Object[] columns = new Object[properties.size()];
+    final ColumnReader reader = new ColumnReader();
+    for (int i = 0; i < columns.length; i++) {
+      final PropertyMapping property = properties.get(i);
+      reader.bind(root.getVector(property.getColumn()));
+      columns[i] = property.read(reader, rows);
+    }
+    for (int row = 0; row < rows; row++) {
+      target[offset + row] = (Object) factory.invokeExact(row, columns);
+    }
+  }
+
+  private void mapObjects(VectorSchemaRoot root, int rows, Object[] target, int offset) throws Throwable {
+    for (int row = 0; row < rows; row++) {
+      target[offset + row] = (Object) factory.invokeExact();
+    }
+    final ColumnReader reader = new ColumnReader();
+    for (final PropertyMapping property : properties) {
+      reader.bind(root.getVector(property.getColumn()));
+      property.set(reader, rows, target, offset);
+    }
+  }
+
+  public Class<T> getType() {
+    return type;
+  }
+
+  private static final class CacheKey {
+    private final Schema schema;
+    private final Class<?> type;
+
+    private CacheKey(Schema schema, Class<?> type) {
+      this.schema = schema;
+      this.type = type;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof CacheKey)) {
+        return false;
+      }
+      final CacheKey key = (CacheKey) other;
+      return schema.equals(key.schema) && type.equals(key.type);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(schema, type);
+    }
+  }
+}
@@ -0,0 +1,414 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.script;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The dependencies between the statements of a script, inferred from the tables each statement
+ * produces and consumes.
+ * <p>
+ * A statement produces the table it creates, inserts into, updates, deletes from, alters or drops,
+ * and consumes the tables it reads after {@code FROM}, {@code JOIN} or {@code USING}. A statement
+ * depends on every earlier statement that:
+ * <ul>
+ *   <li>produces a table it consumes, so it reads the table once written;</li>
+ *   <li>produces a table it produces, so writes to a table keep their script order;</li>
+ *   <li>consumes a table it produces, so a table is not changed or dropped while it is read.</li>
+ * </ul>
+ * Table names are compared case-insensitively, and a name matches the names it is a dotted suffix
+ * of, so {@code orders} and {@code "$scratch".orders} are taken for the same table. Statements whose
+ * tables cannot be inferred, or that change session state, such as {@code USE} or
+ * {@code ALTER SESSION}, are barriers: they depend on every earlier statement and every later
+ * statement depends on them.
+ * <p>
+ * Line comments in a statement may declare its tables instead, for example when it reads through a
+ * view: {@code -- @produces db.summary} and {@code -- @consumes db.orders, db.customers} replace the
+ * inferred produced and consumed tables respectively.
+ */
+public final class ScriptGraph {
+  private static final Pattern DECLARATION = Pattern.compile(
+      "^\\s*--\\s*@(produces|consumes)\\b(.*)$", Pattern.MULTILINE | Pattern.CASE_INSENSITIVE);
+  private static final Set<String> TABLE_KINDS = new HashSet<>(Arrays.asList(
+      "TABLE", "VIEW", "VDS", "PDS", "DATASET"));
+  private static final Set<String> SOURCE_KEYWORDS = new HashSet<>(Arrays.asList("FROM", "JOIN", "USING"));
+  private static final Set<String> OPTIONAL_KEYWORDS = new HashSet<>(Arrays.asList(
+      "OR", "REPLACE", "IF", "NOT", "EXISTS", "INTO", "FROM", "TABLE", "VIEW", "VDS", "PDS", "DATASET"));
+  private static final Set<String> FROM_FUNCTIONS = new HashSet<>(Arrays.asList(
+      "EXTRACT", "TRIM", "SUBSTRING", "POSITION", "OVERLAY"));
+
+  private final List<String> statements;
+  private final List<Set<String>> produced = new ArrayList<>();
+  private final List<Set<String>> consumed = new ArrayList<>();
+  private final List<Set<Integer>> dependencies = new ArrayList<>();
+  private final List<Set<Integer>> dependents = new ArrayList<>();
+
+  private ScriptGraph(List<String> statements) {
+    this.statements = Collections.unmodifiableList(new ArrayList<>(statements));
+    final boolean[] barriers = new boolean[statements.size()];
+    for (int i = 0; i < statements.size(); i++) {
+      final String statement = statements.get(i);
+      final List<Token> tokens = tokenize(statement);
+      final Set<String> declaredProduced = declared(statement, "produces");
+      final Set<String> declaredConsumed = declared(statement, "consumes");
+      final Set<String> inferredProduced = inferProduced(tokens);
+      produced.add(declaredProduced != null ? declaredProduced : inferredProduced);
+      consumed.add(declaredConsumed != null ? declaredConsumed : inferConsumed(tokens));
+      barriers[i] = declaredProduced == null && inferredProduced.isEmpty() && !SqlScript.isReadOnly(statement);
+      dependencies.add(new TreeSet<>());
+      dependents.add(new TreeSet<>());
+    }
+    for (int later = 0; later < statements.size(); later++) {
+      for (int earlier = 0; earlier < later; earlier++) {
+        if (barriers[earlier] || barriers[later] ||
+            overlaps(produced.get(earlier), consumed.get(later)) ||
+            overlaps(produced.get(earlier), produced.get(later)) ||
+            overlaps(consumed.get(earlier), produced.get(later))) {
+          dependencies.get(later).add(earlier);
+          dependents.get(earlier).add(later);
+        }
+      }
+    }
+  }
+
+  /**
+   * Builds the graph of the given statements.
+   *
+   * @param statements the statements of a script, in order, for example from {@link SqlScript#read}.
+   * @return the graph of the statements.
+   */
+  public static ScriptGraph of(List<String> statements) {
+    return new ScriptGraph(statements);
+  }
+
+  public int size() {
+    return statements.size();
+  }
+
+  public String getStatement(int index) {
+    return statements.get(index);
+  }
+
+  /**
+   * Gets the tables a statement produces, normalized to lower case without quotes.
+   *
+   * @param index the position of the statement in the script.
+   * @return the produced tables.
+   */
+  public Set<String> getProduced(int index) {
+    return Collections.unmodifiableSet(produced.get(index));
+  }
+
+  /**
+   * Gets the tables a statement consumes, normalized to lower case without quotes.
+   *
+   * @param index the position of the statement in the script.
+   * @return the consumed tables.
+   */
+  public Set<String> getConsumed(int index) {
+    return Collections.unmodifiableSet(consumed.get(index));
+  }
+
+  /**
+   * Gets the earlier statements a statement must wait for.
+   *
+   * @param index the position of the statement in the script.
+   * @return the positions of the statements it depends on, in script order.
+   */
+  public Set<Integer> getDependencies(int index) {
+    return Collections.unmodifiableSet(dependencies.get(index));
+  }
+
+  /**
+   * Gets the later statements that wait for a statement.
+   *
+   * @param index the position of the statement in the script.
+   * @return the positions of the statements that depend on it, in script order.
+   */
+  public Set<Integer> getDependents(int index) {
+    return Collections.unmodifiableSet(dependents.get(index));
+  }
+
+  /**
+   * Gets every statement that depends on a statement, directly or through other statements.
+   *
+   * @param index the position of the statement in the script.
+   * @return the positions of the downstream statements, in script order.
+   */
+  public Set<Integer> getDownstream(int index) {
+    final Set<Integer> downstream = new TreeSet<>();
+    // Dependents always come later in the script, so one pass in script order finds them all.
+    downstream.addAll(dependents.get(index));
+    for (int i = index + 1; i < statements.size(); i++) {
+      if (downstream.contains(i)) {
+        downstream.addAll(dependents.get(i));
+      }
+    }
+    return downstream;
+  }
+
+  private static boolean overlaps(Set<String> first, Set<String> second) {
+    for (String a : first) {
+      for (String b : second) {
+        if (a.equals(b) || a.endsWith("." + b) || b.endsWith("." + a)) {
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  private static Set<String> declared(String statement, String kind) {
+    Set<String> tables = null;
+    final Matcher matcher = DECLARATION.matcher(statement);
+    while (matcher.find()) {
+      if (!matcher.group(1).equalsIgnoreCase(kind)) {
+        continue;
+      }
+      if (tables == null) {
+        tables = new LinkedHashSet<>();
+      }
+      for (String name : matcher.group(2).split("[,\\s]+")) {
+        final String table = name.replace("\"", "").replace("`", "").toLowerCase(Locale.ROOT);
+        if (!table.isEmpty()) {
+          tables.add(table);
+        }
+      }
+    }
+    return tables;
+  }
+
+  /**
+   * Finds the target of a statement that writes a table, after its leading keywords, such as
+   * {@code CREATE OR REPLACE TABLE IF NOT EXISTS}.
+   */
+  private static Set<String> inferProduced(List<Token> tokens) {
+    final Set<String> tables = new LinkedHashSet<>();
+    if (tokens.isEmpty()) {
+      return tables;
+    }
+    final String verb = tokens.get(0).keyword();
+    final boolean needsKind = verb.equals("CREATE") || verb.equals("DROP") || verb.equals("ALTER") ||
+        verb.equals("OPTIMIZE") || verb.equals("VACUUM");
+    final boolean writes = needsKind || verb.equals("INSERT") || verb.equals("MERGE") || verb.equals("UPDATE") ||
+        verb.equals("DELETE") || verb.equals("TRUNCATE");
+    if (!writes) {
+      return tables;
+    }
+    boolean sawKind = false;
+    int i = 1;
+    while (i < tokens.size() && !tokens.get(i).quoted && OPTIONAL_KEYWORDS.contains(tokens.get(i).keyword())) {
+      sawKind |= TABLE_KINDS.contains(tokens.get(i).keyword());
+      i++;
+    }
+    if (needsKind && !sawKind) {
+      return tables;
+    }
+    final String name = readName(tokens, i);
+    if (name != null) {
+      tables.add(name);
+    }
+    return tables;
+  }
+
+  /**
+   * Finds the tables read after {@code FROM}, {@code JOIN} and {@code USING}, leaving out
+   * subqueries, table functions, the names of common table expressions and the {@code FROM} of
+   * functions such as {@code EXTRACT(YEAR FROM d)}.
+   */
+  private static Set<String> inferConsumed(List<Token> tokens) {
+    final Set<String> commonTables = new HashSet<>();
+    for (int i = 0; i + 2 < tokens.size(); i++) {
+      if (tokens.get(i).isName() && tokens.get(i + 1).keyword().equals("AS") && tokens.get(i + 2).is("(")) {
+        commonTables.add(tokens.get(i).name());
+      }
+    }
+    final Set<String> tables = new LinkedHashSet<>();
+    // The keyword before each open parenthesis, to tell function arguments from subqueries.
+    final Deque<String> parentheses = new ArrayDeque<>();
+    for (int i = 0; i < tokens.size(); i++) {
+      final Token token = tokens.get(i);
+      if (token.is("(")) {
+        parentheses.push(i > 0 ? tokens.get(i - 1).keyword() : "");
+        continue;
+      }
+      if (token.is(")")) {
+        parentheses.poll();
+        continue;
+      }
+      if (token.quoted || !SOURCE_KEYWORDS.contains(token.keyword()) ||
+          FROM_FUNCTIONS.contains(parentheses.peek())) {
+        continue;
+      }
+      int next = i + 1;
+      while (true) {
+        final int end = nameEnd(tokens, next);
+        if (end == next || end < tokens.size() && tokens.get(end).is("(")) {
+          break;
+        }
+        final String name = readName(tokens, next);
+        if (!commonTables.contains(name)) {
+          tables.add(name);
+        }
+        // Skips an alias, such as the o of FROM orders o or FROM orders AS o, to find the next of
+        // comma-separated sources.
+        next = end;
+        if (next < tokens.size() && tokens.get(next).keyword().equals("AS")) {
+          next++;
+        }
+        if (next < tokens.size() && tokens.get(next).isName()) {
+          next++;
+        }
+        if (next >= tokens.size() || !tokens.get(next).is(",")) {
+          break;
+        }
+        next++;
+      }
+    }
+    return tables;
+  }
+
+  /**
+   * Reads a dotted name starting at the given token.
+   *
+   * @return the normalized name, or null if there is no name at that position.
+   */
+  private static String readName(List<Token> tokens, int start) {
+    final int end = nameEnd(tokens, start);
+    if (end == start) {
+      return null;
+    }
+    final StringBuilder name = new StringBuilder();
+    for (int i = start; i < end; i += 2) {
+      if (name.length() > 0) {
+        name.append('.');
+      }
+      name.append(tokens.get(i).name());
+    }
+    return name.toString();
+  }
+
+  private static int nameEnd(List<Token> tokens, int start) {
+    if (start >= tokens.size() || !tokens.get(start).isName()) {
+      return start;
+    }
+    int end = start + 1;
+    while (end + 1 < tokens.size() && tokens.get(end).is(".") && tokens.get(end + 1).isName()) {
+      end += 2;
+    }
+    return end;
+  }
+
+  /**
+   * Splits a statement into words, quoted identifiers and punctuation, leaving out string literals,
+   * comments and whitespace.
+   */
+  private static List<Token> tokenize(String statement) {
+    final List<Token> tokens = new ArrayList<>();
+    int i = 0;
+    while (i < statement.length()) {
+      final char c = statement.charAt(i);
+      if (c == '\'') {
+        i = skipQuoted(statement, i, c);
+      } else if (c == '"' || c == '`') {
+        final int end = skipQuoted(statement, i, c);
+        final String text = statement.substring(i + 1, Math.max(i + 1, end - 1));
+        tokens.add(new Token(text.replace(String.valueOf(c) + c, String.valueOf(c)), true));
+        i = end;
+      } else if (statement.startsWith("--", i)) {
+        final int end = statement.indexOf('\n', i);
+        i = end < 0 ? statement.length() : end + 1;
+      } else if (statement.startsWith("/*", i)) {
+        final int end = statement.indexOf("*/", i + 2);
+        i = end < 0 ? statement.length() : end + 2;
+      } else if (isWordPart(c)) {
+        final int start = i;
+        while (i < statement.length() && isWordPart(statement.charAt(i))) {
+          i++;
+        }
+        tokens.add(new Token(statement.substring(start, i), false));
+      } else {
+        if (!Character.isWhitespace(c)) {
+          tokens.add(new Token(String.valueOf(c), false));
+        }
+        i++;
+      }
+    }
+    return tokens;
+  }
+
+  private static boolean isWordPart(char c) {
+    return Character.isLetterOrDigit(c) || c == '_' || c == '$';
+  }
+
+  private static int skipQuoted(String statement, int open, char quote) {
+    int i = open + 1;
+    while (i < statement.length()) {
+      if (statement.charAt(i) == quote) {
+        if (i + 1 < statement.length() && statement.charAt(i + 1) == quote) {
+          i += 2;
+          continue;
+        }
+        return i + 1;
+      }
+      i++;
+    }
+    return statement.length();
+  }
+
+  /**
+   * A word, quoted identifier or punctuation character of a statement.
+   */
+  private static final class Token {
+    private final String text;
+    private final boolean quoted;
+
+    Token(String text, boolean quoted) {
+      this.text = text;
+      this.quoted = quoted;
+    }
+
+    boolean is(String punctuation) {
+      return !quoted && text.equals(punctuation);
+    }
+
+    boolean isName() {
+      return quoted || isWordPart(text.charAt(0));
+    }
+
+    String keyword() {
+      return quoted ? "" : text.toUpperCase(Locale.ROOT);
+    }
+
+    String name() {
+      return text.toLowerCase(Locale.ROOT);
+    }
+  }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.script;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+/**
+ * What happened to each statement of a script run by a {@link ScriptRunner}.
+ */
+public final class ScriptReport {
+  /**
+   * The outcome of a statement.
+   */
+  public enum Status {
+    /**
+     * The statement ran and its results were read.
+     */
+    SUCCEEDED,
+
+    /**
+     * The statement, or the reading of its results, failed.
+     */
+    FAILED,
+
+    /**
+     * The statement did not run, because a statement failed before it could start.
+     */
+    SKIPPED
+  }
+
+  private final Status[] statuses;
+  private final long[] elapsedNanos;
+  private final int clients;
+  private Throwable failure;
+  private int firstFailedStatement = -1;
+  private int peakConcurrency;
+  private long totalNanos;
+
+  ScriptReport(int statements, int clients) {
+    this.statuses = new Status[statements];
+    Arrays.fill(statuses, Status.SKIPPED);
+    this.elapsedNanos = new long[statements];
+    this.clients = clients;
+  }
+
+  void started(int running) {
+    peakConcurrency = Math.max(peakConcurrency, running);
+  }
+
+  void completed(int statement, long nanos, @Nullable Throwable statementFailure) {
+    elapsedNanos[statement] = nanos;
+    if (statementFailure == null) {
+      statuses[statement] = Status.SUCCEEDED;
+      return;
+    }
+    statuses[statement] = Status.FAILED;
+    if (failure == null) {
+      failure = statementFailure;
+      firstFailedStatement = statement;
+    } else {
+      failure.addSuppressed(statementFailure);
+    }
+  }
+
+  void finished(long nanos) {
+    totalNanos = nanos;
+  }
+
+  public Status getStatus(int statement) {
+    return statuses[statement];
+  }
+
+  /**
+   * Gets the time a statement took, from planning to the end of its results.
+   *
+   * @param statement the position of the statement in the script.
+   * @return the time in milliseconds, or zero if the statement did not run.
+   */
+  public long getElapsedMillis(int statement) {
+    return elapsedNanos[statement] / 1_000_000;
+  }
+
+  /**
+   * Gets the positions of the statements with the given outcome.
+   *
+   * @param status the outcome.
+   * @return the positions of the statements, in script order.
+   */
+  public List<Integer> getStatements(Status status) {
+    final List<Integer> statements = new ArrayList<>();
+    for (int i = 0; i < statuses.length; i++) {
+      if (statuses[i] == status) {
+        statements.add(i);
+      }
+    }
+    return statements;
+  }
+
+  /**
+   * Gets the failure of the first statement that failed. The failures of statements that were
+   * running at the same time and also failed are suppressed by it.
+   *
+   * @return the failure, or null if every statement succeeded.
+   */
+  @Nullable
+  public Throwable getFailure() {
+    return failure;
+  }
+
+  /**
+   * Gets the position of the first statement that failed.
+   *
+   * @return the position, or -1 if every statement succeeded.
+   */
+  public int getFailedStatement() {
+    return firstFailedStatement;
+  }
+
+  /**
+   * Gets the largest number of statements that ran at the same time.
+   *
+   * @return the peak concurrency.
+   */
+  public int getPeakConcurrency() {
+    return peakConcurrency;
+  }
+
+  public long getElapsedMillis() {
+    return totalNanos / 1_000_000;
+  }
+
+  /**
+   * Throws the failure of the first statement that failed, if any.
+   *
+   * @throws Exception the failure.
+   */
+  public void throwIfFailed() throws Exception {
+    if (failure instanceof Exception) {
+      throw (Exception) failure;
+    }
+    if (failure instanceof Error) {
+      throw (Error) failure;
+    }
+  }
+
+  @Override
+  public String toString() {
+    final String outcome = String.format("Ran %d statements in %d ms on %d clients (at most %d at a time): " +
+            "%d succeeded, %d failed, %d skipped.",
+        statuses.length, getElapsedMillis(), clients, peakConcurrency, getStatements(Status.SUCCEEDED).size(),
+        getStatements(Status.FAILED).size(), getStatements(Status.SKIPPED).size());
+    return failure == null ? outcome :
+        outcome + String.format(" Statement %d failed: %s", firstFailedStatement + 1, failure.getMessage());
+  }
+}
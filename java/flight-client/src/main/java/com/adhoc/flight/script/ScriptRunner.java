@@ -0,0 +1,182 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.script;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+import org.apache.arrow.flight.HeaderCallOption;
+
+import com.adhoc.flight.client.AdhocFlightClient;
+import com.adhoc.flight.client.FlightBatchIterator;
+import com.adhoc.flight.client.StatementConsumer;
+
+/**
+ * Runs the statements of a script on a pool of clients, running the statements that do not depend
+ * on each other at the same time.
+ * <p>
+ * A statement starts once every statement it depends on in the {@link ScriptGraph} has succeeded
+ * and a client of the pool is free, each client running one statement at a time. Among the
+ * statements ready to start, the earliest in the script starts first. The runner fails fast: once
+ * a statement fails, no other statement starts, so nothing downstream of the failure runs. The
+ * statements already running are independent of the failure and are left to complete, rather than
+ * cancelled halfway through a write. Interrupting the thread running the script cancels every
+ * running statement.
+ */
+public final class ScriptRunner {
+  private static final String THREAD_NAME_PREFIX = "adhoc-flight-script-";
+
+  private final List<AdhocFlightClient> clients;
+  private final HeaderCallOption headerCallOption;
+
+  /**
+   * Creates a runner.
+   *
+   * @param clients          the pool of connected clients to run the statements with, one statement
+   *                         at a time each. They are not closed by the runner.
+   * @param headerCallOption client properties to run every statement with, or null.
+   */
+  public ScriptRunner(List<AdhocFlightClient> clients, @Nullable HeaderCallOption headerCallOption) {
+    if (clients.isEmpty()) {
+      throw new IllegalArgumentException("No clients to run the script with.");
+    }
+    this.clients = new ArrayList<>(clients);
+    this.headerCallOption = headerCallOption;
+  }
+
+  /**
+   * Runs the statements of a script.
+   *
+   * @param graph    the statements and their dependencies.
+   * @param consumer reads the results of each statement. It is called from the threads of the
+   *                 runner, for several statements at the same time.
+   * @return what happened to each statement. Failures are reported rather than thrown.
+   * @throws InterruptedException if the thread was interrupted, once every running statement is
+   *                              cancelled.
+   */
+  public ScriptReport run(ScriptGraph graph, StatementConsumer consumer) throws InterruptedException {
+    final long start = System.nanoTime();
+    final ScriptReport report = new ScriptReport(graph.size(), clients.size());
+    final int[] pendingDependencies = new int[graph.size()];
+    final PriorityQueue<Integer> ready = new PriorityQueue<>();
+    for (int i = 0; i < graph.size(); i++) {
+      pendingDependencies[i] = graph.getDependencies(i).size();
+      if (pendingDependencies[i] == 0) {
+        ready.add(i);
+      }
+    }
+    final Deque<AdhocFlightClient> idle = new ArrayDeque<>(clients);
+    final BlockingQueue<Completion> completions = new LinkedBlockingQueue<>();
+    final FlightBatchIterator[] running = new FlightBatchIterator[graph.size()];
+    final AtomicInteger threadCount = new AtomicInteger();
+    final ExecutorService workers = Executors.newFixedThreadPool(clients.size(), runnable -> {
+      final Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+    int runningCount = 0;
+    try {
+      while (true) {
+        while (report.getFailure() == null && !ready.isEmpty() && !idle.isEmpty()) {
+          final int index = ready.poll();
+          final AdhocFlightClient client = idle.poll();
+          workers.execute(() -> completions.add(runStatement(index, graph.getStatement(index), client, running,
+              consumer)));
+          runningCount++;
+          report.started(runningCount);
+        }
+        if (runningCount == 0) {
+          break;
+        }
+        final Completion completion = completions.take();
+        runningCount--;
+        idle.add(completion.client);
+        report.completed(completion.index, completion.elapsedNanos, completion.failure);
+        if (completion.failure == null) {
+          for (int dependent : graph.getDependents(completion.index)) {
+            if (--pendingDependencies[dependent] == 0) {
+              ready.add(dependent);
+            }
+          }
+        }
+      }
+    } catch (InterruptedException ex) {
+      synchronized (running) {
+        for (FlightBatchIterator results : running) {
+          if (results != null) {
+            results.cancel("Script interrupted.");
+          }
+        }
+      }
+      workers.shutdownNow();
+      throw ex;
+    } finally {
+      workers.shutdown();
+    }
+    report.finished(System.nanoTime() - start);
+    return report;
+  }
+
+  private Completion runStatement(int index, String statement, AdhocFlightClient client,
+      FlightBatchIterator[] running, StatementConsumer consumer) {
+    final long start = System.nanoTime();
+    Throwable failure = null;
+    try (final FlightBatchIterator results = client.openIterator(statement, headerCallOption)) {
+      synchronized (running) {
+        running[index] = results;
+      }
+      try {
+        consumer.accept(index, statement, results);
+      } finally {
+        synchronized (running) {
+          running[index] = null;
+        }
+      }
+    } catch (Throwable t) {
+      failure = t;
+    }
+    return new Completion(index, client, System.nanoTime() - start, failure);
+  }
+
+  /**
+   * The outcome of a statement, handed from the thread that ran it to the thread running the script.
+   */
+  private static final class Completion {
+    private final int index;
+    private final AdhocFlightClient client;
+    private final long elapsedNanos;
+    private final Throwable failure;
+
+    Completion(int index, AdhocFlightClient client, long elapsedNanos, @Nullable Throwable failure) {
+      this.index = index;
+      this.client = client;
+      this.elapsedNanos = elapsedNanos;
+      this.failure = failure;
+    }
+  }
+}
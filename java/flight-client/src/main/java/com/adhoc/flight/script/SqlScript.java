@@ -0,0 +1,156 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.script;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Splits SQL scripts into statements and classifies them.
+ * <p>
+ * Statements are separated by semicolons outside of string literals, quoted identifiers and
+ * comments. Line ({@code --}) and block comments are kept in the statement they belong to, and
+ * statements that are empty or only hold comments are dropped.
+ */
+public final class SqlScript {
+  private static final Set<String> READ_ONLY_KEYWORDS = new HashSet<>(Arrays.asList(
+      "SELECT", "WITH", "VALUES", "SHOW", "DESCRIBE", "DESC", "EXPLAIN"));
+
+  private SqlScript() {
+  }
+
+  /**
+   * Reads the statements of a UTF-8 script file.
+   *
+   * @param path the script file.
+   * @return the statements in script order, without their terminating semicolons.
+   * @throws IOException if the file cannot be read.
+   */
+  public static List<String> read(Path path) throws IOException {
+    return split(new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Splits a script into its statements.
+   *
+   * @param script the SQL script.
+   * @return the statements in script order, trimmed and without their terminating semicolons.
+   */
+  public static List<String> split(String script) {
+    final List<String> statements = new ArrayList<>();
+    int start = 0;
+    boolean hasCode = false;
+    int i = 0;
+    while (i < script.length()) {
+      final char c = script.charAt(i);
+      if (c == '\'' || c == '"' || c == '`') {
+        i = skipQuoted(script, i, c);
+        hasCode = true;
+      } else if (c == '-' && script.startsWith("--", i)) {
+        final int end = script.indexOf('\n', i);
+        i = end < 0 ? script.length() : end + 1;
+      } else if (c == '/' && script.startsWith("/*", i)) {
+        final int end = script.indexOf("*/", i + 2);
+        i = end < 0 ? script.length() : end + 2;
+      } else if (c == ';') {
+        if (hasCode) {
+          statements.add(script.substring(start, i).trim());
+        }
+        start = ++i;
+        hasCode = false;
+      } else {
+        hasCode |= !Character.isWhitespace(c);
+        i++;
+      }
+    }
+    if (hasCode) {
+      statements.add(script.substring(start).trim());
+    }
+    return statements;
+  }
+
+  /**
+   * Tells whether a statement only reads data, such as a {@code SELECT}, as opposed to one that
+   * creates, changes or drops tables or views. The decision is made on the first keyword, so
+   * statements not recognized as reads are assumed to write.
+   *
+   * @param statement a statement of a script.
+   * @return true if the statement only reads data.
+   */
+  public static boolean isReadOnly(String statement) {
+    return READ_ONLY_KEYWORDS.contains(firstKeyword(statement));
+  }
+
+  /**
+   * Gets the first keyword of a statement, in upper case, skipping comments and opening
+   * parentheses.
+   *
+   * @param statement a statement of a script.
+   * @return the first keyword, or an empty string if the statement has none.
+   */
+  public static String firstKeyword(String statement) {
+    int i = 0;
+    while (i < statement.length()) {
+      final char c = statement.charAt(i);
+      if (Character.isWhitespace(c) || c == '(') {
+        i++;
+      } else if (statement.startsWith("--", i)) {
+        final int end = statement.indexOf('\n', i);
+        i = end < 0 ? statement.length() : end + 1;
+      } else if (statement.startsWith("/*", i)) {
+        final int end = statement.indexOf("*/", i + 2);
+        i = end < 0 ? statement.length() : end + 2;
+      } else {
+        break;
+      }
+    }
+    final int start = i;
+    while (i < statement.length() && Character.isLetter(statement.charAt(i))) {
+      i++;
+    }
+    return statement.substring(start, i).toUpperCase(Locale.ROOT);
+  }
+
+  /**
+   * Skips a quoted literal or identifier, in which a doubled quote stands for the quote itself.
+   *
+   * @return the index after the closing quote, or the end of the script if it is not closed.
+   */
+  private static int skipQuoted(String script, int open, char quote) {
+    int i = open + 1;
+    while (i < script.length()) {
+      if (script.charAt(i) == quote) {
+        if (i + 1 < script.length() && script.charAt(i + 1) == quote) {
+          i += 2;
+          continue;
+        }
+        return i + 1;
+      }
+      i++;
+    }
+    return script.length();
+  }
+}
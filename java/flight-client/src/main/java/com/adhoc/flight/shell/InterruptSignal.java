@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.shell;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+
+import javax.annotation.Nullable;
+
+/**
+ * Runs a handler on Ctrl-C (SIGINT) instead of exiting the JVM. The JDK has no supported API for
+ * signals, so {@code sun.misc.Signal} is looked up reflectively. This client then compiles without
+ * internal API warnings, and still runs on JVMs that lack the class.
+ */
+public final class InterruptSignal {
+  private static final String SIGNAL_CLASS = "sun.misc.Signal";
+  private static final String HANDLER_CLASS = "sun.misc.SignalHandler";
+
+  private InterruptSignal() {
+    // Prevent instantiation.
+  }
+
+  /**
+   * Handles Ctrl-C with the given handler until the returned handle is closed.
+   *
+   * @param handler the handler to run on the JVM's signal thread.
+   * @return a handle that restores the previous handler when closed, or null if the JVM does not let
+   *     applications handle the signal, e.g. without {@code sun.misc.Signal} or with {@code -Xrs}.
+   */
+  public static @Nullable AutoCloseable handle(Runnable handler) {
+    try {
+      final Class<?> signalClass = Class.forName(SIGNAL_CLASS);
+      final Class<?> handlerClass = Class.forName(HANDLER_CLASS);
+      final Object interrupt = signalClass.getConstructor(String.class).newInstance("INT");
+      final Method handle = signalClass.getMethod("handle", signalClass, handlerClass);
+      final Object signalHandler = Proxy.newProxyInstance(InterruptSignal.class.getClassLoader(),
+          new Class<?>[] {handlerClass}, (proxy, method, args) -> {
+            switch (method.getName()) {
+              case "handle":
+                handler.run();
+                return null;
+              case "equals":
+                return proxy == args[0];
+              case "hashCode":
+                return System.identityHashCode(proxy);
+              default:
+                return "InterruptSignal(" + handler + ")";
+            }
+          });
+      final Object previous = handle.invoke(null, interrupt, signalHandler);
+      return () -> handle.invoke(null, interrupt, previous);
+    } catch (InvocationTargetException ex) {
+      // The signal is reserved by the JVM, e.g. with -Xrs.
+      return null;
+    } catch (ReflectiveOperationException | LinkageError | SecurityException ex) {
+      return null;
+    }
+  }
+}
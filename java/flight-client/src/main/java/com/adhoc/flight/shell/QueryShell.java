@@ -0,0 +1,304 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.shell;
+
+import static java.util.Objects.requireNonNull;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.apache.arrow.flight.CallHeaders;
+import org.apache.arrow.flight.CallStatus;
+import org.apache.arrow.flight.FlightRuntimeException;
+import org.apache.arrow.flight.FlightStatusCode;
+import org.apache.arrow.flight.HeaderCallOption;
+import org.apache.arrow.util.Preconditions;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import com.adhoc.flight.client.AdhocFlightClient;
+import com.adhoc.flight.client.FlightBatchIterator;
+import com.adhoc.flight.utils.QueryUtils;
+
+/**
+ * Interactive shell that runs queries on one connected, authenticated client.
+ * <p>
+ * Statements end with a semicolon and may span several lines. The first rows of each result are
+ * printed, the rest are only counted, and each query ends with its timing: planning, first batch,
+ * total and rows per second. {@link #cancel()} cancels the running query from another thread, such
+ * as a Ctrl-C handler, and the shell moves on to the next statement. Commands start with a
+ * backslash:
+ * <ul>
+ *   <li>{@code \preview <rows>} sets the number of rows printed for each query.</li>
+ *   <li>{@code \d <query>} prints the result schema of a query without running it.</li>
+ *   <li>{@code \q} quits, as does the end of the input.</li>
+ * </ul>
+ */
+public final class QueryShell {
+  public static final int DEFAULT_PREVIEW_ROWS = 20;
+
+  private static final String PROMPT = "adhoc> ";
+  private static final String CONTINUATION_PROMPT = "    -> ";
+  private static final String HELP = "Statements end with ';'. Commands: \\preview <rows>, \\d <query>, \\q.";
+
+  private final AdhocFlightClient client;
+  private final @Nullable CallHeaders sessionHeaders;
+  private final @Nullable HeaderCallOption headerCallOption;
+  private final BufferedReader input;
+  private final PrintStream output;
+  private final Object lock = new Object();
+  private int previewRows;
+  private Thread queryThread;
+  private FlightBatchIterator iterator;
+  private boolean cancelled;
+
+  /**
+   * Creates a shell.
+   *
+   * @param client         the connected client to run the queries with.
+   * @param sessionHeaders client properties to run every query with, or null.
+   * @param input          the statements to run.
+   * @param output         where prompts, results and timings are printed.
+   * @param previewRows    the number of rows printed for each query.
+   */
+  public QueryShell(AdhocFlightClient client, @Nullable CallHeaders sessionHeaders, BufferedReader input,
+      PrintStream output, int previewRows) {
+    Preconditions.checkArgument(previewRows >= 0, "previewRows must not be negative.");
+    this.client = requireNonNull(client);
+    this.sessionHeaders = sessionHeaders;
+    this.headerCallOption = sessionHeaders == null ? null : new HeaderCallOption(sessionHeaders);
+    this.input = requireNonNull(input);
+    this.output = requireNonNull(output);
+    this.previewRows = previewRows;
+  }
+
+  /**
+   * Reads and runs statements until the input ends or {@code \q} is entered. A failed query is
+   * reported and does not end the shell.
+   *
+   * @throws IOException if the input cannot be read.
+   */
+  public void run() throws IOException {
+    output.println("[INFO] " + HELP);
+    final StringBuilder statement = new StringBuilder();
+    while (true) {
+      output.print(statement.length() == 0 ? PROMPT : CONTINUATION_PROMPT);
+      output.flush();
+      final String line = input.readLine();
+      if (line == null) {
+        output.println();
+        return;
+      }
+      final String trimmed = line.trim();
+      if (statement.length() == 0 && trimmed.startsWith("\\")) {
+        if (!runCommand(trimmed)) {
+          return;
+        }
+        continue;
+      }
+      statement.append(line).append('\n');
+      if (trimmed.endsWith(";")) {
+        final String query = statement.toString().trim();
+        statement.setLength(0);
+        final String sql = query.substring(0, query.length() - 1).trim();
+        if (!sql.isEmpty()) {
+          runQuery(sql);
+        }
+      }
+    }
+  }
+
+  /**
+   * Cancels the running query, if any.
+   *
+   * @return true if a query was running.
+   */
+  public boolean cancel() {
+    synchronized (lock) {
+      if (queryThread == null) {
+        return false;
+      }
+      cancelled = true;
+      if (iterator != null) {
+        iterator.cancel("Cancelled by user.");
+      } else {
+        // Interrupting the thread cancels a blocking planning call. Once results stream, an
+        // interrupt would leave the stream unable to drain on close, so only the stream is cancelled.
+        queryThread.interrupt();
+      }
+      return true;
+    }
+  }
+
+  public int getPreviewRows() {
+    return previewRows;
+  }
+
+  /**
+   * Runs a backslash command.
+   *
+   * @return false if the shell should quit.
+   */
+  private boolean runCommand(String command) {
+    final String[] parts = command.split("\\s+", 2);
+    final String argument = parts.length > 1 ? parts[1].trim() : "";
+    switch (parts[0]) {
+      case "\\q":
+        return false;
+      case "\\preview":
+        try {
+          final int rows = Integer.parseInt(argument);
+          Preconditions.checkArgument(rows >= 0);
+          previewRows = rows;
+          output.println("[INFO] Printing up to " + rows + " rows per query.");
+        } catch (IllegalArgumentException ex) {
+          output.println("[ERROR] Usage: \\preview <rows>");
+        }
+        return true;
+      case "\\d":
+        try {
+          QueryUtils.printSchema(client.describe(stripSemicolon(argument), sessionHeaders), output);
+        } catch (RuntimeException ex) {
+          output.println("[ERROR] " + ex.getMessage());
+        }
+        return true;
+      default:
+        output.println("[ERROR] Unknown command " + parts[0] + ". " + HELP);
+        return true;
+    }
+  }
+
+  private static String stripSemicolon(String query) {
+    return query.endsWith(";") ? query.substring(0, query.length() - 1).trim() : query;
+  }
+
+  private void runQuery(String query) {
+    synchronized (lock) {
+      queryThread = Thread.currentThread();
+      cancelled = false;
+    }
+    final long startNanos = System.nanoTime();
+    long planningNanos = 0;
+    long firstBatchNanos = 0;
+    long rows = 0;
+    try {
+      final FlightBatchIterator batches = client.openIterator(query, headerCallOption);
+      planningNanos = System.nanoTime() - startNanos;
+      try {
+        synchronized (lock) {
+          iterator = batches;
+          if (cancelled) {
+            throw CallStatus.CANCELLED.withDescription("Cancelled by user.").toRuntimeException();
+          }
+        }
+        while (batches.hasNext()) {
+          try (final VectorSchemaRoot batch = batches.next()) {
+            if (firstBatchNanos == 0) {
+              firstBatchNanos = System.nanoTime() - startNanos;
+              printHeader(batch.getSchema());
+            }
+            printRows(batch, rows);
+            rows += batch.getRowCount();
+          }
+        }
+      } finally {
+        synchronized (lock) {
+          iterator = null;
+        }
+        batches.close();
+      }
+      printTiming(rows, planningNanos, firstBatchNanos, System.nanoTime() - startNanos);
+    } catch (Exception ex) {
+      if (isCancellation(ex)) {
+        output.println("[INFO] Query cancelled after " + rows + " rows and " + millis(System.nanoTime() - startNanos) +
+            " ms.");
+      } else {
+        output.println("[ERROR] " + ex.getMessage());
+      }
+    } finally {
+      synchronized (lock) {
+        queryThread = null;
+        // Do not leak a cancellation interrupt into reading the next statement.
+        Thread.interrupted();
+      }
+    }
+  }
+
+  private boolean isCancellation(Exception ex) {
+    synchronized (lock) {
+      if (cancelled) {
+        return true;
+      }
+    }
+    return ex instanceof FlightRuntimeException &&
+        ((FlightRuntimeException) ex).status().code() == FlightStatusCode.CANCELLED;
+  }
+
+  private void printHeader(Schema schema) {
+    if (previewRows == 0) {
+      return;
+    }
+    final List<String> names = new ArrayList<>();
+    for (final Field field : schema.getFields()) {
+      names.add(field.getName());
+    }
+    output.println(String.join("\t", names));
+  }
+
+  /**
+   * Prints the rows of a batch that are still within the preview.
+   */
+  private void printRows(VectorSchemaRoot batch, long rowsBefore) {
+    final int count = (int) Math.max(0, Math.min(batch.getRowCount(), previewRows - rowsBefore));
+    final List<FieldVector> vectors = batch.getFieldVectors();
+    final StringBuilder line = new StringBuilder();
+    for (int row = 0; row < count; row++) {
+      line.setLength(0);
+      for (int column = 0; column < vectors.size(); column++) {
+        if (column > 0) {
+          line.append('\t');
+        }
+        line.append(vectors.get(column).getObject(row));
+      }
+      output.println(line);
+    }
+  }
+
+  private void printTiming(long rows, long planningNanos, long firstBatchNanos, long totalNanos) {
+    if (rows > previewRows) {
+      output.println("... " + (rows - previewRows) + " more rows");
+    }
+    final double seconds = totalNanos / (double) TimeUnit.SECONDS.toNanos(1);
+    output.println(String.format("[INFO] %d rows in %d ms (planning %d ms, first batch %s, %.0f rows/s)",
+        rows, millis(totalNanos), millis(planningNanos),
+        firstBatchNanos == 0 ? "none" : millis(firstBatchNanos) + " ms",
+        seconds > 0 ? rows / seconds : 0));
+  }
+
+  private static long millis(long nanos) {
+    return TimeUnit.NANOSECONDS.toMillis(nanos);
+  }
+}
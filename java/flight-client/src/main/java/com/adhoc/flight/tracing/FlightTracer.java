@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.tracing;
+
+import java.io.IOException;
+import java.security.SecureRandom;
+
+import javax.annotation.Nullable;
+
+import org.apache.arrow.flight.CallHeaders;
+import org.apache.arrow.flight.CallInfo;
+import org.apache.arrow.flight.CallStatus;
+import org.apache.arrow.flight.FlightClientMiddleware;
+
+/**
+ * Client-side tracer that records spans for each phase of a query and propagates W3C trace
+ * context to the server.
+ * <p>
+ * The tracer is also a {@link FlightClientMiddleware.Factory}: when it is registered on a
+ * FlightClient, every Flight RPC is recorded as a child of the span current on the calling thread,
+ * and a {@code traceparent} header identifying that RPC span is sent with the call.
+ */
+public final class FlightTracer implements FlightClientMiddleware.Factory, AutoCloseable {
+  public static final String TRACEPARENT_HEADER = "traceparent";
+
+  private static final FlightTracer DISABLED = new FlightTracer();
+  private static final SecureRandom SECURE_RANDOM = new SecureRandom();
+  private static final String TRACE_ID_PATTERN = "[0-9a-f]{32}";
+
+  private final boolean enabled;
+  private final String traceId;
+  private final boolean sampled;
+  private final SpanExporter exporter;
+
+  private FlightTracer() {
+    this.enabled = false;
+    this.traceId = null;
+    this.sampled = false;
+    this.exporter = null;
+  }
+
+  /**
+   * Creates a tracer.
+   *
+   * @param traceId  the W3C trace ID to use for every root span, exactly 32 lowercase hex
+   *                 characters. If null, each root span starts a new random trace.
+   * @param sampled  whether to set the sampled flag in propagated trace context.
+   * @param exporter the exporter to receive finished spans. If null, spans are only propagated.
+   */
+  public FlightTracer(@Nullable String traceId, boolean sampled, @Nullable SpanExporter exporter) {
+    if (traceId != null && !traceId.matches(TRACE_ID_PATTERN)) {
+      throw new IllegalArgumentException("traceId must be exactly 32 lowercase hex characters.");
+    }
+    this.enabled = true;
+    this.traceId = traceId;
+    this.sampled = sampled;
+    this.exporter = exporter;
+  }
+
+  /**
+   * Gets a tracer that records nothing. Spans started from it are no-ops.
+   *
+   * @return the disabled tracer.
+   */
+  public static FlightTracer disabled() {
+    return DISABLED;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Starts a span and makes it current on the calling thread. If a span of this tracer is already
+   * current, the new span is its child; otherwise it is the root of a trace.
+   *
+   * @param name the span name.
+   * @return the started span. Close it to end the span.
+   */
+  public TraceSpan startSpan(String name) {
+    final TraceSpan current = TraceSpan.current();
+    return startSpan(name, current.getTracer() == this ? current : null, true);
+  }
+
+  TraceSpan startSpan(String name, @Nullable TraceSpan parent, boolean scoped) {
+    if (!enabled) {
+      return TraceSpan.NOOP;
+    }
+    final String spanTraceId;
+    if (parent != null) {
+      spanTraceId = parent.getTraceId();
+    } else {
+      spanTraceId = traceId != null ? traceId : randomHex(16);
+    }
+    return new TraceSpan(this, name, spanTraceId, randomHex(8),
+        parent == null ? null : parent.getSpanId(), scoped);
+  }
+
+  /**
+   * Formats the W3C {@code traceparent} header value identifying the given span.
+   *
+   * @param span the span to propagate.
+   * @return the header value, in the form {@code 00-<traceId>-<spanId>-<traceFlags>}.
+   */
+  public String traceparent(TraceSpan span) {
+    return String.format("00-%s-%s-%s", span.getTraceId(), span.getSpanId(), sampled ? "01" : "00");
+  }
+
+  void export(TraceSpan span) {
+    if (exporter != null) {
+      exporter.export(span);
+    }
+  }
+
+  @Override
+  public FlightClientMiddleware onCallStarted(CallInfo info) {
+    final TraceSpan current = TraceSpan.current();
+    // RPC spans are not made current: they complete on a transport thread.
+    final TraceSpan rpcSpan = startSpan("flight." + info.method().name(),
+        current.getTracer() == this ? current : null, false);
+    rpcSpan.setAttribute("flight.method", info.method().name());
+    return new TracingMiddleware(rpcSpan);
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (exporter != null) {
+      exporter.close();
+    }
+  }
+
+  private static String randomHex(int byteCount) {
+    final byte[] bytes = new byte[byteCount];
+    SECURE_RANDOM.nextBytes(bytes);
+    final StringBuilder builder = new StringBuilder(byteCount * 2);
+    for (byte value : bytes) {
+      builder.append(String.format("%02x", value));
+    }
+    return builder.toString();
+  }
+
+  private final class TracingMiddleware implements FlightClientMiddleware {
+    private final TraceSpan span;
+
+    private TracingMiddleware(TraceSpan span) {
+      this.span = span;
+    }
+
+    @Override
+    public void onBeforeSendingHeaders(CallHeaders outgoingHeaders) {
+      outgoingHeaders.insert(TRACEPARENT_HEADER, traceparent(span));
+    }
+
+    @Override
+    public void onHeadersReceived(CallHeaders incomingHeaders) {
+
+    }
+
+    @Override
+    public void onCallCompleted(CallStatus status) {
+      span.setAttribute("flight.status", status.code().name());
+      span.close();
+    }
+  }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.tracing;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+/**
+ * Span exporter that writes one JSON object per finished span, for offline analysis of where
+ * query latency goes without a tracing backend.
+ */
+public final class LoggingSpanExporter implements SpanExporter {
+  public static final String STDOUT_PATH = "-";
+
+  private final PrintWriter writer;
+  private final boolean closeWriter;
+
+  LoggingSpanExporter(PrintWriter writer, boolean closeWriter) {
+    this.writer = writer;
+    this.closeWriter = closeWriter;
+  }
+
+  /**
+   * Creates an exporter that appends spans to the given file, or writes them to standard output
+   * if the path is {@value #STDOUT_PATH}.
+   *
+   * @param path the file path to write spans to.
+   * @return a new LoggingSpanExporter.
+   * @throws IOException if the file cannot be opened.
+   */
+  public static LoggingSpanExporter forPath(String path) throws IOException {
+    if (STDOUT_PATH.equals(path)) {
+      return new LoggingSpanExporter(
+          new PrintWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)), false);
+    }
+    final BufferedWriter fileWriter = Files.newBufferedWriter(Paths.get(path), StandardCharsets.UTF_8,
+        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    return new LoggingSpanExporter(new PrintWriter(fileWriter), true);
+  }
+
+  @Override
+  public synchronized void export(TraceSpan span) {
+    final StringBuilder json = new StringBuilder(256).append('{');
+    appendField(json, "name", span.getName()).append(',');
+    appendField(json, "traceId", span.getTraceId()).append(',');
+    appendField(json, "spanId", span.getSpanId()).append(',');
+    appendField(json, "parentSpanId", span.getParentSpanId()).append(',');
+    appendField(json, "startEpochMillis", span.getStartEpochMillis()).append(',');
+    appendField(json, "durationMicros", span.getDurationMicros()).append(',');
+    appendString(json, "attributes").append(":{");
+    boolean first = true;
+    for (Map.Entry<String, Object> attribute : span.getAttributes().entrySet()) {
+      if (!first) {
+        json.append(',');
+      }
+      appendField(json, attribute.getKey(), attribute.getValue());
+      first = false;
+    }
+    json.append("}}");
+    writer.println(json);
+    writer.flush();
+  }
+
+  @Override
+  public synchronized void close() {
+    if (closeWriter) {
+      writer.close();
+    } else {
+      writer.flush();
+    }
+  }
+
+  private static StringBuilder appendField(StringBuilder json, String key, Object value) {
+    appendString(json, key).append(':');
+    if (value == null) {
+      return json.append("null");
+    } else if (value instanceof Number || value instanceof Boolean) {
+      return json.append(value);
+    }
+    return appendString(json, value.toString());
+  }
+
+  private static StringBuilder appendString(StringBuilder json, String value) {
+    json.append('"');
+    for (int i = 0; i < value.length(); i++) {
+      final char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        json.append('\\').append(c);
+      } else if (c < 0x20) {
+        json.append(String.format("\\u%04x", (int) c));
+      } else {
+        json.append(c);
+      }
+    }
+    return json.append('"');
+  }
+}
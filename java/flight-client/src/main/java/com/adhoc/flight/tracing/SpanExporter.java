@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.tracing;
+
+import java.io.Closeable;
+
+/**
+ * Receives finished spans from a {@link FlightTracer}. Implementations may be called concurrently
+ * from the threads that end spans, including gRPC transport threads.
+ */
+public interface SpanExporter extends Closeable {
+
+  /**
+   * Exports a span that has just ended.
+   *
+   * @param span the finished span.
+   */
+  void export(TraceSpan span);
+
+  @Override
+  default void close() {
+  }
+}
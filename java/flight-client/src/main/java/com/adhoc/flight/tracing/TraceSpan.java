@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.tracing;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.annotation.Nullable;
+
+/**
+ * A single timed operation within a client-side trace.
+ * <p>
+ * Spans started through {@link FlightTracer#startSpan(String)} become current on the creating
+ * thread, so work nested inside them is recorded as child spans. Closing a span ends it, hands it
+ * to the tracer's exporter and restores the previously current span.
+ */
+public final class TraceSpan implements AutoCloseable {
+  static final TraceSpan NOOP = new TraceSpan(null, "noop", null, null, null, false);
+
+  private static final ThreadLocal<TraceSpan> CURRENT = new ThreadLocal<>();
+
+  private final FlightTracer tracer;
+  private final String name;
+  private final String traceId;
+  private final String spanId;
+  private final String parentSpanId;
+  private final TraceSpan previous;
+  private final boolean scoped;
+  private final long startEpochMillis = System.currentTimeMillis();
+  private final long startNanos = System.nanoTime();
+  private final Map<String, Object> attributes = new LinkedHashMap<>();
+  private final AtomicBoolean ended = new AtomicBoolean();
+  private volatile long durationNanos = -1;
+
+  TraceSpan(@Nullable FlightTracer tracer, String name,
+      @Nullable String traceId, @Nullable String spanId, @Nullable String parentSpanId,
+      boolean scoped) {
+    this.tracer = tracer;
+    this.name = name;
+    this.traceId = traceId;
+    this.spanId = spanId;
+    this.parentSpanId = parentSpanId;
+    this.scoped = scoped;
+    this.previous = scoped ? CURRENT.get() : null;
+    if (scoped) {
+      CURRENT.set(this);
+    }
+  }
+
+  /**
+   * Gets the span that is current on the calling thread.
+   *
+   * @return the current span, or a no-op span if tracing is not active on this thread.
+   */
+  public static TraceSpan current() {
+    final TraceSpan span = CURRENT.get();
+    return span == null ? NOOP : span;
+  }
+
+  /**
+   * Wraps a call so that the span current on the calling thread is also current while the call runs
+   * on another thread.
+   *
+   * @param callable the call to wrap.
+   * @param <T>      the type of the call's result.
+   * @return the wrapped call, or the call itself if no span is current.
+   */
+  public static <T> Callable<T> wrap(Callable<T> callable) {
+    final TraceSpan captured = CURRENT.get();
+    if (captured == null) {
+      return callable;
+    }
+    return () -> {
+      final TraceSpan previous = CURRENT.get();
+      CURRENT.set(captured);
+      try {
+        return callable.call();
+      } finally {
+        if (previous == null) {
+          CURRENT.remove();
+        } else {
+          CURRENT.set(previous);
+        }
+      }
+    };
+  }
+
+  /**
+   * Starts a child of this span and makes it current on the calling thread.
+   *
+   * @param childName the name of the child span.
+   * @return the started child span, or a no-op span if this span is not recording.
+   */
+  public TraceSpan startChild(String childName) {
+    return tracer == null ? NOOP : tracer.startSpan(childName, this, true);
+  }
+
+  /**
+   * Records an attribute on this span. Attributes set after the span has ended are ignored.
+   *
+   * @param key   the attribute name.
+   * @param value the attribute value.
+   * @return this span.
+   */
+  public TraceSpan setAttribute(String key, Object value) {
+    if (tracer != null && !ended.get()) {
+      synchronized (attributes) {
+        attributes.put(key, value);
+      }
+    }
+    return this;
+  }
+
+  public boolean isRecording() {
+    return tracer != null;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getTraceId() {
+    return traceId;
+  }
+
+  public String getSpanId() {
+    return spanId;
+  }
+
+  @Nullable
+  public String getParentSpanId() {
+    return parentSpanId;
+  }
+
+  public long getStartEpochMillis() {
+    return startEpochMillis;
+  }
+
+  /**
+   * Gets the duration of this span in microseconds.
+   *
+   * @return the duration, or -1 if the span has not ended yet.
+   */
+  public long getDurationMicros() {
+    return durationNanos < 0 ? -1 : TimeUnit.NANOSECONDS.toMicros(durationNanos);
+  }
+
+  /**
+   * Gets a snapshot of the attributes recorded on this span.
+   *
+   * @return an unmodifiable copy of the attributes, in insertion order.
+   */
+  public Map<String, Object> getAttributes() {
+    synchronized (attributes) {
+      return Collections.unmodifiableMap(new LinkedHashMap<>(attributes));
+    }
+  }
+
+  /**
+   * Ends this span and exports it. Spans may be ended from any thread; only the thread on which a
+   * span is current restores the previously current span.
+   */
+  @Override
+  public void close() {
+    if (tracer == null || !ended.compareAndSet(false, true)) {
+      return;
+    }
+    durationNanos = System.nanoTime() - startNanos;
+    if (scoped && CURRENT.get() == this) {
+      if (previous == null) {
+        CURRENT.remove();
+      } else {
+        CURRENT.set(previous);
+      }
+    }
+    tracer.export(this);
+  }
+
+  FlightTracer getTracer() {
+    return tracer;
+  }
+}
@@ -17,7 +17,15 @@
 
 package com.adhoc.flight.utils;
 
+import java.io.PrintStream;
+
 import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+import com.adhoc.flight.checksum.ResultChecksum;
+import com.adhoc.flight.diff.DiffReport;
+import com.adhoc.flight.profile.ColumnProfiler;
 
 /**
  * Utilitary class for helping queries out with cross-cutting concerns,
@@ -103,6 +111,63 @@ public final class QueryUtils {
     print(Fillers.FOOTER, "Number of records retrieved: " + vectorSchemaRoot.getRowCount());
   }
 
+  /**
+   * Prints the result schema of a query to the console, one column per line.
+   *
+   * @param schema the schema to print.
+   */
+  public static void printSchema(Schema schema) {
+    printSchema(schema, System.out);
+  }
+
+  /**
+   * Prints the result schema of a query to the given stream, one column per line.
+   *
+   * @param schema the schema to print.
+   * @param output the stream to print to.
+   */
+  public static void printSchema(Schema schema, PrintStream output) {
+    print(output, Fillers.HEADER, "Query schema");
+    output.println("column\ttype\tnullable");
+    for (final Field field : schema.getFields()) {
+      output.println(field.getName() + "\t" + field.getType() + "\t" + field.isNullable());
+    }
+    print(output, Fillers.FOOTER, "Number of columns: " + schema.getFields().size());
+  }
+
+  /**
+   * Prints the column profile of the query results to the console.
+   *
+   * @param profiler the profiler that consumed the query results.
+   */
+  public static void printProfile(ColumnProfiler profiler) {
+    print(Fillers.HEADER, "Column profile");
+    System.out.print(profiler.toReportString());
+    print(Fillers.FOOTER, "Number of batches profiled: " + profiler.getBatchCount());
+  }
+
+  /**
+   * Prints the checksum of the query results to the console.
+   *
+   * @param checksum the checksum that consumed the query results.
+   */
+  public static void printChecksum(ResultChecksum checksum) {
+    print(Fillers.HEADER, "Result checksum");
+    System.out.print(checksum.toReportString());
+    print(Fillers.FOOTER, "Fingerprint: " + checksum.getFingerprint());
+  }
+
+  /**
+   * Prints the differences between the results of a query on two targets to the console.
+   *
+   * @param report the report of the comparison.
+   */
+  public static void printDiff(DiffReport report) {
+    print(Fillers.HEADER, "Result diff");
+    System.out.print(report.toReportString());
+    print(Fillers.FOOTER, report.isIdentical() ? "Results are identical" : "Results differ");
+  }
+
   /**
    * Prints the provided exception to the console.
    *
@@ -118,7 +183,11 @@ public final class QueryUtils {
   }
 
   private static void print(Fillers fillers, String message) {
+    print(System.out, fillers, message);
+  }
+
+  private static void print(PrintStream output, Fillers fillers, String message) {
     String filler = fillers.toFormattedString();
-    System.out.println(filler + " " + message + " " + filler);
+    output.println(filler + " " + message + " " + filler);
   }
 }
@@ -0,0 +1,170 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.checksum;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.function.IntFunction;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.complex.ListVector;
+import org.apache.arrow.vector.complex.impl.UnionListWriter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ResultChecksumTest {
+  private static final int ROW_COUNT = 10_000;
+
+  private BufferAllocator allocator;
+
+  @Before
+  public void setup() {
+    allocator = new RootAllocator(Long.MAX_VALUE);
+  }
+
+  @After
+  public void tearDown() {
+    allocator.close();
+  }
+
+  private static List<Integer> rows() {
+    final List<Integer> rows = new ArrayList<>(ROW_COUNT);
+    for (int row = 0; row < ROW_COUNT; row++) {
+      rows.add(row);
+    }
+    return rows;
+  }
+
+  private static String name(int row) {
+    return row % 11 == 0 ? null : "name-" + (row % 13);
+  }
+
+  /**
+   * Checksums the given rows, in order, split into batches of the given size.
+   */
+  private ResultChecksum checksum(List<Integer> rows, int batchSize, IntFunction<String> names) {
+    final ResultChecksum checksum = new ResultChecksum();
+    try (final BigIntVector ids = new BigIntVector("id", allocator);
+         final Float8Vector scores = new Float8Vector("score", allocator);
+         final VarCharVector nameVector = new VarCharVector("name", allocator);
+         final BitVector flags = new BitVector("flag", allocator);
+         final ListVector tags = ListVector.empty("tags", allocator);
+         final VectorSchemaRoot root = VectorSchemaRoot.of(ids, scores, nameVector, flags, tags)) {
+      for (int start = 0; start < rows.size(); start += batchSize) {
+        root.allocateNew();
+        final UnionListWriter tagWriter = tags.getWriter();
+        final int batchRows = Math.min(batchSize, rows.size() - start);
+        for (int i = 0; i < batchRows; i++) {
+          final int row = rows.get(start + i);
+          ids.setSafe(i, row);
+          if (row % 7 == 0) {
+            scores.setNull(i);
+          } else {
+            scores.setSafe(i, row / 2.0);
+          }
+          final String name = names.apply(row);
+          if (name == null) {
+            nameVector.setNull(i);
+          } else {
+            nameVector.setSafe(i, name.getBytes(StandardCharsets.UTF_8));
+          }
+          flags.setSafe(i, row % 2);
+          tagWriter.setPosition(i);
+          tagWriter.startList();
+          tagWriter.writeInt(row % 5);
+          tagWriter.writeInt(row % 3);
+          tagWriter.endList();
+        }
+        root.setRowCount(batchRows);
+        checksum.accept(root);
+      }
+    }
+    return checksum;
+  }
+
+  @Test
+  public void testChecksumDoesNotDependOnRowOrderOrBatches() {
+    final List<Integer> shuffled = rows();
+    Collections.shuffle(shuffled, new Random(42));
+
+    final ResultChecksum ordered = checksum(rows(), 1_000, ResultChecksumTest::name);
+    final ResultChecksum reordered = checksum(shuffled, 333, ResultChecksumTest::name);
+
+    assertEquals(ROW_COUNT, reordered.getRowCount());
+    assertEquals(ordered.getFingerprint(), reordered.getFingerprint());
+    assertEquals(ordered.toReportString(), reordered.toReportString());
+    assertEquals(ROW_COUNT / 7 + 1, ordered.getColumns().get(1).getNullCount());
+    assertEquals(ROW_COUNT / 11 + 1, ordered.getColumns().get(2).getNullCount());
+  }
+
+  @Test
+  public void testChangedValueChangesFingerprintAndItsColumn() {
+    final ResultChecksum expected = checksum(rows(), 1_000, ResultChecksumTest::name);
+    final ResultChecksum actual = checksum(rows(), 1_000, row -> row == 42 ? "changed" : name(row));
+
+    assertNotEquals(expected.getFingerprint(), actual.getFingerprint());
+    for (int column = 0; column < expected.getColumns().size(); column++) {
+      assertEquals(column == 2, expected.getColumns().get(column).getChecksum() !=
+          actual.getColumns().get(column).getChecksum());
+    }
+  }
+
+  @Test
+  public void testValuesMovedBetweenRowsChangeFingerprint() {
+    final ResultChecksum expected = checksum(rows(), 1_000, ResultChecksumTest::name);
+    final ResultChecksum actual = checksum(rows(), 1_000, row -> name(row == 1 ? 2 : row == 2 ? 1 : row));
+
+    assertNotEquals(expected.getFingerprint(), actual.getFingerprint());
+    for (int column = 0; column < expected.getColumns().size(); column++) {
+      assertEquals(expected.getColumns().get(column).getChecksum(), actual.getColumns().get(column).getChecksum());
+    }
+  }
+
+  @Test
+  public void testNullDiffersFromEmptyValue() {
+    final ResultChecksum nulls = checksum(rows().subList(1, 2), 1, row -> null);
+    final ResultChecksum empty = checksum(rows().subList(1, 2), 1, row -> "");
+
+    assertNotEquals(nulls.getFingerprint(), empty.getFingerprint());
+    assertEquals(1, nulls.getColumns().get(2).getNullCount());
+    assertEquals(0, empty.getColumns().get(2).getNullCount());
+  }
+
+  @Test
+  public void testReportListsEveryColumn() {
+    final String report = checksum(rows(), 4_096, ResultChecksumTest::name).toReportString();
+
+    assertTrue(report.startsWith("rows\t" + ROW_COUNT + "\nfingerprint\t"));
+    assertTrue(report.contains("\nname\tVARCHAR\t" + (ROW_COUNT / 11 + 1) + "\t"));
+    assertTrue(report.contains("\ntags\tLIST\t0\t"));
+  }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.arrow.flight.FlightInfo;
+import org.apache.arrow.flight.FlightServer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.google.common.util.concurrent.Uninterruptibles;
+
+public class AdhocFlightClientAsyncTest {
+  @Rule
+  public FlightServerRule flight = new FlightServerRule();
+
+  private InMemoryFlightProducer producer;
+  private FlightServer server;
+  private AdhocFlightClient client;
+
+  @Before
+  public void setup() throws Exception {
+    producer = new InMemoryFlightProducer(flight.allocator(), 5, 100);
+    server = flight.start(producer);
+    client = flight.connect(server);
+  }
+
+  @Test
+  public void testRunQueryAsyncCompletes() throws Exception {
+    final CompletableFuture<FlightInfo> info = client.getInfoAsync("SELECT 1", null);
+    assertEquals(producer.totalRows(), info.get(10, TimeUnit.SECONDS).getRecords());
+
+    client.runQueryAsync("SELECT 1", null, null, false).get(10, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void testCancelPropagatesToServer() throws Exception {
+    producer.blockGetInfo = true;
+    final CompletableFuture<FlightInfo> info = client.getInfoAsync("SELECT 1", null);
+    assertTrue(producer.getInfoStarted.await(10, TimeUnit.SECONDS));
+
+    info.cancel(true);
+
+    assertTrue(info.isCancelled());
+    assertTrue(producer.getInfoCancelled.await(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testCancelWhilePlanningCancelsGetInfo() throws Exception {
+    producer.blockGetInfo = true;
+    final CompletableFuture<Void> query = client.runQueryAsync("SELECT 1", null, root -> { },
+        FlightExecutors.defaultExecutor());
+    assertTrue(producer.getInfoStarted.await(10, TimeUnit.SECONDS));
+
+    query.cancel(true);
+
+    assertTrue(producer.getInfoCancelled.await(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testCancelWhileStreamingCancelsTheStream() throws Exception {
+    producer.batchDelayMillis = 500;
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      final CountDownLatch firstBatch = new CountDownLatch(1);
+      final CountDownLatch cancelled = new CountDownLatch(1);
+      final AtomicBoolean interrupted = new AtomicBoolean();
+      final CompletableFuture<Void> query = client.runQueryAsync("SELECT 1", null, root -> {
+        firstBatch.countDown();
+        // Hold the batch until the future is cancelled, as a slow consumer would.
+        Uninterruptibles.awaitUninterruptibly(cancelled);
+        interrupted.compareAndSet(false, Thread.currentThread().isInterrupted());
+      }, executor);
+      assertTrue(firstBatch.await(10, TimeUnit.SECONDS));
+
+      query.cancel(true);
+      cancelled.countDown();
+
+      assertTrue(producer.streamCancelled.await(10, TimeUnit.SECONDS));
+      // Only the stream is cancelled; an interrupt would also hit the consumer and the sink.
+      assertFalse(interrupted.get());
+      // The worker is not left draining an interrupted stream, so it runs the next task.
+      executor.submit(() -> { }).get(10, TimeUnit.SECONDS);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.client;
+
+import static java.util.Collections.singletonList;
+import static java.util.stream.Collectors.toList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.stream.Stream;
+
+import org.apache.arrow.flight.FlightServer;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.adhoc.flight.daemon.DaemonClient;
+import com.adhoc.flight.daemon.QueryDaemon;
+
+/**
+ * Tests for serving queries from a Unix domain socket with {@link QueryDaemon}.
+ */
+public class AdhocFlightClientDaemonTest {
+  private static final String QUERY = "SELECT * FROM t";
+  private static final int BATCHES = 3;
+  private static final int ROWS_PER_BATCH = 10;
+
+  @Rule
+  public FlightServerRule flight = new FlightServerRule();
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private InMemoryFlightProducer producer;
+  private FlightServer server;
+  private AdhocFlightClient client;
+  private Path socketPath;
+  private QueryDaemon daemon;
+
+  @Before
+  public void setup() throws Exception {
+    producer = new InMemoryFlightProducer(flight.allocator(), BATCHES, ROWS_PER_BATCH);
+    server = flight.start(producer);
+    client = flight.connect(server);
+    socketPath = folder.getRoot().toPath().resolve("daemon.sock");
+    daemon = flight.closeAfter(QueryDaemon.start(socketPath, client, null, 2));
+  }
+
+  private long sumIds(byte[] results) throws IOException {
+    long sum = 0;
+    try (final ArrowStreamReader reader =
+        new ArrowStreamReader(new ByteArrayInputStream(results), flight.allocator())) {
+      while (reader.loadNextBatch()) {
+        final IntVector ids = (IntVector) reader.getVectorSchemaRoot().getVector(0);
+        for (int row = 0; row < ids.getValueCount(); row++) {
+          sum += ids.get(row);
+        }
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * Waits for a daemon counter, which is updated once the results have been sent.
+   */
+  private static void awaitCount(long expected, LongSupplier counter) throws InterruptedException {
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (counter.getAsLong() < expected && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(expected, counter.getAsLong());
+  }
+
+  @Test
+  public void testQueriesAreServedWithOneConnection() throws Exception {
+    final int rows = BATCHES * ROWS_PER_BATCH;
+    for (int query = 0; query < 3; query++) {
+      final ByteArrayOutputStream results = new ByteArrayOutputStream();
+      DaemonClient.query(socketPath, QUERY, results);
+      assertEquals((long) rows * (rows - 1) / 2, sumIds(results.toByteArray()));
+    }
+    awaitCount(3, daemon::getServedQueries);
+    assertEquals(3, producer.getInfoCalls.get());
+  }
+
+  @Test
+  public void testPlanningFailureIsReported() throws Exception {
+    producer.unavailableGetInfos.set(1);
+    final ByteArrayOutputStream results = new ByteArrayOutputStream();
+
+    final IOException ex = assertThrows(IOException.class, () -> DaemonClient.query(socketPath, QUERY, results));
+
+    assertTrue(ex.getMessage(), ex.getMessage().startsWith("UNAVAILABLE: Coordinator is restarting."));
+    assertEquals(0, results.size());
+    awaitCount(1, daemon::getFailedQueries);
+  }
+
+  @Test
+  public void testStreamingFailureIsNotMistakenForTheEnd() throws Exception {
+    producer.unavailableStreams.set(1);
+    producer.failAfterBatches = 1;
+    final ByteArrayOutputStream results = new ByteArrayOutputStream();
+
+    final IOException ex = assertThrows(IOException.class, () -> DaemonClient.query(socketPath, QUERY, results));
+
+    assertTrue(ex.getMessage(), ex.getMessage().contains("end-of-stream marker"));
+    awaitCount(1, daemon::getFailedQueries);
+  }
+
+  @Test
+  public void testStaleSocketIsReplacedAndLiveSocketIsKept() throws Exception {
+    assertThrows(IOException.class, () -> QueryDaemon.start(socketPath, client, null, 1));
+    assertTrue(Files.exists(socketPath));
+
+    daemon.close();
+    assertFalse(Files.exists(socketPath));
+    Files.createFile(socketPath);
+    assertThrows(IOException.class, () -> QueryDaemon.start(socketPath, client, null, 1));
+    Files.delete(socketPath);
+
+    daemon = QueryDaemon.start(socketPath, client, null, 1);
+    final ByteArrayOutputStream results = new ByteArrayOutputStream();
+    DaemonClient.query(socketPath, QUERY, results);
+    assertTrue(results.size() > 0);
+  }
+
+  @Test
+  public void testSocketIsOnlyAccessibleToItsOwner() throws Exception {
+    assertEquals(PosixFilePermissions.fromString("rw-------"), Files.getPosixFilePermissions(socketPath));
+    try (final Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+      // The private directory the socket was bound in is removed.
+      assertEquals(singletonList(socketPath), files.collect(toList()));
+    }
+  }
+}
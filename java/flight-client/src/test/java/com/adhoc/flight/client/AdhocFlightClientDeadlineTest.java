@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.arrow.flight.FlightRuntimeException;
+import org.apache.arrow.flight.FlightServer;
+import org.apache.arrow.flight.FlightStatusCode;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests for the deadlines and the shutdown cancellation of {@link AdhocFlightClient}.
+ */
+public class AdhocFlightClientDeadlineTest {
+  @Rule
+  public FlightServerRule flight = new FlightServerRule();
+
+  private InMemoryFlightProducer producer;
+  private FlightServer server;
+  private AdhocFlightClient client;
+
+  @Before
+  public void setup() throws Exception {
+    producer = new InMemoryFlightProducer(flight.allocator(), 5, 100);
+    server = flight.start(producer);
+  }
+
+  private void connect(QueryDeadlines deadlines) {
+    client = flight.connect(server, ClientOptions.builder().deadlines(deadlines).build());
+  }
+
+  private FlightRuntimeException assertQueryTimesOut() {
+    final FlightRuntimeException ex = assertThrows(FlightRuntimeException.class,
+        () -> client.runQuery("SELECT 1", null, null, false));
+    assertEquals(FlightStatusCode.TIMED_OUT, ex.status().code());
+    return ex;
+  }
+
+  @Test
+  public void testQueriesWithinDeadlinesComplete() throws Exception {
+    connect(QueryDeadlines.builder()
+        .handshake(Duration.ofSeconds(10))
+        .getInfo(Duration.ofSeconds(10))
+        .firstBatch(Duration.ofSeconds(10))
+        .idle(Duration.ofSeconds(10))
+        .total(Duration.ofSeconds(30))
+        .build());
+    client.runQuery("SELECT 1", null, null, false);
+  }
+
+  @Test
+  public void testGetInfoDeadlineCancelsPlanning() throws Exception {
+    connect(QueryDeadlines.builder().getInfo(Duration.ofMillis(200)).build());
+    producer.blockGetInfo = true;
+
+    assertQueryTimesOut();
+    assertTrue(producer.getInfoCancelled.await(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testFirstBatchDeadlineCancelsStream() throws Exception {
+    connect(QueryDeadlines.builder().firstBatch(Duration.ofMillis(200)).build());
+    producer.batchDelayMillis = 60_000;
+
+    assertTrue(assertQueryTimesOut().getMessage().contains("firstBatch"));
+    assertTrue(producer.streamCancelled.await(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testIdleDeadlineCancelsStream() throws Exception {
+    connect(QueryDeadlines.builder().idle(Duration.ofMillis(200)).build());
+    producer.batchDelayMillis = 1_000;
+
+    assertTrue(assertQueryTimesOut().getMessage().contains("idle"));
+    assertTrue(producer.streamCancelled.await(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testTotalDeadlineCancelsStream() throws Exception {
+    connect(QueryDeadlines.builder().total(Duration.ofMillis(500)).build());
+    producer.batchDelayMillis = 200;
+
+    assertQueryTimesOut();
+    assertTrue(producer.streamCancelled.await(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testCancelInFlightQueriesCancelsOnServer() throws Exception {
+    connect(QueryDeadlines.none());
+    producer.batchDelayMillis = 60_000;
+    final CompletableFuture<Void> query = client.runQueryAsync("SELECT 1", null, null, false);
+    assertTrue(producer.streamStarted.await(10, TimeUnit.SECONDS));
+
+    assertEquals(1, client.cancelInFlightQueries());
+
+    assertTrue(producer.cancelFlightInfoReceived.await(10, TimeUnit.SECONDS));
+    assertTrue(producer.streamCancelled.await(10, TimeUnit.SECONDS));
+    final ExecutionException ex = assertThrows(ExecutionException.class, () -> query.get(10, TimeUnit.SECONDS));
+    assertEquals(FlightStatusCode.CANCELLED, ((FlightRuntimeException) ex.getCause()).status().code());
+    assertEquals(0, client.cancelInFlightQueries());
+  }
+
+  @Test
+  public void testIteratorEnforcesIdleDeadline() throws Exception {
+    connect(QueryDeadlines.builder().idle(Duration.ofMillis(200)).build());
+    producer.batchDelayMillis = 1_000;
+
+    try (final FlightBatchIterator batches = client.openIterator("SELECT 1", null)) {
+      // The idle deadline applies from the second batch on.
+      batches.next().close();
+      final FlightRuntimeException ex = assertThrows(FlightRuntimeException.class, batches::hasNext);
+      assertEquals(FlightStatusCode.TIMED_OUT, ex.status().code());
+    }
+    assertTrue(producer.streamCancelled.await(10, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testCancelInFlightQueriesCancelsIterators() throws Exception {
+    connect(QueryDeadlines.none());
+    producer.batchDelayMillis = 60_000;
+    try (final FlightBatchIterator batches = client.openIterator("SELECT 1", null)) {
+      final CompletableFuture<Boolean> read = CompletableFuture.supplyAsync(batches::hasNext);
+      assertTrue(producer.streamStarted.await(10, TimeUnit.SECONDS));
+
+      assertEquals(1, client.cancelInFlightQueries());
+
+      assertTrue(producer.cancelFlightInfoReceived.await(10, TimeUnit.SECONDS));
+      assertTrue(producer.streamCancelled.await(10, TimeUnit.SECONDS));
+      final ExecutionException ex = assertThrows(ExecutionException.class, () -> read.get(10, TimeUnit.SECONDS));
+      assertEquals(FlightStatusCode.CANCELLED, ((FlightRuntimeException) ex.getCause()).status().code());
+    }
+    assertEquals(0, client.cancelInFlightQueries());
+  }
+}
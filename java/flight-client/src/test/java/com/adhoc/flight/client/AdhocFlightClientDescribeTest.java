@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.client;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.arrow.flight.CallHeaders;
+import org.apache.arrow.flight.FlightCallHeaders;
+import org.apache.arrow.flight.FlightDescriptor;
+import org.apache.arrow.flight.FlightServer;
+import org.apache.arrow.flight.SchemaResult;
+import org.apache.arrow.memory.BufferAllocator;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class AdhocFlightClientDescribeTest {
+  private static final String QUERY = "SELECT id FROM t";
+
+  @Rule
+  public FlightServerRule flight = new FlightServerRule();
+
+  private DescribedProducer producer;
+  private FlightServer server;
+  private AdhocFlightClient client;
+
+  @Before
+  public void setup() throws Exception {
+    producer = new DescribedProducer(flight.allocator());
+    server = flight.start(producer);
+    client = flight.connect(server);
+  }
+
+  /**
+   * Producer that counts the getSchema calls.
+   */
+  private static final class DescribedProducer extends InMemoryFlightProducer {
+    final AtomicInteger getSchemaCalls = new AtomicInteger();
+
+    DescribedProducer(BufferAllocator allocator) {
+      super(allocator, 1, 1);
+    }
+
+    @Override
+    public SchemaResult getSchema(CallContext context, FlightDescriptor descriptor) {
+      getSchemaCalls.incrementAndGet();
+      return super.getSchema(context, descriptor);
+    }
+  }
+
+  private static CallHeaders headers(String schema) {
+    final CallHeaders headers = new FlightCallHeaders();
+    headers.insert("SCHEMA", schema);
+    return headers;
+  }
+
+  @Test
+  public void testDescribeUsesSingleGetSchemaCall() {
+    assertEquals(InMemoryFlightProducer.SCHEMA, client.describe(QUERY, null));
+    assertEquals(1, producer.getSchemaCalls.get());
+    assertEquals("getInfo must not be called", 1, producer.getInfoStarted.getCount());
+  }
+
+  @Test
+  public void testSchemasAreCachedBySqlAndHeaders() {
+    client.describe(QUERY, headers("a"));
+    client.describe(QUERY, headers("a"));
+    assertEquals(1, producer.getSchemaCalls.get());
+
+    client.describe(QUERY, headers("b"));
+    client.describe(QUERY, null);
+    client.describe(QUERY + " WHERE id > 1", headers("a"));
+    assertEquals(4, producer.getSchemaCalls.get());
+
+    client.invalidateSchemaCache();
+    client.describe(QUERY, headers("a"));
+    assertEquals(5, producer.getSchemaCalls.get());
+  }
+}
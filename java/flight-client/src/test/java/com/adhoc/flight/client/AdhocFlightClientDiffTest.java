@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.client;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.arrow.flight.FlightRuntimeException;
+import org.apache.arrow.flight.FlightServer;
+import org.apache.arrow.flight.FlightStatusCode;
+import org.apache.arrow.flight.Ticket;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.adhoc.flight.diff.DiffReport;
+import com.adhoc.flight.diff.ResultDiff;
+import com.google.common.util.concurrent.Uninterruptibles;
+
+/**
+ * Tests for comparing the results of a query on two Flight servers with {@link ResultDiff}.
+ */
+public class AdhocFlightClientDiffTest {
+  private static final String QUERY = "SELECT * FROM t";
+  private static final int ROWS_PER_BATCH = 10;
+
+  @Rule
+  public FlightServerRule flight = new FlightServerRule();
+
+  @Rule
+  public TemporaryFolder spillDirectory = new TemporaryFolder();
+
+  private InMemoryFlightProducer leftProducer;
+  private InMemoryFlightProducer rightProducer;
+  private FlightServer leftServer;
+  private FlightServer rightServer;
+  private AdhocFlightClient leftClient;
+  private AdhocFlightClient rightClient;
+
+  @Before
+  public void setup() throws Exception {
+    leftProducer = new InMemoryFlightProducer(flight.allocator(), 2, ROWS_PER_BATCH);
+    rightProducer = new InMemoryFlightProducer(flight.allocator(), 3, ROWS_PER_BATCH);
+    leftServer = flight.start(leftProducer);
+    rightServer = flight.start(rightProducer);
+    leftClient = flight.connect(leftServer);
+    rightClient = flight.connect(rightServer);
+  }
+
+  private ResultDiff diff() {
+    return new ResultDiff(singletonList("id"), ResultDiff.DEFAULT_MAX_PENDING_ROWS, ResultDiff.DEFAULT_MAX_EXAMPLES,
+        spillDirectory.getRoot().toPath());
+  }
+
+  @Test
+  public void testBothServersAreQueriedAndCompared() throws Exception {
+    final DiffReport report;
+    try (final ResultDiff diff = diff()) {
+      report = diff.compare(leftClient, null, rightClient, null, QUERY, FlightExecutors.defaultExecutor());
+    }
+
+    assertEquals(2 * ROWS_PER_BATCH, report.getLeftRows());
+    assertEquals(3 * ROWS_PER_BATCH, report.getRightRows());
+    assertEquals(2 * ROWS_PER_BATCH, report.getMatchedRows());
+    assertEquals(ROWS_PER_BATCH, report.getRightOnlyRows());
+    assertTrue(report.getLeftMillis() >= 0);
+    assertTrue(report.getRightMillis() >= 0);
+    assertTrue(report.toReportString(), report.toReportString().contains("Latency: left "));
+  }
+
+  @Test
+  public void testIdenticalResultsWithoutKey() throws Exception {
+    try (final ResultDiff diff = new ResultDiff(emptyList(), 1, 1, spillDirectory.getRoot().toPath())) {
+      final DiffReport report = diff.compare(leftClient, null, leftClient, null, QUERY,
+          FlightExecutors.defaultExecutor());
+      assertTrue(report.toReportString(), report.isIdentical());
+    }
+  }
+
+  @Test
+  public void testFailureOnOneSideCancelsTheOther() throws Exception {
+    leftProducer.batchDelayMillis = 10_000;
+    // Fail the right stream only once the left one has started, so that there is a stream to cancel.
+    final InMemoryFlightProducer failingProducer = new InMemoryFlightProducer(flight.allocator(), 3, ROWS_PER_BATCH) {
+      @Override
+      public void getStream(CallContext context, Ticket ticket, ServerStreamListener listener) {
+        Uninterruptibles.awaitUninterruptibly(leftProducer.streamStarted, 10, TimeUnit.SECONDS);
+        super.getStream(context, ticket, listener);
+      }
+    };
+    failingProducer.unavailableStreams.set(1);
+    failingProducer.failAfterBatches = 1;
+    final AdhocFlightClient failingClient = flight.connect(flight.start(failingProducer));
+
+    try (final ResultDiff diff = diff()) {
+      final FlightRuntimeException ex = assertThrows(FlightRuntimeException.class,
+          () -> diff.compare(leftClient, null, failingClient, null, QUERY, FlightExecutors.defaultExecutor()));
+      assertEquals(FlightStatusCode.UNAVAILABLE, ex.status().code());
+    }
+    assertTrue(leftProducer.streamCancelled.await(5, TimeUnit.SECONDS));
+  }
+}
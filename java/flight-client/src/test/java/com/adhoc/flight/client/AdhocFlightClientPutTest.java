@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.client;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.apache.arrow.flight.CallStatus;
+import org.apache.arrow.flight.FlightDescriptor;
+import org.apache.arrow.flight.FlightRuntimeException;
+import org.apache.arrow.flight.FlightServer;
+import org.apache.arrow.flight.FlightStatusCode;
+import org.apache.arrow.flight.FlightStream;
+import org.apache.arrow.flight.NoOpFlightProducer;
+import org.apache.arrow.flight.PutResult;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BaseIntVector;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.ipc.ArrowFileWriter;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.ipc.ArrowWriter;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests for the bulk DoPut of local files by {@link AdhocFlightClient}.
+ */
+public class AdhocFlightClientPutTest {
+  private static final FlightDescriptor TABLE = FlightDescriptor.path("space", "table");
+  private static final int ROWS_PER_BATCH = 1000;
+
+  @Rule
+  public FlightServerRule flight = new FlightServerRule();
+
+  private BufferAllocator fileAllocator;
+  private PutProducer producer;
+  private FlightServer server;
+  private AdhocFlightClient client;
+  private Path directory;
+  private long expectedSum;
+
+  @Before
+  public void setup() throws Exception {
+    fileAllocator = flight.closeAfter(new RootAllocator(Long.MAX_VALUE));
+    producer = new PutProducer();
+    server = flight.start(producer);
+    client = flight.connect(server);
+    directory = Files.createTempDirectory("adhoc-flight-put");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    try (final Stream<Path> files = Files.list(directory)) {
+      for (Path file : (Iterable<Path>) files::iterator) {
+        Files.delete(file);
+      }
+    }
+    Files.delete(directory);
+  }
+
+  /**
+   * Producer that sums the ids of the uploaded batches, acknowledging each one if asked to.
+   */
+  private static final class PutProducer extends NoOpFlightProducer {
+    final AtomicInteger putStreams = new AtomicInteger();
+    final AtomicLong putRows = new AtomicLong();
+    final AtomicLong putSum = new AtomicLong();
+    volatile boolean ackPuts = false;
+    volatile long ackDelayMillis = 0;
+    volatile boolean rejectPuts = false;
+
+    @Override
+    public Runnable acceptPut(CallContext context, FlightStream flightStream, StreamListener<PutResult> ackStream) {
+      return () -> {
+        putStreams.incrementAndGet();
+        while (flightStream.next()) {
+          if (rejectPuts) {
+            ackStream.onError(CallStatus.INVALID_ARGUMENT.withDescription("Table is read-only.").toRuntimeException());
+            return;
+          }
+          final VectorSchemaRoot root = flightStream.getRoot();
+          final BaseIntVector ids = (BaseIntVector) root.getVector(0);
+          for (int row = 0; row < root.getRowCount(); row++) {
+            putSum.addAndGet(ids.getValueAsLong(row));
+          }
+          putRows.addAndGet(root.getRowCount());
+          if (ackPuts) {
+            try {
+              Thread.sleep(ackDelayMillis);
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            ackStream.onNext(PutResult.empty());
+          }
+        }
+        ackStream.onCompleted();
+      };
+    }
+  }
+
+  /**
+   * Writes ids starting at the given one, in the Arrow IPC file or stream format.
+   */
+  private Path writeIds(String name, long firstId, int batches) throws IOException {
+    final Path path = directory.resolve(name);
+    try (final BigIntVector ids = new BigIntVector("id", fileAllocator);
+         final VectorSchemaRoot root = VectorSchemaRoot.of(ids);
+         final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+         final ArrowWriter writer = name.endsWith(".arrow") ? new ArrowFileWriter(root, null, channel)
+             : new ArrowStreamWriter(root, null, channel)) {
+      writer.start();
+      long id = firstId;
+      for (int batch = 0; batch < batches; batch++) {
+        ids.allocateNew(ROWS_PER_BATCH);
+        for (int row = 0; row < ROWS_PER_BATCH; row++) {
+          expectedSum += id;
+          ids.set(row, id++);
+        }
+        root.setRowCount(ROWS_PER_BATCH);
+        writer.writeBatch();
+      }
+      writer.end();
+    }
+    return path;
+  }
+
+  private List<Path> writeFiles() throws IOException {
+    final List<Path> files = new ArrayList<>();
+    files.add(writeIds("first.arrow", 0, 5));
+    files.add(writeIds("second.arrows", 1_000_000, 7));
+    files.add(writeIds("third.arrow", 2_000_000, 3));
+    return files;
+  }
+
+  @Test
+  public void testFilesArePutOverConcurrentStreams() throws Exception {
+    final List<Path> files = writeFiles();
+
+    final PutSummary summary = client.put(TABLE, files,
+        PutOptions.builder().streams(3).readers(2).build(), null);
+
+    assertEquals(15, summary.getBatches());
+    assertEquals(15L * ROWS_PER_BATCH, summary.getRows());
+    assertEquals(3, summary.getFiles());
+    assertEquals(15L * ROWS_PER_BATCH, producer.putRows.get());
+    assertEquals(expectedSum, producer.putSum.get());
+    assertEquals(3, producer.putStreams.get());
+  }
+
+  @Test
+  public void testCsvFilesArePut() throws Exception {
+    final Path csv = directory.resolve("ids.csv");
+    try (final OutputStream out = Files.newOutputStream(csv)) {
+      out.write("id,name\n1,a\n2,b\n3,\n".getBytes(StandardCharsets.UTF_8));
+    }
+
+    final PutSummary summary = client.put(TABLE, asList(csv), PutOptions.defaults(), null);
+
+    assertEquals(3, summary.getRows());
+    assertEquals(6, producer.putSum.get());
+  }
+
+  @Test
+  public void testAcknowledgementWindowBoundsUnacknowledgedBatches() throws Exception {
+    final List<Path> files = writeFiles();
+    producer.ackPuts = true;
+    producer.ackDelayMillis = 5;
+
+    final PutSummary summary = client.put(TABLE, files,
+        PutOptions.builder().streams(2).maxUnacknowledged(2).build(), null);
+
+    assertEquals(15, summary.getAcknowledgements());
+    assertTrue(summary.getPeakUnacknowledged() <= 2);
+    assertEquals(expectedSum, producer.putSum.get());
+  }
+
+  @Test
+  public void testServerErrorFailsThePut() throws Exception {
+    final List<Path> files = writeFiles();
+    producer.rejectPuts = true;
+
+    final FlightRuntimeException ex = assertThrows(FlightRuntimeException.class,
+        () -> client.put(TABLE, files, PutOptions.defaults(), null));
+
+    assertEquals(FlightStatusCode.INVALID_ARGUMENT, ex.status().code());
+  }
+
+  @Test
+  public void testFilesWithDifferentSchemasAreRejected() throws Exception {
+    final List<Path> files = writeFiles();
+    final Path csv = directory.resolve("names.csv");
+    try (final OutputStream out = Files.newOutputStream(csv)) {
+      out.write("name\na\n".getBytes(StandardCharsets.UTF_8));
+    }
+    files.add(csv);
+
+    assertThrows(IllegalArgumentException.class, () -> client.put(TABLE, files, PutOptions.defaults(), null));
+  }
+}
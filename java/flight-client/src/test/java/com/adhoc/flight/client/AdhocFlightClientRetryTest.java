@@ -0,0 +1,171 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.arrow.flight.FlightRuntimeException;
+import org.apache.arrow.flight.FlightServer;
+import org.apache.arrow.flight.FlightStatusCode;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests for the retries and hedged requests of {@link AdhocFlightClient}.
+ */
+public class AdhocFlightClientRetryTest {
+  @Rule
+  public FlightServerRule flight = new FlightServerRule();
+
+  private RetriedProducer producer;
+  private FlightServer server;
+  private AdhocFlightClient client;
+
+  @Before
+  public void setup() throws Exception {
+    producer = new RetriedProducer(flight.allocator());
+    server = flight.start(producer);
+  }
+
+  /**
+   * Producer that can also block a number of getInfo calls until the client cancels them, so that
+   * the retries of a timed out call can be exercised.
+   */
+  private static final class RetriedProducer extends InMemoryFlightProducer {
+    final AtomicInteger blockedGetInfos = new AtomicInteger();
+
+    RetriedProducer(BufferAllocator allocator) {
+      super(allocator, 5, 100);
+    }
+
+    @Override
+    boolean blocksGetInfo() {
+      return takeOne(blockedGetInfos) || super.blocksGetInfo();
+    }
+  }
+
+  private static RetryPolicy.Builder fastRetries() {
+    return RetryPolicy.builder().backoff(Duration.ofMillis(1), Duration.ofMillis(10), 2);
+  }
+
+  private void connect(RetryPolicy retryPolicy) {
+    client = flight.connect(server, ClientOptions.builder().retryPolicy(retryPolicy).build());
+  }
+
+  @Test
+  public void testUnavailableGetInfoIsRetried() throws Exception {
+    connect(fastRetries().maxAttempts(3).build());
+    producer.unavailableGetInfos.set(2);
+
+    client.runQuery("SELECT 1", null, null, false);
+
+    assertEquals(3, producer.getInfoCalls.get());
+  }
+
+  @Test
+  public void testNothingIsRetriedByDefault() {
+    connect(RetryPolicy.none());
+    producer.unavailableGetInfos.set(1);
+
+    final FlightRuntimeException ex = assertThrows(FlightRuntimeException.class,
+        () -> client.runQuery("SELECT 1", null, null, false));
+
+    assertEquals(FlightStatusCode.UNAVAILABLE, ex.status().code());
+    assertEquals(1, producer.getInfoCalls.get());
+  }
+
+  @Test
+  public void testRetryBudgetStopsRetries() {
+    connect(fastRetries().maxAttempts(10).budget(4, 0.1).build());
+    producer.unavailableGetInfos.set(Integer.MAX_VALUE);
+
+    assertThrows(FlightRuntimeException.class, () -> client.runQuery("SELECT 1", null, null, false));
+
+    // The first failure leaves 3 of 4 tokens, above the half-budget threshold; the second leaves 2.
+    assertEquals(2, producer.getInfoCalls.get());
+  }
+
+  @Test
+  public void testTicketIsReReadWithoutRepeatingBatches() throws Exception {
+    connect(fastRetries().maxAttempts(2).build());
+    producer.unavailableStreams.set(1);
+    producer.failAfterBatches = 2;
+    final List<Integer> ids = new ArrayList<>();
+
+    client.runQuery("SELECT 1", null, null, root -> {
+      final IntVector vector = (IntVector) root.getVector(0);
+      for (int i = 0; i < root.getRowCount(); i++) {
+        ids.add(vector.get(i));
+      }
+    });
+
+    assertEquals(producer.totalRows(), ids.size());
+    for (int i = 0; i < ids.size(); i++) {
+      assertEquals(i, (int) ids.get(i));
+    }
+  }
+
+  @Test
+  public void testIteratorReReadsTicketWithoutRepeatingBatches() throws Exception {
+    connect(fastRetries().maxAttempts(2).build());
+    producer.unavailableStreams.set(1);
+    producer.failAfterBatches = 2;
+    final List<Integer> ids = new ArrayList<>();
+
+    try (final FlightBatchIterator batches = client.openIterator("SELECT 1", null)) {
+      while (batches.hasNext()) {
+        try (final VectorSchemaRoot root = batches.next()) {
+          final IntVector vector = (IntVector) root.getVector(0);
+          for (int i = 0; i < root.getRowCount(); i++) {
+            ids.add(vector.get(i));
+          }
+        }
+      }
+    }
+
+    assertEquals(producer.totalRows(), ids.size());
+    for (int i = 0; i < ids.size(); i++) {
+      assertEquals(i, (int) ids.get(i));
+    }
+  }
+
+  @Test
+  public void testSlowGetInfoIsHedged() throws Exception {
+    connect(RetryPolicy.builder().hedgeGetInfo(Duration.ofMillis(20)).build());
+    for (int i = 0; i < Retrier.MIN_HEDGE_SAMPLES; i++) {
+      client.getInfoAsync("SELECT 1", null).get(10, TimeUnit.SECONDS);
+    }
+    producer.blockedGetInfos.set(1);
+
+    assertEquals(producer.totalRows(), client.getInfoAsync("SELECT 1", null).get(10, TimeUnit.SECONDS).getRecords());
+
+    assertTrue(producer.getInfoCancelled.await(10, TimeUnit.SECONDS));
+    assertEquals(Retrier.MIN_HEDGE_SAMPLES + 2, producer.getInfoCalls.get());
+  }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.client;
+
+import static com.adhoc.flight.client.FlightServerRule.HOST;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.net.ServerSocket;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.arrow.flight.FlightServer;
+import org.apache.arrow.flight.Location;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests for the routing of tickets to the locations advertised by their endpoints.
+ */
+public class AdhocFlightClientRoutingTest {
+  @Rule
+  public FlightServerRule flight = new FlightServerRule();
+
+  private CoordinatorProducer coordinatorProducer;
+  private InMemoryFlightProducer executorProducer;
+  private FlightServer coordinator;
+  private FlightServer executor;
+  private Location executorLocation;
+  private InMemoryFlightProducer secondExecutorProducer;
+  private FlightServer secondExecutor;
+  private Location secondExecutorLocation;
+  private AdhocFlightClient client;
+
+  @Before
+  public void setup() throws Exception {
+    coordinatorProducer = new CoordinatorProducer(flight.allocator());
+    coordinator = flight.start(coordinatorProducer);
+    executorProducer = new InMemoryFlightProducer(flight.allocator(), 5, 100);
+    executor = flight.start(
+        FlightServer.builder(flight.allocator(), Location.forGrpcInsecure(HOST, 0), executorProducer));
+    executorLocation = Location.forGrpcInsecure(HOST, executor.getPort());
+    secondExecutorProducer = new InMemoryFlightProducer(flight.allocator(), 3, 100);
+    secondExecutor = flight.start(
+        FlightServer.builder(flight.allocator(), Location.forGrpcInsecure(HOST, 0), secondExecutorProducer));
+    secondExecutorLocation = Location.forGrpcInsecure(HOST, secondExecutor.getPort());
+  }
+
+  /**
+   * Producer of a coordinator that sends the client to the given executor locations.
+   */
+  private static final class CoordinatorProducer extends InMemoryFlightProducer {
+    volatile List<Location> endpointLocations = Collections.emptyList();
+    // Whether endpoint i advertises only location i of endpointLocations, instead of all of them.
+    volatile boolean locationPerEndpoint = false;
+
+    CoordinatorProducer(BufferAllocator allocator) {
+      super(allocator, 5, 100);
+    }
+
+    @Override
+    Location[] locations(int endpoint) {
+      return locationPerEndpoint ?
+          new Location[] {endpointLocations.get(endpoint)} : endpointLocations.toArray(new Location[0]);
+    }
+  }
+
+  private void connect(ClientOptions options) {
+    client = flight.connect(coordinator, options);
+  }
+
+  private long runQuery() throws Exception {
+    final AtomicLong rows = new AtomicLong();
+    client.runQuery("SELECT 1", null, null, root -> rows.addAndGet(root.getRowCount()));
+    return rows.get();
+  }
+
+  private static Location unreachableLocation() throws Exception {
+    try (final ServerSocket socket = new ServerSocket(0)) {
+      return Location.forGrpcInsecure(HOST, socket.getLocalPort());
+    }
+  }
+
+  @Test
+  public void testTicketIsReadFromAdvertisedLocation() throws Exception {
+    connect(ClientOptions.defaults());
+    coordinatorProducer.endpointLocations = singletonList(executorLocation);
+
+    assertEquals(coordinatorProducer.totalRows(), runQuery());
+    assertEquals(coordinatorProducer.totalRows(), runQuery());
+
+    assertEquals(2, executorProducer.getStreamCalls.get());
+    assertEquals(0, coordinatorProducer.getStreamCalls.get());
+  }
+
+  @Test
+  public void testUnreachableReplicaFailsOver() throws Exception {
+    connect(ClientOptions.defaults());
+    coordinatorProducer.endpointLocations = asList(unreachableLocation(), executorLocation);
+
+    assertEquals(coordinatorProducer.totalRows(), runQuery());
+
+    assertEquals(1, executorProducer.getStreamCalls.get());
+    assertEquals(0, coordinatorProducer.getStreamCalls.get());
+  }
+
+  @Test
+  public void testUnreachableLocationsFallBackToCoordinator() throws Exception {
+    connect(ClientOptions.defaults());
+    coordinatorProducer.endpointLocations = singletonList(unreachableLocation());
+
+    assertEquals(coordinatorProducer.totalRows(), runQuery());
+
+    assertEquals(1, coordinatorProducer.getStreamCalls.get());
+  }
+
+  @Test
+  public void testReuseConnectionLocationIsReadFromCoordinator() throws Exception {
+    connect(ClientOptions.defaults());
+    coordinatorProducer.endpointLocations = singletonList(Location.reuseConnection());
+
+    assertEquals(coordinatorProducer.totalRows(), runQuery());
+
+    assertEquals(1, coordinatorProducer.getStreamCalls.get());
+  }
+
+  @Test
+  public void testRoutingCanBeDisabled() throws Exception {
+    connect(ClientOptions.builder().endpointRouting(false).build());
+    coordinatorProducer.endpointLocations = singletonList(executorLocation);
+
+    assertEquals(coordinatorProducer.totalRows(), runQuery());
+
+    assertEquals(0, executorProducer.getStreamCalls.get());
+    assertEquals(1, coordinatorProducer.getStreamCalls.get());
+  }
+
+  @Test
+  public void testEveryEndpointIsReadFromItsLocation() throws Exception {
+    connect(ClientOptions.defaults());
+    coordinatorProducer.endpointCount = 2;
+    coordinatorProducer.endpointLocations = asList(executorLocation, secondExecutorLocation);
+    coordinatorProducer.locationPerEndpoint = true;
+
+    assertEquals(500 + 300, runQuery());
+
+    assertEquals(1, executorProducer.getStreamCalls.get());
+    assertEquals(1, secondExecutorProducer.getStreamCalls.get());
+    assertEquals(0, coordinatorProducer.getStreamCalls.get());
+  }
+
+  @Test
+  public void testEndpointsAreStreamedAsOneArrowStream() throws Exception {
+    connect(ClientOptions.defaults());
+    coordinatorProducer.endpointCount = 2;
+    coordinatorProducer.endpointLocations = asList(executorLocation, secondExecutorLocation);
+    coordinatorProducer.locationPerEndpoint = true;
+    final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+    client.streamQuery("SELECT 1", null, outputStream);
+
+    long rows = 0;
+    int batches = 0;
+    try (final BufferAllocator readAllocator = new RootAllocator(Long.MAX_VALUE);
+        final ArrowStreamReader reader =
+            new ArrowStreamReader(new ByteArrayInputStream(outputStream.toByteArray()), readAllocator)) {
+      while (reader.loadNextBatch()) {
+        final IntVector ids = (IntVector) reader.getVectorSchemaRoot().getVector(0);
+        // The batches of the first endpoint come before those of the second.
+        assertEquals(batches < 5 ? batches * 100 : (batches - 5) * 100, ids.get(0));
+        rows += reader.getVectorSchemaRoot().getRowCount();
+        batches++;
+      }
+    }
+    assertEquals(5 + 3, batches);
+    assertEquals(500 + 300, rows);
+  }
+}
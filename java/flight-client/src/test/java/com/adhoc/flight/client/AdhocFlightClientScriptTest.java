@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.client;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.arrow.flight.FlightServer;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.adhoc.flight.script.ScriptGraph;
+import com.adhoc.flight.script.ScriptReport;
+import com.adhoc.flight.script.ScriptRunner;
+
+/**
+ * Tests for running scripts with {@link AdhocFlightClient#runScript}, which plans statements ahead
+ * while the current one streams, and with a {@link ScriptRunner}, which runs independent
+ * statements at the same time.
+ */
+public class AdhocFlightClientScriptTest {
+  private static final int BATCHES = 4;
+  private static final int ROWS_PER_BATCH = 100;
+
+  @Rule
+  public FlightServerRule flight = new FlightServerRule();
+
+  private InMemoryFlightProducer producer;
+  private FlightServer server;
+  private AdhocFlightClient client;
+  private AdhocFlightClient secondClient;
+
+  @Before
+  public void setup() throws Exception {
+    producer = new InMemoryFlightProducer(flight.allocator(), BATCHES, ROWS_PER_BATCH);
+    server = flight.start(producer);
+    client = flight.connect(server);
+    secondClient = flight.connect(server);
+  }
+
+  private static int drain(FlightBatchIterator results) {
+    int rows = 0;
+    while (results.hasNext()) {
+      try (final VectorSchemaRoot batch = results.next()) {
+        rows += batch.getRowCount();
+      }
+    }
+    return rows;
+  }
+
+  private void awaitGetInfoCalls(int expected) throws InterruptedException {
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (producer.getInfoCalls.get() < expected && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(expected, producer.getInfoCalls.get());
+  }
+
+  @Test
+  public void testNextStatementsArePlannedWhileTheCurrentOneStreams() throws Exception {
+    producer.getInfoDelayMillis = 100;
+    final List<String> statements = asList("SELECT 1", "SELECT 2", "WITH t AS (SELECT 3) SELECT * FROM t");
+    final List<Integer> rows = new ArrayList<>();
+
+    final ScriptSummary summary = client.runScript(statements, 2, null, (index, statement, results) -> {
+      if (index == 0) {
+        // Both of the following statements are planned before the first one is read.
+        awaitGetInfoCalls(3);
+      }
+      rows.add(drain(results));
+    });
+
+    assertEquals(asList(producer.totalRows(), producer.totalRows(), producer.totalRows()), rows);
+    assertEquals(3, summary.getStatements());
+    assertEquals(2, summary.getPlannedAhead());
+    assertTrue(summary.toString(), summary.getPlanningWaitMillis() < summary.getPlanningMillis());
+  }
+
+  @Test
+  public void testStatementsAreNotPlannedPastAWrite() throws Exception {
+    final List<String> statements = asList("SELECT 1", "CREATE TABLE t AS SELECT 1", "SELECT * FROM t", "SELECT 2");
+    final List<Integer> plannedWhileReading = new ArrayList<>();
+
+    final ScriptSummary summary = client.runScript(statements, 3, null, (index, statement, results) -> {
+      Thread.sleep(100);
+      plannedWhileReading.add(producer.getInfoCalls.get());
+      drain(results);
+    });
+
+    // The write is only planned once the first statement completes, and the reads after it once it
+    // completes in turn; the last read is then planned ahead.
+    assertEquals(asList(1, 2, 4, 4), plannedWhileReading);
+    assertEquals(1, summary.getPlannedAhead());
+  }
+
+  @Test
+  public void testLookAheadBoundsThePlannedStatements() throws Exception {
+    final List<String> statements = asList("SELECT 1", "SELECT 2", "SELECT 3", "SELECT 4");
+    final List<Integer> plannedWhileReading = new ArrayList<>();
+
+    client.runScript(statements, 1, null, (index, statement, results) -> {
+      Thread.sleep(100);
+      plannedWhileReading.add(producer.getInfoCalls.get());
+      drain(results);
+    });
+
+    assertEquals(asList(2, 3, 4, 4), plannedWhileReading);
+  }
+
+  @Test
+  public void testFailureCancelsTheStatementsPlannedAhead() throws Exception {
+    final IllegalStateException failure = new IllegalStateException("Consumer failed.");
+    final AtomicInteger consumed = new AtomicInteger();
+
+    final IllegalStateException thrown = assertThrows(IllegalStateException.class,
+        () -> client.runScript(asList("SELECT 1", "SELECT 2", "SELECT 3"), 2, null, (index, statement, results) -> {
+          consumed.addAndGet(drain(results));
+          awaitGetInfoCalls(3);
+          Thread.sleep(200);
+          throw failure;
+        }));
+
+    assertSame(failure, thrown);
+    assertEquals(producer.totalRows(), consumed.get());
+    assertTrue(producer.cancelFlightInfoReceived.await(5, TimeUnit.SECONDS));
+    assertEquals(1, producer.getStreamCalls.get());
+  }
+
+  @Test
+  public void testIndependentStatementsRunAtTheSameTime() throws Exception {
+    final ScriptGraph graph = ScriptGraph.of(asList(
+        "CREATE TABLE a AS SELECT * FROM x", "CREATE TABLE b AS SELECT * FROM y", "SELECT * FROM a JOIN b"));
+    final CountDownLatch bothRunning = new CountDownLatch(2);
+    final List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+
+    final ScriptReport report = new ScriptRunner(asList(client, secondClient), null).run(graph,
+        (index, statement, results) -> {
+          if (index < 2) {
+            bothRunning.countDown();
+            assertTrue(bothRunning.await(5, TimeUnit.SECONDS));
+          }
+          drain(results);
+          order.add(index);
+        });
+
+    report.throwIfFailed();
+    assertEquals(2, report.getPeakConcurrency());
+    assertEquals(asList(0, 1, 2), report.getStatements(ScriptReport.Status.SUCCEEDED));
+    assertEquals(Integer.valueOf(2), order.get(2));
+  }
+
+  @Test
+  public void testFailureSkipsTheStatementsDownstream() throws Exception {
+    final ScriptGraph graph = ScriptGraph.of(asList(
+        "CREATE TABLE a AS SELECT * FROM x", "SELECT * FROM a", "SELECT * FROM y", "SELECT * FROM z"));
+    final IllegalStateException failure = new IllegalStateException("Table x is missing.");
+    final CountDownLatch failed = new CountDownLatch(1);
+
+    final ScriptReport report = new ScriptRunner(asList(client, secondClient), null).run(graph,
+        (index, statement, results) -> {
+          if (index == 0) {
+            failed.countDown();
+            throw failure;
+          }
+          // The independent statement started with the failed one is left to complete.
+          assertTrue(failed.await(5, TimeUnit.SECONDS));
+          drain(results);
+        });
+
+    assertSame(failure, report.getFailure());
+    assertEquals(0, report.getFailedStatement());
+    assertEquals(ScriptReport.Status.FAILED, report.getStatus(0));
+    assertEquals(ScriptReport.Status.SUCCEEDED, report.getStatus(2));
+    // Neither the downstream statement nor the one waiting for a free client started.
+    assertEquals(asList(1, 3), report.getStatements(ScriptReport.Status.SKIPPED));
+    assertEquals(2, producer.getInfoCalls.get());
+    assertSame(failure, assertThrows(IllegalStateException.class, report::throwIfFailed));
+  }
+}
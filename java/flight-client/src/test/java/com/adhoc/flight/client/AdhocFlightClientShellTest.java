@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.PipedReader;
+import java.io.PipedWriter;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.arrow.flight.FlightServer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.adhoc.flight.shell.QueryShell;
+
+/**
+ * Tests for running queries interactively with {@link QueryShell}.
+ */
+public class AdhocFlightClientShellTest {
+  private static final int BATCHES = 3;
+  private static final int ROWS_PER_BATCH = 10;
+
+  @Rule
+  public FlightServerRule flight = new FlightServerRule();
+
+  private InMemoryFlightProducer producer;
+  private FlightServer server;
+  private AdhocFlightClient client;
+  private final ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+  @Before
+  public void setup() throws Exception {
+    producer = new InMemoryFlightProducer(flight.allocator(), BATCHES, ROWS_PER_BATCH);
+    server = flight.start(producer);
+    client = flight.connect(server);
+  }
+
+  private QueryShell shell(BufferedReader input, int previewRows) {
+    return new QueryShell(client, null, input, new PrintStream(output, true), previewRows);
+  }
+
+  private String output() {
+    return new String(output.toByteArray(), StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void testStatementsArePreviewedAndTimed() throws Exception {
+    final String script = "SELECT *\nFROM t;\n\\preview 2\nSELECT * FROM t;\n\\q\nSELECT * FROM ignored;\n";
+    shell(new BufferedReader(new StringReader(script)), 5).run();
+
+    final String output = output();
+    assertTrue(output, output.contains("id\n0\n1\n2\n3\n4\n... 25 more rows\n"));
+    assertTrue(output, output.contains("id\n0\n1\n... 28 more rows\n"));
+    assertEquals(output, 2, output.split("\\[INFO] 30 rows in ", -1).length - 1);
+    assertTrue(output, output.contains("rows/s)"));
+    assertEquals(2, producer.getInfoCalls.get());
+  }
+
+  @Test
+  public void testFailedQueryDoesNotEndTheShell() throws Exception {
+    producer.unavailableGetInfos.set(1);
+    final String script = "\\bogus\nSELECT * FROM t;\nSELECT * FROM t;\n\\d SELECT * FROM t\n";
+    shell(new BufferedReader(new StringReader(script)), 0).run();
+
+    final String output = output();
+    assertTrue(output, output.contains("[ERROR] Unknown command \\bogus."));
+    assertTrue(output, output.contains("[ERROR] Coordinator is restarting."));
+    assertTrue(output, output.contains("[INFO] 30 rows in "));
+    assertTrue(output, output.contains("id\tInt(32, true)\ttrue"));
+  }
+
+  @Test
+  public void testRunningQueryCanBeCancelled() throws Exception {
+    producer.batchDelayMillis = 10_000;
+    final PipedWriter writer = new PipedWriter();
+    final QueryShell shell = shell(new BufferedReader(new PipedReader(writer)), 5);
+    assertFalse(shell.cancel());
+    final Thread thread = new Thread(() -> {
+      try {
+        shell.run();
+      } catch (Exception ex) {
+        throw new RuntimeException(ex);
+      }
+    });
+    thread.start();
+    writer.write("SELECT * FROM t;\n");
+    writer.flush();
+    assertTrue(producer.streamStarted.await(5, TimeUnit.SECONDS));
+
+    while (!shell.cancel()) {
+      Thread.sleep(10);
+    }
+    assertTrue(producer.streamCancelled.await(5, TimeUnit.SECONDS));
+    producer.batchDelayMillis = 0;
+    writer.write("SELECT * FROM t;\n\\q\n");
+    writer.flush();
+    thread.join(TimeUnit.SECONDS.toMillis(10));
+
+    final String output = output();
+    assertFalse(thread.isAlive());
+    assertTrue(output, output.contains("[INFO] Query cancelled after 0 rows"));
+    assertTrue(output, output.contains("[INFO] 30 rows in "));
+  }
+}
@@ -33,6 +33,8 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
@@ -40,6 +42,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.IntConsumer;
 import java.util.logging.Logger;
+import java.util.stream.Collectors;
 
 import org.apache.arrow.flight.FlightStream;
 import org.apache.arrow.memory.BufferAllocator;
@@ -61,6 +64,13 @@ import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import com.adhoc.flight.filter.BatchFilter;
+import com.adhoc.flight.filter.ColumnPredicate;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
 /**
  * Tests for {@link AdhocFlightClient}.
  */
@@ -162,4 +172,65 @@ public final class AdhocFlightClientTest {
     collector.checkThat(actualBatches, is(originalBatches));
     collector.checkThat(responseRoots.size(), is(allOf(equalTo(actualBatches.size()), equalTo(EXPECTED_BATCH_COUNT))));
   }
+
+  @Test
+  public void testFilteredBatchesAreWritten() throws Exception {
+    final UInt1Vector expected = (UInt1Vector) EXPECTED_FINAL_ROOT.getVector(COLUMN_FIELD);
+    final long expectedRows = range(0, EXPECTED_ROW_COUNT)
+        .filter(i -> !expected.isNull(i) && expected.getValueAsLong(i) >= 128)
+        .count();
+    final BatchFilter filter = new BatchFilter(null, singletonList(ColumnPredicate.parse("col>=128")));
+    final AtomicInteger consumedRows = new AtomicInteger();
+    final byte[] data;
+    try (final ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
+      writeToOutputStream(flightStream, ALLOCATOR, filter, outputStream, false,
+          root -> consumedRows.addAndGet(root.getRowCount()));
+      data = outputStream.toByteArray();
+    }
+
+    long writtenRows = 0;
+    try (final ArrowStreamReader arrowStreamReader =
+             new ArrowStreamReader(new ByteArrayInputStream(data), ALLOCATOR)) {
+      while (arrowStreamReader.loadNextBatch()) {
+        final UInt1Vector col = (UInt1Vector) arrowStreamReader.getVectorSchemaRoot().getVector(COLUMN_FIELD);
+        for (int i = 0; i < col.getValueCount(); i++) {
+          collector.checkThat(col.getValueAsLong(i) >= 128, is(true));
+        }
+        writtenRows += col.getValueCount();
+      }
+    }
+    collector.checkThat(writtenRows, is(expectedRows));
+    collector.checkThat((long) consumedRows.get(), is(expectedRows));
+  }
+
+  @Test
+  public void testBatchAndSinkEventsAreRecorded() throws Exception {
+    final Path recordingPath = Files.createTempFile("adhoc-flight", ".jfr");
+    try (final Recording recording = new Recording()) {
+      recording.enable("com.adhoc.flight.BatchReceived");
+      recording.enable("com.adhoc.flight.SinkWrite");
+      recording.start();
+      try (final ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
+        writeToOutputStream(flightStream, ALLOCATOR, outputStream, null);
+      }
+      recording.stop();
+      recording.dump(recordingPath);
+
+      final List<RecordedEvent> events = RecordingFile.readAllEvents(recordingPath);
+      final List<RecordedEvent> batchEvents = events.stream()
+          .filter(event -> event.getEventType().getName().equals("com.adhoc.flight.BatchReceived"))
+          .collect(Collectors.toList());
+      final List<RecordedEvent> sinkEvents = events.stream()
+          .filter(event -> event.getEventType().getName().equals("com.adhoc.flight.SinkWrite"))
+          .collect(Collectors.toList());
+
+      collector.checkThat(batchEvents.size(), is(EXPECTED_BATCH_COUNT));
+      collector.checkThat(batchEvents.stream().mapToInt(event -> event.getInt("rows")).sum(),
+          is(EXPECTED_ROW_COUNT));
+      collector.checkThat(sinkEvents.size(), is(EXPECTED_BATCH_COUNT + 1));
+      collector.checkThat(sinkEvents.get(EXPECTED_BATCH_COUNT).getLong("batch"), is(-1L));
+    } finally {
+      Files.deleteIfExists(recordingPath);
+    }
+  }
 }
@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.client;
+
+import static com.adhoc.flight.client.FlightServerRule.HOST;
+import static com.adhoc.flight.client.FlightServerRule.PASSWORD;
+import static com.adhoc.flight.client.FlightServerRule.USERNAME;
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.KeyStore;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.arrow.flight.FlightRuntimeException;
+import org.apache.arrow.flight.FlightServer;
+import org.apache.arrow.flight.FlightStatusCode;
+import org.apache.arrow.flight.Location;
+import org.apache.arrow.memory.RootAllocator;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+
+/**
+ * Tests for the encrypted connections of {@link AdhocFlightClient}, against a server with a
+ * self-signed certificate.
+ */
+public class AdhocFlightClientTlsTest {
+  private static final String KEYSTORE_PASSWORD = "changeit";
+
+  @Rule
+  public FlightServerRule flight = new FlightServerRule();
+
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private SelfSignedCertificate serverCertificate;
+  private SelfSignedCertificate otherCertificate;
+  private InMemoryFlightProducer producer;
+  private FlightServer server;
+  private AdhocFlightClient client;
+
+  @Before
+  public void setup() throws Exception {
+    serverCertificate = new SelfSignedCertificate(HOST);
+    otherCertificate = new SelfSignedCertificate("other.example.com");
+    producer = new InMemoryFlightProducer(flight.allocator(), 4, 1_000);
+    server = flight.start(FlightServer.builder(flight.allocator(), Location.forGrpcTls(HOST, 0), producer)
+        .useTls(serverCertificate.certificate(), serverCertificate.privateKey())
+        .headerAuthenticator(FlightServerRule.authenticator()));
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    serverCertificate.delete();
+    otherCertificate.delete();
+  }
+
+  private void connect(Path keyStore, TlsProvider provider) throws Exception {
+    final ClientOptions options =
+        ClientOptions.builder().transport(TransportOptions.builder().tlsProvider(provider).build()).build();
+    client = flight.closeAfter(AdhocFlightClient.getEncryptedClient(new RootAllocator(Long.MAX_VALUE), HOST,
+        server.getPort(), USERNAME, PASSWORD, null, keyStore.toString(), KEYSTORE_PASSWORD, false, null, null,
+        emptyList(), options));
+  }
+
+  private int runQuery() throws Exception {
+    final AtomicInteger rows = new AtomicInteger();
+    client.runQuery("SELECT 1", null, null, root -> rows.addAndGet(root.getRowCount()));
+    return rows.get();
+  }
+
+  private Path writeKeyStore(String name, File... certificates) throws Exception {
+    final KeyStore keyStore = KeyStore.getInstance(KeyStore.getDefaultType());
+    keyStore.load(null, null);
+    final CertificateFactory factory = CertificateFactory.getInstance("X.509");
+    for (int i = 0; i < certificates.length; i++) {
+      try (final InputStream certificate = new FileInputStream(certificates[i])) {
+        final Certificate parsed = factory.generateCertificate(certificate);
+        keyStore.setCertificateEntry("cert" + i, parsed);
+      }
+    }
+    final Path path = temporaryFolder.getRoot().toPath().resolve(name);
+    try (final OutputStream out = Files.newOutputStream(path)) {
+      keyStore.store(out, KEYSTORE_PASSWORD.toCharArray());
+    }
+    return path;
+  }
+
+  private static int countCertificates(byte[] pem) {
+    return new String(pem, StandardCharsets.UTF_8).split("-----BEGIN CERTIFICATE-----", -1).length - 1;
+  }
+
+  @Test
+  public void testEveryCertificateEntryIsTrusted() throws Exception {
+    // Whichever entry the keystore lists first, the server certificate is trusted.
+    final Path keyStore = writeKeyStore("trust.jks", otherCertificate.certificate(), serverCertificate.certificate());
+
+    final byte[] certificates = EncryptedConnectionUtils.getTrustedCertificates(keyStore.toString(), KEYSTORE_PASSWORD);
+    assertEquals(2, countCertificates(certificates));
+
+    connect(keyStore, TlsProvider.JDK);
+    assertEquals(producer.totalRows(), runQuery());
+  }
+
+  @Test
+  public void testCertificatesAreReloadedWhenTheKeyStoreChanges() throws Exception {
+    final Path keyStore = writeKeyStore("trust.jks", otherCertificate.certificate(), serverCertificate.certificate());
+    final byte[] first = EncryptedConnectionUtils.getTrustedCertificates(keyStore.toString(), KEYSTORE_PASSWORD);
+    assertArrayEquals(first, EncryptedConnectionUtils.getTrustedCertificates(keyStore.toString(), KEYSTORE_PASSWORD));
+
+    final Path replacement = writeKeyStore("replacement.jks", otherCertificate.certificate());
+    Files.copy(replacement, keyStore, StandardCopyOption.REPLACE_EXISTING);
+    Files.setLastModifiedTime(keyStore, FileTime.fromMillis(System.currentTimeMillis() + 60_000));
+
+    assertEquals(1, countCertificates(
+        EncryptedConnectionUtils.getTrustedCertificates(keyStore.toString(), KEYSTORE_PASSWORD)));
+    // The handshake fails, since the server certificate is no longer trusted.
+    final FlightRuntimeException ex = assertThrows(FlightRuntimeException.class,
+        () -> connect(keyStore, TlsProvider.JDK));
+    assertEquals(FlightStatusCode.UNAVAILABLE, ex.status().code());
+  }
+
+  @Test
+  public void testCachedCertificatesStillNeedThePassword() throws Exception {
+    final Path keyStore = writeKeyStore("trust.jks", serverCertificate.certificate());
+    EncryptedConnectionUtils.getTrustedCertificates(keyStore.toString(), KEYSTORE_PASSWORD);
+
+    assertThrows(IOException.class,
+        () -> EncryptedConnectionUtils.getTrustedCertificates(keyStore.toString(), "not-" + KEYSTORE_PASSWORD));
+    assertEquals(1, countCertificates(
+        EncryptedConnectionUtils.getTrustedCertificates(keyStore.toString(), KEYSTORE_PASSWORD)));
+  }
+
+  @Test
+  public void testQueryOverOpenSsl() throws Exception {
+    assumeTrue(OpenSsl.isAvailable());
+    final Path keyStore = writeKeyStore("trust.jks", serverCertificate.certificate());
+
+    connect(keyStore, TlsProvider.OPENSSL);
+
+    assertEquals(producer.totalRows(), runQuery());
+  }
+
+  @Test
+  public void testConnectionsShareTlsContexts() throws Exception {
+    final byte[] certificates = Files.readAllBytes(serverCertificate.certificate().toPath());
+
+    assertSame(TlsContexts.forClient(TlsProvider.JDK, true, certificates),
+        TlsContexts.forClient(TlsProvider.JDK, true, certificates.clone()));
+    assertNotSame(TlsContexts.forClient(TlsProvider.JDK, true, certificates),
+        TlsContexts.forClient(TlsProvider.DEFAULT, true, certificates));
+    assertNotSame(TlsContexts.forClient(TlsProvider.JDK, true, certificates),
+        TlsContexts.newClientContext(TlsProvider.JDK, true, certificates));
+  }
+}
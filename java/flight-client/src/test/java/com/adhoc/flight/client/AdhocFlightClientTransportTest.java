@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.arrow.flight.FlightRuntimeException;
+import org.apache.arrow.flight.FlightServer;
+import org.apache.arrow.flight.FlightStatusCode;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests for the gRPC transport settings and connection striping of {@link AdhocFlightClient}.
+ */
+public class AdhocFlightClientTransportTest {
+  @Rule
+  public FlightServerRule flight = new FlightServerRule();
+
+  private InMemoryFlightProducer producer;
+  private FlightServer server;
+  private AdhocFlightClient client;
+
+  @Before
+  public void setup() throws Exception {
+    producer = new InMemoryFlightProducer(flight.allocator(), 8, 10_000);
+    server = flight.start(producer);
+  }
+
+  private void connect(TransportOptions transport) {
+    connect(ClientOptions.builder().transport(transport).build());
+  }
+
+  private void connect(ClientOptions options) {
+    client = flight.connect(server, options);
+  }
+
+  @Test
+  public void testQueryOverTunedTransport() throws Exception {
+    connect(TransportOptions.builder()
+        .flowControlWindow(64 * 1024)
+        .keepAlive(Duration.ofSeconds(10), Duration.ofSeconds(5), true)
+        .idleTimeout(Duration.ofMinutes(1))
+        .build());
+    final AtomicInteger rows = new AtomicInteger();
+
+    client.runQuery("SELECT 1", null, null, root -> rows.addAndGet(root.getRowCount()));
+
+    assertEquals(producer.totalRows(), rows.get());
+  }
+
+  @Test
+  public void testBatchLargerThanMaxInboundMessageSizeIsRejected() throws Exception {
+    // Each batch carries 40 KB of ids, well above the limit and well below the default.
+    connect(TransportOptions.builder().maxInboundMessageSize(16 * 1024).build());
+    producer.batchDelayMillis = 50;
+
+    final FlightRuntimeException ex = assertThrows(FlightRuntimeException.class,
+        () -> client.runQuery("SELECT 1", null, null, false));
+
+    assertEquals(FlightStatusCode.RESOURCE_EXHAUSTED, ex.status().code());
+    assertTrue(producer.streamCancelled.await(5, TimeUnit.SECONDS));
+  }
+
+  @Test
+  public void testStripedConnectionsShareCredentials() throws Exception {
+    connect(ClientOptions.builder().stripes(3, StripingPolicy.ROUND_ROBIN).build());
+    final AtomicInteger rows = new AtomicInteger();
+
+    // The server requires the bearer token, which only the first connection obtained; each query
+    // streams its results over the next connection.
+    for (int i = 0; i < 3; i++) {
+      client.runQuery("SELECT 1", null, null, root -> rows.addAndGet(root.getRowCount()));
+    }
+
+    assertEquals(3 * producer.totalRows(), rows.get());
+    assertEquals(3, producer.getStreamCalls.get());
+  }
+
+  @Test
+  public void testInvalidSettingsAreRejected() {
+    assertThrows(IllegalArgumentException.class, () -> TransportOptions.builder().flowControlWindow(0));
+    assertThrows(IllegalArgumentException.class, () -> TransportOptions.builder().maxInboundMessageSize(-1));
+    assertThrows(IllegalArgumentException.class,
+        () -> TransportOptions.builder().keepAlive(Duration.ofSeconds(-1), Duration.ZERO, false));
+    assertThrows(IllegalArgumentException.class,
+        () -> ClientOptions.builder().stripes(0, StripingPolicy.ROUND_ROBIN));
+  }
+}
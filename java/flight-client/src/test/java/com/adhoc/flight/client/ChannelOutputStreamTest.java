@@ -0,0 +1,191 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.arrow.flight.FlightServer;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests for {@link ChannelOutputStream}.
+ */
+public class ChannelOutputStreamTest {
+  @Rule
+  public FlightServerRule flight = new FlightServerRule();
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testSmallWritesAreGathered() throws Exception {
+    final RecordingChannel channel = new RecordingChannel();
+    try (final ChannelOutputStream outputStream = new ChannelOutputStream(channel, 16)) {
+      outputStream.write(1);
+      outputStream.write(new byte[] {2, 3, 4});
+      outputStream.write(ByteBuffer.wrap(new byte[] {5, 6}));
+      assertTrue(channel.writes.isEmpty());
+      assertEquals(6, outputStream.getBytesWritten());
+      outputStream.flush();
+      assertEquals(1, channel.writes.size());
+    }
+    assertFalse(channel.isOpen());
+    assertEquals(1, channel.writes.size());
+    assertEquals(6, channel.bytes.size());
+  }
+
+  @Test
+  public void testLargeDirectBuffersAreNotCopied() throws Exception {
+    final RecordingChannel channel = new RecordingChannel();
+    final ByteBuffer large = ByteBuffer.allocateDirect(32);
+    try (final ChannelOutputStream outputStream = new ChannelOutputStream(channel, 16)) {
+      outputStream.write(new byte[] {1, 2});
+      outputStream.write(large);
+      assertFalse(large.hasRemaining());
+      outputStream.write(new byte[40]);
+    }
+    assertEquals(2, (int) channel.lengths.get(0));
+    assertSame(large, channel.writes.get(1));
+    assertEquals(2 + 32 + 40, channel.bytes.size());
+    // Heap arrays are copied through the buffer however large they are.
+    assertEquals(5, channel.writes.size());
+  }
+
+  @Test
+  public void testWritesAfterCloseAreRejected() throws Exception {
+    final ChannelOutputStream outputStream = new ChannelOutputStream(new RecordingChannel(), 16);
+    outputStream.close();
+    outputStream.close();
+    assertThrows(ClosedChannelException.class, () -> outputStream.write(1));
+  }
+
+  @Test
+  public void testFailedWriteLeavesStreamUnusable() throws Exception {
+    final RecordingChannel channel = new RecordingChannel() {
+      @Override
+      public int write(ByteBuffer source) throws IOException {
+        throw new IOException("Broken pipe");
+      }
+    };
+    final ChannelOutputStream outputStream = new ChannelOutputStream(channel, 16);
+    outputStream.write(new byte[8]);
+    assertTrue(outputStream.isOpen());
+    assertThrows(IOException.class, outputStream::flush);
+    assertFalse(outputStream.isOpen());
+    assertThrows(IOException.class, () -> outputStream.write(1));
+    // The buffered bytes are not written again, so closing only closes the channel.
+    outputStream.close();
+    assertFalse(channel.isOpen());
+  }
+
+  @Test
+  public void testQueryResultsAreStreamedToChannel() throws Exception {
+    final int batches = 4;
+    final int rowsPerBatch = 64 * 1024;
+    final Path path = folder.newFile("results.arrows").toPath();
+    final FlightServer server = flight.start(new InMemoryFlightProducer(flight.allocator(), batches, rowsPerBatch));
+    final AdhocFlightClient client = flight.connect(server);
+    final RecordingChannel recording = new RecordingChannel(FileChannel.open(path, StandardOpenOption.WRITE));
+    try (final ChannelOutputStream outputStream = new ChannelOutputStream(recording, 64 * 1024)) {
+      client.streamQuery("SELECT * FROM t", null, null, false, outputStream, null);
+      assertEquals(Files.size(path), outputStream.getBytesWritten());
+    }
+    long rows = 0;
+    long sum = 0;
+    try (final ArrowStreamReader reader = new ArrowStreamReader(Files.newInputStream(path), flight.allocator())) {
+      while (reader.loadNextBatch()) {
+        final IntVector ids = (IntVector) reader.getVectorSchemaRoot().getVector(0);
+        for (int row = 0; row < ids.getValueCount(); row++) {
+          sum += ids.get(row);
+        }
+        rows += ids.getValueCount();
+      }
+    }
+    final long total = (long) batches * rowsPerBatch;
+    assertEquals(total, rows);
+    assertEquals(total * (total - 1) / 2, sum);
+    // The 256 KiB value buffer of each batch reaches the channel as it is.
+    assertEquals(batches, recording.writes.stream().filter(ByteBuffer::isDirect).filter(
+        buffer -> buffer.capacity() == rowsPerBatch * Integer.BYTES).count());
+  }
+
+  /**
+   * Records each buffer written to it, and optionally passes it on to another channel.
+   */
+  private static class RecordingChannel implements WritableByteChannel {
+    private final List<ByteBuffer> writes = new ArrayList<>();
+    private final List<Integer> lengths = new ArrayList<>();
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    private final WritableByteChannel delegate;
+    private boolean open = true;
+
+    private RecordingChannel() {
+      this(null);
+    }
+
+    private RecordingChannel(WritableByteChannel delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public int write(ByteBuffer source) throws IOException {
+      final int length = source.remaining();
+      writes.add(source);
+      lengths.add(length);
+      if (delegate == null) {
+        final byte[] copy = new byte[length];
+        source.get(copy);
+        bytes.write(copy, 0, length);
+        return length;
+      }
+      return delegate.write(source);
+    }
+
+    @Override
+    public boolean isOpen() {
+      return open;
+    }
+
+    @Override
+    public void close() throws IOException {
+      open = false;
+      if (delegate != null) {
+        delegate.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.arrow.flight.FlightServer;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.util.AutoCloseables;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class FlightBatchIteratorTest {
+  private static final int BATCH_COUNT = 4;
+  private static final int ROWS_PER_BATCH = 32;
+
+  @Rule
+  public FlightServerRule flight = new FlightServerRule();
+
+  private BufferAllocator clientAllocator;
+  private InMemoryFlightProducer producer;
+  private FlightServer server;
+  private AdhocFlightClient client;
+
+  @Before
+  public void setup() throws Exception {
+    clientAllocator = new RootAllocator(Long.MAX_VALUE);
+    producer = new InMemoryFlightProducer(flight.allocator(), BATCH_COUNT, ROWS_PER_BATCH);
+    server = flight.start(producer);
+    client = flight.connect(server, clientAllocator, ClientOptions.defaults());
+  }
+
+  @Test
+  public void testIteratesAllEndpointsAndTransfersOwnership() throws Exception {
+    producer.endpointCount = 2;
+    final List<VectorSchemaRoot> batches = new ArrayList<>();
+    try (final FlightBatchIterator iterator = client.openIterator("SELECT 1", null)) {
+      assertEquals(InMemoryFlightProducer.SCHEMA, iterator.getSchema());
+      iterator.forEachRemaining(batches::add);
+      assertEquals(1, iterator.getCurrentEndpointIndex());
+    }
+
+    try {
+      assertEquals(2 * BATCH_COUNT, batches.size());
+      // Batches stay valid after the iterator has moved on and been closed.
+      for (int i = 0; i < batches.size(); i++) {
+        final IntVector ids = (IntVector) batches.get(i).getVector(0);
+        assertEquals(ROWS_PER_BATCH, batches.get(i).getRowCount());
+        assertEquals((i % BATCH_COUNT) * ROWS_PER_BATCH, ids.get(0));
+      }
+    } finally {
+      AutoCloseables.close(batches);
+    }
+    assertEquals(0, clientAllocator.getAllocatedMemory());
+  }
+
+  @Test
+  public void testCloseBeforeExhaustedReleasesStream() throws Exception {
+    try (final FlightBatchIterator iterator = client.openIterator("SELECT 1", null)) {
+      assertTrue(iterator.hasNext());
+      try (final VectorSchemaRoot first = iterator.next()) {
+        assertEquals(ROWS_PER_BATCH, first.getRowCount());
+      }
+      assertTrue(iterator.hasNext());
+    }
+    assertEquals(0, clientAllocator.getAllocatedMemory());
+  }
+
+  @Test
+  public void testBatchesTransferIntoGivenAllocator() throws Exception {
+    try (final BufferAllocator target = clientAllocator.newChildAllocator("target", 0, Long.MAX_VALUE);
+        final FlightBatchIterator iterator = client.openIterator("SELECT 1", null, target)) {
+      try (final VectorSchemaRoot batch = iterator.next()) {
+        assertTrue(target.getAllocatedMemory() > 0);
+        assertEquals(ROWS_PER_BATCH, batch.getRowCount());
+      }
+      while (iterator.hasNext()) {
+        iterator.next().close();
+      }
+      assertFalse(iterator.hasNext());
+    }
+  }
+}
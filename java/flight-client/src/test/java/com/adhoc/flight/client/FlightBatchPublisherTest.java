@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.arrow.flight.FlightServer;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.OutOfMemoryException;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.util.AutoCloseables;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class FlightBatchPublisherTest {
+  private static final int BATCH_COUNT = 8;
+  private static final int ROWS_PER_BATCH = 64;
+
+  @Rule
+  public FlightServerRule flight = new FlightServerRule();
+
+  private BufferAllocator clientAllocator;
+  private FlightServer server;
+  private AdhocFlightClient client;
+  // Runs the drain loops, so tests can wait for a cancelled subscription to release its stream.
+  private ExecutorService executor;
+
+  @Before
+  public void setup() throws Exception {
+    clientAllocator = new RootAllocator(Long.MAX_VALUE);
+    server = flight.start(new InMemoryFlightProducer(flight.allocator(), BATCH_COUNT, ROWS_PER_BATCH));
+    client = flight.connect(server, clientAllocator, ClientOptions.defaults());
+    executor = Executors.newCachedThreadPool();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    awaitDrains();
+  }
+
+  @Test
+  public void testPublishesAllBatchesOnDemand() throws Exception {
+    final CollectingSubscriber subscriber = new CollectingSubscriber(1, Integer.MAX_VALUE, true);
+    publisher().subscribe(subscriber);
+
+    assertTrue(subscriber.terminated.await(10, TimeUnit.SECONDS));
+    assertNull(subscriber.error);
+    assertTrue(subscriber.completed);
+    assertEquals(BATCH_COUNT, subscriber.batches);
+    assertEquals(BATCH_COUNT * ROWS_PER_BATCH, subscriber.ids.size());
+    for (int i = 0; i < subscriber.ids.size(); i++) {
+      assertEquals(i, (int) subscriber.ids.get(i));
+    }
+    assertEquals(0, clientAllocator.getAllocatedMemory());
+  }
+
+  @Test
+  public void testOnlyRequestedBatchesArePulled() throws Exception {
+    final CollectingSubscriber subscriber = new CollectingSubscriber(2, 2, true);
+    publisher().subscribe(subscriber);
+
+    assertTrue(subscriber.terminated.await(10, TimeUnit.SECONDS));
+    assertEquals(2, subscriber.batches);
+    assertEquals(2 * ROWS_PER_BATCH, subscriber.ids.size());
+    // Cancellation releases the stream asynchronously, once onNext returns.
+    awaitDrains();
+    assertEquals(0, clientAllocator.getAllocatedMemory());
+  }
+
+  @Test
+  public void testHoldingBatchesBeyondLimitFails() throws Exception {
+    final CollectingSubscriber subscriber = new CollectingSubscriber(Long.MAX_VALUE, Integer.MAX_VALUE, false);
+    client.queryPublisher("SELECT 1", null, 3 * ROWS_PER_BATCH * Integer.BYTES, executor).subscribe(subscriber);
+
+    assertTrue(subscriber.terminated.await(10, TimeUnit.SECONDS));
+    assertTrue(subscriber.error instanceof OutOfMemoryException);
+    assertTrue(subscriber.batches < BATCH_COUNT);
+    AutoCloseables.close(subscriber.held);
+  }
+
+  private Flow.Publisher<VectorSchemaRoot> publisher() {
+    return client.queryPublisher("SELECT 1", null, AdhocFlightClient.DEFAULT_PUBLISHER_ALLOCATION_LIMIT, executor);
+  }
+
+  private void awaitDrains() throws InterruptedException {
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+  }
+
+  /**
+   * Subscriber that records the ids it receives, requesting batches in fixed steps and cancelling
+   * after a given number of batches.
+   */
+  private static final class CollectingSubscriber implements Flow.Subscriber<VectorSchemaRoot> {
+    private final long requestSize;
+    private final int cancelAfter;
+    private final boolean closeBatches;
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private final List<Integer> ids = new ArrayList<>();
+    private final List<VectorSchemaRoot> held = new ArrayList<>();
+    private Flow.Subscription subscription;
+    private volatile int batches;
+    private volatile boolean completed;
+    private volatile Throwable error;
+
+    private CollectingSubscriber(long requestSize, int cancelAfter, boolean closeBatches) {
+      this.requestSize = requestSize;
+      this.cancelAfter = cancelAfter;
+      this.closeBatches = closeBatches;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+      this.subscription = subscription;
+      subscription.request(requestSize);
+    }
+
+    @Override
+    public void onNext(VectorSchemaRoot batch) {
+      final IntVector vector = (IntVector) batch.getVector(0);
+      for (int row = 0; row < batch.getRowCount(); row++) {
+        ids.add(vector.get(row));
+      }
+      batches++;
+      if (closeBatches) {
+        batch.close();
+      } else {
+        held.add(batch);
+      }
+      if (batches == cancelAfter) {
+        subscription.cancel();
+        terminated.countDown();
+      } else if (requestSize != Long.MAX_VALUE && batches % requestSize == 0) {
+        subscription.request(requestSize);
+      }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+      error = throwable;
+      terminated.countDown();
+    }
+
+    @Override
+    public void onComplete() {
+      completed = true;
+      terminated.countDown();
+    }
+  }
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.client;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.arrow.flight.FlightProducer;
+import org.apache.arrow.flight.FlightServer;
+import org.apache.arrow.flight.Location;
+import org.apache.arrow.flight.auth2.BasicCallHeaderAuthenticator;
+import org.apache.arrow.flight.auth2.CallHeaderAuthenticator;
+import org.apache.arrow.flight.auth2.GeneratedBearerTokenAuthenticator;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.util.AutoCloseables;
+import org.junit.rules.ExternalResource;
+
+import com.google.common.collect.Lists;
+
+/**
+ * JUnit rule that runs local Flight servers for a test and connects clients to them.
+ * <p>
+ * Servers accept any username and password. After the test, the clients and other resources
+ * registered with {@link #closeAfter} are closed in reverse order, then the servers, and then the
+ * server allocator, which fails the test if server batches leaked.
+ */
+public final class FlightServerRule extends ExternalResource {
+  public static final String HOST = "localhost";
+  public static final String USERNAME = "dremio";
+  public static final String PASSWORD = "dremio123";
+
+  private final List<AutoCloseable> resources = new ArrayList<>();
+  private final List<AutoCloseable> servers = new ArrayList<>();
+  private BufferAllocator allocator;
+
+  /**
+   * Returns an authenticator that accepts any username and password.
+   */
+  public static CallHeaderAuthenticator authenticator() {
+    return new GeneratedBearerTokenAuthenticator(
+        new BasicCallHeaderAuthenticator((username, password) -> () -> username));
+  }
+
+  @Override
+  protected void before() {
+    allocator = new RootAllocator(Long.MAX_VALUE);
+  }
+
+  @Override
+  protected void after() {
+    final List<AutoCloseable> closeables = new ArrayList<>(Lists.reverse(resources));
+    closeables.addAll(servers);
+    closeables.add(this::closeAllocator);
+    try {
+      AutoCloseables.close(closeables);
+    } catch (RuntimeException ex) {
+      throw ex;
+    } catch (Exception ex) {
+      throw new IllegalStateException(ex);
+    }
+  }
+
+  private void closeAllocator() throws InterruptedException {
+    // The transport threads release the batches queued for a cancelled stream once its call has
+    // ended, which may be after the server is closed.
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (allocator.getAllocatedMemory() != 0 && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    allocator.close();
+  }
+
+  /**
+   * Returns the allocator of the servers, for their producers.
+   */
+  public BufferAllocator allocator() {
+    return allocator;
+  }
+
+  /**
+   * Create a builder of a server on a free local port, accepting any username and password.
+   *
+   * @param producer the producer of the server.
+   * @return the builder, to be started with {@link #start(FlightServer.Builder)}.
+   */
+  public FlightServer.Builder serverBuilder(FlightProducer producer) {
+    return FlightServer.builder(allocator, Location.forGrpcInsecure(HOST, 0), producer)
+        .headerAuthenticator(authenticator());
+  }
+
+  /**
+   * Start a server on a free local port, accepting any username and password.
+   *
+   * @param producer the producer of the server.
+   * @return the started server, closed after the test.
+   * @throws IOException if the server cannot be started.
+   */
+  public FlightServer start(FlightProducer producer) throws IOException {
+    return start(serverBuilder(producer));
+  }
+
+  /**
+   * Build and start a server.
+   *
+   * @param builder the builder of the server. Its allocator should be {@link #allocator()}.
+   * @return the started server, closed after the test.
+   * @throws IOException if the server cannot be started.
+   */
+  public FlightServer start(FlightServer.Builder builder) throws IOException {
+    final FlightServer server = builder.build();
+    servers.add(server);
+    return server.start();
+  }
+
+  /**
+   * Connect a client with the default options to the given server.
+   *
+   * @param server the server to connect to.
+   * @return the client, closed after the test.
+   */
+  public AdhocFlightClient connect(FlightServer server) {
+    return connect(server, ClientOptions.defaults());
+  }
+
+  /**
+   * Connect a client to the given server.
+   *
+   * @param server  the server to connect to.
+   * @param options the options of the client.
+   * @return the client, closed after the test.
+   */
+  public AdhocFlightClient connect(FlightServer server, ClientOptions options) {
+    return connect(server, new RootAllocator(Long.MAX_VALUE), options);
+  }
+
+  /**
+   * Connect a client to the given server.
+   *
+   * @param server    the server to connect to.
+   * @param allocator the allocator of the client, closed with the client.
+   * @param options   the options of the client.
+   * @return the client, closed after the test.
+   */
+  public AdhocFlightClient connect(FlightServer server, BufferAllocator allocator, ClientOptions options) {
+    return closeAfter(AdhocFlightClient.getBasicClient(allocator, HOST, server.getPort(), USERNAME, PASSWORD,
+        null, null, null, null, options));
+  }
+
+  /**
+   * Close the given resource after the test, before the servers.
+   *
+   * @param resource the resource to close.
+   * @return the resource.
+   */
+  public <T extends AutoCloseable> T closeAfter(T resource) {
+    resources.add(resource);
+    return resource;
+  }
+}
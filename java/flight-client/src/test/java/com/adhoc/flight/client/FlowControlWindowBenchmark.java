@@ -0,0 +1,192 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.client;
+
+import static com.adhoc.flight.client.FlightServerRule.HOST;
+import static com.adhoc.flight.client.FlightServerRule.PASSWORD;
+import static com.adhoc.flight.client.FlightServerRule.USERNAME;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.arrow.flight.FlightServer;
+import org.apache.arrow.flight.Location;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+
+/**
+ * Measures the throughput of reading query results across HTTP/2 flow-control windows, over a
+ * local proxy that delays the traffic of each direction by half the simulated round-trip time.
+ * The proxy does not limit bandwidth, so the throughput of a fixed window approaches
+ * window / round-trip time.
+ * <p>
+ * Run with {@code FlowControlWindowBenchmark [rttMillis] [megabytes] [runs]}, by default a 40 ms
+ * round trip and 8 MB per query, averaged over 3 runs after a warm-up run.
+ */
+public final class FlowControlWindowBenchmark {
+  private static final int ROWS_PER_BATCH = 64 * 1024;
+  private static final int[] WINDOWS = {0, 64 * 1024, 256 * 1024, 1024 * 1024, 4 * 1024 * 1024, 16 * 1024 * 1024};
+
+  private FlowControlWindowBenchmark() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    final long rttMillis = args.length > 0 ? Long.parseLong(args[0]) : 40;
+    final int megabytes = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+    final int runs = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+    final int batchCount = Math.max(1, megabytes * 1024 * 1024 / (ROWS_PER_BATCH * Integer.BYTES));
+
+    try (final BufferAllocator serverAllocator = new RootAllocator(Long.MAX_VALUE);
+         final FlightServer server = FlightServer.builder(serverAllocator, Location.forGrpcInsecure(HOST, 0),
+                 new InMemoryFlightProducer(serverAllocator, batchCount, ROWS_PER_BATCH))
+             .headerAuthenticator(FlightServerRule.authenticator())
+             .build()
+             .start();
+         final LatencyProxy proxy = new LatencyProxy(server.getPort(), rttMillis / 2)) {
+      System.out.printf("Round trip %d ms, %d batches of %d KB per query, %d runs.%n",
+          rttMillis, batchCount, ROWS_PER_BATCH * Integer.BYTES / 1024, runs);
+      System.out.printf("%-12s %12s %12s%n", "window", "seconds", "MB/s");
+      for (int window : WINDOWS) {
+        final TransportOptions.Builder transport = TransportOptions.builder();
+        if (window > 0) {
+          transport.flowControlWindow(window);
+        }
+        final double seconds = measure(proxy.getPort(), transport.build(), runs);
+        final double megabytesRead = (double) batchCount * ROWS_PER_BATCH * Integer.BYTES / (1024 * 1024);
+        System.out.printf("%-12s %12.2f %12.1f%n",
+            window > 0 ? window / 1024 + " KB" : "auto", seconds, megabytesRead / seconds);
+      }
+    }
+  }
+
+  /**
+   * Gets the mean duration in seconds of a query read through a new client.
+   */
+  private static double measure(int port, TransportOptions transport, int runs) throws Exception {
+    try (final AdhocFlightClient client = AdhocFlightClient.getBasicClient(new RootAllocator(Long.MAX_VALUE),
+        HOST, port, USERNAME, PASSWORD, null, null, null, null,
+        ClientOptions.builder().transport(transport).build())) {
+      client.runQuery("SELECT 1", null, null, false);
+      final long start = System.nanoTime();
+      for (int i = 0; i < runs; i++) {
+        client.runQuery("SELECT 1", null, null, false);
+      }
+      return (System.nanoTime() - start) / 1e9 / runs;
+    }
+  }
+
+  /**
+   * TCP proxy delaying every chunk it forwards by a fixed one-way latency.
+   */
+  private static final class LatencyProxy implements AutoCloseable {
+    private final ServerSocket serverSocket;
+    private final int targetPort;
+    private final long delayNanos;
+
+    LatencyProxy(int targetPort, long delayMillis) throws IOException {
+      this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+      this.targetPort = targetPort;
+      this.delayNanos = TimeUnit.MILLISECONDS.toNanos(delayMillis);
+      daemon(this::accept, "latency-proxy-accept");
+    }
+
+    int getPort() {
+      return serverSocket.getLocalPort();
+    }
+
+    private void accept() {
+      while (!serverSocket.isClosed()) {
+        try {
+          final Socket client = serverSocket.accept();
+          final Socket target = new Socket(InetAddress.getLoopbackAddress(), targetPort);
+          client.setTcpNoDelay(true);
+          target.setTcpNoDelay(true);
+          forward(client, target);
+          forward(target, client);
+        } catch (IOException e) {
+          return;
+        }
+      }
+    }
+
+    /**
+     * Forwards the bytes read from one socket to the other once the delay has passed, reading
+     * ahead so the delay adds latency without limiting bandwidth.
+     */
+    private void forward(Socket from, Socket to) {
+      final BlockingQueue<Chunk> inFlight = new LinkedBlockingQueue<>();
+      daemon(() -> {
+        final byte[] buffer = new byte[64 * 1024];
+        try (final InputStream in = from.getInputStream()) {
+          int read;
+          while ((read = in.read(buffer)) >= 0) {
+            inFlight.put(new Chunk(System.nanoTime() + delayNanos, Arrays.copyOf(buffer, read)));
+          }
+        } catch (IOException | InterruptedException e) {
+          // The connection is closed.
+        }
+        inFlight.add(Chunk.END);
+      }, "latency-proxy-read");
+      daemon(() -> {
+        try (final OutputStream out = to.getOutputStream()) {
+          Chunk chunk;
+          while ((chunk = inFlight.take()) != Chunk.END) {
+            TimeUnit.NANOSECONDS.sleep(chunk.dueNanos - System.nanoTime());
+            out.write(chunk.bytes);
+            out.flush();
+          }
+        } catch (IOException | InterruptedException e) {
+          // The connection is closed.
+        }
+      }, "latency-proxy-write");
+    }
+
+    private static void daemon(Runnable runnable, String name) {
+      final Thread thread = new Thread(runnable, name);
+      thread.setDaemon(true);
+      thread.start();
+    }
+
+    @Override
+    public void close() throws IOException {
+      serverSocket.close();
+    }
+  }
+
+  /**
+   * Bytes read by the proxy and the time they may be forwarded at.
+   */
+  private static final class Chunk {
+    static final Chunk END = new Chunk(0, new byte[0]);
+
+    final long dueNanos;
+    final byte[] bytes;
+
+    Chunk(long dueNanos, byte[] bytes) {
+      this.dueNanos = dueNanos;
+      this.bytes = bytes;
+    }
+  }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.client;
+
+import static java.util.Collections.singletonList;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.arrow.flight.Action;
+import org.apache.arrow.flight.CallStatus;
+import org.apache.arrow.flight.CancelFlightInfoResult;
+import org.apache.arrow.flight.CancelStatus;
+import org.apache.arrow.flight.FlightConstants;
+import org.apache.arrow.flight.FlightDescriptor;
+import org.apache.arrow.flight.FlightEndpoint;
+import org.apache.arrow.flight.FlightInfo;
+import org.apache.arrow.flight.Location;
+import org.apache.arrow.flight.NoOpFlightProducer;
+import org.apache.arrow.flight.Result;
+import org.apache.arrow.flight.SchemaResult;
+import org.apache.arrow.flight.Ticket;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.apache.arrow.vector.types.pojo.Field;
+import org.apache.arrow.vector.types.pojo.Schema;
+
+/**
+ * Flight producer that answers every query with the same sequence of integer batches, for tests
+ * that need a real Flight server. Tests can slow it down or inject failures to exercise deadlines,
+ * cancellation and retries. Tests of other features extend it, or {@link NoOpFlightProducer}, with
+ * a producer of their own.
+ */
+class InMemoryFlightProducer extends NoOpFlightProducer {
+  static final Schema SCHEMA = new Schema(singletonList(Field.nullable("id", new ArrowType.Int(32, true))));
+
+  // The calls received.
+  final AtomicInteger getInfoCalls = new AtomicInteger();
+  final AtomicInteger getStreamCalls = new AtomicInteger();
+  final CountDownLatch getInfoStarted = new CountDownLatch(1);
+  final CountDownLatch getInfoCancelled = new CountDownLatch(1);
+  final CountDownLatch streamStarted = new CountDownLatch(1);
+  final CountDownLatch streamCancelled = new CountDownLatch(1);
+  final CountDownLatch cancelFlightInfoReceived = new CountDownLatch(1);
+
+  // Delays.
+  volatile long getInfoDelayMillis = 0;
+  volatile boolean blockGetInfo = false;
+  volatile long batchDelayMillis = 0;
+
+  // Injected UNAVAILABLE failures.
+  final AtomicInteger unavailableGetInfos = new AtomicInteger();
+  final AtomicInteger unavailableStreams = new AtomicInteger();
+  volatile int failAfterBatches = 0;
+
+  volatile int endpointCount = 1;
+
+  private final BufferAllocator allocator;
+  private final int batchCount;
+  private final int rowsPerBatch;
+
+  InMemoryFlightProducer(BufferAllocator allocator, int batchCount, int rowsPerBatch) {
+    this.allocator = allocator;
+    this.batchCount = batchCount;
+    this.rowsPerBatch = rowsPerBatch;
+  }
+
+  int totalRows() {
+    return endpointCount * batchCount * rowsPerBatch;
+  }
+
+  @Override
+  public FlightInfo getFlightInfo(CallContext context, FlightDescriptor descriptor) {
+    getInfoCalls.incrementAndGet();
+    if (takeOne(unavailableGetInfos)) {
+      throw CallStatus.UNAVAILABLE.withDescription("Coordinator is restarting.").toRuntimeException();
+    }
+    getInfoStarted.countDown();
+    if (getInfoDelayMillis > 0) {
+      try {
+        Thread.sleep(getInfoDelayMillis);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    if (blocksGetInfo()) {
+      while (!context.isCancelled()) {
+        try {
+          Thread.sleep(10);
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          break;
+        }
+      }
+      getInfoCancelled.countDown();
+      throw CallStatus.CANCELLED.withDescription("Cancelled by client.").toRuntimeException();
+    }
+    final List<FlightEndpoint> endpoints = new ArrayList<>(endpointCount);
+    for (int i = 0; i < endpointCount; i++) {
+      endpoints.add(new FlightEndpoint(new Ticket(descriptor.getCommand()), locations(i)));
+    }
+    return new FlightInfo(SCHEMA, descriptor, endpoints, -1, totalRows());
+  }
+
+  /**
+   * Returns whether a getInfo call blocks until the client cancels it.
+   */
+  boolean blocksGetInfo() {
+    return blockGetInfo;
+  }
+
+  /**
+   * Returns the locations of an endpoint. None by default, so that it is read from the server
+   * that planned the query.
+   */
+  Location[] locations(int endpoint) {
+    return new Location[0];
+  }
+
+  @Override
+  public SchemaResult getSchema(CallContext context, FlightDescriptor descriptor) {
+    return new SchemaResult(SCHEMA);
+  }
+
+  @Override
+  public void getStream(CallContext context, Ticket ticket, ServerStreamListener listener) {
+    getStreamCalls.incrementAndGet();
+    final boolean cancelled;
+    try (final VectorSchemaRoot root = VectorSchemaRoot.create(SCHEMA, allocator)) {
+      final IntVector ids = (IntVector) root.getVector(0);
+      listener.start(root);
+      streamStarted.countDown();
+      final boolean fail = takeOne(unavailableStreams);
+      for (int batch = 0; batch < batchCount && !listener.isCancelled(); batch++) {
+        if (fail && batch == failAfterBatches) {
+          listener.error(CallStatus.UNAVAILABLE.withDescription("Executor lost.").toRuntimeException());
+          return;
+        }
+        if (!sleepUnlessCancelled(listener)) {
+          break;
+        }
+        ids.allocateNew(rowsPerBatch);
+        for (int row = 0; row < rowsPerBatch; row++) {
+          ids.set(row, batch * rowsPerBatch + row);
+        }
+        root.setRowCount(rowsPerBatch);
+        listener.putNext();
+      }
+      cancelled = listener.isCancelled();
+      listener.completed();
+    }
+    // Signal cancellation only once the batch buffers are released.
+    if (cancelled) {
+      streamCancelled.countDown();
+    }
+  }
+
+  @Override
+  public void doAction(CallContext context, Action action, StreamListener<Result> listener) {
+    if (!action.getType().equals(FlightConstants.CANCEL_FLIGHT_INFO.getType())) {
+      super.doAction(context, action, listener);
+      return;
+    }
+    cancelFlightInfoReceived.countDown();
+    listener.onNext(new Result(new CancelFlightInfoResult(CancelStatus.CANCELLED).serialize().array()));
+    listener.onCompleted();
+  }
+
+  /**
+   * Takes one of the remaining injected failures, if any.
+   */
+  static boolean takeOne(AtomicInteger remaining) {
+    return remaining.getAndUpdate(count -> Math.max(0, count - 1)) > 0;
+  }
+
+  /**
+   * Waits for the configured delay between batches, returning early with false if the client
+   * cancels the stream.
+   */
+  private boolean sleepUnlessCancelled(ServerStreamListener listener) {
+    final long deadline = System.nanoTime() + batchDelayMillis * 1_000_000L;
+    while (System.nanoTime() < deadline) {
+      if (listener.isCancelled()) {
+        return false;
+      }
+      try {
+        Thread.sleep(10);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.client;
+
+import static com.adhoc.flight.client.FlightServerRule.HOST;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.arrow.flight.FlightClient;
+import org.apache.arrow.flight.FlightServer;
+import org.apache.arrow.flight.FlightStream;
+import org.apache.arrow.flight.Location;
+import org.apache.arrow.flight.Ticket;
+import org.apache.arrow.util.AutoCloseables;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+/**
+ * Tests for {@link StripedClient}.
+ */
+public class StripedClientTest {
+  private static final Ticket TICKET = new Ticket("SELECT 1".getBytes(StandardCharsets.UTF_8));
+
+  @Rule
+  public FlightServerRule flight = new FlightServerRule();
+
+  private InMemoryFlightProducer producer;
+  private FlightServer server;
+  private StripedClient client;
+
+  @Before
+  public void setup() throws Exception {
+    producer = new InMemoryFlightProducer(flight.allocator(), 100, 10);
+    server = flight.start(FlightServer.builder(flight.allocator(), Location.forGrpcInsecure(HOST, 0), producer));
+  }
+
+  private void connect(int stripes, StripingPolicy policy) {
+    final FlightConnector connector = new FlightConnector(flight.allocator(), false, true, null, emptyList(),
+        TransportOptions.defaults());
+    client = flight.closeAfter(
+        StripedClient.connect(connector, Location.forGrpcInsecure(HOST, server.getPort()), stripes, policy));
+  }
+
+  @Test
+  public void testRoundRobinCyclesThroughConnections() {
+    connect(3, StripingPolicy.ROUND_ROBIN);
+    final List<FlightClient> picks = new ArrayList<>();
+    for (int i = 0; i < 6; i++) {
+      picks.add(client.pick());
+    }
+
+    assertNotSame(picks.get(0), picks.get(1));
+    assertNotSame(picks.get(1), picks.get(2));
+    assertNotSame(picks.get(0), picks.get(2));
+    for (int i = 0; i < 3; i++) {
+      assertSame(picks.get(i), picks.get(i + 3));
+    }
+  }
+
+  @Test
+  public void testLeastLoadedSpreadsOpenStreams() throws Exception {
+    connect(3, StripingPolicy.LEAST_LOADED);
+    producer.batchDelayMillis = 100;
+    final List<FlightStream> streams = new ArrayList<>();
+    try {
+      for (int i = 0; i < 3; i++) {
+        final FlightStream stream = client.pick().getStream(TICKET);
+        streams.add(stream);
+        stream.getSchema();
+      }
+      assertEquals(asList(1, 1, 1), client.callsInFlight());
+    } finally {
+      for (FlightStream stream : streams) {
+        stream.cancel("Done.", null);
+      }
+      AutoCloseables.close(streams);
+    }
+    final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+    while (!client.callsInFlight().equals(asList(0, 0, 0)) && System.nanoTime() < deadline) {
+      Thread.sleep(10);
+    }
+    assertEquals(asList(0, 0, 0), client.callsInFlight());
+  }
+
+  @Test
+  public void testLeastLoadedSkipsBusyConnection() throws Exception {
+    connect(2, StripingPolicy.LEAST_LOADED);
+    producer.batchDelayMillis = 100;
+    final FlightClient busyClient = client.pick();
+    try (final FlightStream busy = busyClient.getStream(TICKET)) {
+      busy.getSchema();
+      for (int i = 0; i < 4; i++) {
+        assertNotSame(busyClient, client.pick());
+      }
+      busy.cancel("Done.", null);
+    }
+  }
+
+  @Test
+  public void testSingleConnectionIsNotCounted() {
+    connect(1, StripingPolicy.LEAST_LOADED);
+
+    assertEquals(1, client.size());
+    assertSame(client.primary(), client.pick());
+    assertEquals(emptyList(), client.callsInFlight());
+  }
+}
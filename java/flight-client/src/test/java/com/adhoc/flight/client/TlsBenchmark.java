@@ -0,0 +1,147 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.client;
+
+import static com.adhoc.flight.client.FlightServerRule.HOST;
+import static java.util.Collections.emptyList;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.arrow.flight.FlightClient;
+import org.apache.arrow.flight.FlightDescriptor;
+import org.apache.arrow.flight.FlightGrpcUtils;
+import org.apache.arrow.flight.FlightServer;
+import org.apache.arrow.flight.FlightStream;
+import org.apache.arrow.flight.Location;
+import org.apache.arrow.flight.Ticket;
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+
+import io.grpc.netty.NettyChannelBuilder;
+import io.netty.handler.ssl.OpenSsl;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.util.SelfSignedCertificate;
+
+/**
+ * Compares the TLS providers of the client, over a local server with a self-signed certificate:
+ * <ul>
+ *   <li>the cost of opening a connection and running one call, with a new TLS context per
+ *       connection, so every connection runs a full handshake, and with the shared context of the
+ *       client, so connections resume the session of the first one;</li>
+ *   <li>the throughput of reading query results over one connection.</li>
+ * </ul>
+ * <p>
+ * Run with {@code TlsBenchmark [connections] [megabytes] [runs]}, by default 200 connections and
+ * 64 MB per query, averaged over 3 runs after a warm-up run.
+ */
+public final class TlsBenchmark {
+  private static final int ROWS_PER_BATCH = 64 * 1024;
+  private static final byte[] COMMAND = "SELECT 1".getBytes(StandardCharsets.UTF_8);
+
+  private TlsBenchmark() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    final int connections = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+    final int megabytes = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+    final int runs = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+    final int batchCount = Math.max(1, megabytes * 1024 * 1024 / (ROWS_PER_BATCH * Integer.BYTES));
+    final SelfSignedCertificate certificate = new SelfSignedCertificate(HOST);
+    final byte[] trustedCertificates = Files.readAllBytes(certificate.certificate().toPath());
+
+    try (final BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+         final FlightServer server = FlightServer.builder(allocator, Location.forGrpcTls(HOST, 0),
+                 new InMemoryFlightProducer(allocator, batchCount, ROWS_PER_BATCH))
+             .useTls(certificate.certificate(), certificate.privateKey())
+             .build()
+             .start()) {
+      final Location location = Location.forGrpcTls(HOST, server.getPort());
+      System.out.printf("%d connections, %d batches of %d KB per query, %d runs.%n",
+          connections, batchCount, ROWS_PER_BATCH * Integer.BYTES / 1024, runs);
+      System.out.printf("%-10s %18s %18s %12s%n", "provider", "new context (ms)", "shared (ms)", "MB/s");
+      for (TlsProvider provider : TlsProvider.values()) {
+        if (provider == TlsProvider.OPENSSL && !OpenSsl.isAvailable()) {
+          System.out.printf("%-10s %s%n", provider, "not available: " + OpenSsl.unavailabilityCause());
+          continue;
+        }
+        final SslContext shared = TlsContexts.newClientContext(provider, true, trustedCertificates);
+        connectAndCall(allocator, location, shared, connections / 10);
+        double fresh = 0;
+        double resumed = 0;
+        for (int run = 0; run < runs; run++) {
+          final long freshStart = System.nanoTime();
+          for (int i = 0; i < connections; i++) {
+            connectAndCall(allocator, location,
+                TlsContexts.newClientContext(provider, true, trustedCertificates), 1);
+          }
+          fresh += (System.nanoTime() - freshStart) / 1e6 / connections;
+          final long sharedStart = System.nanoTime();
+          connectAndCall(allocator, location, shared, connections);
+          resumed += (System.nanoTime() - sharedStart) / 1e6 / connections;
+        }
+        final double megabytesRead = (double) batchCount * ROWS_PER_BATCH * Integer.BYTES / (1024 * 1024);
+        final double seconds = measureTransfer(allocator, location, provider, trustedCertificates, runs);
+        System.out.printf("%-10s %18.2f %18.2f %12.1f%n",
+            provider, fresh / runs, resumed / runs, megabytesRead / seconds);
+      }
+    } finally {
+      certificate.delete();
+    }
+  }
+
+  /**
+   * Opens the given number of connections one after the other, running one call on each.
+   */
+  private static void connectAndCall(BufferAllocator allocator, Location location, SslContext sslContext,
+      int connections) throws Exception {
+    for (int i = 0; i < connections; i++) {
+      try (final FlightClient client = FlightGrpcUtils.createFlightClient(allocator,
+          NettyChannelBuilder.forAddress(location.toSocketAddress())
+              .useTransportSecurity()
+              .sslContext(sslContext)
+              .build())) {
+        client.getSchema(FlightDescriptor.command(COMMAND));
+      }
+    }
+  }
+
+  /**
+   * Gets the mean duration in seconds of reading the results of a query over one connection.
+   */
+  private static double measureTransfer(BufferAllocator allocator, Location location, TlsProvider provider,
+      byte[] trustedCertificates, int runs) throws Exception {
+    final FlightConnector connector = new FlightConnector(allocator, true, true, trustedCertificates, emptyList(),
+        TransportOptions.builder().tlsProvider(provider).build());
+    try (final FlightClient client = connector.connect(location)) {
+      drain(client);
+      final long start = System.nanoTime();
+      for (int i = 0; i < runs; i++) {
+        drain(client);
+      }
+      return (System.nanoTime() - start) / 1e9 / runs;
+    }
+  }
+
+  private static void drain(FlightClient client) throws Exception {
+    try (final FlightStream stream = client.getStream(new Ticket(COMMAND))) {
+      while (stream.next()) {
+        // Only the transfer is measured.
+      }
+    }
+  }
+}
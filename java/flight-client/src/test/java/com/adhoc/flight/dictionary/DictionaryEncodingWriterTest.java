@@ -0,0 +1,226 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.dictionary;
+
+import static com.adhoc.flight.dictionary.DictionaryEncodingWriter.DEFAULT_MAX_DICTIONARY_BYTES;
+import static com.adhoc.flight.dictionary.DictionaryEncodingWriter.DEFAULT_MAX_DICTIONARY_SIZE;
+import static com.adhoc.flight.dictionary.DictionaryEncodingWriter.DEFAULT_MAX_DISTINCT_RATIO;
+import static java.util.Collections.singleton;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.ValueVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.dictionary.Dictionary;
+import org.apache.arrow.vector.dictionary.DictionaryEncoder;
+import org.apache.arrow.vector.ipc.ArrowStreamReader;
+import org.apache.arrow.vector.ipc.ArrowStreamWriter;
+import org.apache.arrow.vector.types.pojo.ArrowType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DictionaryEncodingWriterTest {
+  private static final int BATCH_COUNT = 5;
+  private static final int ROWS_PER_BATCH = 1000;
+
+  private BufferAllocator allocator;
+  private VectorSchemaRoot root;
+
+  @Before
+  public void setup() {
+    allocator = new RootAllocator(Long.MAX_VALUE);
+    root = VectorSchemaRoot.of(new VarCharVector("status", allocator), new VarCharVector("id", allocator),
+        new IntVector("count", allocator));
+  }
+
+  @After
+  public void tearDown() {
+    root.close();
+    allocator.close();
+  }
+
+  /**
+   * Load a batch where each batch introduces new status values, so later batches need deltas.
+   */
+  private void loadBatch(int batch) {
+    root.allocateNew();
+    final VarCharVector status = (VarCharVector) root.getVector("status");
+    final VarCharVector id = (VarCharVector) root.getVector("id");
+    final IntVector count = (IntVector) root.getVector("count");
+    for (int i = 0; i < ROWS_PER_BATCH; i++) {
+      if (i % 7 == 0) {
+        status.setNull(i);
+      } else {
+        status.setSafe(i, ("status-" + (i % (3 + batch))).getBytes(StandardCharsets.UTF_8));
+      }
+      id.setSafe(i, ("id-" + (batch * ROWS_PER_BATCH + i)).getBytes(StandardCharsets.UTF_8));
+      count.setSafe(i, i);
+    }
+    root.setRowCount(ROWS_PER_BATCH);
+  }
+
+  private List<String> expectedContents() {
+    final List<String> contents = new ArrayList<>();
+    for (int batch = 0; batch < BATCH_COUNT; batch++) {
+      loadBatch(batch);
+      contents.add(rows(root));
+    }
+    return contents;
+  }
+
+  /**
+   * Returns the rows of the root as TSV, without the header: decoded vectors are named after the
+   * dictionary rather than the column.
+   */
+  private static String rows(VectorSchemaRoot root) {
+    final String content = root.contentToTSVString();
+    return content.substring(content.indexOf('\n') + 1);
+  }
+
+  @Test
+  public void testLowCardinalityColumnsRoundTrip() throws IOException {
+    final List<String> expected = expectedContents();
+    final ByteArrayOutputStream plain = new ByteArrayOutputStream();
+    try (final ArrowStreamWriter writer = new ArrowStreamWriter(root, null, plain)) {
+      writer.start();
+      for (int batch = 0; batch < BATCH_COUNT; batch++) {
+        loadBatch(batch);
+        writer.writeBatch();
+      }
+      writer.end();
+    }
+
+    final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    loadBatch(0);
+    try (final DictionaryEncodingWriter writer = DictionaryEncodingWriter.create(root, allocator, encoded)) {
+      assertEquals(singleton(0), writer.getEncodedColumns());
+      writer.start();
+      for (int batch = 0; batch < BATCH_COUNT; batch++) {
+        loadBatch(batch);
+        writer.writeBatch();
+      }
+      writer.end();
+    }
+    assertTrue(encoded.size() + " >= " + plain.size(), encoded.size() < plain.size());
+
+    final List<String> actual = new ArrayList<>();
+    try (final ArrowStreamReader reader =
+             new ArrowStreamReader(new ByteArrayInputStream(encoded.toByteArray()), allocator)) {
+      final VectorSchemaRoot readRoot = reader.getVectorSchemaRoot();
+      assertEquals(ArrowType.Utf8.INSTANCE, reader.lookup(0).getVectorType());
+      while (reader.loadNextBatch()) {
+        final Dictionary dictionary = reader.getDictionaryVectors().get(0L);
+        try (final ValueVector status = DictionaryEncoder.decode(readRoot.getVector("status"), dictionary)) {
+          final List<FieldVector> vectors = new ArrayList<>(readRoot.getFieldVectors());
+          vectors.set(0, (FieldVector) status);
+          actual.add(rows(new VectorSchemaRoot(vectors)));
+        }
+      }
+    }
+    assertEquals(expected, actual);
+  }
+
+  @Test
+  public void testHighCardinalityColumnsAreWrittenPlain() throws IOException {
+    loadBatch(0);
+    final ByteArrayOutputStream encoded = new ByteArrayOutputStream();
+    try (final DictionaryEncodingWriter writer =
+             DictionaryEncodingWriter.create(root, allocator, encoded, ROWS_PER_BATCH, 0.001,
+                 DEFAULT_MAX_DICTIONARY_SIZE, DEFAULT_MAX_DICTIONARY_BYTES)) {
+      assertTrue(writer.getEncodedColumns().isEmpty());
+      writer.start();
+      writer.writeBatch();
+      writer.end();
+    }
+    try (final ArrowStreamReader reader =
+             new ArrowStreamReader(new ByteArrayInputStream(encoded.toByteArray()), allocator)) {
+      assertNull(reader.getVectorSchemaRoot().getSchema().findField("status").getDictionary());
+      assertTrue(reader.loadNextBatch());
+      assertEquals(root.contentToTSVString(), reader.getVectorSchemaRoot().contentToTSVString());
+    }
+  }
+
+  @Test
+  public void testColumnsWhoseSampleExceedsTheDictionaryLimitsAreWrittenPlain() {
+    loadBatch(0);
+    // The first batch has three distinct statuses of eight bytes.
+    try (final DictionaryEncodingWriter writer = DictionaryEncodingWriter.create(root, allocator,
+        new ByteArrayOutputStream(), ROWS_PER_BATCH, DEFAULT_MAX_DISTINCT_RATIO, 2,
+        DEFAULT_MAX_DICTIONARY_BYTES)) {
+      assertTrue(writer.getEncodedColumns().isEmpty());
+    }
+    try (final DictionaryEncodingWriter writer = DictionaryEncodingWriter.create(root, allocator,
+        new ByteArrayOutputStream(), ROWS_PER_BATCH, DEFAULT_MAX_DISTINCT_RATIO,
+        DEFAULT_MAX_DICTIONARY_SIZE, 20)) {
+      assertTrue(writer.getEncodedColumns().isEmpty());
+    }
+  }
+
+  @Test
+  public void testDictionaryGrowingPastItsLimitFails() throws IOException {
+    loadBatch(0);
+    try (final DictionaryEncodingWriter writer = DictionaryEncodingWriter.create(root, allocator,
+        new ByteArrayOutputStream(), ROWS_PER_BATCH, DEFAULT_MAX_DISTINCT_RATIO, 5,
+        DEFAULT_MAX_DICTIONARY_BYTES)) {
+      assertEquals(singleton(0), writer.getEncodedColumns());
+      writer.start();
+      for (int batch = 0; batch < 3; batch++) {
+        loadBatch(batch);
+        writer.writeBatch();
+      }
+      loadBatch(3);
+      final IllegalStateException ex = assertThrows(IllegalStateException.class, writer::writeBatch);
+      assertTrue(ex.getMessage(), ex.getMessage().startsWith("The dictionary of column status is full, with 5 values"));
+    }
+  }
+
+  @Test
+  public void testBuilderDeduplicatesAcrossRehashes() throws Exception {
+    try (final VarCharVector values = new VarCharVector("values", allocator);
+        final IntVector indexes = new IntVector("indexes", allocator);
+        final DictionaryBuilder builder = new DictionaryBuilder("values", allocator,
+            DEFAULT_MAX_DICTIONARY_SIZE, DEFAULT_MAX_DICTIONARY_BYTES)) {
+      final int distinct = 5000;
+      for (int i = 0; i < 2 * distinct; i++) {
+        values.setSafe(i, ("value-" + (i % distinct)).getBytes(StandardCharsets.UTF_8));
+      }
+      values.setValueCount(2 * distinct);
+      builder.encode(values, indexes, 2 * distinct);
+
+      assertEquals(distinct, builder.size());
+      for (int i = 0; i < distinct; i++) {
+        assertEquals(indexes.get(i), indexes.get(i + distinct));
+        assertEquals(values.getObject(i), builder.getDictionary().getObject(indexes.get(i)));
+      }
+    }
+  }
+}
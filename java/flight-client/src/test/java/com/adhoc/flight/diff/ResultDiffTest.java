@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.diff;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ResultDiffTest {
+  @Rule
+  public TemporaryFolder spillDirectory = new TemporaryFolder();
+
+  private BufferAllocator allocator;
+
+  @Before
+  public void setup() {
+    allocator = new RootAllocator(Long.MAX_VALUE);
+  }
+
+  @After
+  public void tearDown() {
+    allocator.close();
+  }
+
+  private ResultDiff diff(List<String> keyColumns, int maxPendingRows) {
+    return new ResultDiff(keyColumns, maxPendingRows, ResultDiff.DEFAULT_MAX_EXAMPLES,
+        spillDirectory.getRoot().toPath());
+  }
+
+  /**
+   * Sends rows with the given ids and values to a side of a diff, in batches of the given size.
+   */
+  private void feed(Consumer<VectorSchemaRoot> side, String valueColumn, int[] ids, IntFunction<String> values,
+      int batchSize) {
+    try (final BigIntVector idVector = new BigIntVector("id", allocator);
+         final VarCharVector valueVector = new VarCharVector(valueColumn, allocator);
+         final VectorSchemaRoot root = VectorSchemaRoot.of(idVector, valueVector)) {
+      for (int start = 0; start < ids.length; start += batchSize) {
+        root.allocateNew();
+        final int batchRows = Math.min(batchSize, ids.length - start);
+        for (int i = 0; i < batchRows; i++) {
+          final int id = ids[start + i];
+          idVector.setSafe(i, id);
+          valueVector.setSafe(i, values.apply(id).getBytes(StandardCharsets.UTF_8));
+        }
+        root.setRowCount(batchRows);
+        side.accept(root);
+      }
+    }
+  }
+
+  private static int[] range(int from, int to) {
+    final int[] ids = new int[to - from];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = from + i;
+    }
+    return ids;
+  }
+
+  private static int[] reversed(int[] ids) {
+    final int[] reversed = new int[ids.length];
+    for (int i = 0; i < ids.length; i++) {
+      reversed[i] = ids[ids.length - 1 - i];
+    }
+    return reversed;
+  }
+
+  @Test
+  public void testRowsInDifferentOrdersMatchAfterSpilling() throws Exception {
+    final DiffReport report;
+    try (final ResultDiff diff = diff(emptyList(), 50)) {
+      feed(diff.left(), "value", range(0, 1_000), id -> "v" + id, 100);
+      feed(diff.right(), "value", reversed(range(0, 1_000)), id -> "v" + id, 70);
+      report = diff.finish();
+      assertTrue(spillDirectory.getRoot().list().length > 0);
+    }
+
+    assertTrue(report.toReportString(), report.isIdentical());
+    assertEquals(1_000, report.getMatchedRows());
+    assertTrue(report.getSpilledRows() > 0);
+    assertEquals(0, spillDirectory.getRoot().list().length);
+  }
+
+  @Test
+  public void testManyRunsAreMergedWithBoundedFanIn() throws Exception {
+    final DiffReport report;
+    try (final ResultDiff diff = diff(singletonList("id"), 1)) {
+      // Each batch of one row spills a run, so each side spills hundreds of runs.
+      feed(diff.left(), "value", range(0, 1_000), id -> "v" + id, 1);
+      feed(diff.right(), "value", reversed(range(0, 1_000)), id -> id == 500 ? "changed" : "v" + id, 1);
+      report = diff.finish();
+      assertTrue(spillDirectory.getRoot().list().length <= 2 * SortedRuns.MAX_FAN_IN);
+    }
+
+    assertEquals(999, report.getMatchedRows());
+    assertEquals(1, report.getChangedRows());
+    assertEquals(0, spillDirectory.getRoot().list().length);
+  }
+
+  @Test
+  public void testKeyedDiffReportsChangedAndMissingRows() throws Exception {
+    for (final int maxPendingRows : new int[] {ResultDiff.DEFAULT_MAX_PENDING_ROWS, 3}) {
+      final DiffReport report;
+      try (final ResultDiff diff = diff(singletonList("id"), maxPendingRows)) {
+        feed(diff.left(), "value", range(0, 100), id -> "v" + id, 10);
+        feed(diff.right(), "value", reversed(range(1, 101)), id -> id == 50 ? "changed" : "v" + id, 10);
+        report = diff.finish();
+      }
+
+      assertFalse(report.isIdentical());
+      assertEquals(98, report.getMatchedRows());
+      assertEquals(1, report.getChangedRows());
+      assertEquals(1, report.getLeftOnlyRows());
+      assertEquals(1, report.getRightOnlyRows());
+      assertEquals(3, report.getExamples().size());
+      assertTrue(report.getExamples().contains("changed: left [50, v50], right [50, changed]"));
+      assertTrue(report.getExamples().contains("left only: [0, v0]"));
+      assertTrue(report.getExamples().contains("right only: [100, v100]"));
+    }
+  }
+
+  @Test
+  public void testDuplicateRowsWithoutKeyAreCounted() throws Exception {
+    for (final int maxPendingRows : new int[] {ResultDiff.DEFAULT_MAX_PENDING_ROWS, 1}) {
+      final DiffReport report;
+      try (final ResultDiff diff = diff(emptyList(), maxPendingRows)) {
+        feed(diff.left(), "value", new int[] {1, 1, 2}, id -> "v", 1);
+        feed(diff.right(), "value", new int[] {2, 1}, id -> "v", 1);
+        report = diff.finish();
+      }
+
+      assertEquals(2, report.getMatchedRows());
+      assertEquals(1, report.getLeftOnlyRows());
+      assertEquals(0, report.getRightOnlyRows());
+      assertEquals(3, report.getLeftRows());
+      assertEquals(2, report.getRightRows());
+    }
+  }
+
+  @Test
+  public void testExamplesAreBounded() throws Exception {
+    final DiffReport report;
+    try (final ResultDiff diff = new ResultDiff(singletonList("id"), 10, 2, spillDirectory.getRoot().toPath())) {
+      feed(diff.left(), "value", range(0, 100), id -> "left", 10);
+      feed(diff.right(), "value", range(0, 100), id -> "right", 10);
+      report = diff.finish();
+    }
+
+    assertEquals(100, report.getChangedRows());
+    assertArrayEquals(new String[] {"changed: left [0, left], right [0, right]",
+        "changed: left [1, left], right [1, right]"}, report.getExamples().toArray());
+  }
+
+  @Test
+  public void testSchemaDifferenceIsReported() throws Exception {
+    try (final ResultDiff diff = diff(singletonList("id"), 10)) {
+      feed(diff.left(), "value", range(0, 10), id -> "v" + id, 10);
+      feed(diff.right(), "renamed", range(0, 10), id -> "v" + id, 10);
+      final DiffReport report = diff.finish();
+
+      assertNotNull(report.getSchemaDifference());
+      assertEquals(10, report.getMatchedRows());
+      assertFalse(report.isIdentical());
+    }
+    try (final ResultDiff diff = diff(singletonList("id"), 10)) {
+      feed(diff.left(), "value", range(0, 10), id -> "v" + id, 10);
+      feed(diff.right(), "value", range(0, 10), id -> "v" + id, 10);
+      assertNull(diff.finish().getSchemaDifference());
+    }
+  }
+
+  @Test
+  public void testMissingKeyColumnIsRejected() throws Exception {
+    try (final ResultDiff diff = diff(singletonList("missing"), 10)) {
+      assertThrows(IllegalArgumentException.class,
+          () -> feed(diff.left(), "value", range(0, 10), id -> "v" + id, 10));
+    }
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.filter;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.types.pojo.Schema;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchFilterTest {
+  private static final int ROW_COUNT = 100;
+
+  private BufferAllocator allocator;
+  private VectorSchemaRoot source;
+
+  @Before
+  public void setup() {
+    allocator = new RootAllocator(Long.MAX_VALUE);
+    final BigIntVector ids = new BigIntVector("id", allocator);
+    final Float8Vector prices = new Float8Vector("price", allocator);
+    final VarCharVector names = new VarCharVector("name", allocator);
+    source = VectorSchemaRoot.of(ids, prices, names);
+    source.allocateNew();
+    for (int i = 0; i < ROW_COUNT; i++) {
+      ids.setSafe(i, i);
+      if (i % 10 == 0) {
+        prices.setNull(i);
+      } else {
+        prices.setSafe(i, i / 2.0);
+      }
+      names.setSafe(i, ("name-" + i).getBytes(StandardCharsets.UTF_8));
+    }
+    source.setRowCount(ROW_COUNT);
+  }
+
+  @After
+  public void tearDown() {
+    source.close();
+    allocator.close();
+  }
+
+  @Test
+  public void testProjectionTransfersWithoutCopying() {
+    final BatchFilter filter = new BatchFilter(asList("name", "id"), emptyList());
+    final Schema schema = filter.bind(source.getSchema());
+    assertEquals(asList("name", "id"),
+        asList(schema.getFields().get(0).getName(), schema.getFields().get(1).getName()));
+
+    final long sourceAddress = source.getVector("id").getDataBuffer().memoryAddress();
+    try (final VectorSchemaRoot target = VectorSchemaRoot.create(schema, allocator)) {
+      assertEquals(ROW_COUNT, filter.apply(source, target));
+      assertEquals(ROW_COUNT, target.getRowCount());
+      assertEquals(sourceAddress, target.getVector("id").getDataBuffer().memoryAddress());
+      assertEquals(0, source.getVector("id").getValueCount());
+      assertEquals("name-42", target.getVector("name").getObject(42).toString());
+    }
+  }
+
+  @Test
+  public void testPredicatesSelectMatchingRows() {
+    final BatchFilter filter = new BatchFilter(asList("id", "name"),
+        asList(ColumnPredicate.parse("price >= 20"), ColumnPredicate.parse("id!=45")));
+    try (final VectorSchemaRoot target = VectorSchemaRoot.create(filter.bind(source.getSchema()), allocator)) {
+      // Rows 40 to 99, less the null prices at multiples of 10 and row 45.
+      assertEquals(53, filter.apply(source, target));
+      final BigIntVector ids = (BigIntVector) target.getVector("id");
+      assertEquals(41, ids.get(0));
+      assertEquals(99, ids.get(52));
+      for (int i = 0; i < target.getRowCount(); i++) {
+        assertTrue(ids.get(i) % 10 != 0 && ids.get(i) != 45);
+        assertEquals("name-" + ids.get(i), target.getVector("name").getObject(i).toString());
+      }
+      assertEquals(ROW_COUNT, source.getRowCount());
+    }
+  }
+
+  @Test
+  public void testIntegralComparisonOnDoubleColumn() {
+    final BatchFilter filter = new BatchFilter(null, singletonList(ColumnPredicate.parse("price<1.5")));
+    try (final VectorSchemaRoot target = VectorSchemaRoot.create(filter.bind(source.getSchema()), allocator)) {
+      assertEquals(2, filter.apply(source, target));
+      assertEquals(3, target.getFieldVectors().size());
+      assertEquals(0.5, ((Float8Vector) target.getVector("price")).get(0), 0);
+      assertEquals(1.0, ((Float8Vector) target.getVector("price")).get(1), 0);
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testUnknownColumnIsRejected() {
+    new BatchFilter(singletonList("missing"), emptyList()).bind(source.getSchema());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testDuplicateColumnIsRejected() {
+    new BatchFilter(asList("id", "name", "id"), emptyList()).bind(source.getSchema());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testMalformedPredicateIsRejected() {
+    ColumnPredicate.parse("price ~ 10");
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testPredicateOnStringColumnIsRejected() {
+    final BatchFilter filter = new BatchFilter(null, singletonList(ColumnPredicate.parse("name=1")));
+    try (final VectorSchemaRoot target = VectorSchemaRoot.create(filter.bind(source.getSchema()), allocator)) {
+      filter.apply(source, target);
+    }
+  }
+}
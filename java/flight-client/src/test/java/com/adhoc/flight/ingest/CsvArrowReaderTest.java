@@ -0,0 +1,141 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.ingest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.apache.arrow.vector.types.Types.MinorType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CsvArrowReaderTest {
+  private BufferAllocator allocator;
+
+  @Before
+  public void setup() {
+    allocator = new RootAllocator(Long.MAX_VALUE);
+  }
+
+  @After
+  public void tearDown() {
+    allocator.close();
+  }
+
+  private CsvArrowReader reader(String csv, int batchSize) {
+    return new CsvArrowReader(new StringReader(csv), allocator, batchSize);
+  }
+
+  @Test
+  public void testColumnTypesAreInferred() throws IOException {
+    try (final CsvArrowReader reader = reader("id,price,name,empty\n1,2,a,\n2,2.5,b,\n3,,,\n", 10)) {
+      final VectorSchemaRoot root = reader.getVectorSchemaRoot();
+      assertEquals(MinorType.BIGINT, root.getVector("id").getMinorType());
+      assertEquals(MinorType.FLOAT8, root.getVector("price").getMinorType());
+      assertEquals(MinorType.VARCHAR, root.getVector("name").getMinorType());
+      assertEquals(MinorType.VARCHAR, root.getVector("empty").getMinorType());
+
+      assertTrue(reader.loadNextBatch());
+      assertEquals(3, root.getRowCount());
+      assertEquals(3L, ((BigIntVector) root.getVector("id")).get(2));
+      assertEquals(2.5, ((Float8Vector) root.getVector("price")).get(1), 0);
+      assertTrue(root.getVector("price").isNull(2));
+      assertTrue(root.getVector("name").isNull(2));
+      assertFalse(reader.loadNextBatch());
+    }
+  }
+
+  @Test
+  public void testQuotedFields() throws IOException {
+    final String csv = "name,note\r\n\"Smith, J\",\"said \"\"hi\"\"\nthen left\"\r\n\"\",x\r\n";
+    try (final CsvArrowReader reader = reader(csv, 10)) {
+      assertTrue(reader.loadNextBatch());
+      final VarCharVector names = (VarCharVector) reader.getVectorSchemaRoot().getVector("name");
+      final VarCharVector notes = (VarCharVector) reader.getVectorSchemaRoot().getVector("note");
+      assertEquals(2, reader.getVectorSchemaRoot().getRowCount());
+      assertEquals("Smith, J", names.getObject(0).toString());
+      assertEquals("said \"hi\"\nthen left", notes.getObject(0).toString());
+      // A quoted empty field is an empty string, not null.
+      assertEquals("", names.getObject(1).toString());
+    }
+  }
+
+  @Test
+  public void testRowsAreSplitIntoBatches() throws IOException {
+    final StringBuilder csv = new StringBuilder("id\n");
+    for (int i = 0; i < 25; i++) {
+      csv.append(i).append('\n');
+    }
+    try (final CsvArrowReader reader = reader(csv.toString(), 10)) {
+      final VectorSchemaRoot root = reader.getVectorSchemaRoot();
+      long sum = 0;
+      int batches = 0;
+      while (reader.loadNextBatch()) {
+        final BigIntVector ids = (BigIntVector) root.getVector("id");
+        for (int i = 0; i < root.getRowCount(); i++) {
+          sum += ids.get(i);
+        }
+        batches++;
+      }
+      assertEquals(3, batches);
+      assertEquals(300, sum);
+    }
+  }
+
+  @Test
+  public void testBlankLinesAreSkipped() throws IOException {
+    try (final CsvArrowReader reader = reader("a,b\n\n1,2\n\n", 10)) {
+      assertTrue(reader.loadNextBatch());
+      assertEquals(1, reader.getVectorSchemaRoot().getRowCount());
+    }
+  }
+
+  @Test
+  public void testValueNotMatchingInferredTypeFails() throws IOException {
+    final StringBuilder csv = new StringBuilder("id\n");
+    for (int i = 0; i < CsvArrowReader.INFERENCE_ROWS; i++) {
+      csv.append(i).append('\n');
+    }
+    csv.append("oops\n");
+    try (final CsvArrowReader reader = reader(csv.toString(), 10 * CsvArrowReader.INFERENCE_ROWS)) {
+      assertThrows(IOException.class, reader::loadNextBatch);
+    }
+  }
+
+  @Test
+  public void testMalformedRecordsFail() throws IOException {
+    try (final CsvArrowReader reader = reader("a,b\n1,2,3\n", 10)) {
+      assertThrows(IOException.class, reader::getVectorSchemaRoot);
+    }
+    try (final CsvArrowReader reader = reader("a\n\"unterminated\n", 10)) {
+      assertThrows(IOException.class, reader::getVectorSchemaRoot);
+    }
+  }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.profile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.UInt8Vector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ColumnProfilerTest {
+  private static final int BATCH_COUNT = 20;
+  private static final int ROWS_PER_BATCH = 5_000;
+  private static final int TOTAL_ROWS = BATCH_COUNT * ROWS_PER_BATCH;
+
+  private BufferAllocator allocator;
+
+  @Before
+  public void setup() {
+    allocator = new RootAllocator(Long.MAX_VALUE);
+  }
+
+  @After
+  public void tearDown() {
+    allocator.close();
+  }
+
+  @Test
+  public void testProfilesColumnsAcrossBatches() {
+    final ColumnProfiler profiler = new ColumnProfiler();
+    try (final BigIntVector ids = new BigIntVector("id", allocator);
+        final Float8Vector scores = new Float8Vector("score", allocator);
+        final VarCharVector names = new VarCharVector("name", allocator);
+        final VectorSchemaRoot root = VectorSchemaRoot.of(ids, scores, names)) {
+      for (int batch = 0; batch < BATCH_COUNT; batch++) {
+        root.allocateNew();
+        for (int i = 0; i < ROWS_PER_BATCH; i++) {
+          final int row = batch * ROWS_PER_BATCH + i;
+          ids.setSafe(i, row);
+          if (row % 10 == 0) {
+            scores.setNull(i);
+          } else {
+            scores.setSafe(i, (row % 1000) / 10.0);
+          }
+          names.setSafe(i, ("name-" + (row % 500)).getBytes(StandardCharsets.UTF_8));
+        }
+        root.setRowCount(ROWS_PER_BATCH);
+        profiler.accept(root);
+      }
+    }
+
+    assertEquals(BATCH_COUNT, profiler.getBatchCount());
+    assertEquals(Arrays.asList("id", "score", "name"),
+        Arrays.asList(profiler.getColumns().stream().map(ColumnStatistics::getName).toArray()));
+
+    final ColumnStatistics id = profiler.getColumns().get(0);
+    assertEquals("BIGINT", id.getType());
+    assertEquals(TOTAL_ROWS, id.getRowCount());
+    assertEquals(0, id.getNullCount());
+    assertEquals(0, id.getMin(), 0);
+    assertEquals(TOTAL_ROWS - 1, id.getMax(), 0);
+    assertEquals(TOTAL_ROWS, id.getDistinctCount(), TOTAL_ROWS * 0.03);
+    assertEquals(TOTAL_ROWS / 2.0, id.getQuantile(0.5), TOTAL_ROWS * 0.02);
+    assertEquals(TOTAL_ROWS * 0.99, id.getQuantile(0.99), TOTAL_ROWS * 0.02);
+
+    final ColumnStatistics score = profiler.getColumns().get(1);
+    assertEquals(TOTAL_ROWS / 10, score.getNullCount());
+    assertEquals(0.1, score.getMin(), 0);
+    assertEquals(99.9, score.getMax(), 0);
+    assertEquals(900, score.getDistinctCount(), 900 * 0.03);
+
+    final ColumnStatistics name = profiler.getColumns().get(2);
+    assertEquals("VARCHAR", name.getType());
+    assertEquals(500, name.getDistinctCount(), 500 * 0.03);
+    assertEquals("name-0".length(), name.getMin(), 0);
+    assertEquals("name-499".length(), name.getMax(), 0);
+
+    final String report = profiler.toReportString();
+    assertTrue(report, report.startsWith("column\ttype\trows\tnulls"));
+    assertTrue(report, report.contains("\nscore\tFLOAT8\t" + TOTAL_ROWS + "\t" + TOTAL_ROWS / 10 + "\t"));
+  }
+
+  @Test
+  public void testIntegerRangeIsExactBeyondDoublePrecision() {
+    final ColumnProfiler profiler = new ColumnProfiler();
+    try (final BigIntVector ids = new BigIntVector("id", allocator);
+        final UInt8Vector hashes = new UInt8Vector("hash", allocator);
+        final Float8Vector scores = new Float8Vector("score", allocator);
+        final VectorSchemaRoot root = VectorSchemaRoot.of(ids, hashes, scores)) {
+      root.allocateNew();
+      // Neighbours of 2^53 + 1 and of 2^64 - 1 round to the same double.
+      ids.setSafe(0, (1L << 53) + 1);
+      ids.setSafe(1, (1L << 53) + 3);
+      ids.setSafe(2, Long.MIN_VALUE + 1);
+      hashes.setSafe(0, -1L);
+      hashes.setSafe(1, -2L);
+      hashes.setSafe(2, 1L);
+      scores.setSafe(0, 0.5);
+      scores.setSafe(1, 1.5);
+      scores.setSafe(2, 2.5);
+      root.setRowCount(3);
+      profiler.accept(root);
+    }
+
+    final ColumnStatistics id = profiler.getColumns().get(0);
+    assertTrue(id.isIntegral());
+    assertEquals(Long.MIN_VALUE + 1, id.getMinLong());
+    assertEquals((1L << 53) + 3, id.getMaxLong());
+
+    final ColumnStatistics hash = profiler.getColumns().get(1);
+    assertEquals(1L, hash.getMinLong());
+    assertEquals(-1L, hash.getMaxLong());
+    assertEquals(Math.pow(2, 64), hash.getMax(), 0);
+
+    assertFalse(profiler.getColumns().get(2).isIntegral());
+
+    final String report = profiler.toReportString();
+    assertTrue(report, report.contains("\nid\tBIGINT\t3\t0\t"));
+    assertTrue(report, report.contains("\t-9223372036854775807\t"));
+    assertTrue(report, report.contains("\t9007199254740995\n"));
+    assertTrue(report, report.contains("\nhash\tUINT8\t3\t0\t"));
+    assertTrue(report, report.contains("\t18446744073709551615\n"));
+  }
+
+  @Test
+  public void testSketchMemoryIsBounded() {
+    final KllSketch sketch = new KllSketch();
+    for (int i = 0; i < 1_000_000; i++) {
+      sketch.update(i);
+    }
+    assertEquals(1_000_000, sketch.getCount());
+    assertEquals(500_000, sketch.quantile(0.5), 1_000_000 * 0.02);
+    assertEquals(100_000, sketch.quantile(0.1), 1_000_000 * 0.02);
+  }
+}
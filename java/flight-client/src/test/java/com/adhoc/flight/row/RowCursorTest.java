@@ -0,0 +1,220 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.row;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.management.ManagementFactory;
+import java.math.BigDecimal;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Consumer;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DecimalVector;
+import org.apache.arrow.vector.Float4Vector;
+import org.apache.arrow.vector.SmallIntVector;
+import org.apache.arrow.vector.TimeStampMilliVector;
+import org.apache.arrow.vector.UInt4Vector;
+import org.apache.arrow.vector.UInt8Vector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class RowCursorTest {
+  private BufferAllocator allocator;
+
+  @Before
+  public void setup() {
+    allocator = new RootAllocator(Long.MAX_VALUE);
+  }
+
+  @After
+  public void tearDown() {
+    allocator.close();
+  }
+
+  @Test
+  public void testTypedAccessorsReadEveryLayout() {
+    try (final BigIntVector ids = new BigIntVector("id", allocator);
+         final SmallIntVector small = new SmallIntVector("small", allocator);
+         final UInt4Vector unsigned = new UInt4Vector("unsigned", allocator);
+         final UInt8Vector unsignedLong = new UInt8Vector("unsigned_long", allocator);
+         final Float4Vector ratio = new Float4Vector("ratio", allocator);
+         final BitVector flag = new BitVector("flag", allocator);
+         final TimeStampMilliVector time = new TimeStampMilliVector("time", allocator);
+         final VarCharVector name = new VarCharVector("name", allocator);
+         final DecimalVector price = new DecimalVector("price", allocator, 10, 2);
+         final VectorSchemaRoot root = VectorSchemaRoot.of(ids, small, unsigned, unsignedLong, ratio, flag, time,
+             name, price)) {
+      root.allocateNew();
+      ids.setSafe(0, Long.MIN_VALUE);
+      small.setSafe(0, -7);
+      unsigned.setSafe(0, 0xFFFFFFFF);
+      unsignedLong.setSafe(0, -1L);
+      ratio.setSafe(0, 0.5f);
+      flag.setSafe(0, 1);
+      time.setSafe(0, 1_700_000_000_000L);
+      name.setSafe(0, "héllo".getBytes(StandardCharsets.UTF_8));
+      price.setSafe(0, new BigDecimal("12.34"));
+      ids.setNull(1);
+      small.setNull(1);
+      unsigned.setNull(1);
+      unsignedLong.setNull(1);
+      ratio.setNull(1);
+      flag.setNull(1);
+      time.setNull(1);
+      name.setNull(1);
+      price.setNull(1);
+      root.setRowCount(2);
+
+      final RowCursor cursor = new RowCursor();
+      cursor.reset(root);
+      assertEquals(9, cursor.getColumnCount());
+      assertTrue(cursor.next());
+      assertEquals(Long.MIN_VALUE, cursor.getLong(0));
+      assertEquals(-7, cursor.getLong(1));
+      assertEquals(0xFFFFFFFFL, cursor.getLong(2));
+      assertEquals(-1L, cursor.getLong(3));
+      assertEquals(Math.pow(2, 64), cursor.getDouble(3), 0);
+      assertEquals(0.5, cursor.getDouble(4), 0);
+      assertTrue(cursor.getBoolean(5));
+      assertEquals(1, cursor.getLong(5));
+      assertEquals(1_700_000_000_000L, cursor.getLong(cursor.getColumnIndex("time")));
+      assertEquals(-7.0, cursor.getDouble(1), 0);
+
+      final ByteBuffer utf8 = ByteBuffer.allocate(16);
+      utf8.put((byte) '>');
+      assertEquals(6, cursor.getLength(7));
+      assertEquals(6, cursor.getUtf8(7, utf8));
+      assertEquals(7, utf8.position());
+      assertEquals(">héllo", new String(utf8.array(), 0, utf8.position(), StandardCharsets.UTF_8));
+      assertThrows(BufferOverflowException.class, () -> cursor.getUtf8(7, ByteBuffer.allocate(5)));
+
+      assertEquals(new BigDecimal("12.34"), cursor.getObject(8));
+      assertFalse(cursor.isNull(8));
+
+      assertTrue(cursor.next());
+      for (int column = 0; column < cursor.getColumnCount(); column++) {
+        assertTrue(cursor.isNull(column));
+      }
+      assertFalse(cursor.next());
+      assertFalse(cursor.next());
+    }
+  }
+
+  @Test
+  public void testMismatchedTypesAndColumnsAreRejected() {
+    try (final VarCharVector name = new VarCharVector("name", allocator);
+         final Float4Vector ratio = new Float4Vector("ratio", allocator);
+         final VectorSchemaRoot root = VectorSchemaRoot.of(name, ratio)) {
+      root.allocateNew();
+      name.setSafe(0, "a".getBytes(StandardCharsets.UTF_8));
+      ratio.setSafe(0, 1.5f);
+      root.setRowCount(1);
+
+      final RowCursor cursor = new RowCursor();
+      cursor.reset(root);
+      cursor.next();
+      assertThrows(IllegalArgumentException.class, () -> cursor.getLong(0));
+      assertThrows(IllegalArgumentException.class, () -> cursor.getLong(1));
+      assertThrows(IllegalArgumentException.class, () -> cursor.getBoolean(1));
+      assertThrows(IllegalArgumentException.class, () -> cursor.getUtf8(1, ByteBuffer.allocate(8)));
+      assertThrows(IllegalArgumentException.class, () -> cursor.getColumnIndex("missing"));
+      assertThrows(IndexOutOfBoundsException.class, () -> cursor.setRow(1));
+    }
+  }
+
+  @Test
+  public void testCursorFollowsBuffersOfReloadedBatches() {
+    final long[] total = new long[1];
+    final ByteBuffer scratch = ByteBuffer.allocate(64);
+    final Consumer<VectorSchemaRoot> consumer = RowCursor.forEachRow(cursor -> {
+      total[0] += cursor.getLong(0);
+      scratch.clear();
+      total[0] += cursor.getUtf8(1, scratch);
+    });
+    try (final BigIntVector ids = new BigIntVector("id", allocator);
+         final VarCharVector names = new VarCharVector("name", allocator);
+         final VectorSchemaRoot root = VectorSchemaRoot.of(ids, names)) {
+      for (int batch = 0; batch < 3; batch++) {
+        // Allocating again replaces the buffers, like a Flight stream loading its next batch.
+        root.allocateNew();
+        for (int i = 0; i < 100; i++) {
+          ids.setSafe(i, batch * 100 + i);
+          names.setSafe(i, "ab".getBytes(StandardCharsets.UTF_8));
+        }
+        root.setRowCount(100);
+        consumer.accept(root);
+      }
+    }
+
+    assertEquals(299 * 300 / 2 + 300 * 2, total[0]);
+  }
+
+  @Test
+  public void testReadingRowsDoesNotAllocate() {
+    final java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    assumeTrue(threads instanceof com.sun.management.ThreadMXBean);
+    final com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean) threads;
+    final int rows = 100_000;
+    try (final BigIntVector ids = new BigIntVector("id", allocator);
+         final VarCharVector names = new VarCharVector("name", allocator);
+         final VectorSchemaRoot root = VectorSchemaRoot.of(ids, names)) {
+      root.allocateNew();
+      for (int i = 0; i < rows; i++) {
+        ids.setSafe(i, i);
+        names.setSafe(i, ("name-" + i).getBytes(StandardCharsets.UTF_8));
+      }
+      root.setRowCount(rows);
+      final RowCursor cursor = new RowCursor();
+      final ByteBuffer scratch = ByteBuffer.allocate(64);
+      long checksum = 0;
+      for (int warmup = 0; warmup < 2; warmup++) {
+        checksum += readAll(cursor, root, scratch);
+      }
+
+      final long before = allocations.getThreadAllocatedBytes(Thread.currentThread().getId());
+      checksum += readAll(cursor, root, scratch);
+      final long allocated = allocations.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+      assertTrue(checksum > 0);
+      assertTrue("Allocated " + allocated + " bytes for " + rows + " rows", allocated < 1024);
+    }
+  }
+
+  private static long readAll(RowCursor cursor, VectorSchemaRoot root, ByteBuffer scratch) {
+    long checksum = 0;
+    cursor.reset(root);
+    while (cursor.next()) {
+      scratch.clear();
+      checksum += cursor.getLong(0) + cursor.getUtf8(1, scratch);
+    }
+    return checksum;
+  }
+}
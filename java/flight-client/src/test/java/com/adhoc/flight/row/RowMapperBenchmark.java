@@ -0,0 +1,120 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.row;
+
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.FieldVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+
+/**
+ * Compares mapping batches to objects with {@link RowMapper} against the usual hand-written
+ * approach: {@code getObject} per cell, set with reflection.
+ * <p>
+ * Run with {@code RowMapperBenchmark [rows] [runs]}, by default 1M rows per batch, averaged over 10
+ * runs after 5 warm-up runs.
+ */
+public final class RowMapperBenchmark {
+
+  /**
+   * Mapped class.
+   */
+  public static class Order {
+    private long orderId;
+    private int quantity;
+    private double price;
+    private String customerName;
+  }
+
+  private RowMapperBenchmark() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    final int rows = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+    final int runs = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+    try (final BufferAllocator allocator = new RootAllocator(Long.MAX_VALUE);
+         final BigIntVector ids = new BigIntVector("order_id", allocator);
+         final IntVector quantities = new IntVector("quantity", allocator);
+         final Float8Vector prices = new Float8Vector("price", allocator);
+         final VarCharVector names = new VarCharVector("customer_name", allocator);
+         final VectorSchemaRoot root = VectorSchemaRoot.of(ids, quantities, prices, names)) {
+      root.allocateNew();
+      for (int row = 0; row < rows; row++) {
+        ids.setSafe(row, row);
+        quantities.setSafe(row, row % 100);
+        prices.setSafe(row, row * 0.25);
+        names.setSafe(row, ("customer-" + row % 1000).getBytes(StandardCharsets.UTF_8));
+      }
+      root.setRowCount(rows);
+
+      final Field[] fields = {
+          Order.class.getDeclaredField("orderId"), Order.class.getDeclaredField("quantity"),
+          Order.class.getDeclaredField("price"), Order.class.getDeclaredField("customerName")};
+      for (final Field field : fields) {
+        field.setAccessible(true);
+      }
+      final RowMapper<Order> mapper = RowMapper.of(root.getSchema(), Order.class);
+      final Order[] target = new Order[rows];
+
+      long checksum = 0;
+      for (int run = 0; run < 5; run++) {
+        checksum += reflect(root, fields, target);
+        checksum += mapper(mapper, root, target);
+      }
+      long reflectionNanos = 0;
+      long mapperNanos = 0;
+      for (int run = 0; run < runs; run++) {
+        long start = System.nanoTime();
+        checksum += reflect(root, fields, target);
+        reflectionNanos += System.nanoTime() - start;
+        start = System.nanoTime();
+        checksum += mapper(mapper, root, target);
+        mapperNanos += System.nanoTime() - start;
+      }
+      System.out.printf("getObject + reflection: %6.1f ns/row%n", (double) reflectionNanos / runs / rows);
+      System.out.printf("RowMapper:              %6.1f ns/row%n", (double) mapperNanos / runs / rows);
+      System.out.println("(checksum " + checksum + ")");
+    }
+  }
+
+  private static long reflect(VectorSchemaRoot root, Field[] fields, Order[] target) throws Exception {
+    final List<FieldVector> vectors = root.getFieldVectors();
+    for (int row = 0; row < root.getRowCount(); row++) {
+      final Order order = Order.class.getDeclaredConstructor().newInstance();
+      for (int column = 0; column < fields.length; column++) {
+        final Object value = vectors.get(column).getObject(row);
+        fields[column].set(order, value == null ? null : column == 3 ? value.toString() : value);
+      }
+      target[row] = order;
+    }
+    return target[target.length - 1].orderId;
+  }
+
+  private static long mapper(RowMapper<Order> mapper, VectorSchemaRoot root, Order[] target) {
+    mapper.map(root, target, 0);
+    return target[target.length - 1].orderId;
+  }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.row;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assume.assumeNotNull;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.math.BigDecimal;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.apache.arrow.memory.BufferAllocator;
+import org.apache.arrow.memory.RootAllocator;
+import org.apache.arrow.vector.BigIntVector;
+import org.apache.arrow.vector.BitVector;
+import org.apache.arrow.vector.DateDayVector;
+import org.apache.arrow.vector.DecimalVector;
+import org.apache.arrow.vector.Float8Vector;
+import org.apache.arrow.vector.IntVector;
+import org.apache.arrow.vector.TimeStampMicroTZVector;
+import org.apache.arrow.vector.VarCharVector;
+import org.apache.arrow.vector.VectorSchemaRoot;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RowMapperTest {
+  private static final int ROWS = 3;
+
+  @Rule
+  public TemporaryFolder sources = new TemporaryFolder();
+
+  private BufferAllocator allocator;
+  private BigIntVector ids;
+  private IntVector quantities;
+  private Float8Vector prices;
+  private BitVector paid;
+  private VarCharVector names;
+  private DateDayVector days;
+  private TimeStampMicroTZVector times;
+  private DecimalVector totals;
+  private VectorSchemaRoot root;
+
+  /**
+   * Mutable class with a no-argument constructor.
+   */
+  public static class Order {
+    private long orderId;
+    private int quantity;
+    private Double price;
+    private boolean paid;
+    private String customerName;
+    private LocalDate day;
+    private Instant time;
+    private BigDecimal total;
+    private String notInResults = "unset";
+    private static int instances;
+    private transient int ignored;
+  }
+
+  /**
+   * Class with a primitive property for a nullable column.
+   */
+  public static class PrimitivePrice {
+    private double price;
+  }
+
+  /**
+   * Class that cannot be created without arguments.
+   */
+  public static class NoDefaultConstructor {
+    private final long orderId;
+
+    public NoDefaultConstructor(long orderId) {
+      this.orderId = orderId;
+    }
+  }
+
+  /**
+   * Class with a property of an incompatible type.
+   */
+  public static class WrongType {
+    private boolean customerName;
+  }
+
+  @Before
+  public void setup() {
+    allocator = new RootAllocator(Long.MAX_VALUE);
+    ids = new BigIntVector("order_id", allocator);
+    quantities = new IntVector("QUANTITY", allocator);
+    prices = new Float8Vector("price", allocator);
+    paid = new BitVector("paid", allocator);
+    names = new VarCharVector("customer_name", allocator);
+    days = new DateDayVector("day", allocator);
+    times = new TimeStampMicroTZVector("time", allocator, "UTC");
+    totals = new DecimalVector("total", allocator, 10, 2);
+    root = VectorSchemaRoot.of(ids, quantities, prices, paid, names, days, times, totals);
+    root.allocateNew();
+    for (int row = 0; row < ROWS; row++) {
+      ids.setSafe(row, 100L + row);
+      quantities.setSafe(row, row + 1);
+      if (row == 1) {
+        prices.setNull(row);
+        names.setNull(row);
+      } else {
+        prices.setSafe(row, row + 0.5);
+        names.setSafe(row, ("customé-" + row).getBytes(StandardCharsets.UTF_8));
+      }
+      paid.setSafe(row, row % 2);
+      days.setSafe(row, 19_000 + row);
+      times.setSafe(row, 1_700_000_000_123_456L + row);
+      totals.setSafe(row, new BigDecimal(row + ".25"));
+    }
+    root.setRowCount(ROWS);
+  }
+
+  @After
+  public void tearDown() {
+    root.close();
+    allocator.close();
+  }
+
+  @Test
+  public void testPojoFieldsAreMappedByName() {
+    final List<Order> orders = RowMapper.of(root.getSchema(), Order.class).map(root);
+
+    assertEquals(ROWS, orders.size());
+    final Order first = orders.get(0);
+    assertEquals(100L, first.orderId);
+    assertEquals(1, first.quantity);
+    assertEquals(0.5, first.price, 0);
+    assertEquals(false, first.paid);
+    assertEquals("customé-0", first.customerName);
+    assertEquals(LocalDate.ofEpochDay(19_000), first.day);
+    assertEquals(Instant.ofEpochSecond(1_700_000_000L, 123_456_000L), first.time);
+    assertEquals(new BigDecimal("0.25"), first.total);
+    assertEquals("unset", first.notInResults);
+
+    final Order second = orders.get(1);
+    assertEquals(101L, second.orderId);
+    assertNull(second.price);
+    assertNull(second.customerName);
+    assertEquals(true, second.paid);
+  }
+
+  @Test
+  public void testMappersAreCachedPerSchemaAndClass() {
+    assertSame(RowMapper.of(root.getSchema(), Order.class), RowMapper.of(root.getSchema(), Order.class));
+
+    final List<Order> orders = new ArrayList<>();
+    RowMapper.forEach(Order.class, orders::add).accept(root);
+    assertEquals(ROWS, orders.size());
+
+    final Order[] target = new Order[ROWS + 2];
+    RowMapper.of(root.getSchema(), Order.class).map(root, target, 2);
+    assertEquals(102L, target[4].orderId);
+    assertThrows(IndexOutOfBoundsException.class,
+        () -> RowMapper.of(root.getSchema(), Order.class).map(root, target, 3));
+  }
+
+  @Test
+  public void testUnmappableClassesAreRejected() {
+    assertThrows(IllegalArgumentException.class, () -> RowMapper.of(root.getSchema(), NoDefaultConstructor.class));
+    assertThrows(IllegalArgumentException.class, () -> RowMapper.of(root.getSchema(), WrongType.class));
+    assertThrows(IllegalArgumentException.class,
+        () -> RowMapper.of(root.getSchema(), PrimitivePrice.class).map(root));
+  }
+
+  @Test
+  public void testRecordsAreCreatedWithTheirCanonicalConstructor() throws Exception {
+    final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+    assumeNotNull(compiler);
+    assumeTrue(hasRecords());
+    final File source = new File(sources.getRoot(), "OrderRecord.java");
+    Files.write(source.toPath(), ("public record OrderRecord(long orderId, int quantity, Double price, " +
+        "String customerName, LocalDate day) {}").replace("LocalDate", "java.time.LocalDate")
+        .getBytes(StandardCharsets.UTF_8));
+    assertEquals(0, compiler.run(null, null, null, source.getPath()));
+
+    try (final URLClassLoader loader = new URLClassLoader(new URL[] {sources.getRoot().toURI().toURL()})) {
+      final Class<?> type = loader.loadClass("OrderRecord");
+      final List<?> orders = RowMapper.of(root.getSchema(), type).map(root);
+
+      assertEquals(ROWS, orders.size());
+      assertEquals("OrderRecord[orderId=100, quantity=1, price=0.5, customerName=customé-0, day=2022-01-08]",
+          orders.get(0).toString());
+      assertEquals("OrderRecord[orderId=101, quantity=2, price=null, customerName=null, day=2022-01-09]",
+          orders.get(1).toString());
+    }
+  }
+
+  private static boolean hasRecords() {
+    try {
+      Class.class.getMethod("isRecord");
+      return true;
+    } catch (NoSuchMethodException ex) {
+      return false;
+    }
+  }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.script;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptySet;
+import static java.util.Collections.singleton;
+import static org.junit.Assert.assertEquals;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Test;
+
+public class ScriptGraphTest {
+
+  private static Set<Object> setOf(Object... values) {
+    return new HashSet<>(asList(values));
+  }
+
+  @Test
+  public void testCreateReadDropRunsInOrder() {
+    final ScriptGraph graph = ScriptGraph.of(asList(
+        "CREATE TABLE \"$scratch\".demo AS SELECT * FROM src",
+        "SELECT * FROM demo",
+        "DROP TABLE IF EXISTS \"$scratch\".demo"));
+
+    assertEquals(singleton("$scratch.demo"), graph.getProduced(0));
+    assertEquals(singleton("src"), graph.getConsumed(0));
+    assertEquals(setOf(0), new HashSet<Object>(graph.getDependencies(1)));
+    assertEquals(setOf(0, 1), new HashSet<Object>(graph.getDependencies(2)));
+  }
+
+  @Test
+  public void testIndependentBranchesDoNotDependOnEachOther() {
+    final ScriptGraph graph = ScriptGraph.of(asList(
+        "CREATE TABLE a AS SELECT * FROM raw.orders",
+        "CREATE TABLE b AS SELECT * FROM raw.customers",
+        "INSERT INTO report SELECT * FROM a JOIN b ON a.id = b.id",
+        "SELECT COUNT(*) FROM raw.orders"));
+
+    assertEquals(emptySet(), graph.getDependencies(1));
+    assertEquals(setOf(0, 1), new HashSet<Object>(graph.getDependencies(2)));
+    assertEquals(emptySet(), graph.getDependencies(3));
+    assertEquals(setOf(2), new HashSet<Object>(graph.getDownstream(0)));
+  }
+
+  @Test
+  public void testConsumedTablesSkipSubqueriesAliasesAndCommonTables() {
+    final ScriptGraph graph = ScriptGraph.of(asList(
+        "WITH recent AS (SELECT * FROM db.orders WHERE EXTRACT(YEAR FROM created) = 2024) " +
+            "SELECT * FROM recent r, db.customers AS c, (SELECT 1) s LEFT JOIN \"Db\".\"Regions\" g ON c.id = g.id " +
+            "WHERE name = 'FROM fake'",
+        "MERGE INTO db.target t USING db.updates u ON t.id = u.id WHEN MATCHED THEN UPDATE SET v = u.v"));
+
+    assertEquals(setOf("db.orders", "db.customers", "db.regions"), new HashSet<Object>(graph.getConsumed(0)));
+    assertEquals(singleton("db.target"), graph.getProduced(1));
+    assertEquals(singleton("db.updates"), graph.getConsumed(1));
+  }
+
+  @Test
+  public void testWritesWaitForEarlierReads() {
+    final ScriptGraph graph = ScriptGraph.of(asList(
+        "SELECT * FROM t",
+        "UPDATE t SET x = 1",
+        "DELETE FROM t WHERE x = 1"));
+
+    assertEquals(setOf(0), new HashSet<Object>(graph.getDependencies(1)));
+    assertEquals(setOf(0, 1), new HashSet<Object>(graph.getDependencies(2)));
+  }
+
+  @Test
+  public void testUnknownStatementsAreBarriers() {
+    final List<String> statements = asList("SELECT * FROM a", "USE db", "SELECT * FROM b", "SELECT 1");
+    final ScriptGraph graph = ScriptGraph.of(statements);
+
+    assertEquals(setOf(0), new HashSet<Object>(graph.getDependencies(1)));
+    assertEquals(setOf(1), new HashSet<Object>(graph.getDependencies(2)));
+    assertEquals(setOf(1), new HashSet<Object>(graph.getDependencies(3)));
+  }
+
+  @Test
+  public void testDeclaredTablesReplaceInferredOnes() {
+    final ScriptGraph graph = ScriptGraph.of(asList(
+        "-- @produces db.summary\nALTER SESSION SET x = 1",
+        "-- @consumes db.summary, \"db\".other\nSELECT * FROM db.summary_view",
+        "SELECT * FROM db.summary_view"));
+
+    assertEquals(singleton("db.summary"), graph.getProduced(0));
+    assertEquals(setOf("db.summary", "db.other"), new HashSet<Object>(graph.getConsumed(1)));
+    assertEquals(setOf(0), new HashSet<Object>(graph.getDependencies(1)));
+    assertEquals(emptySet(), graph.getDependencies(2));
+  }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package com.adhoc.flight.script;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class SqlScriptTest {
+
+  @Test
+  public void testStatementsAreSplitOnSemicolons() {
+    assertEquals(asList("SELECT 1", "SELECT 2", "SELECT 3"), SqlScript.split("SELECT 1;\nSELECT 2 ;SELECT 3"));
+  }
+
+  @Test
+  public void testSemicolonsInLiteralsAndCommentsAreKept() {
+    final String script = "SELECT 'a;b', 'it''s;' FROM \"odd;name\";\n" +
+        "-- comment; with a semicolon\n" +
+        "SELECT /* inline; */ 2;";
+
+    assertEquals(asList("SELECT 'a;b', 'it''s;' FROM \"odd;name\"",
+        "-- comment; with a semicolon\nSELECT /* inline; */ 2"), SqlScript.split(script));
+  }
+
+  @Test
+  public void testEmptyAndCommentOnlyStatementsAreDropped() {
+    assertEquals(emptyList(), SqlScript.split(" ;; -- nothing\n/* here */;"));
+    assertEquals(asList("SELECT 1"), SqlScript.split(";SELECT 1;;\n-- trailing comment\n"));
+  }
+
+  @Test
+  public void testReadOnlyStatementsAreRecognized() {
+    assertTrue(SqlScript.isReadOnly("select * from t"));
+    assertTrue(SqlScript.isReadOnly("-- report\n(SELECT 1) UNION ALL (SELECT 2)"));
+    assertTrue(SqlScript.isReadOnly("WITH x AS (SELECT 1) SELECT * FROM x"));
+    assertTrue(SqlScript.isReadOnly("EXPLAIN PLAN FOR SELECT 1"));
+    assertFalse(SqlScript.isReadOnly("CREATE TABLE t AS SELECT 1"));
+    assertFalse(SqlScript.isReadOnly("INSERT INTO t SELECT 1"));
+    assertFalse(SqlScript.isReadOnly("/* SELECT */ DROP TABLE t"));
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2017-2021 Dremio Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.adhoc.flight.tracing;
+
+import static com.adhoc.flight.client.FlightServerRule.HOST;
+import static com.adhoc.flight.client.FlightServerRule.PASSWORD;
+import static com.adhoc.flight.client.FlightServerRule.USERNAME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.arrow.flight.CallHeaders;
+import org.apache.arrow.flight.CallInfo;
+import org.apache.arrow.flight.CallStatus;
+import org.apache.arrow.flight.FlightServer;
+import org.apache.arrow.flight.FlightServerMiddleware;
+import org.apache.arrow.flight.NoOpFlightProducer;
+import org.apache.arrow.flight.RequestContext;
+import org.apache.arrow.memory.RootAllocator;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import com.adhoc.flight.client.AdhocFlightClient;
+import com.adhoc.flight.client.FlightServerRule;
+
+/**
+ * Tests for {@link FlightTracer} span recording and trace context propagation.
+ */
+public class FlightTracerTest {
+  private static final String TRACE_ID = "0af7651916cd43dd8448eb211c80319c";
+
+  @Rule
+  public FlightServerRule flight = new FlightServerRule();
+
+  private final List<TraceSpan> exportedSpans = Collections.synchronizedList(new ArrayList<>());
+  private final Map<String, String> receivedTraceparents = new ConcurrentHashMap<>();
+  private FlightServer server;
+  private AdhocFlightClient client;
+
+  @Before
+  public void setup() throws Exception {
+    server = flight.start(flight.serverBuilder(new NoOpFlightProducer())
+        .middleware(FlightServerMiddleware.Key.of("traceparent"), new TraceparentRecorder()));
+  }
+
+  @Test
+  public void testHandshakeIsTracedAndPropagated() throws Exception {
+    final FlightTracer tracer = new FlightTracer(TRACE_ID, true, exportedSpans::add);
+
+    client = flight.closeAfter(AdhocFlightClient.getBasicClient(new RootAllocator(Long.MAX_VALUE), HOST,
+        server.getPort(), USERNAME, PASSWORD, null, null, null, Collections.singletonList(tracer)));
+
+    assertEquals(2, exportedSpans.size());
+    final TraceSpan rpcSpan = exportedSpans.get(0);
+    final TraceSpan authenticateSpan = exportedSpans.get(1);
+    assertEquals("flight.HANDSHAKE", rpcSpan.getName());
+    assertEquals("authenticate", authenticateSpan.getName());
+    assertNull(authenticateSpan.getParentSpanId());
+    assertEquals(authenticateSpan.getSpanId(), rpcSpan.getParentSpanId());
+    assertEquals(TRACE_ID, rpcSpan.getTraceId());
+    assertEquals("OK", rpcSpan.getAttributes().get("flight.status"));
+    assertEquals(tracer.traceparent(rpcSpan), receivedTraceparents.get("HANDSHAKE"));
+    assertTrue(receivedTraceparents.get("HANDSHAKE").endsWith("-01"));
+    assertFalse(TraceSpan.current().isRecording());
+  }
+
+  @Test
+  public void testDisabledTracerRecordsNothing() {
+    try (final TraceSpan span = FlightTracer.disabled().startSpan("runQuery")) {
+      span.setAttribute("rows", 1);
+      assertFalse(span.isRecording());
+      assertFalse(TraceSpan.current().startChild("firstBatch").isRecording());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidTraceId() {
+    new FlightTracer("NOT-A-TRACE-ID", false, null);
+  }
+
+  private final class TraceparentRecorder implements FlightServerMiddleware.Factory<FlightServerMiddleware> {
+    @Override
+    public FlightServerMiddleware onCallStarted(CallInfo info, CallHeaders incomingHeaders,
+        RequestContext context) {
+      final String traceparent = incomingHeaders.get(FlightTracer.TRACEPARENT_HEADER);
+      if (traceparent != null) {
+        receivedTraceparents.put(info.method().name(), traceparent);
+      }
+      return new FlightServerMiddleware() {
+        @Override
+        public void onBeforeSendingHeaders(CallHeaders outgoingHeaders) {
+
+        }
+
+        @Override
+        public void onCallCompleted(CallStatus status) {
+
+        }
+
+        @Override
+        public void onCallErrored(Throwable err) {
+
+        }
+      };
+    }
+  }
+}